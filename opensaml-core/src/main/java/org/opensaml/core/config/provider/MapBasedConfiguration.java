@@ -89,17 +89,21 @@ public class MapBasedConfiguration implements Configuration {
     /**
      * Get the Map instance which corresponds to the specified partition name.
      * 
+     * <p>
+     * This is called on every configuration lookup, so it relies on the atomicity of the underlying
+     * {@link ConcurrentHashMap} rather than synchronizing.
+     * </p>
+     * 
      * @param partitionName the partition name to use
      * 
      * @return the Map corresponding to the partition name.  A new empty Map will be created if necessary
      */
-    private synchronized Map<String, Object> getPartition(final String partitionName) {
-        Map<String, Object> partition = storage.get(partitionName);
-        if (partition == null) {
-            partition = new ConcurrentHashMap<>();
-            storage.put(partitionName, partition);
+    private Map<String, Object> getPartition(final String partitionName) {
+        final Map<String, Object> partition = storage.get(partitionName);
+        if (partition != null) {
+            return partition;
         }
-        return partition;
+        return storage.computeIfAbsent(partitionName, name -> new ConcurrentHashMap<>());
     }
 
 }
\ No newline at end of file
@@ -27,7 +27,6 @@ import javax.annotation.Nonnull;
 import javax.annotation.concurrent.NotThreadSafe;
 import javax.xml.namespace.QName;
 
-import net.shibboleth.utilities.java.support.collection.LazyMap;
 import net.shibboleth.utilities.java.support.collection.LazySet;
 import net.shibboleth.utilities.java.support.logic.Constraint;
 import net.shibboleth.utilities.java.support.primitive.StringSupport;
@@ -54,8 +53,8 @@ public class AttributeMap implements Map<QName, String> {
     /** XMLObject owning the attributes. */
     private final XMLObject attributeOwner;
 
-    /** Map of attributes. */
-    private Map<QName, String> attributes;
+    /** Map of attributes, see {@link CompactAttributeStorage}. */
+    private final Map<QName, String> attributes;
     
     /** Set of attribute QNames which have been locally registered as having an ID type within this 
      * AttributeMap instance. */
@@ -78,7 +77,7 @@ public class AttributeMap implements Map<QName, String> {
         Constraint.isNotNull(newOwner, "Attribute owner XMLObject cannot be null");
 
         attributeOwner = newOwner;
-        attributes = new LazyMap<>();
+        attributes = new CompactAttributeStorage();
         idAttribNames = new LazySet<>();
         qnameAttribNames = new LazySet<>();
     }
@@ -0,0 +1,425 @@
+/*
+ * Licensed to the University Corporation for Advanced Internet Development,
+ * Inc. (UCAID) under one or more contributor license agreements.  See the
+ * NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The UCAID licenses this file to You under the Apache
+ * License, Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opensaml.core.xml.util;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.NotThreadSafe;
+import javax.xml.namespace.QName;
+
+import net.shibboleth.utilities.java.support.logic.Constraint;
+
+/**
+ * A compact {@link Map} of attribute names to attribute values used as the backing store of {@link AttributeMap}.
+ *
+ * <p>
+ * The vast majority of XML elements carry no attributes, or only a handful of them. This implementation
+ * therefore allocates nothing until the first attribute is added, and then stores the names and values in a pair
+ * of small parallel arrays which are searched linearly. Once the number of attributes exceeds
+ * {@link #PROMOTION_THRESHOLD} the entries are moved into a hash table and all further operations are delegated to
+ * it.
+ * </p>
+ *
+ * <p>
+ * Iteration order is the order in which the attributes were first added, in both storage modes. Null values are
+ * permitted, null keys are not.
+ * </p>
+ */
+@NotThreadSafe
+public class CompactAttributeStorage extends AbstractMap<QName, String> {
+
+    /** Number of entries above which the storage is promoted from parallel arrays to a hash table. */
+    public static final int PROMOTION_THRESHOLD = 8;
+
+    /** Initial capacity of the parallel arrays. */
+    private static final int INITIAL_CAPACITY = 2;
+
+    /** Attribute names, valid when the storage has not been promoted. */
+    @Nullable private QName[] names;
+
+    /** Attribute values, parallel to {@link #names}. */
+    @Nullable private String[] values;
+
+    /** Number of entries held in the parallel arrays. */
+    private int arraySize;
+
+    /** Hash table used once the storage has been promoted. */
+    @Nullable private Map<QName, String> promoted;
+
+    /** Count of structural modifications made to the parallel arrays, used to make iterators fail-fast. */
+    private int modCount;
+
+    /** Lazily-created entry set view. */
+    @Nullable private Set<Entry<QName, String>> entrySetView;
+
+    /**
+     * Get whether the storage has been promoted from parallel arrays to a hash table.
+     *
+     * @return true if the entries are held in a hash table
+     */
+    public boolean isPromoted() {
+        return promoted != null;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int size() {
+        if (promoted != null) {
+            return promoted.size();
+        }
+        return arraySize;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean containsKey(final Object key) {
+        if (promoted != null) {
+            return promoted.containsKey(key);
+        }
+        return indexOf(key) >= 0;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean containsValue(final Object value) {
+        if (promoted != null) {
+            return promoted.containsValue(value);
+        }
+        for (int i = 0; i < arraySize; i++) {
+            if (Objects.equals(values[i], value)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String get(final Object key) {
+        if (promoted != null) {
+            return promoted.get(key);
+        }
+        final int index = indexOf(key);
+        return index >= 0 ? values[index] : null;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String put(@Nonnull final QName key, @Nullable final String value) {
+        Constraint.isNotNull(key, "Attribute name cannot be null");
+
+        if (promoted != null) {
+            return promoted.put(key, value);
+        }
+
+        final int index = indexOf(key);
+        if (index >= 0) {
+            final String oldValue = values[index];
+            values[index] = value;
+            return oldValue;
+        }
+
+        if (arraySize == PROMOTION_THRESHOLD) {
+            promote();
+            return promoted.put(key, value);
+        }
+
+        ensureCapacity(arraySize + 1);
+        names[arraySize] = key;
+        values[arraySize] = value;
+        arraySize++;
+        modCount++;
+        return null;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String remove(final Object key) {
+        if (promoted != null) {
+            return promoted.remove(key);
+        }
+        final int index = indexOf(key);
+        if (index < 0) {
+            return null;
+        }
+        final String oldValue = values[index];
+        removeAt(index);
+        return oldValue;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>
+     * Clearing the storage releases any hash table and returns it to its initial, unallocated state.
+     * </p>
+     */
+    @Override
+    public void clear() {
+        promoted = null;
+        names = null;
+        values = null;
+        arraySize = 0;
+        modCount++;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Set<Entry<QName, String>> entrySet() {
+        if (entrySetView == null) {
+            entrySetView = new EntrySet();
+        }
+        return entrySetView;
+    }
+
+    /**
+     * Find the array index of the given key.
+     *
+     * <p>
+     * Attribute names are frequently shared constants, so an identity comparison is tried before falling back to
+     * {@link QName#equals(Object)}.
+     * </p>
+     *
+     * @param key the key to locate
+     *
+     * @return the index of the key, or -1 if not present
+     */
+    private int indexOf(@Nullable final Object key) {
+        if (key == null) {
+            return -1;
+        }
+        for (int i = 0; i < arraySize; i++) {
+            if (names[i] == key) {
+                return i;
+            }
+        }
+        for (int i = 0; i < arraySize; i++) {
+            if (names[i].equals(key)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Ensure the parallel arrays can hold the given number of entries.
+     *
+     * @param capacity the required capacity
+     */
+    private void ensureCapacity(final int capacity) {
+        if (names == null) {
+            final int initial = Math.max(INITIAL_CAPACITY, capacity);
+            names = new QName[initial];
+            values = new String[initial];
+        } else if (names.length < capacity) {
+            final int newLength = Math.min(PROMOTION_THRESHOLD, Math.max(capacity, names.length * 2));
+            final QName[] newNames = new QName[newLength];
+            final String[] newValues = new String[newLength];
+            System.arraycopy(names, 0, newNames, 0, arraySize);
+            System.arraycopy(values, 0, newValues, 0, arraySize);
+            names = newNames;
+            values = newValues;
+        }
+    }
+
+    /**
+     * Remove the entry at the given array index, preserving the order of the remaining entries.
+     *
+     * @param index the index of the entry to remove
+     */
+    private void removeAt(final int index) {
+        final int tail = arraySize - index - 1;
+        if (tail > 0) {
+            System.arraycopy(names, index + 1, names, index, tail);
+            System.arraycopy(values, index + 1, values, index, tail);
+        }
+        arraySize--;
+        names[arraySize] = null;
+        values[arraySize] = null;
+        modCount++;
+    }
+
+    /**
+     * Move the entries from the parallel arrays into a hash table.
+     */
+    private void promote() {
+        final Map<QName, String> table = new LinkedHashMap<>(PROMOTION_THRESHOLD * 4);
+        for (int i = 0; i < arraySize; i++) {
+            table.put(names[i], values[i]);
+        }
+        promoted = table;
+        names = null;
+        values = null;
+        arraySize = 0;
+        modCount++;
+    }
+
+    /** Entry set view over whichever storage mode is current. */
+    private class EntrySet extends AbstractSet<Entry<QName, String>> {
+
+        /** {@inheritDoc} */
+        @Override
+        public Iterator<Entry<QName, String>> iterator() {
+            if (promoted != null) {
+                return promoted.entrySet().iterator();
+            }
+            return new ArrayEntryIterator();
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public int size() {
+            return CompactAttributeStorage.this.size();
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public void clear() {
+            CompactAttributeStorage.this.clear();
+        }
+    }
+
+    /** Fail-fast iterator over the parallel arrays. */
+    private class ArrayEntryIterator implements Iterator<Entry<QName, String>> {
+
+        /** Index of the next entry to return. */
+        private int next;
+
+        /** Index of the entry last returned, or -1. */
+        private int last = -1;
+
+        /** Modification count expected by this iterator. */
+        private int expectedModCount = modCount;
+
+        /** {@inheritDoc} */
+        public boolean hasNext() {
+            return next < arraySize;
+        }
+
+        /** {@inheritDoc} */
+        public Entry<QName, String> next() {
+            checkForComodification();
+            if (next >= arraySize) {
+                throw new NoSuchElementException();
+            }
+            last = next++;
+            return new ArrayEntry(last);
+        }
+
+        /** {@inheritDoc} */
+        public void remove() {
+            if (last < 0) {
+                throw new IllegalStateException();
+            }
+            checkForComodification();
+            removeAt(last);
+            next = last;
+            last = -1;
+            expectedModCount = modCount;
+        }
+
+        /** Check that the storage has not been structurally modified outside of this iterator. */
+        private void checkForComodification() {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+        }
+    }
+
+    /** Map entry which reads and writes through to a slot of the parallel arrays. */
+    private class ArrayEntry implements Entry<QName, String> {
+
+        /** The key of this entry. */
+        @Nonnull private final QName key;
+
+        /** The array index of this entry at the time it was created. */
+        private final int index;
+
+        /**
+         * Constructor.
+         *
+         * @param entryIndex the array index of this entry
+         */
+        ArrayEntry(final int entryIndex) {
+            index = entryIndex;
+            key = names[entryIndex];
+        }
+
+        /** {@inheritDoc} */
+        public QName getKey() {
+            return key;
+        }
+
+        /** {@inheritDoc} */
+        public String getValue() {
+            return CompactAttributeStorage.this.get(key);
+        }
+
+        /** {@inheritDoc} */
+        public String setValue(final String value) {
+            if (promoted != null || index >= arraySize || names[index] != key) {
+                return CompactAttributeStorage.this.put(key, value);
+            }
+            final String oldValue = values[index];
+            values[index] = value;
+            return oldValue;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public boolean equals(final Object obj) {
+            if (obj == this) {
+                return true;
+            }
+            if (!(obj instanceof Entry)) {
+                return false;
+            }
+            final Entry<?, ?> other = (Entry<?, ?>) obj;
+            return key.equals(other.getKey()) && Objects.equals(getValue(), other.getValue());
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public int hashCode() {
+            return key.hashCode() ^ Objects.hashCode(getValue());
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public String toString() {
+            return key + "=" + getValue();
+        }
+    }
+
+}
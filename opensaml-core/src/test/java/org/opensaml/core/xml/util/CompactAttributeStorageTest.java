@@ -0,0 +1,171 @@
+/*
+ * Licensed to the University Corporation for Advanced Internet Development,
+ * Inc. (UCAID) under one or more contributor license agreements.  See the
+ * NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The UCAID licenses this file to You under the Apache
+ * License, Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opensaml.core.xml.util;
+
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import javax.xml.namespace.QName;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * Unit test for {@link CompactAttributeStorage}.
+ */
+public class CompactAttributeStorageTest {
+
+    private static final String NS = "urn:test:ns";
+
+    @Test
+    public void testEmpty() {
+        final CompactAttributeStorage storage = new CompactAttributeStorage();
+        Assert.assertTrue(storage.isEmpty());
+        Assert.assertEquals(storage.size(), 0);
+        Assert.assertNull(storage.get(name(0)));
+        Assert.assertNull(storage.remove(name(0)));
+        Assert.assertFalse(storage.containsKey(null));
+        Assert.assertFalse(storage.entrySet().iterator().hasNext());
+        Assert.assertFalse(storage.isPromoted());
+    }
+
+    @Test
+    public void testPutGetRemove() {
+        final CompactAttributeStorage storage = new CompactAttributeStorage();
+        Assert.assertNull(storage.put(name(1), "foo"));
+        Assert.assertNull(storage.put(name(2), null));
+        Assert.assertEquals(storage.put(name(1), "bar"), "foo");
+
+        Assert.assertEquals(storage.size(), 2);
+        Assert.assertEquals(storage.get(new QName(NS, "attr1")), "bar");
+        Assert.assertTrue(storage.containsKey(name(2)));
+        Assert.assertNull(storage.get(name(2)));
+        Assert.assertTrue(storage.containsValue("bar"));
+        Assert.assertTrue(storage.containsValue(null));
+        Assert.assertFalse(storage.containsValue("foo"));
+
+        Assert.assertEquals(storage.remove(name(1)), "bar");
+        Assert.assertFalse(storage.containsKey(name(1)));
+        Assert.assertEquals(storage.size(), 1);
+    }
+
+    @Test
+    public void testPromotion() {
+        final CompactAttributeStorage storage = new CompactAttributeStorage();
+        for (int i = 0; i < CompactAttributeStorage.PROMOTION_THRESHOLD; i++) {
+            storage.put(name(i), "value" + i);
+        }
+        Assert.assertFalse(storage.isPromoted());
+
+        storage.put(name(CompactAttributeStorage.PROMOTION_THRESHOLD), "last");
+        Assert.assertTrue(storage.isPromoted());
+        Assert.assertEquals(storage.size(), CompactAttributeStorage.PROMOTION_THRESHOLD + 1);
+
+        final List<QName> order = new ArrayList<>(storage.keySet());
+        for (int i = 0; i <= CompactAttributeStorage.PROMOTION_THRESHOLD; i++) {
+            Assert.assertEquals(order.get(i), name(i));
+        }
+
+        storage.clear();
+        Assert.assertTrue(storage.isEmpty());
+        Assert.assertFalse(storage.isPromoted());
+    }
+
+    @Test
+    public void testInsertionOrderAfterRemove() {
+        final CompactAttributeStorage storage = new CompactAttributeStorage();
+        storage.put(name(1), "a");
+        storage.put(name(2), "b");
+        storage.put(name(3), "c");
+        storage.remove(name(2));
+        storage.put(name(4), "d");
+
+        final List<QName> order = new ArrayList<>(storage.keySet());
+        Assert.assertEquals(order.size(), 3);
+        Assert.assertEquals(order.get(0), name(1));
+        Assert.assertEquals(order.get(1), name(3));
+        Assert.assertEquals(order.get(2), name(4));
+    }
+
+    @Test
+    public void testEntryIteration() {
+        final CompactAttributeStorage storage = new CompactAttributeStorage();
+        storage.put(name(1), "a");
+        storage.put(name(2), "b");
+        storage.put(name(3), "c");
+
+        final Iterator<Entry<QName, String>> iterator = storage.entrySet().iterator();
+        while (iterator.hasNext()) {
+            final Entry<QName, String> entry = iterator.next();
+            if (entry.getKey().equals(name(2))) {
+                iterator.remove();
+            } else {
+                entry.setValue(entry.getValue().toUpperCase());
+            }
+        }
+
+        Assert.assertEquals(storage.size(), 2);
+        Assert.assertEquals(storage.get(name(1)), "A");
+        Assert.assertEquals(storage.get(name(3)), "C");
+    }
+
+    @Test(expectedExceptions = ConcurrentModificationException.class)
+    public void testFailFastIteration() {
+        final CompactAttributeStorage storage = new CompactAttributeStorage();
+        storage.put(name(1), "a");
+        storage.put(name(2), "b");
+
+        final Iterator<Entry<QName, String>> iterator = storage.entrySet().iterator();
+        iterator.next();
+        storage.put(name(3), "c");
+        iterator.next();
+    }
+
+    @Test
+    public void testEquality() {
+        final Map<QName, String> expected = new HashMap<>();
+        final CompactAttributeStorage small = new CompactAttributeStorage();
+        final CompactAttributeStorage large = new CompactAttributeStorage();
+        for (int i = 0; i < CompactAttributeStorage.PROMOTION_THRESHOLD * 2; i++) {
+            expected.put(name(i), "value" + i);
+            large.put(name(i), "value" + i);
+            if (i < 3) {
+                small.put(name(i), "value" + i);
+            }
+        }
+
+        Assert.assertEquals(large, expected);
+        Assert.assertEquals(expected, large);
+        Assert.assertEquals(large.hashCode(), expected.hashCode());
+
+        final Map<QName, String> smallExpected = new HashMap<>(small);
+        Assert.assertEquals(small, smallExpected);
+        Assert.assertEquals(small.hashCode(), smallExpected.hashCode());
+        Assert.assertNotEquals(small, large);
+    }
+
+    private QName name(final int index) {
+        return new QName(NS, "attr" + index);
+    }
+
+}
@@ -0,0 +1,209 @@
+/*
+ * Licensed to the University Corporation for Advanced Internet Development,
+ * Inc. (UCAID) under one or more contributor license agreements.  See the
+ * NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The UCAID licenses this file to You under the Apache
+ * License, Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opensaml.saml.common.binding.decoding;
+
+import java.io.InputStream;
+import java.util.Arrays;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.NotThreadSafe;
+
+import net.shibboleth.utilities.java.support.codec.DecodingException;
+import net.shibboleth.utilities.java.support.logic.Constraint;
+
+/**
+ * An {@link InputStream} which Base64-decodes a character sequence on demand.
+ *
+ * <p>
+ * Binding decoders receive the encoded message as a request parameter string. Rather than decoding that string into
+ * a complete byte array and wrapping it in a {@link java.io.ByteArrayInputStream}, this stream decodes directly
+ * from the string into the buffer supplied by the reader (typically the XML parser), so no full-size intermediate
+ * copy of the message is made.
+ * </p>
+ *
+ * <p>
+ * The input is validated when the stream is constructed, in a single allocation-free pass, so that malformed input
+ * is reported as a {@link DecodingException} before any parsing begins. Validation follows the rules of
+ * {@link net.shibboleth.utilities.java.support.codec.Base64Support#decode(String)}: characters outside the Base64
+ * alphabet (such as line breaks) are ignored, decoding stops at the first padding character, and a final partial
+ * quantum must not carry non-zero discarded bits.
+ * </p>
+ */
+@NotThreadSafe
+public class Base64DecodingInputStream extends InputStream {
+
+    /** Marker for characters outside the Base64 alphabet. */
+    private static final byte INVALID = -1;
+
+    /** Table mapping ASCII characters to their 6-bit Base64 values. */
+    private static final byte[] DECODE_TABLE = new byte[128];
+
+    /** The padding character. */
+    private static final char PAD = '=';
+
+    /** The encoded data. */
+    @Nonnull private final CharSequence source;
+
+    /** Index one past the last character of encoded data, i.e. of the first padding character, if any. */
+    private final int end;
+
+    /** Index of the next character to consume. */
+    private int position;
+
+    /** Decoded bits not yet returned to the reader. */
+    private int bitBuffer;
+
+    /** Number of valid bits held in {@link #bitBuffer}. */
+    private int bitCount;
+
+    static {
+        Arrays.fill(DECODE_TABLE, INVALID);
+        final String alphabet = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/";
+        for (int i = 0; i < alphabet.length(); i++) {
+            DECODE_TABLE[alphabet.charAt(i)] = (byte) i;
+        }
+        // The URL-safe alphabet is accepted as well, as it is by the Commons Codec decoder.
+        DECODE_TABLE['-'] = 62;
+        DECODE_TABLE['_'] = 63;
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param encoded the Base64-encoded data
+     *
+     * @throws DecodingException if the data is not valid Base64
+     */
+    public Base64DecodingInputStream(@Nonnull final CharSequence encoded) throws DecodingException {
+        source = Constraint.isNotNull(encoded, "Encoded data cannot be null");
+        end = validate(encoded);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int read() {
+        while (bitCount < 8) {
+            if (!fill()) {
+                return -1;
+            }
+        }
+        bitCount -= 8;
+        final int b = (bitBuffer >>> bitCount) & 0xFF;
+        bitBuffer &= (1 << bitCount) - 1;
+        return b;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int read(@Nonnull final byte[] b, final int off, final int len) {
+        if (off < 0 || len < 0 || len > b.length - off) {
+            throw new IndexOutOfBoundsException();
+        }
+        if (len == 0) {
+            return 0;
+        }
+
+        int written = 0;
+        while (written < len) {
+            while (bitCount < 8) {
+                if (!fill()) {
+                    return written == 0 ? -1 : written;
+                }
+            }
+            bitCount -= 8;
+            b[off + written++] = (byte) (bitBuffer >>> bitCount);
+            bitBuffer &= (1 << bitCount) - 1;
+        }
+        return written;
+    }
+
+    /**
+     * Consume the next alphabet character into the bit buffer.
+     *
+     * @return false if the encoded data is exhausted
+     */
+    private boolean fill() {
+        while (position < end) {
+            final byte value = valueOf(source.charAt(position++));
+            if (value != INVALID) {
+                bitBuffer = (bitBuffer << 6) | value;
+                bitCount += 6;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Validate the encoded data.
+     *
+     * @param encoded the encoded data
+     *
+     * @return the index of the first padding character, or the length of the data if there is none
+     *
+     * @throws DecodingException if the final quantum of the data is malformed
+     */
+    private static int validate(@Nonnull final CharSequence encoded) throws DecodingException {
+        final int length = encoded.length();
+        int count = 0;
+        byte last = 0;
+        int i = 0;
+        for (; i < length; i++) {
+            final char c = encoded.charAt(i);
+            if (c == PAD) {
+                break;
+            }
+            final byte value = valueOf(c);
+            if (value != INVALID) {
+                last = value;
+                count++;
+            }
+        }
+
+        switch (count % 4) {
+            case 1:
+                throw new DecodingException("Base64 data contains a truncated final quantum");
+            case 2:
+                if ((last & 0x0F) != 0) {
+                    throw new DecodingException("Base64 data has non-zero trailing bits");
+                }
+                break;
+            case 3:
+                if ((last & 0x03) != 0) {
+                    throw new DecodingException("Base64 data has non-zero trailing bits");
+                }
+                break;
+            default:
+                break;
+        }
+
+        return i;
+    }
+
+    /**
+     * Map a character to its 6-bit Base64 value.
+     *
+     * @param c the character
+     *
+     * @return the value, or {@link #INVALID} if the character is not in the Base64 alphabet
+     */
+    private static byte valueOf(final char c) {
+        return c < DECODE_TABLE.length ? DECODE_TABLE[c] : INVALID;
+    }
+
+}
@@ -0,0 +1,413 @@
+/*
+ * Licensed to the University Corporation for Advanced Internet Development,
+ * Inc. (UCAID) under one or more contributor license agreements.  See the
+ * NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The UCAID licenses this file to You under the Apache
+ * License, Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opensaml.saml.saml2.encryption;
+
+import java.security.Key;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+
+import net.shibboleth.utilities.java.support.annotation.constraint.NonnullElements;
+import net.shibboleth.utilities.java.support.annotation.constraint.NotEmpty;
+import net.shibboleth.utilities.java.support.collection.Pair;
+import net.shibboleth.utilities.java.support.logic.Constraint;
+import net.shibboleth.utilities.java.support.primitive.StringSupport;
+
+import org.opensaml.core.xml.io.MarshallingException;
+import org.opensaml.core.xml.io.UnmarshallingException;
+import org.opensaml.core.xml.util.XMLObjectSupport;
+import org.opensaml.security.credential.CredentialSupport;
+import org.opensaml.xmlsec.encryption.EncryptedKey;
+import org.opensaml.xmlsec.encryption.support.EncryptionException;
+import org.opensaml.xmlsec.encryption.support.KeyEncryptionParameters;
+import org.opensaml.xmlsec.encryption.support.RSAOAEPParameters;
+
+/**
+ * A bounded cache of generated data encryption keys and the {@link EncryptedKey} elements wrapping them, for use by
+ * an {@link Encrypter} that generates its data encryption key.
+ *
+ * <p>
+ * Key transport with an RSA public key dominates the cost of encrypting a typical assertion. When an
+ * {@link Encrypter} is configured with an instance of this class, a data encryption key generated for a given set of
+ * key encryption parameters is reused, together with its wrapped form, for subsequent messages to the same
+ * recipient(s) until the entry has been used a maximum number of times or reaches a maximum age, whichever comes
+ * first. Each message is still encrypted with a freshly generated IV, but messages encrypted with the same entry are
+ * linkable by their EncryptedKey values, so the limits should be kept small.
+ * </p>
+ *
+ * <p>
+ * Entries are keyed by the data encryption algorithm and, for each key encryption parameters set, the key
+ * encryption algorithm, public key, recipient and RSA-OAEP parameters. The EncryptedKeys are cached without their
+ * KeyInfo, which the caller generates afresh for each message with the generator of the current key encryption
+ * parameters. The cache holds at most a fixed number of entries and evicts the least recently used one when full.
+ * Hit, miss and expiry counts are maintained for monitoring.
+ * </p>
+ */
+@ThreadSafe
+public class EncryptedKeyCache {
+
+    /** Default maximum number of entries. */
+    public static final int DEFAULT_MAX_SIZE = 100;
+
+    /** Default maximum number of messages encrypted with one entry. */
+    public static final int DEFAULT_MAX_USES = 100;
+
+    /** Default maximum age of an entry. */
+    @Nonnull public static final Duration DEFAULT_MAX_AGE = Duration.ofMinutes(5);
+
+    /** Name of the cache. */
+    @Nonnull @NotEmpty private final String name;
+
+    /** Maximum number of entries. */
+    private final int maxSize;
+
+    /** Maximum number of messages encrypted with one entry. */
+    private final int maxUses;
+
+    /** Maximum age of an entry. */
+    @Nonnull private final Duration maxAge;
+
+    /** Cached entries, in access order. Guarded by itself. */
+    @Nonnull private final Map<List<Object>, CacheEntry> cache;
+
+    /** Number of lookups satisfied from the cache. */
+    @Nonnull private final LongAdder hits;
+
+    /** Number of lookups not satisfied from the cache. */
+    @Nonnull private final LongAdder misses;
+
+    /** Number of entries discarded because they reached their maximum age or use count. */
+    @Nonnull private final LongAdder expirations;
+
+    /**
+     * Constructor.
+     *
+     * @param cacheName name of the cache, used to identify it in metrics
+     */
+    public EncryptedKeyCache(@Nonnull @NotEmpty final String cacheName) {
+        this(cacheName, DEFAULT_MAX_SIZE, DEFAULT_MAX_USES, DEFAULT_MAX_AGE);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param cacheName name of the cache, used to identify it in metrics
+     * @param size maximum number of entries
+     * @param uses maximum number of messages encrypted with one entry
+     * @param age maximum age of an entry
+     */
+    public EncryptedKeyCache(@Nonnull @NotEmpty final String cacheName, final int size, final int uses,
+            @Nonnull final Duration age) {
+        name = Constraint.isNotNull(StringSupport.trimOrNull(cacheName), "Cache name cannot be null or empty");
+        Constraint.isGreaterThan(0, size, "Maximum size must be greater than 0");
+        Constraint.isGreaterThan(0, uses, "Maximum uses must be greater than 0");
+        Constraint.isNotNull(age, "Maximum age cannot be null");
+        Constraint.isFalse(age.isNegative() || age.isZero(), "Maximum age must be greater than 0");
+        maxSize = size;
+        maxUses = uses;
+        maxAge = age;
+        cache = new LinkedHashMap<List<Object>, CacheEntry>(16, 0.75f, true) {
+            private static final long serialVersionUID = -6420993318829458816L;
+
+            protected boolean removeEldestEntry(final Map.Entry<List<Object>, CacheEntry> eldest) {
+                return size() > maxSize;
+            }
+        };
+        hits = new LongAdder();
+        misses = new LongAdder();
+        expirations = new LongAdder();
+    }
+
+    /**
+     * Get the name of the cache.
+     *
+     * @return the cache name
+     */
+    @Nonnull @NotEmpty public String getName() {
+        return name;
+    }
+
+    /**
+     * Get the maximum number of entries.
+     *
+     * @return the maximum size
+     */
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Get the maximum number of messages encrypted with one entry.
+     *
+     * @return the maximum use count
+     */
+    public int getMaxUses() {
+        return maxUses;
+    }
+
+    /**
+     * Get the maximum age of an entry.
+     *
+     * @return the maximum age
+     */
+    @Nonnull public Duration getMaxAge() {
+        return maxAge;
+    }
+
+    /**
+     * Compute the cache key for a data encryption algorithm and set of key encryption parameters.
+     *
+     * @param dataAlgorithm the data encryption algorithm URI
+     * @param kekParamsList the key encryption parameters
+     *
+     * @return the cache key, or null if the parameters cannot be cached
+     */
+    @Nullable public List<Object> computeKey(@Nonnull final String dataAlgorithm,
+            @Nonnull @NonnullElements final List<KeyEncryptionParameters> kekParamsList) {
+        final List<Object> key = new ArrayList<>(1 + kekParamsList.size() * 6);
+        key.add(dataAlgorithm);
+        for (final KeyEncryptionParameters kekParams : kekParamsList) {
+            final Key kek = CredentialSupport.extractEncryptionKey(kekParams.getEncryptionCredential());
+            if (kek == null) {
+                return null;
+            }
+            key.add(kekParams.getAlgorithm());
+            key.add(kek);
+            key.add(kekParams.getRecipient());
+            final RSAOAEPParameters oaepParams = kekParams.getRSAOAEPParameters();
+            key.add(oaepParams != null ? oaepParams.getDigestMethod() : null);
+            key.add(oaepParams != null ? oaepParams.getMaskGenerationFunction() : null);
+            key.add(oaepParams != null ? oaepParams.getOAEPParams() : null);
+        }
+        return Collections.unmodifiableList(key);
+    }
+
+    /**
+     * Get the data encryption key cached under the given key, and a copy of the EncryptedKeys wrapping it, counting
+     * one use of the entry.
+     *
+     * <p>
+     * The EncryptedKeys returned have no KeyInfo.
+     * </p>
+     *
+     * @param key the cache key
+     *
+     * @return the data encryption key and EncryptedKeys, or null
+     *
+     * @throws EncryptionException if the cached EncryptedKeys cannot be copied
+     */
+    @Nullable public Pair<Key, List<EncryptedKey>> get(@Nonnull final List<Object> key) throws EncryptionException {
+        final CacheEntry entry;
+        synchronized (cache) {
+            final CacheEntry candidate = cache.get(key);
+            if (candidate != null && !candidate.use()) {
+                cache.remove(key);
+                expirations.increment();
+                entry = null;
+            } else {
+                entry = candidate;
+            }
+        }
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return new Pair<>(entry.getDataKey(), entry.copyEncryptedKeys());
+    }
+
+    /**
+     * Cache a data encryption key and the EncryptedKeys wrapping it under the given key, counting one use of the
+     * entry.
+     *
+     * <p>
+     * The EncryptedKeys are copied without their KeyInfo, so the caller remains free to modify and use the instances
+     * supplied.
+     * </p>
+     *
+     * @param key the cache key
+     * @param dataKey the data encryption key
+     * @param encryptedKeys the EncryptedKeys wrapping the data encryption key
+     *
+     * @throws EncryptionException if the EncryptedKeys cannot be copied
+     */
+    public void put(@Nonnull final List<Object> key, @Nonnull final Key dataKey,
+            @Nonnull @NonnullElements final List<EncryptedKey> encryptedKeys) throws EncryptionException {
+        Constraint.isNotNull(key, "Key cannot be null");
+        Constraint.isNotNull(dataKey, "Data encryption key cannot be null");
+        Constraint.isNotNull(encryptedKeys, "EncryptedKeys cannot be null");
+        final List<EncryptedKey> copies = copy(encryptedKeys);
+        for (final EncryptedKey copy : copies) {
+            copy.setKeyInfo(null);
+        }
+        final CacheEntry entry = new CacheEntry(dataKey, copies, Instant.now().plus(maxAge));
+        entry.use();
+        synchronized (cache) {
+            cache.put(key, entry);
+        }
+    }
+
+    /**
+     * Remove all entries from the cache.
+     *
+     * <p>
+     * The hit, miss and expiry counts are not reset.
+     * </p>
+     */
+    public void clear() {
+        synchronized (cache) {
+            cache.clear();
+        }
+    }
+
+    /**
+     * Get the number of entries currently cached.
+     *
+     * @return the number of entries
+     */
+    public int getSize() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+
+    /**
+     * Get the number of lookups satisfied from the cache.
+     *
+     * @return the hit count
+     */
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * Get the number of lookups not satisfied from the cache.
+     *
+     * @return the miss count
+     */
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    /**
+     * Get the number of entries discarded because they reached their maximum age or use count.
+     *
+     * @return the expiry count
+     */
+    public long getExpirationCount() {
+        return expirations.sum();
+    }
+
+    /**
+     * Copy a list of EncryptedKeys.
+     *
+     * @param encryptedKeys the EncryptedKeys to copy
+     *
+     * @return the copies
+     *
+     * @throws EncryptionException if an EncryptedKey cannot be copied
+     */
+    @Nonnull private static List<EncryptedKey> copy(@Nonnull @NonnullElements final List<EncryptedKey> encryptedKeys)
+            throws EncryptionException {
+        final List<EncryptedKey> copies = new ArrayList<>(encryptedKeys.size());
+        try {
+            for (final EncryptedKey encryptedKey : encryptedKeys) {
+                copies.add(XMLObjectSupport.cloneXMLObject(encryptedKey));
+            }
+        } catch (final MarshallingException | UnmarshallingException e) {
+            throw new EncryptionException("Unable to copy EncryptedKey", e);
+        }
+        return copies;
+    }
+
+    /** A cached data encryption key and the EncryptedKeys wrapping it. */
+    private final class CacheEntry {
+
+        /** The data encryption key. */
+        @Nonnull private final Key dataKey;
+
+        /** The EncryptedKeys, which are only ever copied. Guarded by this entry. */
+        @Nonnull private final List<EncryptedKey> encryptedKeys;
+
+        /** Time at which the entry expires. */
+        @Nonnull private final Instant expiration;
+
+        /** Number of times the entry has been used. Guarded by the enclosing cache map. */
+        private int uses;
+
+        /**
+         * Constructor.
+         *
+         * @param key the data encryption key
+         * @param keys the EncryptedKeys wrapping the data encryption key
+         * @param expires time at which the entry expires
+         */
+        CacheEntry(@Nonnull final Key key, @Nonnull final List<EncryptedKey> keys, @Nonnull final Instant expires) {
+            dataKey = key;
+            encryptedKeys = keys;
+            expiration = expires;
+        }
+
+        /**
+         * Get the data encryption key.
+         *
+         * @return the data encryption key
+         */
+        @Nonnull Key getDataKey() {
+            return dataKey;
+        }
+
+        /**
+         * Count one use of the entry, if it is still valid.
+         *
+         * @return true if the entry was valid for this use, false if it has expired or been used up
+         */
+        boolean use() {
+            if (uses >= maxUses || !Instant.now().isBefore(expiration)) {
+                return false;
+            }
+            uses++;
+            return true;
+        }
+
+        /**
+         * Get a copy of the EncryptedKeys.
+         *
+         * <p>
+         * Copying is serialized because the DOM underlying the cached instances is not safe for concurrent reads.
+         * </p>
+         *
+         * @return the copied EncryptedKeys
+         *
+         * @throws EncryptionException if an EncryptedKey cannot be copied
+         */
+        @Nonnull synchronized List<EncryptedKey> copyEncryptedKeys() throws EncryptionException {
+            return copy(encryptedKeys);
+        }
+    }
+
+}
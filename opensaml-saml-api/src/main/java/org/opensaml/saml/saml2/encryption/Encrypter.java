@@ -21,8 +21,10 @@ import java.security.Key;
 import java.util.ArrayList;
 import java.util.List;
 
+import javax.annotation.Nullable;
 import javax.xml.namespace.QName;
 
+import net.shibboleth.utilities.java.support.collection.Pair;
 import net.shibboleth.utilities.java.support.security.IdentifierGenerationStrategy;
 import net.shibboleth.utilities.java.support.security.impl.RandomIdentifierGenerationStrategy;
 import net.shibboleth.utilities.java.support.xml.SerializeSupport;
@@ -148,6 +150,9 @@ public class Encrypter extends org.opensaml.xmlsec.encryption.support.Encrypter
     /** The option for where to place the generated EncryptedKey elements. */
     private KeyPlacement keyPlacement;
 
+    /** Optional cache of generated data encryption keys and their EncryptedKeys. */
+    @Nullable private EncryptedKeyCache encryptedKeyCache;
+
     /** Class logger. */
     private final Logger log = LoggerFactory.getLogger(Encrypter.class);
 
@@ -254,6 +259,31 @@ public class Encrypter extends org.opensaml.xmlsec.encryption.support.Encrypter
         this.keyPlacement = newKeyPlacement;
     }
 
+    /**
+     * Get the cache of generated data encryption keys and their EncryptedKeys.
+     * 
+     * @return the cache, or null
+     */
+    @Nullable public EncryptedKeyCache getEncryptedKeyCache() {
+        return encryptedKeyCache;
+    }
+
+    /**
+     * Set the cache of generated data encryption keys and their EncryptedKeys.
+     * 
+     * <p>
+     * If set, a data encryption key generated for the key encryption parameters, along with the EncryptedKeys
+     * wrapping it, is reused within the limits of the cache instead of performing key transport for every object
+     * encrypted. The KeyInfo of each reused EncryptedKey is generated afresh. The cache is not used when the data
+     * encryption credential supplies a key.
+     * </p>
+     * 
+     * @param cache the cache, or null
+     */
+    public void setEncryptedKeyCache(@Nullable final EncryptedKeyCache cache) {
+        encryptedKeyCache = cache;
+    }
+
     /**
      * Encrypt the specified Assertion.
      * 
@@ -367,8 +397,21 @@ public class Encrypter extends org.opensaml.xmlsec.encryption.support.Encrypter
 
         final String encryptionAlgorithmURI = encParams.getAlgorithm();
         Key encryptionKey = CredentialSupport.extractEncryptionKey(encParams.getEncryptionCredential());
+        List<Object> cacheKey = null;
+        Pair<Key, List<EncryptedKey>> cached = null;
         if (encryptionKey == null) {
-            encryptionKey = generateEncryptionKey(encryptionAlgorithmURI);
+            if (encryptedKeyCache != null && kekParamsList != null && !kekParamsList.isEmpty()) {
+                cacheKey = encryptedKeyCache.computeKey(encryptionAlgorithmURI, kekParamsList);
+                if (cacheKey != null) {
+                    cached = encryptedKeyCache.get(cacheKey);
+                }
+            }
+            if (cached != null) {
+                log.debug("Reusing cached data encryption key and EncryptedKeys");
+                encryptionKey = cached.getFirst();
+            } else {
+                encryptionKey = generateEncryptionKey(encryptionAlgorithmURI);
+            }
         }
 
         final EncryptedData encryptedData = encryptElement(xmlObject, encryptionKey, encryptionAlgorithmURI, false);
@@ -384,8 +427,26 @@ public class Encrypter extends org.opensaml.xmlsec.encryption.support.Encrypter
         }
 
         final List<EncryptedKey> encryptedKeys = new ArrayList<>();
-        if (kekParamsList != null && !kekParamsList.isEmpty()) {
+        if (cached != null) {
+            encryptedKeys.addAll(cached.getSecond());
+            for (int i = 0; i < encryptedKeys.size(); i++) {
+                final KeyEncryptionParameters kekParams = kekParamsList.get(i);
+                if (kekParams.getKeyInfoGenerator() != null) {
+                    final KeyInfoGenerator generator = kekParams.getKeyInfoGenerator();
+                    log.debug("Dynamically generating KeyInfo from Credential for cached EncryptedKey using "
+                            + "generator: {}", generator.getClass().getName());
+                    try {
+                        encryptedKeys.get(i).setKeyInfo(generator.generate(kekParams.getEncryptionCredential()));
+                    } catch (final SecurityException e) {
+                        throw new EncryptionException("Error generating EncryptedKey KeyInfo", e);
+                    }
+                }
+            }
+        } else if (kekParamsList != null && !kekParamsList.isEmpty()) {
             encryptedKeys.addAll(encryptKey(encryptionKey, kekParamsList, ownerDocument));
+            if (cacheKey != null) {
+                encryptedKeyCache.put(cacheKey, encryptionKey, encryptedKeys);
+            }
         }
 
         return processElements(encElement, encryptedData, encryptedKeys);
@@ -0,0 +1,88 @@
+/*
+ * Licensed to the University Corporation for Advanced Internet Development,
+ * Inc. (UCAID) under one or more contributor license agreements.  See the
+ * NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The UCAID licenses this file to You under the Apache
+ * License, Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opensaml.saml.common.binding.decoding;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Base64;
+import java.util.Random;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import net.shibboleth.utilities.java.support.codec.DecodingException;
+
+/**
+ * Unit test for {@link Base64DecodingInputStream}.
+ */
+public class Base64DecodingInputStreamTest {
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        final Random random = new Random(42);
+        for (int length = 0; length < 100; length++) {
+            final byte[] data = new byte[length];
+            random.nextBytes(data);
+            Assert.assertEquals(readFully(new Base64DecodingInputStream(Base64.getEncoder().encodeToString(data)), 7),
+                    data);
+            Assert.assertEquals(readFully(new Base64DecodingInputStream(
+                    Base64.getMimeEncoder().encodeToString(data)), 4096), data);
+        }
+    }
+
+    @Test
+    public void testSingleByteReads() throws Exception {
+        final byte[] data = "<samlp:Response/>".getBytes("UTF-8");
+        final InputStream stream = new Base64DecodingInputStream(Base64.getEncoder().encodeToString(data));
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        int b;
+        while ((b = stream.read()) != -1) {
+            output.write(b);
+        }
+        Assert.assertEquals(output.toByteArray(), data);
+    }
+
+    @Test
+    public void testUnpaddedAndUrlSafe() throws Exception {
+        final byte[] data = new byte[] {(byte) 0xFB, (byte) 0xFF, 0x01, 0x02};
+        Assert.assertEquals(readFully(new Base64DecodingInputStream(
+                Base64.getUrlEncoder().withoutPadding().encodeToString(data)), 16), data);
+    }
+
+    @Test(expectedExceptions = DecodingException.class)
+    public void testInvalidTrailingBits() throws Exception {
+        new Base64DecodingInputStream("AB==");
+    }
+
+    @Test(expectedExceptions = DecodingException.class)
+    public void testTruncatedQuantum() throws Exception {
+        new Base64DecodingInputStream("QUJDR");
+    }
+
+    private byte[] readFully(final InputStream stream, final int bufferSize) throws IOException {
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[bufferSize];
+        int read;
+        while ((read = stream.read(buffer, 0, buffer.length)) != -1) {
+            output.write(buffer, 0, read);
+        }
+        return output.toByteArray();
+    }
+
+}
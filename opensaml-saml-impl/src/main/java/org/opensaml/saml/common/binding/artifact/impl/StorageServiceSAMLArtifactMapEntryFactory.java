@@ -17,13 +17,24 @@
 
 package org.opensaml.saml.common.binding.artifact.impl;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.StringReader;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 
 import net.shibboleth.utilities.java.support.annotation.constraint.NotEmpty;
+import net.shibboleth.utilities.java.support.codec.DecodingException;
 import net.shibboleth.utilities.java.support.component.AbstractInitializableComponent;
 import net.shibboleth.utilities.java.support.component.ComponentSupport;
 import net.shibboleth.utilities.java.support.logic.Constraint;
@@ -44,6 +55,8 @@ import org.opensaml.saml.common.SAMLObject;
 import org.opensaml.saml.common.binding.artifact.BasicSAMLArtifactMapEntry;
 import org.opensaml.saml.common.binding.artifact.SAMLArtifactMap.SAMLArtifactMapEntry;
 import org.opensaml.saml.common.binding.artifact.SAMLArtifactMap.SAMLArtifactMapEntryFactory;
+import org.opensaml.saml.common.binding.decoding.Base64DecodingInputStream;
+import org.opensaml.saml.common.binding.impl.DeflateCodecPool;
 import org.opensaml.storage.StorageSerializer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -55,19 +68,33 @@ import org.w3c.dom.Node;
  * 
  * <p>This implements serialization of an entry by wrapping the XML-based message
  * in a parent element that tracks the additional associated data.</p>
+ * 
+ * <p>If compact serialization is enabled, the wrapped XML is DEFLATE-compressed and Base64-encoded behind a short
+ * version header, which typically shrinks stored entries several-fold. Both forms are always accepted when
+ * deserializing, so the setting may be changed while entries written in the other form are still stored.</p>
  */
 public class StorageServiceSAMLArtifactMapEntryFactory extends AbstractInitializableComponent
         implements SAMLArtifactMapEntryFactory, StorageSerializer<SAMLArtifactMapEntry> {
 
+    /** Header identifying version 1 of the compact serialization format. */
+    @Nonnull @NotEmpty public static final String COMPACT_FORMAT_HEADER = "Z1:";
+
     /** Class logger. */
     @Nonnull private final Logger log = LoggerFactory.getLogger(StorageServiceSAMLArtifactMapEntryFactory.class);
 
     /** XML parsing component. */
     @Nonnull private ParserPool parserPool;
     
+    /** Whether to write entries in the compact format. */
+    private boolean compactSerialization;
+    
+    /** Pool of compressors used by the compact format. */
+    @Nonnull private DeflateCodecPool codecPool;
+    
     /** Constructor. */
     public StorageServiceSAMLArtifactMapEntryFactory() {
         parserPool = XMLObjectProviderRegistrySupport.getParserPool();
+        codecPool = DeflateCodecPool.getDefaultInstance();
     }
 
     /**
@@ -90,6 +117,50 @@ public class StorageServiceSAMLArtifactMapEntryFactory extends AbstractInitializ
         parserPool = Constraint.isNotNull(pool, "ParserPool cannot be null");
     }
     
+    /**
+     * Gets whether entries are serialized in the compact format.
+     * 
+     * @return whether entries are serialized in the compact format
+     */
+    public boolean isCompactSerialization() {
+        return compactSerialization;
+    }
+    
+    /**
+     * Sets whether entries are serialized in the compact format.
+     * 
+     * <p>Defaults to false, for compatibility with deployments unable to read the compact format.</p>
+     * 
+     * @param flag whether entries are serialized in the compact format
+     */
+    public void setCompactSerialization(final boolean flag) {
+        ComponentSupport.ifInitializedThrowUnmodifiabledComponentException(this);
+        
+        compactSerialization = flag;
+    }
+    
+    /**
+     * Gets the pool of compressors used by the compact format.
+     * 
+     * @return the compressor pool
+     */
+    @Nonnull public DeflateCodecPool getDeflateCodecPool() {
+        return codecPool;
+    }
+    
+    /**
+     * Sets the pool of compressors used by the compact format.
+     * 
+     * <p>Defaults to {@link DeflateCodecPool#getDefaultInstance()}.</p>
+     * 
+     * @param pool the compressor pool
+     */
+    public void setDeflateCodecPool(@Nonnull final DeflateCodecPool pool) {
+        ComponentSupport.ifInitializedThrowUnmodifiabledComponentException(this);
+        
+        codecPool = Constraint.isNotNull(pool, "DeflateCodecPool cannot be null");
+    }
+    
     
     /** {@inheritDoc} */
     @Override
@@ -121,6 +192,10 @@ public class StorageServiceSAMLArtifactMapEntryFactory extends AbstractInitializ
         rootElement.setAttributeNS(null, "relyingParty", instance.getRelyingPartyId());
         rootElement.appendChild(marshalledMessage);
         
+        if (compactSerialization) {
+            return serializeCompact(rootElement);
+        }
+        
         final String serializedMessage = SerializeSupport.nodeToString(rootElement);
         
         if (log.isTraceEnabled()) {
@@ -130,6 +205,37 @@ public class StorageServiceSAMLArtifactMapEntryFactory extends AbstractInitializ
         
         return serializedMessage;
     }
+    
+    /**
+     * Serialize the wrapped entry in the compact format.
+     * 
+     * @param rootElement the root of the wrapped entry
+     * 
+     * @return the {@link #COMPACT_FORMAT_HEADER} followed by the Base64 encoding of the DEFLATE-compressed XML
+     * 
+     * @throws IOException if an error occurs
+     */
+    @Nonnull private String serializeCompact(@Nonnull final Element rootElement) throws IOException {
+        if (log.isTraceEnabled()) {
+            log.trace("Serialized SAMLArtifactMapEntry data before compression is:");
+            log.trace(SerializeSupport.nodeToString(rootElement));
+        }
+        
+        final ByteArrayOutputStream bytesOut = new ByteArrayOutputStream();
+        bytesOut.write(COMPACT_FORMAT_HEADER.getBytes(StandardCharsets.US_ASCII));
+        final Deflater deflater = codecPool.borrowDeflater();
+        try {
+            try (final OutputStream base64Stream = Base64.getEncoder().wrap(bytesOut)) {
+                final DeflaterOutputStream deflaterStream = new DeflaterOutputStream(base64Stream, deflater);
+                SerializeSupport.writeNode(rootElement, deflaterStream);
+                deflaterStream.finish();
+            }
+        } finally {
+            codecPool.returnDeflater(deflater);
+        }
+        
+        return bytesOut.toString(StandardCharsets.US_ASCII.name());
+    }
 
     /** {@inheritDoc} */
     // Checkstyle: CyclomaticComplexity OFF
@@ -144,10 +250,7 @@ public class StorageServiceSAMLArtifactMapEntryFactory extends AbstractInitializ
         }
         
         try {
-            Element rootElement = null;
-            try (final StringReader sr = new StringReader(value)) {
-                rootElement = getParserPool().parse(sr).getDocumentElement();
-            }
+            final Element rootElement = parse(value);
             final Node messageElement = rootElement.getFirstChild();
             if (!ElementSupport.isElementNamed(rootElement, null, "Mapping")) {
                 throw new IOException("SAMLArtifactMapEntry XML not rooted by expected element");
@@ -181,5 +284,33 @@ public class StorageServiceSAMLArtifactMapEntryFactory extends AbstractInitializ
         }
     }
     // Checkstyle: CyclomaticComplexity ON
+    
+    /**
+     * Parse a stored value in either the compact or the original format.
+     * 
+     * @param value the stored value
+     * 
+     * @return the root of the wrapped entry
+     * 
+     * @throws IOException if the compact data cannot be decoded
+     * @throws XMLParserException if the XML cannot be parsed
+     */
+    @Nonnull private Element parse(@Nonnull @NotEmpty final String value) throws IOException, XMLParserException {
+        if (!value.startsWith(COMPACT_FORMAT_HEADER)) {
+            try (final StringReader sr = new StringReader(value)) {
+                return getParserPool().parse(sr).getDocumentElement();
+            }
+        }
+        
+        final Inflater inflater = codecPool.borrowInflater();
+        try (final InputStream in = new InflaterInputStream(new Base64DecodingInputStream(
+                CharBuffer.wrap(value, COMPACT_FORMAT_HEADER.length(), value.length())), inflater)) {
+            return getParserPool().parse(in).getDocumentElement();
+        } catch (final DecodingException e) {
+            throw new IOException("Error decoding compact SAMLArtifactMapEntry data", e);
+        } finally {
+            codecPool.returnInflater(inflater);
+        }
+    }
 
 }
\ No newline at end of file
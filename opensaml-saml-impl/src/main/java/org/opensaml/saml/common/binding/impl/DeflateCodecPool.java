@@ -0,0 +1,176 @@
+/*
+ * Licensed to the University Corporation for Advanced Internet Development,
+ * Inc. (UCAID) under one or more contributor license agreements.  See the
+ * NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The UCAID licenses this file to You under the Apache
+ * License, Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opensaml.saml.common.binding.impl;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+
+import net.shibboleth.utilities.java.support.logic.Constraint;
+
+/**
+ * A bounded pool of raw ("no-wrap", RFC 1951) {@link Deflater} and {@link Inflater} instances, as used by the
+ * SAML 2 HTTP-Redirect DEFLATE binding.
+ *
+ * <p>
+ * Each {@link Deflater} and {@link Inflater} owns native zlib state which is only released when the instance is
+ * ended or reclaimed. Creating one per message at high request rates therefore churns native memory. Instances
+ * borrowed from this pool are reset and kept for reuse when returned, up to the configured maximum number of idle
+ * instances of each kind; surplus instances are ended immediately.
+ * </p>
+ *
+ * <p>
+ * Borrowing never blocks: if no idle instance is available a new one is created.
+ * </p>
+ */
+@ThreadSafe
+public class DeflateCodecPool {
+
+    /** Default maximum number of idle instances of each kind retained by the pool. */
+    public static final int DEFAULT_MAX_IDLE = 32;
+
+    /** Shared instance used by the HTTP-Redirect encoder and decoder unless another is supplied. */
+    @Nonnull private static final DeflateCodecPool DEFAULT_INSTANCE =
+            new DeflateCodecPool(DEFAULT_MAX_IDLE, Deflater.DEFLATED);
+
+    /** Compression level used for new deflaters. */
+    private final int compressionLevel;
+
+    /** Idle deflaters. */
+    @Nonnull private final BlockingQueue<Deflater> deflaters;
+
+    /** Idle inflaters. */
+    @Nonnull private final BlockingQueue<Inflater> inflaters;
+
+    /**
+     * Constructor.
+     *
+     * @param maxIdle maximum number of idle instances of each kind retained by the pool
+     * @param level compression level (0-9) used for new deflaters
+     */
+    public DeflateCodecPool(final int maxIdle, final int level) {
+        Constraint.isGreaterThan(0, maxIdle, "Maximum idle count must be greater than 0");
+        Constraint.isTrue(level >= Deflater.NO_COMPRESSION && level <= Deflater.BEST_COMPRESSION,
+                "Compression level must be between 0 and 9");
+        compressionLevel = level;
+        deflaters = new ArrayBlockingQueue<>(maxIdle);
+        inflaters = new ArrayBlockingQueue<>(maxIdle);
+    }
+
+    /**
+     * Get the shared pool instance.
+     *
+     * @return the shared pool
+     */
+    @Nonnull public static DeflateCodecPool getDefaultInstance() {
+        return DEFAULT_INSTANCE;
+    }
+
+    /**
+     * Get the compression level used for new deflaters.
+     *
+     * @return the compression level
+     */
+    public int getCompressionLevel() {
+        return compressionLevel;
+    }
+
+    /**
+     * Borrow a no-wrap deflater from the pool, creating one if none is idle.
+     *
+     * @return a deflater in its initial state
+     */
+    @Nonnull public Deflater borrowDeflater() {
+        final Deflater deflater = deflaters.poll();
+        return deflater != null ? deflater : new Deflater(compressionLevel, true);
+    }
+
+    /**
+     * Return a deflater to the pool.
+     *
+     * <p>
+     * The deflater is reset and retained if the pool has room for it, otherwise it is ended. The caller must not use
+     * the deflater again after returning it.
+     * </p>
+     *
+     * @param deflater the deflater to return, may be null
+     */
+    public void returnDeflater(@Nullable final Deflater deflater) {
+        if (deflater == null) {
+            return;
+        }
+        deflater.reset();
+        if (!deflaters.offer(deflater)) {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Borrow a no-wrap inflater from the pool, creating one if none is idle.
+     *
+     * @return an inflater in its initial state
+     */
+    @Nonnull public Inflater borrowInflater() {
+        final Inflater inflater = inflaters.poll();
+        return inflater != null ? inflater : new Inflater(true);
+    }
+
+    /**
+     * Return an inflater to the pool.
+     *
+     * <p>
+     * The inflater is reset and retained if the pool has room for it, otherwise it is ended. The caller must not use
+     * the inflater again after returning it.
+     * </p>
+     *
+     * @param inflater the inflater to return, may be null
+     */
+    public void returnInflater(@Nullable final Inflater inflater) {
+        if (inflater == null) {
+            return;
+        }
+        inflater.reset();
+        if (!inflaters.offer(inflater)) {
+            inflater.end();
+        }
+    }
+
+    /**
+     * Get the number of idle deflaters currently held by the pool.
+     *
+     * @return idle deflater count
+     */
+    public int getIdleDeflaterCount() {
+        return deflaters.size();
+    }
+
+    /**
+     * Get the number of idle inflaters currently held by the pool.
+     *
+     * @return idle inflater count
+     */
+    public int getIdleInflaterCount() {
+        return inflaters.size();
+    }
+
+}
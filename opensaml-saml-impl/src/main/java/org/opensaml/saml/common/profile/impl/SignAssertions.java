@@ -17,6 +17,7 @@
 
 package org.opensaml.saml.common.profile.impl;
 
+import java.util.concurrent.Executor;
 import java.util.function.Function;
 
 import javax.annotation.Nonnull;
@@ -53,6 +54,9 @@ import org.w3c.dom.Element;
  * <p>The {@link SecurityParametersContext} governing the signing process is located by a lookup
  * strategy, by default a child of the profile request context.</p>
  * 
+ * <p>The assertions are signed as a batch. If an {@link Executor} is supplied, their signatures are
+ * computed concurrently on it.</p>
+ * 
  * @event {@link EventIds#PROCEED_EVENT_ID}
  * @event {@link EventIds#INVALID_MSG_CTX}
  */
@@ -67,6 +71,9 @@ public class SignAssertions extends AbstractProfileAction {
     /** Strategy used to locate the {@link SecurityParametersContext} to use for signing. */
     @Nonnull private Function<ProfileRequestContext,SecurityParametersContext> securityParametersLookupStrategy;
     
+    /** Optional executor on which to compute the signatures concurrently. */
+    @Nullable private Executor signingExecutor;
+    
     /** The signature signing parameters. */
     @Nullable private SignatureSigningParameters signatureSigningParameters;
 
@@ -103,6 +110,20 @@ public class SignAssertions extends AbstractProfileAction {
                 "SecurityParameterContext lookup strategy cannot be null");
     }
     
+    /**
+     * Set an executor on which to compute the assertion signatures concurrently.
+     * 
+     * <p>
+     * If not set, the signatures are computed in order on the calling thread.
+     * </p>
+     * 
+     * @param executor the executor to use, or null
+     */
+    public void setSigningExecutor(@Nullable final Executor executor) {
+        ComponentSupport.ifInitializedThrowUnmodifiabledComponentException(this);
+        signingExecutor = executor;
+    }
+    
     /** {@inheritDoc} */
     @Override
     protected boolean doPreExecute(@Nonnull final ProfileRequestContext profileRequestContext) {
@@ -165,15 +186,11 @@ public class SignAssertions extends AbstractProfileAction {
             }
 
             if (response instanceof org.opensaml.saml.saml1.core.Response) {
-                for (final org.opensaml.saml.saml1.core.Assertion assertion :
-                        ((org.opensaml.saml.saml1.core.Response) response).getAssertions()) {
-                    SignatureSupport.signObject(assertion, signatureSigningParameters);
-                }
+                SignatureSupport.signObjects(((org.opensaml.saml.saml1.core.Response) response).getAssertions(),
+                        signatureSigningParameters, signingExecutor);
             } else if (response instanceof org.opensaml.saml.saml2.core.Response) {
-                for (final org.opensaml.saml.saml2.core.Assertion assertion :
-                        ((org.opensaml.saml.saml2.core.Response) response).getAssertions()) {
-                    SignatureSupport.signObject(assertion, signatureSigningParameters);
-                }
+                SignatureSupport.signObjects(((org.opensaml.saml.saml2.core.Response) response).getAssertions(),
+                        signatureSigningParameters, signingExecutor);
             }
 
             // TODO Maybe the response should not be logged ?
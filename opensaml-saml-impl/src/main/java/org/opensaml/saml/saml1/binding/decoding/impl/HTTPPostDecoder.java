@@ -17,14 +17,11 @@
 
 package org.opensaml.saml.saml1.binding.decoding.impl;
 
-import java.io.ByteArrayInputStream;
-
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import javax.servlet.http.HttpServletRequest;
 
 import net.shibboleth.utilities.java.support.annotation.constraint.NotEmpty;
-import net.shibboleth.utilities.java.support.codec.Base64Support;
 import net.shibboleth.utilities.java.support.codec.DecodingException;
 
 import org.opensaml.messaging.context.MessageContext;
@@ -33,6 +30,7 @@ import org.opensaml.messaging.decoder.servlet.BaseHttpServletRequestXMLMessageDe
 import org.opensaml.saml.common.SAMLObject;
 import org.opensaml.saml.common.binding.BindingDescriptor;
 import org.opensaml.saml.common.binding.SAMLBindingSupport;
+import org.opensaml.saml.common.binding.decoding.Base64DecodingInputStream;
 import org.opensaml.saml.common.binding.decoding.SAMLMessageDecoder;
 import org.opensaml.saml.common.messaging.context.SAMLBindingContext;
 import org.opensaml.saml.common.xml.SAMLConstants;
@@ -89,9 +87,12 @@ public class HTTPPostDecoder extends BaseHttpServletRequestXMLMessageDecoder imp
         
         try {            
             final String base64Message = request.getParameter("SAMLResponse");
-            final byte[] decodedBytes = Base64Support.decode(base64Message);   
+            if (base64Message == null) {
+                throw new MessageDecodingException("No SAMLResponse parameter present in request");
+            }
             
-            final SAMLObject inboundMessage = (SAMLObject) unmarshallMessage(new ByteArrayInputStream(decodedBytes));
+            final SAMLObject inboundMessage =
+                    (SAMLObject) unmarshallMessage(new Base64DecodingInputStream(base64Message));
             messageContext.setMessage(inboundMessage);
             log.debug("Decoded SAML message");
     
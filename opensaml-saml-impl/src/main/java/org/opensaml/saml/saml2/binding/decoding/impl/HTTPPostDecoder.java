@@ -17,7 +17,6 @@
 
 package org.opensaml.saml.saml2.binding.decoding.impl;
 
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 
@@ -35,6 +34,7 @@ import org.opensaml.messaging.decoder.servlet.BaseHttpServletRequestXMLMessageDe
 import org.opensaml.saml.common.SAMLObject;
 import org.opensaml.saml.common.binding.BindingDescriptor;
 import org.opensaml.saml.common.binding.SAMLBindingSupport;
+import org.opensaml.saml.common.binding.decoding.Base64DecodingInputStream;
 import org.opensaml.saml.common.binding.decoding.SAMLMessageDecoder;
 import org.opensaml.saml.common.messaging.context.SAMLBindingContext;
 import org.opensaml.saml.common.xml.SAMLConstants;
@@ -88,8 +88,8 @@ public class HTTPPostDecoder extends BaseHttpServletRequestXMLMessageDecoder imp
         log.debug("Decoded SAML relay state of: {}", relayState);
         SAMLBindingSupport.setRelayState(messageContext, relayState);
 
-        // The default impl is a ByteArrayInputStream, which really doesn't need to be closed.  But this could
-        // be overridden, so be safe and make sure it gets closed.  Also for style and consistency.
+        // The default impl decodes from the parameter string, which really doesn't need to be closed.  But this
+        // could be overridden, so be safe and make sure it gets closed.  Also for style and consistency.
         try (final InputStream base64DecodedMessage = getBase64DecodedMessage(request)) {
             final SAMLObject inboundMessage = (SAMLObject) unmarshallMessage(base64DecodedMessage);
             messageContext.setMessage(inboundMessage);
@@ -106,6 +106,11 @@ public class HTTPPostDecoder extends BaseHttpServletRequestXMLMessageDecoder imp
     /**
      * Gets the Base64 encoded message from the request and decodes it.
      * 
+     * <p>
+     * The message is decoded incrementally from the request parameter as it is read, rather than into an
+     * intermediate byte array.
+     * </p>
+     * 
      * @param request the inbound HTTP servlet request
      * 
      * @return decoded message
@@ -128,10 +133,11 @@ public class HTTPPostDecoder extends BaseHttpServletRequestXMLMessageDecoder imp
 
         try {
             log.trace("Base64 decoding SAML message:\n{}", encodedMessage);
-            final byte[] decodedBytes = Base64Support.decode(encodedMessage);            
-            log.trace("Decoded SAML message:\n{}", new String(decodedBytes));
-            return new ByteArrayInputStream(decodedBytes);
-            
+            if (log.isTraceEnabled()) {
+                log.trace("Decoded SAML message:\n{}", new String(Base64Support.decode(encodedMessage)));
+            }
+            return new Base64DecodingInputStream(encodedMessage);
+
         } catch (final DecodingException e) {        
             log.error("Unable to Base64 decode SAML message");
             throw new MessageDecodingException("Unable to Base64 decode SAML message",e);
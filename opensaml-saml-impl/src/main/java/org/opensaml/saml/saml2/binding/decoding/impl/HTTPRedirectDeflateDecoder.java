@@ -17,7 +17,6 @@
 
 package org.opensaml.saml.saml2.binding.decoding.impl;
 
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.zip.Inflater;
@@ -28,7 +27,8 @@ import javax.annotation.Nullable;
 import javax.servlet.http.HttpServletRequest;
 
 import net.shibboleth.utilities.java.support.annotation.constraint.NotEmpty;
-import net.shibboleth.utilities.java.support.codec.Base64Support;
+import net.shibboleth.utilities.java.support.component.ComponentSupport;
+import net.shibboleth.utilities.java.support.logic.Constraint;
 import net.shibboleth.utilities.java.support.primitive.StringSupport;
 
 import org.opensaml.messaging.context.MessageContext;
@@ -37,7 +37,9 @@ import org.opensaml.messaging.decoder.servlet.BaseHttpServletRequestXMLMessageDe
 import org.opensaml.saml.common.SAMLObject;
 import org.opensaml.saml.common.binding.BindingDescriptor;
 import org.opensaml.saml.common.binding.SAMLBindingSupport;
+import org.opensaml.saml.common.binding.decoding.Base64DecodingInputStream;
 import org.opensaml.saml.common.binding.decoding.SAMLMessageDecoder;
+import org.opensaml.saml.common.binding.impl.DeflateCodecPool;
 import org.opensaml.saml.common.messaging.context.SAMLBindingContext;
 import org.opensaml.saml.common.xml.SAMLConstants;
 import org.slf4j.Logger;
@@ -57,6 +59,9 @@ public class HTTPRedirectDeflateDecoder extends BaseHttpServletRequestXMLMessage
 
     /** Optional {@link BindingDescriptor} to inject into {@link SAMLBindingContext} created. */
     @Nullable private BindingDescriptor bindingDescriptor;
+
+    /** Pool of decompressors. */
+    @Nonnull private DeflateCodecPool codecPool = DeflateCodecPool.getDefaultInstance();
     
     /** {@inheritDoc} */
     @Nonnull @NotEmpty public String getBindingURI() {
@@ -81,6 +86,29 @@ public class HTTPRedirectDeflateDecoder extends BaseHttpServletRequestXMLMessage
         bindingDescriptor = descriptor;
     }
 
+    /**
+     * Get the pool from which decompressors are borrowed.
+     * 
+     * @return the decompressor pool
+     */
+    @Nonnull public DeflateCodecPool getDeflateCodecPool() {
+        return codecPool;
+    }
+
+    /**
+     * Set the pool from which decompressors are borrowed.
+     * 
+     * <p>
+     * Defaults to {@link DeflateCodecPool#getDefaultInstance()}.
+     * </p>
+     * 
+     * @param pool the decompressor pool
+     */
+    public void setDeflateCodecPool(@Nonnull final DeflateCodecPool pool) {
+        ComponentSupport.ifInitializedThrowUnmodifiabledComponentException(this);
+        codecPool = Constraint.isNotNull(pool, "DeflateCodecPool cannot be null");
+    }
+
     /** {@inheritDoc} */
     protected void doDecode() throws MessageDecodingException {
         final MessageContext messageContext = new MessageContext();
@@ -123,6 +151,11 @@ public class HTTPRedirectDeflateDecoder extends BaseHttpServletRequestXMLMessage
     /**
      * Base64 decodes the SAML message and then decompresses the message.
      * 
+     * <p>
+     * Both steps are performed incrementally as the returned stream is read. The decompressor is borrowed from the
+     * configured {@link DeflateCodecPool} and given back when the stream is closed.
+     * </p>
+     * 
      * @param message Base64 encoded, DEFALTE compressed, SAML message
      * 
      * @return the SAML message
@@ -133,8 +166,7 @@ public class HTTPRedirectDeflateDecoder extends BaseHttpServletRequestXMLMessage
         log.debug("Base64 decoding and inflating SAML message");
 
         try {
-            final byte[] decodedBytes = Base64Support.decode(message);
-            return new NoWrapAutoEndInflaterInputStream(new ByteArrayInputStream(decodedBytes));
+            return new PooledInflaterInputStream(new Base64DecodingInputStream(message));
         } catch (final Exception e) {
             log.error("Unable to Base64 decode and inflate SAML message: {}", e.getMessage());
             throw new MessageDecodingException("Unable to Base64 decode and inflate SAML message", e);
@@ -155,28 +187,30 @@ public class HTTPRedirectDeflateDecoder extends BaseHttpServletRequestXMLMessage
         bindingContext.setIntendedDestinationEndpointURIRequired(SAMLBindingSupport.isMessageSigned(messageContext));
     }
     
-    /** A subclass of {@link InflaterInputStream} which defaults in a no-wrap {@link Inflater} instance and
-     * closes it when the stream is closed.
+    /** A subclass of {@link InflaterInputStream} which borrows a no-wrap {@link Inflater} instance from the
+     * codec pool and returns it when the stream is closed.
      */
-    private class NoWrapAutoEndInflaterInputStream extends InflaterInputStream {
+    private class PooledInflaterInputStream extends InflaterInputStream {
 
         /**
-         * Creates a new input stream with a default no-wrap decompressor and buffer size.
+         * Creates a new input stream with a pooled no-wrap decompressor and default buffer size.
          *
          * @param is the input stream
          */
-        public NoWrapAutoEndInflaterInputStream(final InputStream is) {
-            super(is, new Inflater(true));
+        public PooledInflaterInputStream(final InputStream is) {
+            super(is, codecPool.borrowInflater());
         }
 
         /** {@inheritDoc} */
         public void close() throws IOException {
             if (inf != null) {
-                inf.end();
+                final Inflater pooled = inf;
+                inf = null;
+                codecPool.returnInflater(pooled);
             }
             super.close();
         }
 
     }
 
-}
\ No newline at end of file
+}
@@ -17,15 +17,22 @@
 
 package org.opensaml.saml.saml2.binding.encoding.impl;
 
+import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.UnsupportedEncodingException;
 import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
+import javax.annotation.Nonnull;
 import javax.servlet.http.HttpServletResponse;
 
+import net.shibboleth.utilities.java.support.annotation.constraint.NonnullElements;
 import net.shibboleth.utilities.java.support.codec.Base64Support;
 import net.shibboleth.utilities.java.support.codec.EncodingException;
 import net.shibboleth.utilities.java.support.codec.HTMLEncoder;
+import net.shibboleth.utilities.java.support.collection.Pair;
 import net.shibboleth.utilities.java.support.component.ComponentInitializationException;
 import net.shibboleth.utilities.java.support.component.ComponentSupport;
 import net.shibboleth.utilities.java.support.net.HttpServletSupport;
@@ -46,12 +53,25 @@ import org.w3c.dom.Element;
 
 /**
  * SAML 2.0 HTTP Post binding message encoder.
+ * 
+ * <p>
+ * If a {@link VelocityEngine} is supplied, the POST form is produced by evaluating the configured Velocity template.
+ * Otherwise the form is written by the built-in {@link HTTPPostFormRenderer}, which produces the same page as the
+ * default template without per-message template evaluation.
+ * </p>
  */
 public class HTTPPostEncoder extends BaseSAML2MessageEncoder {
     
     /** Default template ID. */
     public static final String DEFAULT_TEMPLATE_ID = "/templates/saml2-post-binding.vm";
 
+    /** Names of the form controls rendered by the built-in renderer, in page order. */
+    private static final List<String> FORM_CONTROL_NAMES =
+            Arrays.asList("RelayState", "SAMLRequest", "SAMLResponse", "Signature", "SigAlg", "KeyInfo");
+
+    /** Built-in renderer used in the absence of a {@link VelocityEngine}. */
+    private static final HTTPPostFormRenderer FORM_RENDERER = new HTTPPostFormRenderer();
+
     /** Class logger. */
     private final Logger log = LoggerFactory.getLogger(HTTPPostEncoder.class);
 
@@ -83,6 +103,8 @@ public class HTTPPostEncoder extends BaseSAML2MessageEncoder {
     /**
      * Set the VelocityEngine instance.
      * 
+     * <p>If not set, the built-in {@link HTTPPostFormRenderer} is used and the template id is ignored.</p>
+     * 
      * @param newVelocityEngine the new VelocityEngine instane
      */
     public void setVelocityEngine(final VelocityEngine newVelocityEngine) {
@@ -125,10 +147,7 @@ public class HTTPPostEncoder extends BaseSAML2MessageEncoder {
     /** {@inheritDoc} */
     protected void doInitialize() throws ComponentInitializationException {
         super.doInitialize();
-        if (velocityEngine == null) {
-            throw new ComponentInitializationException("VelocityEngine must be supplied");
-        }
-        if (velocityTemplateId == null) {
+        if (velocityEngine != null && velocityTemplateId == null) {
             throw new ComponentInitializationException("Velocity template id must be supplied");
         }
     }
@@ -157,7 +176,6 @@ public class HTTPPostEncoder extends BaseSAML2MessageEncoder {
      */
     protected void postEncode(final MessageContext messageContext, final String endpointURL) 
             throws MessageEncodingException {
-        log.debug("Invoking Velocity template to create POST body");
         try {
             final VelocityContext context = new VelocityContext();
 
@@ -169,16 +187,48 @@ public class HTTPPostEncoder extends BaseSAML2MessageEncoder {
             HttpServletSupport.setUTF8Encoding(response);
             HttpServletSupport.setContentType(response, "text/html");
             
-            try (final Writer out = new OutputStreamWriter(response.getOutputStream(), "UTF-8")) {
-                velocityEngine.mergeTemplate(velocityTemplateId, "UTF-8", context, out);
-                out.flush();
+            if (velocityEngine != null) {
+                log.debug("Invoking Velocity template to create POST body");
+                try (final Writer out = new OutputStreamWriter(response.getOutputStream(), "UTF-8")) {
+                    velocityEngine.mergeTemplate(velocityTemplateId, "UTF-8", context, out);
+                    out.flush();
+                }
+            } else {
+                log.debug("Rendering POST body with built-in form renderer");
+                try (final OutputStream out = response.getOutputStream()) {
+                    FORM_RENDERER.render((String) context.get("action"), getFormControls(context), out);
+                    out.flush();
+                }
             }
         } catch (final Exception e) {
-            log.error("Error invoking Velocity template: {}", e.getMessage());
+            log.error("Error creating POST body: {}", e.getMessage());
             throw new MessageEncodingException("Error creating output document", e);
         }
     }
 
+    /**
+     * Extract the form controls to be rendered by the built-in renderer from a populated Velocity context.
+     * 
+     * <p>
+     * As with the default templates, controls whose values are absent or empty are omitted.
+     * </p>
+     * 
+     * @param velocityContext the populated Velocity context
+     * 
+     * @return the names and values of the form controls, in page order
+     */
+    @Nonnull @NonnullElements protected List<Pair<String, String>> getFormControls(
+            @Nonnull final VelocityContext velocityContext) {
+        final List<Pair<String, String>> controls = new ArrayList<>(FORM_CONTROL_NAMES.size());
+        for (final String name : FORM_CONTROL_NAMES) {
+            final Object value = velocityContext.get(name);
+            if (value != null && !value.toString().isEmpty()) {
+                controls.add(new Pair<>(name, value.toString()));
+            }
+        }
+        return controls;
+    }
+
     /**
      * Populate the Velocity context instance which will be used to render the POST body.
      * 
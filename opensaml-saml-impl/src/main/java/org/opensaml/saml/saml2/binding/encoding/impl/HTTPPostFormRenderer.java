@@ -0,0 +1,186 @@
+/*
+ * Licensed to the University Corporation for Advanced Internet Development,
+ * Inc. (UCAID) under one or more contributor license agreements.  See the
+ * NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The UCAID licenses this file to You under the Apache
+ * License, Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opensaml.saml.saml2.binding.encoding.impl;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.ThreadSafe;
+
+import net.shibboleth.utilities.java.support.annotation.constraint.NonnullElements;
+import net.shibboleth.utilities.java.support.collection.Pair;
+import net.shibboleth.utilities.java.support.logic.Constraint;
+
+/**
+ * Built-in renderer for the auto-submitting HTML form used by the HTTP-POST family of bindings.
+ *
+ * <p>
+ * The output is equivalent to that of the default <code>saml2-post-binding.vm</code> and
+ * <code>saml2-post-simplesign-binding.vm</code> Velocity templates. The fixed parts of the page are encoded to UTF-8
+ * bytes once, when the class is loaded, and each response is produced by writing those segments and the supplied
+ * form values directly to the output stream, without evaluating a template.
+ * </p>
+ *
+ * <p>
+ * As with the templates, values are written verbatim: the caller is responsible for having encoded them for an HTML
+ * attribute context.
+ * </p>
+ */
+@ThreadSafe
+public class HTTPPostFormRenderer {
+
+    /** Size of the buffer used to encode each value. */
+    private static final int BUFFER_SIZE = 8192;
+
+    /** Page content preceding the form action. */
+    @Nonnull private static final byte[] PREFIX = utf8("<!DOCTYPE html>\n"
+            + "<html>\n"
+            + "    <head>\n"
+            + "        <meta charset=\"utf-8\" />\n"
+            + "    </head>\n"
+            + "    <body onload=\"document.forms[0].submit()\">\n"
+            + "        <noscript>\n"
+            + "            <p>\n"
+            + "                <strong>Note:</strong> Since your browser does not support JavaScript,\n"
+            + "                you must press the Continue button once to proceed.\n"
+            + "            </p>\n"
+            + "        </noscript>\n"
+            + "        \n"
+            + "        <form action=\"");
+
+    /** Content between the form action and the first form control. */
+    @Nonnull private static final byte[] FORM_OPEN = utf8("\" method=\"post\">\n"
+            + "            <div>\n");
+
+    /** Content preceding the name of a form control. */
+    @Nonnull private static final byte[] FIELD_OPEN = utf8("                <input type=\"hidden\" name=\"");
+
+    /** Content between the name and value of a form control. */
+    @Nonnull private static final byte[] FIELD_VALUE = utf8("\" value=\"");
+
+    /** Content following the value of a form control. */
+    @Nonnull private static final byte[] FIELD_CLOSE = utf8("\"/>\n");
+
+    /** Page content following the last form control. */
+    @Nonnull private static final byte[] SUFFIX = utf8("            </div>\n"
+            + "            <noscript>\n"
+            + "                <div>\n"
+            + "                    <input type=\"submit\" value=\"Continue\"/>\n"
+            + "                </div>\n"
+            + "            </noscript>\n"
+            + "        </form>\n"
+            + "    </body>\n"
+            + "</html>\n");
+
+    /**
+     * Write the form page to the given stream.
+     *
+     * <p>
+     * The stream is not flushed or closed.
+     * </p>
+     *
+     * @param action the form action URL, already encoded for an HTML attribute
+     * @param fields the names and values of the hidden form controls, in order, with values already encoded for an
+     *          HTML attribute
+     * @param output the stream to write to
+     *
+     * @throws IOException if there is a problem writing to the stream
+     */
+    public void render(@Nonnull final String action, @Nonnull @NonnullElements final List<Pair<String, String>> fields,
+            @Nonnull final OutputStream output) throws IOException {
+        Constraint.isNotNull(action, "Form action cannot be null");
+        Constraint.isNotNull(fields, "Form fields cannot be null");
+        Constraint.isNotNull(output, "Output stream cannot be null");
+
+        final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder();
+        final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+
+        output.write(PREFIX);
+        write(action, encoder, buffer, output);
+        output.write(FORM_OPEN);
+        for (final Pair<String, String> field : fields) {
+            output.write(FIELD_OPEN);
+            write(field.getFirst(), encoder, buffer, output);
+            output.write(FIELD_VALUE);
+            write(field.getSecond(), encoder, buffer, output);
+            output.write(FIELD_CLOSE);
+        }
+        output.write(SUFFIX);
+    }
+
+    /**
+     * Encode a string to UTF-8 through the supplied buffer, without materializing its full byte form.
+     *
+     * @param value the string to write
+     * @param encoder the UTF-8 encoder to use
+     * @param buffer the buffer to encode through
+     * @param output the stream to write to
+     *
+     * @throws IOException if there is a problem writing to the stream
+     */
+    private void write(@Nonnull final String value, @Nonnull final CharsetEncoder encoder,
+            @Nonnull final ByteBuffer buffer, @Nonnull final OutputStream output) throws IOException {
+        final CharBuffer chars = CharBuffer.wrap(value);
+        encoder.reset();
+        CoderResult result;
+        do {
+            result = encoder.encode(chars, buffer, true);
+            if (result.isError()) {
+                result.throwException();
+            }
+            drain(buffer, output);
+        } while (result.isOverflow());
+
+        do {
+            result = encoder.flush(buffer);
+            drain(buffer, output);
+        } while (result.isOverflow());
+    }
+
+    /**
+     * Write the content of the buffer to the stream and clear it.
+     *
+     * @param buffer the buffer
+     * @param output the stream to write to
+     *
+     * @throws IOException if there is a problem writing to the stream
+     */
+    private void drain(@Nonnull final ByteBuffer buffer, @Nonnull final OutputStream output) throws IOException {
+        output.write(buffer.array(), 0, buffer.position());
+        buffer.clear();
+    }
+
+    /**
+     * Encode a constant to UTF-8.
+     *
+     * @param value the constant
+     *
+     * @return the encoded bytes
+     */
+    @Nonnull private static byte[] utf8(@Nonnull final String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+}
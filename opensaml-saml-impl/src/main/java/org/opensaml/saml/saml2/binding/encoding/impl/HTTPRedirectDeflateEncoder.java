@@ -22,7 +22,9 @@ import java.io.IOException;
 import java.io.OutputStream;
 import java.io.UnsupportedEncodingException;
 import java.net.MalformedURLException;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Base64;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
@@ -35,6 +37,8 @@ import javax.servlet.http.HttpServletResponse;
 import net.shibboleth.utilities.java.support.codec.Base64Support;
 import net.shibboleth.utilities.java.support.codec.EncodingException;
 import net.shibboleth.utilities.java.support.collection.Pair;
+import net.shibboleth.utilities.java.support.component.ComponentSupport;
+import net.shibboleth.utilities.java.support.logic.Constraint;
 import net.shibboleth.utilities.java.support.net.HttpServletSupport;
 import net.shibboleth.utilities.java.support.net.URLBuilder;
 import net.shibboleth.utilities.java.support.primitive.StringSupport;
@@ -45,6 +49,7 @@ import org.opensaml.messaging.encoder.MessageEncodingException;
 import org.opensaml.saml.common.SAMLObject;
 import org.opensaml.saml.common.SignableSAMLObject;
 import org.opensaml.saml.common.binding.SAMLBindingSupport;
+import org.opensaml.saml.common.binding.impl.DeflateCodecPool;
 import org.opensaml.saml.common.messaging.SAMLMessageSecuritySupport;
 import org.opensaml.saml.common.xml.SAMLConstants;
 import org.opensaml.saml.saml2.core.RequestAbstractType;
@@ -56,6 +61,7 @@ import org.opensaml.xmlsec.SignatureSigningParameters;
 import org.opensaml.xmlsec.crypto.XMLSigningUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.w3c.dom.Element;
 
 import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
@@ -74,9 +80,35 @@ public class HTTPRedirectDeflateEncoder extends BaseSAML2MessageEncoder {
     /** Class logger. */
     private final Logger log = LoggerFactory.getLogger(HTTPRedirectDeflateEncoder.class);
 
+    /** Pool of compressors. */
+    @Nonnull private DeflateCodecPool codecPool;
+
     /** Constructor. */
     public HTTPRedirectDeflateEncoder() {
-        
+        codecPool = DeflateCodecPool.getDefaultInstance();
+    }
+
+    /**
+     * Get the pool from which compressors are borrowed.
+     * 
+     * @return the compressor pool
+     */
+    @Nonnull public DeflateCodecPool getDeflateCodecPool() {
+        return codecPool;
+    }
+
+    /**
+     * Set the pool from which compressors are borrowed.
+     * 
+     * <p>
+     * Defaults to {@link DeflateCodecPool#getDefaultInstance()}.
+     * </p>
+     * 
+     * @param pool the compressor pool
+     */
+    public void setDeflateCodecPool(@Nonnull final DeflateCodecPool pool) {
+        ComponentSupport.ifInitializedThrowUnmodifiabledComponentException(this);
+        codecPool = Constraint.isNotNull(pool, "DeflateCodecPool cannot be null");
     }
 
     /** {@inheritDoc} */
@@ -129,6 +161,12 @@ public class HTTPRedirectDeflateEncoder extends BaseSAML2MessageEncoder {
     /**
      * DEFLATE (RFC1951) compresses the given SAML message.
      * 
+     * <p>
+     * The marshalled message is serialized directly into the compressor, whose output is Base64-encoded as it is
+     * produced, so neither the serialized nor the compressed form of the message is held in full.
+     * The compressor is borrowed from the configured {@link DeflateCodecPool}.
+     * </p>
+     * 
      * @param message SAML message
      * 
      * @return DEFLATE compressed message
@@ -137,21 +175,22 @@ public class HTTPRedirectDeflateEncoder extends BaseSAML2MessageEncoder {
      */
     protected String deflateAndBase64Encode(final SAMLObject message) throws MessageEncodingException {
         log.debug("Deflating and Base64 encoding SAML message");
-        try {
-            final String messageStr = SerializeSupport.nodeToString(marshallMessage(message));
-
-            try (final ByteArrayOutputStream bytesOut = new ByteArrayOutputStream();
-                    final DeflaterOutputStream deflaterStream =
-                            new NoWrapAutoEndDeflaterOutputStream(bytesOut, Deflater.DEFLATED)) {
+        final Element messageElement = marshallMessage(message);
 
-                deflaterStream.write(messageStr.getBytes("UTF-8"));
+        final ByteArrayOutputStream bytesOut = new ByteArrayOutputStream();
+        final Deflater deflater = codecPool.borrowDeflater();
+        try {
+            try (final OutputStream base64Stream = Base64.getEncoder().wrap(bytesOut)) {
+                final DeflaterOutputStream deflaterStream = new DeflaterOutputStream(base64Stream, deflater);
+                SerializeSupport.writeNode(messageElement, deflaterStream);
                 deflaterStream.finish();
-
-                return Base64Support.encode(bytesOut.toByteArray(), Base64Support.UNCHUNKED);
-            }            
-        } catch (final IOException | EncodingException e) {
+            }
+            return bytesOut.toString(StandardCharsets.US_ASCII.name());
+        } catch (final IOException e) {
             throw new MessageEncodingException("Unable to DEFLATE and Base64 encode SAML message", e);
-        } 
+        } finally {
+            codecPool.returnDeflater(deflater);
+        }
     }
 
     /**
@@ -301,29 +340,4 @@ public class HTTPRedirectDeflateEncoder extends BaseSAML2MessageEncoder {
         return b64Signature;
     }
 
-    /** A subclass of {@link DeflaterOutputStream} which defaults in a no-wrap {@link Deflater} instance and
-     * closes it when the stream is closed.
-     */
-    private class NoWrapAutoEndDeflaterOutputStream extends DeflaterOutputStream {
-
-        /**
-         * Creates a new output stream with a default no-wrap compressor and buffer size,
-         * and the specified compression level.
-         *
-         * @param os the output stream
-         * @param level the compression level (0-9)
-         */
-        public NoWrapAutoEndDeflaterOutputStream(final OutputStream os, final int level) {
-            super(os, new Deflater(level, true));
-        }
-
-        /** {@inheritDoc} */
-        public void close() throws IOException {
-            if (def != null) {
-                def.end();
-            }
-            super.close();
-        }
-
-    }
-}
\ No newline at end of file
+}
@@ -17,16 +17,28 @@
 
 package org.opensaml.saml.saml2.profile.impl;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.function.Function;
 import java.util.function.Predicate;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 
+import net.shibboleth.utilities.java.support.annotation.constraint.NonnullElements;
 import net.shibboleth.utilities.java.support.collection.Pair;
+import net.shibboleth.utilities.java.support.component.ComponentInitializationException;
 import net.shibboleth.utilities.java.support.component.ComponentSupport;
 import net.shibboleth.utilities.java.support.logic.Constraint;
 
+import org.opensaml.core.xml.io.MarshallingException;
+import org.opensaml.core.xml.io.UnmarshallingException;
+import org.opensaml.core.xml.util.XMLObjectSupport;
+import org.opensaml.core.xml.util.XMLObjectSupport.CloneOutputOption;
 import org.opensaml.messaging.context.navigate.ChildContextLookup;
 import org.opensaml.messaging.context.navigate.MessageLookup;
 import org.opensaml.profile.action.AbstractProfileAction;
@@ -39,6 +51,8 @@ import org.opensaml.saml.saml2.core.EncryptedElementType;
 import org.opensaml.saml.saml2.encryption.Decrypter;
 import org.opensaml.xmlsec.DecryptionParameters;
 import org.opensaml.xmlsec.context.SecurityParametersContext;
+import org.opensaml.xmlsec.encryption.support.DecryptionException;
+import org.opensaml.xmlsec.encryption.support.UnwrappedKeyCache;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -52,11 +66,24 @@ import com.google.common.base.Predicates;
  * <p>The {@link SecurityParametersContext} governing the decryption process is located by a lookup
  * strategy, by default a child of the inbound message context.</p>
  * 
+ * <p>If an {@link Executor} is supplied, multiple encrypted elements handled together are decrypted concurrently.
+ * Each element is first copied into its own document, since the DOM of the message cannot safely be shared
+ * between threads, so any EncryptedKey must be carried within the element itself, as is normal for SAML.</p>
+ * 
  * @event {@link EventIds#PROCEED_EVENT_ID}
  * @event {@link EventIds#INVALID_MSG_CTX}
  */
 public abstract class AbstractDecryptAction extends AbstractProfileAction {
 
+    /** Metric name for the gauge of the number of unwrapped key cache hits. */
+    @Nonnull public static final String METRIC_GAUGE_KEY_CACHE_HITS = "gauge.hits";
+
+    /** Metric name for the gauge of the number of unwrapped key cache misses. */
+    @Nonnull public static final String METRIC_GAUGE_KEY_CACHE_MISSES = "gauge.misses";
+
+    /** Metric name for the gauge of the number of unwrapped key cache entries. */
+    @Nonnull public static final String METRIC_GAUGE_KEY_CACHE_SIZE = "gauge.size";
+
     /** Class logger. */
     @Nonnull private final Logger log = LoggerFactory.getLogger(AbstractDecryptAction.class);
     
@@ -72,6 +99,15 @@ public abstract class AbstractDecryptAction extends AbstractProfileAction {
     /** Predicate determining whether to attempt decryption. */
     @Nonnull private Predicate<Pair<ProfileRequestContext,EncryptedElementType>> decryptionPredicate;
     
+    /** Optional executor used to decrypt multiple elements concurrently. */
+    @Nullable private Executor decryptionExecutor;
+    
+    /** Optional cache of keys unwrapped from EncryptedKeys. */
+    @Nullable private UnwrappedKeyCache unwrappedKeyCache;
+    
+    /** Gauges reporting on the cache. */
+    @Nullable private CacheGauges cacheGauges;
+    
     /** The decryption object. */
     @Nullable private Decrypter decrypter;
     
@@ -155,6 +191,44 @@ public abstract class AbstractDecryptAction extends AbstractProfileAction {
         decryptionPredicate = Constraint.isNotNull(predicate, "Decryption predicate cannot be null");
     }
     
+    /**
+     * Get the executor used to decrypt multiple elements concurrently.
+     * 
+     * @return the executor, or null
+     */
+    @Nullable public Executor getDecryptionExecutor() {
+        return decryptionExecutor;
+    }
+    
+    /**
+     * Set the executor used to decrypt multiple elements concurrently.
+     * 
+     * <p>Defaults to: {@code null}, which decrypts elements one at a time on the calling thread.</p>
+     * 
+     * @param executor the executor, or null
+     */
+    public void setDecryptionExecutor(@Nullable final Executor executor) {
+        ComponentSupport.ifInitializedThrowUnmodifiabledComponentException(this);
+        
+        decryptionExecutor = executor;
+    }
+    
+    /**
+     * Set the cache used to reuse keys unwrapped from identical EncryptedKeys.
+     * 
+     * <p>The cache may be shared between actions. Gauges reporting on it are registered under a name derived from
+     * the cache's name.</p>
+     * 
+     * <p>Defaults to: {@code null}, which unwraps every EncryptedKey.</p>
+     * 
+     * @param cache the cache, or null
+     */
+    public void setUnwrappedKeyCache(@Nullable final UnwrappedKeyCache cache) {
+        ComponentSupport.ifInitializedThrowUnmodifiabledComponentException(this);
+        
+        unwrappedKeyCache = cache;
+    }
+    
     /**
      * Get the decrypter.
      * 
@@ -173,6 +247,31 @@ public abstract class AbstractDecryptAction extends AbstractProfileAction {
         return message;
     }
     
+    /** {@inheritDoc} */
+    @Override
+    protected void doInitialize() throws ComponentInitializationException {
+        super.doInitialize();
+        
+        if (unwrappedKeyCache != null) {
+            final UnwrappedKeyCache cache = unwrappedKeyCache;
+            cacheGauges = new CacheGauges(UnwrappedKeyCache.class, cache.getName());
+            cacheGauges.register(METRIC_GAUGE_KEY_CACHE_HITS, cache::getHitCount);
+            cacheGauges.register(METRIC_GAUGE_KEY_CACHE_MISSES, cache::getMissCount);
+            cacheGauges.register(METRIC_GAUGE_KEY_CACHE_SIZE, cache::getSize);
+        }
+    }
+    
+    /** {@inheritDoc} */
+    @Override
+    protected void doDestroy() {
+        if (cacheGauges != null) {
+            cacheGauges.removeAll();
+            cacheGauges = null;
+        }
+        
+        super.doDestroy();
+    }
+    
     /** {@inheritDoc} */
     @Override
     protected boolean doPreExecute(@Nonnull final ProfileRequestContext profileRequestContext) {
@@ -195,9 +294,171 @@ public abstract class AbstractDecryptAction extends AbstractProfileAction {
             final DecryptionParameters params = paramsCtx.getDecryptionParameters();
             decrypter = new Decrypter(params.getDataKeyInfoCredentialResolver(),
                     params.getKEKKeyInfoCredentialResolver(), params.getEncryptedKeyResolver());
+            decrypter.setUnwrappedKeyCache(unwrappedKeyCache);
         }
         
         return super.doPreExecute(profileRequestContext);
     }
     
+    /**
+     * Decrypt those of the supplied encrypted elements which satisfy the decryption predicate.
+     * 
+     * <p>Decryption failures are thrown if they are fatal, and otherwise logged and the element omitted from the
+     * results. If a decryption executor is set and more than one element is to be decrypted, the elements are
+     * copied and decrypted concurrently.</p>
+     * 
+     * @param <T> type of encrypted element
+     * @param <R> type of decrypted object
+     * @param profileRequestContext current profile request context
+     * @param encrypteds the encrypted elements
+     * @param operation the decryption operation to apply to each element
+     * 
+     * @return the decrypted elements paired with the corresponding encrypted elements, in order
+     * 
+     * @throws DecryptionException if decryption of an element fails and failure is fatal
+     */
+    @Nonnull @NonnullElements protected <T extends EncryptedElementType, R extends SAMLObject> List<Pair<T,R>>
+            decryptAll(@Nonnull final ProfileRequestContext profileRequestContext,
+            @Nonnull @NonnullElements final List<T> encrypteds, @Nonnull final DecryptionOperation<T,R> operation)
+                    throws DecryptionException {
+        
+        final List<T> candidates = new ArrayList<>(encrypteds.size());
+        for (final T encrypted : encrypteds) {
+            if (decryptionPredicate.test(new Pair<ProfileRequestContext,EncryptedElementType>(
+                    profileRequestContext, encrypted))) {
+                candidates.add(encrypted);
+            }
+        }
+        
+        final List<Pair<T,R>> results = new ArrayList<>(candidates.size());
+        if (decrypter != null && decryptionExecutor != null && candidates.size() > 1) {
+            decryptConcurrently(candidates, operation, results);
+            return results;
+        }
+        
+        for (final T encrypted : candidates) {
+            log.debug("{} Decrypting {}", getLogPrefix(), encrypted.getElementQName().getLocalPart());
+            try {
+                if (decrypter == null) {
+                    throw new DecryptionException("No decryption parameters, unable to decrypt "
+                            + encrypted.getElementQName().getLocalPart());
+                }
+                results.add(new Pair<>(encrypted, operation.decrypt(encrypted)));
+            } catch (final DecryptionException e) {
+                handleDecryptionFailure(encrypted, e);
+            }
+        }
+        return results;
+    }
+    
+    /**
+     * Decrypt copies of the supplied encrypted elements using the decryption executor.
+     * 
+     * @param <T> type of encrypted element
+     * @param <R> type of decrypted object
+     * @param encrypteds the encrypted elements
+     * @param operation the decryption operation to apply to each element
+     * @param results the list to which to add the results, in order
+     * 
+     * @throws DecryptionException if decryption of an element fails and failure is fatal
+     */
+    private <T extends EncryptedElementType, R extends SAMLObject> void decryptConcurrently(
+            @Nonnull @NonnullElements final List<T> encrypteds, @Nonnull final DecryptionOperation<T,R> operation,
+            @Nonnull @NonnullElements final List<Pair<T,R>> results) throws DecryptionException {
+        
+        log.debug("{} Decrypting {} elements concurrently", getLogPrefix(), encrypteds.size());
+        
+        // Copying reads the shared DOM, so it happens here; each copy is then confined to a single task.
+        final List<FutureTask<R>> tasks = new ArrayList<>(encrypteds.size());
+        try {
+            for (final T encrypted : encrypteds) {
+                FutureTask<R> task = null;
+                try {
+                    final T copy = XMLObjectSupport.cloneXMLObject(encrypted,
+                            CloneOutputOption.RootDOMInNewDocument);
+                    task = new FutureTask<>(() -> operation.decrypt(copy));
+                    decryptionExecutor.execute(task);
+                } catch (final MarshallingException | UnmarshallingException e) {
+                    log.debug("{} Unable to copy {} for decryption", getLogPrefix(),
+                            encrypted.getElementQName().getLocalPart(), e);
+                } catch (final RejectedExecutionException e) {
+                    task.run();
+                }
+                tasks.add(task);
+            }
+            
+            for (int i = 0; i < encrypteds.size(); i++) {
+                final T encrypted = encrypteds.get(i);
+                final FutureTask<R> task = tasks.get(i);
+                try {
+                    if (task == null) {
+                        throw new DecryptionException("Unable to copy "
+                                + encrypted.getElementQName().getLocalPart() + " for decryption");
+                    }
+                    results.add(new Pair<>(encrypted, task.get()));
+                } catch (final ExecutionException e) {
+                    final Throwable cause = e.getCause();
+                    if (cause instanceof DecryptionException) {
+                        handleDecryptionFailure(encrypted, (DecryptionException) cause);
+                    } else if (cause instanceof RuntimeException) {
+                        throw (RuntimeException) cause;
+                    } else if (cause instanceof Error) {
+                        throw (Error) cause;
+                    } else {
+                        handleDecryptionFailure(encrypted, new DecryptionException("Decryption failed", e));
+                    }
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    handleDecryptionFailure(encrypted,
+                            new DecryptionException("Interrupted while waiting for decryption", e));
+                } catch (final DecryptionException e) {
+                    handleDecryptionFailure(encrypted, e);
+                }
+            }
+        } finally {
+            for (final FutureTask<R> task : tasks) {
+                if (task != null) {
+                    task.cancel(false);
+                }
+            }
+        }
+    }
+    
+    /**
+     * Handle the failure to decrypt an element.
+     * 
+     * @param encrypted the encrypted element
+     * @param e the failure
+     * 
+     * @throws DecryptionException if failure is fatal
+     */
+    private void handleDecryptionFailure(@Nonnull final EncryptedElementType encrypted,
+            @Nonnull final DecryptionException e) throws DecryptionException {
+        if (isErrorFatal()) {
+            throw e;
+        }
+        log.warn("{} Trapped failure decrypting {}", getLogPrefix(), encrypted.getElementQName().getLocalPart(), e);
+    }
+    
+    /**
+     * A decryption operation applied to a single encrypted element.
+     * 
+     * @param <T> type of encrypted element
+     * @param <R> type of decrypted object
+     */
+    @FunctionalInterface
+    protected interface DecryptionOperation<T extends EncryptedElementType, R extends SAMLObject> {
+        
+        /**
+         * Decrypt the element.
+         * 
+         * @param encrypted the encrypted element
+         * 
+         * @return the decrypted object
+         * 
+         * @throws DecryptionException if decryption fails
+         */
+        @Nonnull R decrypt(@Nonnull T encrypted) throws DecryptionException;
+    }
+    
 }
\ No newline at end of file
@@ -26,6 +26,7 @@ import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 
 import net.shibboleth.utilities.java.support.collection.Pair;
+import net.shibboleth.utilities.java.support.component.ComponentInitializationException;
 import net.shibboleth.utilities.java.support.component.ComponentSupport;
 import net.shibboleth.utilities.java.support.logic.Constraint;
 import net.shibboleth.utilities.java.support.logic.FunctionSupport;
@@ -36,6 +37,7 @@ import org.opensaml.profile.action.ActionSupport;
 import org.opensaml.profile.action.EventIds;
 import org.opensaml.profile.context.ProfileRequestContext;
 import org.opensaml.profile.context.navigate.OutboundMessageContextLookup;
+import org.opensaml.saml.saml2.encryption.EncryptedKeyCache;
 import org.opensaml.saml.saml2.encryption.Encrypter;
 import org.opensaml.saml.saml2.encryption.Encrypter.KeyPlacement;
 import org.opensaml.saml.saml2.profile.context.EncryptionContext;
@@ -58,6 +60,18 @@ import com.google.common.base.Predicates;
  */
 public abstract class AbstractEncryptAction extends AbstractConditionalProfileAction {
 
+    /** Metric name for the gauge of the number of encrypted key cache hits. */
+    @Nonnull public static final String METRIC_GAUGE_KEY_CACHE_HITS = "gauge.hits";
+
+    /** Metric name for the gauge of the number of encrypted key cache misses. */
+    @Nonnull public static final String METRIC_GAUGE_KEY_CACHE_MISSES = "gauge.misses";
+
+    /** Metric name for the gauge of the number of expired encrypted key cache entries. */
+    @Nonnull public static final String METRIC_GAUGE_KEY_CACHE_EXPIRATIONS = "gauge.expirations";
+
+    /** Metric name for the gauge of the number of encrypted key cache entries. */
+    @Nonnull public static final String METRIC_GAUGE_KEY_CACHE_SIZE = "gauge.size";
+
     /** Class logger. */
     @Nonnull private final Logger log = LoggerFactory.getLogger(AbstractEncryptAction.class);
 
@@ -80,6 +94,12 @@ public abstract class AbstractEncryptAction extends AbstractConditionalProfileAc
     /** Strategy used to obtain the self recipient value. */
     @Nullable private Function<ProfileRequestContext, String> selfRecipientLookupStrategy;
     
+    /** Optional cache of generated data encryption keys and their EncryptedKeys. */
+    @Nullable private EncryptedKeyCache encryptedKeyCache;
+    
+    /** Gauges reporting on the cache. */
+    @Nullable private CacheGauges cacheGauges;
+    
     /** The encryption object. */
     @Nullable private Encrypter encrypter;
     
@@ -160,6 +180,21 @@ public abstract class AbstractEncryptAction extends AbstractConditionalProfileAc
         selfRecipientLookupStrategy = strategy;
     }
     
+    /**
+     * Set the cache used to reuse generated data encryption keys and their EncryptedKeys across messages.
+     * 
+     * <p>
+     * The cache may be shared between actions. Gauges reporting on it are registered under a name derived from
+     * the cache's name. Defaults to: {@code null}, which performs key transport for every message.
+     * </p>
+     * 
+     * @param cache the cache, or null
+     */
+    public void setEncryptedKeyCache(@Nullable final EncryptedKeyCache cache) {
+        ComponentSupport.ifInitializedThrowUnmodifiabledComponentException(this);
+        encryptedKeyCache = cache;
+    }
+    
     /**
      * Get the encrypter.
      * 
@@ -169,6 +204,32 @@ public abstract class AbstractEncryptAction extends AbstractConditionalProfileAc
         return encrypter;
     }
     
+    /** {@inheritDoc} */
+    @Override
+    protected void doInitialize() throws ComponentInitializationException {
+        super.doInitialize();
+        
+        if (encryptedKeyCache != null) {
+            final EncryptedKeyCache cache = encryptedKeyCache;
+            cacheGauges = new CacheGauges(EncryptedKeyCache.class, cache.getName());
+            cacheGauges.register(METRIC_GAUGE_KEY_CACHE_HITS, cache::getHitCount);
+            cacheGauges.register(METRIC_GAUGE_KEY_CACHE_MISSES, cache::getMissCount);
+            cacheGauges.register(METRIC_GAUGE_KEY_CACHE_EXPIRATIONS, cache::getExpirationCount);
+            cacheGauges.register(METRIC_GAUGE_KEY_CACHE_SIZE, cache::getSize);
+        }
+    }
+    
+    /** {@inheritDoc} */
+    @Override
+    protected void doDestroy() {
+        if (cacheGauges != null) {
+            cacheGauges.removeAll();
+            cacheGauges = null;
+        }
+        
+        super.doDestroy();
+    }
+    
     /** {@inheritDoc} */
     @Override
     protected boolean doPreExecute(@Nonnull final ProfileRequestContext profileRequestContext) {
@@ -221,6 +282,7 @@ public abstract class AbstractEncryptAction extends AbstractConditionalProfileAc
         
         encrypter = new Encrypter(dataParams, keyParams);
         encrypter.setKeyPlacement(keyPlacementLookupStrategy.apply(profileRequestContext));
+        encrypter.setEncryptedKeyCache(encryptedKeyCache);
         
         return true;
     }
@@ -0,0 +1,84 @@
+/*
+ * Licensed to the University Corporation for Advanced Internet Development,
+ * Inc. (UCAID) under one or more contributor license agreements.  See the
+ * NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The UCAID licenses this file to You under the Apache
+ * License, Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opensaml.saml.saml2.profile.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.annotation.Nonnull;
+
+import net.shibboleth.utilities.java.support.annotation.constraint.NonnullElements;
+import net.shibboleth.utilities.java.support.collection.Pair;
+
+import org.opensaml.core.metrics.MetricsSupport;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Metric;
+import com.codahale.metrics.MetricRegistry;
+
+/**
+ * The gauges an encryption or decryption action registers to report on a key cache, which are removed again when the
+ * action is destroyed.
+ *
+ * <p>A key cache may be shared between actions, each of which registers the same names. A gauge is only removed if
+ * it is still the instance registered by the action, so one replaced by another action sharing the cache is left in
+ * place.</p>
+ */
+final class CacheGauges {
+
+    /** Base name of the gauges. */
+    @Nonnull private final String baseName;
+
+    /** Gauges registered, for removal. */
+    @Nonnull @NonnullElements private final List<Pair<String,Metric>> registered;
+
+    /**
+     * Constructor.
+     *
+     * @param cacheClass the class of the cache
+     * @param cacheName the name of the cache
+     */
+    CacheGauges(@Nonnull final Class<?> cacheClass, @Nonnull final String cacheName) {
+        baseName = MetricRegistry.name(cacheClass, cacheName);
+        registered = new ArrayList<>();
+    }
+
+    /**
+     * Register a gauge, replacing any existing metric of the same name.
+     *
+     * @param <T> the type of value reported
+     * @param name the name of the gauge, relative to the cache
+     * @param gauge the gauge
+     */
+    <T> void register(@Nonnull final String name, @Nonnull final Gauge<T> gauge) {
+        final String fullName = MetricRegistry.name(baseName, name);
+        final Gauge<T> result = MetricsSupport.register(fullName, gauge, true);
+        if (result != null) {
+            registered.add(new Pair<>(fullName, result));
+        }
+    }
+
+    /** Remove the gauges registered. */
+    void removeAll() {
+        for (final Pair<String,Metric> gauge : registered) {
+            MetricsSupport.remove(gauge.getFirst(), gauge.getSecond());
+        }
+        registered.clear();
+    }
+
+}
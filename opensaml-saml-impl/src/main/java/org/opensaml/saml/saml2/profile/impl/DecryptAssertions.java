@@ -19,10 +19,8 @@ package org.opensaml.saml.saml2.profile.impl;
 
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Iterator;
 
 import javax.annotation.Nonnull;
-import javax.annotation.Nullable;
 
 import net.shibboleth.utilities.java.support.collection.Pair;
 
@@ -32,7 +30,6 @@ import org.opensaml.saml.common.SAMLObject;
 import org.opensaml.saml.common.profile.SAMLEventIds;
 import org.opensaml.saml.saml2.core.Assertion;
 import org.opensaml.saml.saml2.core.EncryptedAssertion;
-import org.opensaml.saml.saml2.core.EncryptedElementType;
 import org.opensaml.saml.saml2.core.Response;
 import org.opensaml.xmlsec.encryption.support.DecryptionException;
 import org.slf4j.Logger;
@@ -76,30 +73,6 @@ public class DecryptAssertions extends AbstractDecryptAction {
         }
     }
     
-    /**
-     * Decrypt an {@link EncryptedAssertion} and return the result.
-     * 
-     * @param profileRequestContext current profile request context
-     * @param encAssert the encrypted object
-     * 
-     * @return the decrypted assertion, or null if the object did not need decryption
-     * @throws DecryptionException if an error occurs during decryption
-     */
-    @Nullable private Assertion processEncryptedAssertion(@Nonnull final ProfileRequestContext profileRequestContext,
-            @Nonnull final EncryptedAssertion encAssert) throws DecryptionException {
-        
-        if (!getDecryptionPredicate().test(
-                new Pair<ProfileRequestContext,EncryptedElementType>(profileRequestContext, encAssert))) {
-            return null;
-        }
-        
-        if (getDecrypter() == null) {
-            throw new DecryptionException("No decryption parameters, unable to decrypt EncryptedAssertion");
-        }
-        
-        return getDecrypter().decrypt(encAssert);
-    }
-
     /**
      * Decrypt any {@link EncryptedAssertion} found in a response and replace it with the result.
      * 
@@ -114,22 +87,10 @@ public class DecryptAssertions extends AbstractDecryptAction {
         final Collection<Assertion> decrypteds = new ArrayList<>();
         final Collection<EncryptedAssertion> encrypteds = new ArrayList<>();
         
-        final Iterator<EncryptedAssertion> i = response.getEncryptedAssertions().iterator();
-        while (i.hasNext()) {
-            log.debug("{} Decrypting EncryptedAssertion in Response", getLogPrefix());
-            try {
-                final EncryptedAssertion encrypted = i.next();
-                final Assertion decrypted = processEncryptedAssertion(profileRequestContext, encrypted);
-                if (decrypted != null) {
-                    encrypteds.add(encrypted);
-                    decrypteds.add(decrypted);
-                }
-            } catch (final DecryptionException e) {
-                if (isErrorFatal()) {
-                    throw e;
-                }
-                log.warn("{} Trapped failure decrypting EncryptedAssertion in Response", getLogPrefix(), e);
-            }
+        for (final Pair<EncryptedAssertion,Assertion> result : decryptAll(profileRequestContext,
+                response.getEncryptedAssertions(), e -> getDecrypter().decrypt(e))) {
+            encrypteds.add(result.getFirst());
+            decrypteds.add(result.getSecond());
         }
         
         response.getEncryptedAssertions().removeAll(encrypteds);
@@ -19,10 +19,8 @@ package org.opensaml.saml.saml2.profile.impl;
 
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Iterator;
 
 import javax.annotation.Nonnull;
-import javax.annotation.Nullable;
 
 import net.shibboleth.utilities.java.support.collection.Pair;
 
@@ -34,7 +32,6 @@ import org.opensaml.saml.saml2.core.Assertion;
 import org.opensaml.saml.saml2.core.Attribute;
 import org.opensaml.saml.saml2.core.AttributeStatement;
 import org.opensaml.saml.saml2.core.EncryptedAttribute;
-import org.opensaml.saml.saml2.core.EncryptedElementType;
 import org.opensaml.saml.saml2.core.Response;
 import org.opensaml.xmlsec.encryption.support.DecryptionException;
 import org.slf4j.Logger;
@@ -82,30 +79,6 @@ public class DecryptAttributes extends AbstractDecryptAction {
         }
     }
     
-    /**
-     * Decrypt an {@link EncryptedAttribute} and return the result.
-     * 
-     * @param profileRequestContext current profile request context
-     * @param encAttr the encrypted object
-     * 
-     * @return the decrypted attribute, or null if the object did not need decryption
-     * @throws DecryptionException if an error occurs during decryption
-     */
-    @Nullable private Attribute processEncryptedAttribute(@Nonnull final ProfileRequestContext profileRequestContext,
-            @Nonnull final EncryptedAttribute encAttr) throws DecryptionException {
-        
-        if (!getDecryptionPredicate().test(
-                new Pair<ProfileRequestContext,EncryptedElementType>(profileRequestContext, encAttr))) {
-            return null;
-        }
-        
-        if (getDecrypter() == null) {
-            throw new DecryptionException("No decryption parameters, unable to decrypt EncryptedAttribute");
-        }
-        
-        return getDecrypter().decrypt(encAttr);
-    }
-
     /**
      * Decrypt any {@link EncryptedAttribute} found in an assertion and replace it with the result.
      * 
@@ -122,24 +95,10 @@ public class DecryptAttributes extends AbstractDecryptAction {
             final Collection<Attribute> decrypteds = new ArrayList<>();
             final Collection<EncryptedAttribute> encrypteds = new ArrayList<>();
             
-            final Iterator<EncryptedAttribute> i = s.getEncryptedAttributes().iterator();
-            while (i.hasNext()) {
-                log.debug("{} Decrypting EncryptedAttribute in AttributeStatement", getLogPrefix());
-                
-                try {
-                    final EncryptedAttribute encrypted = i.next();
-                    final Attribute decrypted = processEncryptedAttribute(profileRequestContext, encrypted);
-                    if (decrypted != null) {
-                        encrypteds.add(encrypted);
-                        decrypteds.add(decrypted);
-                    }
-                } catch (final DecryptionException e) {
-                    if (isErrorFatal()) {
-                        throw e;
-                    }
-                    log.warn("{} Trapped failure decrypting EncryptedAttribute in AttributeStatement", getLogPrefix(),
-                            e);
-                }
+            for (final Pair<EncryptedAttribute,Attribute> result : decryptAll(profileRequestContext,
+                    s.getEncryptedAttributes(), e -> getDecrypter().decrypt(e))) {
+                encrypteds.add(result.getFirst());
+                decrypteds.add(result.getSecond());
             }
             
             s.getEncryptedAttributes().removeAll(encrypteds);
@@ -24,6 +24,7 @@ import java.security.cert.X509Certificate;
 import java.time.Duration;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
@@ -58,6 +59,7 @@ import org.opensaml.saml.criterion.ProtocolCriterion;
 import org.opensaml.saml.criterion.RoleDescriptorCriterion;
 import org.opensaml.saml.saml2.assertion.SAML2AssertionValidationParameters;
 import org.opensaml.saml.saml2.core.Assertion;
+import org.opensaml.saml.saml2.metadata.RoleDescriptor;
 import org.opensaml.saml.saml2.profile.impl.ValidateAssertions.AssertionValidationInput;
 import org.opensaml.security.SecurityException;
 import org.opensaml.security.credential.UsageType;
@@ -83,6 +85,9 @@ import net.shibboleth.utilities.java.support.resolver.CriteriaSet;
 public class DefaultAssertionValidationContextBuilder 
         implements Function<AssertionValidationInput, ValidationContext> {
     
+    /** Default maximum number of cached relying party parameter sets. */
+    public static final int DEFAULT_TEMPLATE_CACHE_SIZE = 100;
+    
     /** Logger. */
     @Nullable private Logger log = LoggerFactory.getLogger(DefaultAssertionValidationContextBuilder.class);
     
@@ -130,6 +135,15 @@ public class DefaultAssertionValidationContextBuilder
 
     /** Resolver for security parameters context. */
     private Function<ProfileRequestContext, SecurityParametersContext> securityParametersLookupStrategy;
+    
+    /** Strategy for deriving the key under which relying party parameters are cached. */
+    @Nullable private Function<ProfileRequestContext, Object> templateCacheKeyStrategy;
+    
+    /** Maximum number of cached relying party parameter sets. */
+    private int templateCacheSize;
+    
+    /** Cached relying party parameter sets, in access order. Guarded by itself. */
+    @Nonnull private final Map<Object, ParametersTemplate> templateCache;
 
     /**
      * Constructor.
@@ -149,6 +163,15 @@ public class DefaultAssertionValidationContextBuilder
 
         securityParametersLookupStrategy = new ChildContextLookup<>(SecurityParametersContext.class)
                 .compose(new InboundMessageContextLookup());
+        
+        templateCacheSize = DEFAULT_TEMPLATE_CACHE_SIZE;
+        templateCache = new LinkedHashMap<Object, ParametersTemplate>(16, 0.75f, true) {
+            private static final long serialVersionUID = 2613409553581530473L;
+
+            protected boolean removeEldestEntry(final Map.Entry<Object, ParametersTemplate> eldest) {
+                return size() > templateCacheSize;
+            }
+        };
     }
 
     /**
@@ -532,6 +555,92 @@ public class DefaultAssertionValidationContextBuilder
         signatureCriteriaSetFunction = function;
     }
 
+    /**
+     * Get the strategy for deriving the key under which the relying party parameters are cached.
+     * 
+     * <p>
+     * Defaults to: {@code null}, which disables caching.
+     * </p>
+     * 
+     * @return the cache key strategy, or null
+     */
+    @Nullable public Function<ProfileRequestContext, Object> getTemplateCacheKeyStrategy() {
+        return templateCacheKeyStrategy;
+    }
+
+    /**
+     * Set the strategy for deriving the key under which the relying party parameters are cached.
+     * 
+     * <p>
+     * The relying party parameters are those which do not depend on the individual request or assertion:
+     * the valid issuers and audiences, the required conditions, the maximum time since authentication and the
+     * signature, subject confirmation and address checking flags. When a strategy is set, these are computed once
+     * per key and reused. A null key disables caching for that request.
+     * </p>
+     * 
+     * <p>
+     * Every strategy contributing to the relying party parameters must therefore be a function of the key alone,
+     * such as the peer entityID, or a cached result will be returned for a request it does not describe. This
+     * applies to the functions set via {@link #setValidIssuers(Function)}, {@link #setAdditionalAudiences(Function)}
+     * and {@link #setMaximumTimeSinceAuthn(Function)}, the predicates set via
+     * {@link #setSignatureRequired(Predicate)}, {@link #setRecipientRequired(Predicate)},
+     * {@link #setAddressRequired(Predicate)}, {@link #setCheckAddress(Predicate)},
+     * {@link #setInResponseToRequired(Predicate)}, {@link #setNotBeforeRequired(Predicate)} and
+     * {@link #setNotOnOrAfterRequired(Predicate)}, and the self entityID taken from the inbound
+     * {@link SAMLSelfEntityContext}.
+     * </p>
+     * 
+     * <p>
+     * A cached entry is also discarded when the peer's metadata role descriptor changes, such as on a metadata
+     * refresh.
+     * </p>
+     * 
+     * <p>
+     * Defaults to: {@code null}, which disables caching.
+     * </p>
+     * 
+     * @param strategy the cache key strategy, may be null
+     */
+    public void setTemplateCacheKeyStrategy(@Nullable final Function<ProfileRequestContext, Object> strategy) {
+        templateCacheKeyStrategy = strategy;
+        clearTemplateCache();
+    }
+    
+    /**
+     * Get the maximum number of cached relying party parameter sets.
+     * 
+     * <p>
+     * Defaults to: {@link #DEFAULT_TEMPLATE_CACHE_SIZE}.
+     * </p>
+     * 
+     * @return the maximum cache size
+     */
+    public int getTemplateCacheSize() {
+        return templateCacheSize;
+    }
+    
+    /**
+     * Set the maximum number of cached relying party parameter sets.
+     * 
+     * <p>
+     * Defaults to: {@link #DEFAULT_TEMPLATE_CACHE_SIZE}.
+     * </p>
+     * 
+     * @param size the maximum cache size
+     */
+    public void setTemplateCacheSize(final int size) {
+        templateCacheSize = (int) Constraint.isGreaterThan(0, size, "Template cache size must be greater than 0");
+    }
+    
+    /**
+     * Discard all cached relying party parameter sets.
+     */
+    public void clearTemplateCache() {
+        synchronized (templateCache) {
+            templateCache.clear();
+        }
+    }
+
     /** {@inheritDoc} */
     @Nullable public ValidationContext apply(@Nullable final AssertionValidationInput input) {
         if (input == null) {
@@ -553,77 +662,146 @@ public class DefaultAssertionValidationContextBuilder
         
         final TreeMap<String, Object> staticParams = new TreeMap<>();
         
-        // Issuer
-        staticParams.put(SAML2AssertionValidationParameters.VALID_ISSUERS,
-                getValidIssuers().apply(input.getProfileRequestContext()));
-        
-        // Signature
-        populateSignatureParameters(staticParams, input);
-        
-        // Conditions
-        populateConditionsParameters(staticParams, input);
-        
-        final Set<InetAddress> validAddresses = getValidAddresses(input);
-        final Boolean checkAddressEnabled = Boolean.valueOf(getCheckAddress().test(input.getProfileRequestContext()));
-        
-        // SubjectConfirmation
-        populateSubjectConfirmationParameters(staticParams, input, validAddresses, checkAddressEnabled);
+        final Map<String, Object> template = resolveTemplateParameters(input);
+        if (template != null) {
+            staticParams.putAll(template);
+        } else {
+            populateRelyingPartyParameters(staticParams, input);
+        }
         
-        // Statements
-        populateStatementParams(staticParams, input, validAddresses, checkAddressEnabled);
+        populateRequestParameters(staticParams, input);
         
         log.trace("Built static parameters map: {}", staticParams);
         
         return staticParams;
     }
-
-
+    
     /**
-     *  Populate the static signature parameters.
-     * @param staticParams the parameters being populated
-     * @param input validation input
+     * Obtain the cached relying party parameters for the input, computing and caching them if necessary.
+     * 
+     * @param input the assertion validation input
+     * 
+     * @return the relying party parameters, or null if caching is not in effect for the input
      */
-    private void populateSignatureParameters(@Nonnull final Map<String, Object> staticParams,
-            @Nonnull final AssertionValidationInput input) {
+    @Nullable private Map<String, Object> resolveTemplateParameters(@Nonnull final AssertionValidationInput input) {
+        if (getTemplateCacheKeyStrategy() == null) {
+            return null;
+        }
+        final Object key = getTemplateCacheKeyStrategy().apply(input.getProfileRequestContext());
+        if (key == null) {
+            return null;
+        }
         
-        staticParams.put(SAML2AssertionValidationParameters.SIGNATURE_REQUIRED, 
-                Boolean.valueOf(getSignatureRequired().test(input.getProfileRequestContext())));
-        staticParams.put(SAML2AssertionValidationParameters.SIGNATURE_VALIDATION_CRITERIA_SET, 
-                getSignatureCriteriaSet(input));
-        final SecurityParametersContext securityParameters = getSecurityParametersLookupStrategy()
-                .apply(input.getProfileRequestContext());
-        if (securityParameters != null && securityParameters.getSignatureValidationParameters() != null) {
-            staticParams.put(SAML2AssertionValidationParameters.SIGNATURE_VALIDATION_TRUST_ENGINE,
-                    securityParameters.getSignatureValidationParameters().getSignatureTrustEngine());
+        final RoleDescriptor roleDescriptor = getPeerRoleDescriptor(input);
+        ParametersTemplate template;
+        synchronized (templateCache) {
+            template = templateCache.get(key);
+        }
+        if (template != null && template.getRoleDescriptor() == roleDescriptor) {
+            log.trace("Using cached relying party parameters for key: {}", key);
+            return template.getParameters();
+        }
+        
+        log.debug("Building relying party parameters for key: {}", key);
+        final Map<String, Object> params = new TreeMap<>();
+        populateRelyingPartyParameters(params, input);
+        for (final Map.Entry<String, Object> entry : params.entrySet()) {
+            if (entry.getValue() instanceof Set) {
+                entry.setValue(Collections.unmodifiableSet((Set<?>) entry.getValue()));
+            }
+        }
+        template = new ParametersTemplate(roleDescriptor, Collections.unmodifiableMap(params));
+        synchronized (templateCache) {
+            templateCache.put(key, template);
         }
+        return template.getParameters();
     }
     
     /**
-     * Populate the static Conditions parameters.
+     * Get the peer's metadata role descriptor, if any.
+     * 
+     * @param input the assertion validation input
+     * 
+     * @return the role descriptor, or null
+     */
+    @Nullable private RoleDescriptor getPeerRoleDescriptor(@Nonnull final AssertionValidationInput input) {
+        final MessageContext inboundContext = input.getProfileRequestContext().getInboundMessageContext();
+        if (inboundContext == null) {
+            return null;
+        }
+        final SAMLPeerEntityContext peerContext = inboundContext.getSubcontext(SAMLPeerEntityContext.class);
+        if (peerContext == null) {
+            return null;
+        }
+        final SAMLMetadataContext metadataContext = peerContext.getSubcontext(SAMLMetadataContext.class);
+        return metadataContext != null ? metadataContext.getRoleDescriptor() : null;
+    }
+
+    /**
+     * Populate the static parameters which depend only on the relying party, and not on the individual request or
+     * assertion.
+     * 
      * @param staticParams the parameters being populated
      * @param input validation input
      */
-    private void populateConditionsParameters(@Nonnull final Map<String, Object> staticParams,
+    private void populateRelyingPartyParameters(@Nonnull final Map<String, Object> staticParams,
             @Nonnull final AssertionValidationInput input) {
         
+        final ProfileRequestContext prc = input.getProfileRequestContext();
+        
+        // Issuer
+        staticParams.put(SAML2AssertionValidationParameters.VALID_ISSUERS, getValidIssuers().apply(prc));
+        
+        // Signature
+        staticParams.put(SAML2AssertionValidationParameters.SIGNATURE_REQUIRED, 
+                Boolean.valueOf(getSignatureRequired().test(prc)));
+        
         // For general Conditions
         staticParams.put(SAML2AssertionValidationParameters.COND_REQUIRED_CONDITIONS, getRequiredConditions(input));
         
         // For Audience Condition
         staticParams.put(SAML2AssertionValidationParameters.COND_VALID_AUDIENCES, getValidAudiences(input));
+        
+        // For SubjectConfirmationData
+        final Boolean checkAddressEnabled = Boolean.valueOf(getCheckAddress().test(prc));
+        staticParams.put(SAML2AssertionValidationParameters.SC_RECIPIENT_REQUIRED,
+                Boolean.valueOf(getRecipientRequired().test(prc)));
+        staticParams.put(SAML2AssertionValidationParameters.SC_ADDRESS_REQUIRED,
+                Boolean.valueOf(getAddressRequired().test(prc)));
+        staticParams.put(SAML2AssertionValidationParameters.SC_CHECK_ADDRESS, checkAddressEnabled);
+        staticParams.put(SAML2AssertionValidationParameters.SC_IN_RESPONSE_TO_REQUIRED,
+                Boolean.valueOf(getInResponseToRequired().test(prc)));
+        staticParams.put(SAML2AssertionValidationParameters.SC_NOT_BEFORE_REQUIRED,
+                Boolean.valueOf(getNotBeforeRequired().test(prc)));
+        staticParams.put(SAML2AssertionValidationParameters.SC_NOT_ON_OR_AFTER_REQUIRED,
+                Boolean.valueOf(getNotOnOrAfterRequired().test(prc)));
+        
+        // For AuthnStatement
+        staticParams.put(SAML2AssertionValidationParameters.STMT_AUTHN_CHECK_ADDRESS, checkAddressEnabled);
+        if (getMaximumTimeSinceAuthn() != null) {
+            staticParams.put(SAML2AssertionValidationParameters.STMT_AUTHN_MAX_TIME, 
+                    getMaximumTimeSinceAuthn().apply(prc));
+        }
     }
 
     /**
-     * Populate the static SubjectConfirmation parameters.
+     * Populate the static parameters which depend on the individual request or assertion.
      * 
      * @param staticParams the parameters being populated
      * @param input validation input
-     * @param validAddresses the valid addresses
-     * @param checkAddressEnabled whether address checking is enabled
      */
-    private void populateSubjectConfirmationParameters(@Nonnull final Map<String, Object> staticParams,
-            @Nonnull final AssertionValidationInput input, @Nonnull final Set<InetAddress> validAddresses,
-            @Nonnull final Boolean checkAddressEnabled) {
+    private void populateRequestParameters(@Nonnull final Map<String, Object> staticParams,
+            @Nonnull final AssertionValidationInput input) {
+        
+        // Signature
+        staticParams.put(SAML2AssertionValidationParameters.SIGNATURE_VALIDATION_CRITERIA_SET, 
+                getSignatureCriteriaSet(input));
+        final SecurityParametersContext securityParameters = getSecurityParametersLookupStrategy()
+                .apply(input.getProfileRequestContext());
+        if (securityParameters != null && securityParameters.getSignatureValidationParameters() != null) {
+            staticParams.put(SAML2AssertionValidationParameters.SIGNATURE_VALIDATION_TRUST_ENGINE,
+                    securityParameters.getSignatureValidationParameters().getSignatureTrustEngine());
+        }
         
         // For HoK subject confirmation
         final X509Certificate attesterCertificate = getAttesterCertificate(input);
@@ -636,46 +814,18 @@ public class DefaultAssertionValidationContextBuilder
         }
         
         // For SubjectConfirmationData
-        staticParams.put(SAML2AssertionValidationParameters.SC_RECIPIENT_REQUIRED,
-                Boolean.valueOf(getRecipientRequired().test(input.getProfileRequestContext())));
         staticParams.put(SAML2AssertionValidationParameters.SC_VALID_RECIPIENTS, getValidRecipients(input));
         
-        staticParams.put(SAML2AssertionValidationParameters.SC_ADDRESS_REQUIRED,
-                Boolean.valueOf(getAddressRequired().test(input.getProfileRequestContext())));
+        final Set<InetAddress> validAddresses = getValidAddresses(input);
         staticParams.put(SAML2AssertionValidationParameters.SC_VALID_ADDRESSES, validAddresses);
-        staticParams.put(SAML2AssertionValidationParameters.SC_CHECK_ADDRESS, checkAddressEnabled);
         
-        staticParams.put(SAML2AssertionValidationParameters.SC_IN_RESPONSE_TO_REQUIRED,
-                Boolean.valueOf(getInResponseToRequired().test(input.getProfileRequestContext())));
         if (getInResponseTo() != null) {
             staticParams.put(SAML2AssertionValidationParameters.SC_VALID_IN_RESPONSE_TO,
                     getInResponseTo().apply(input.getProfileRequestContext()));
         }
         
-        staticParams.put(SAML2AssertionValidationParameters.SC_NOT_BEFORE_REQUIRED,
-                Boolean.valueOf(getNotBeforeRequired().test(input.getProfileRequestContext())));
-        staticParams.put(SAML2AssertionValidationParameters.SC_NOT_ON_OR_AFTER_REQUIRED,
-                Boolean.valueOf(getNotOnOrAfterRequired().test(input.getProfileRequestContext())));
-    }
-
-    /**
-     * Populate the static Statement params.
-     * @param staticParams the parameters being populated
-     * @param input validation input
-     * @param validAddresses the valid addresses
-     * @param checkAddressEnabled whether address checking is enabled
-     */
-    private void populateStatementParams(@Nonnull final Map<String, Object> staticParams,
-            @Nonnull final AssertionValidationInput input, @Nonnull final Set<InetAddress> validAddresses,
-            @Nonnull final Boolean checkAddressEnabled) {
-        
         // For AuthnStatement
         staticParams.put(SAML2AssertionValidationParameters.STMT_AUTHN_VALID_ADDRESSES, validAddresses);
-        staticParams.put(SAML2AssertionValidationParameters.STMT_AUTHN_CHECK_ADDRESS, checkAddressEnabled);
-        if (getMaximumTimeSinceAuthn() != null) {
-            staticParams.put(SAML2AssertionValidationParameters.STMT_AUTHN_MAX_TIME, 
-                    getMaximumTimeSinceAuthn().apply(input.getProfileRequestContext()));
-        }
     }
     
     /**
@@ -1041,4 +1191,43 @@ public class DefaultAssertionValidationContextBuilder
         
     }
 
+    /** Cached relying party parameters, and the peer role descriptor they were computed for. */
+    private static final class ParametersTemplate {
+        
+        /** The peer role descriptor. */
+        @Nullable private final RoleDescriptor roleDescriptor;
+        
+        /** The relying party parameters. */
+        @Nonnull private final Map<String, Object> parameters;
+        
+        /**
+         * Constructor.
+         *
+         * @param descriptor the peer role descriptor
+         * @param params the relying party parameters
+         */
+        ParametersTemplate(@Nullable final RoleDescriptor descriptor, @Nonnull final Map<String, Object> params) {
+            roleDescriptor = descriptor;
+            parameters = params;
+        }
+        
+        /**
+         * Get the peer role descriptor.
+         * 
+         * @return the role descriptor, or null
+         */
+        @Nullable RoleDescriptor getRoleDescriptor() {
+            return roleDescriptor;
+        }
+        
+        /**
+         * Get the relying party parameters.
+         * 
+         * @return the parameters
+         */
+        @Nonnull Map<String, Object> getParameters() {
+            return parameters;
+        }
+    }
+
 }
\ No newline at end of file
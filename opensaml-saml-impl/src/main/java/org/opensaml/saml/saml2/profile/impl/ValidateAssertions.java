@@ -17,7 +17,15 @@
 
 package org.opensaml.saml.saml2.profile.impl;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.function.Function;
 
 import javax.annotation.Nonnull;
@@ -39,6 +47,8 @@ import org.opensaml.saml.saml2.core.Assertion;
 import org.opensaml.saml.saml2.core.Response;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
 
 import net.shibboleth.utilities.java.support.annotation.constraint.NonnullAfterInit;
 import net.shibboleth.utilities.java.support.collection.Pair;
@@ -55,6 +65,13 @@ import net.shibboleth.utilities.java.support.logic.Constraint;
  * {@link XMLObject#getObjectMetadata()} as instance of {@link ValidationProcessingData}.
  * 
  * </p>
+ * 
+ * <p>
+ * If an {@link Executor} is configured, multiple assertions whose DOMs belong to distinct documents (for example,
+ * assertions which were individually decrypted) are validated concurrently. Validators and validation contexts are
+ * still resolved, and results processed, on the calling thread and in assertion order, and processing stops at the
+ * first assertion whose validation fails with an error, exactly as when validating serially.
+ * </p>
  */
 public class ValidateAssertions extends AbstractProfileAction {
 
@@ -81,6 +98,9 @@ public class ValidateAssertions extends AbstractProfileAction {
     /** The resolver for the list of assertions to be validated. */
     @Nonnull private Function<ProfileRequestContext, List<Assertion>> assertionResolver;
     
+    /** Optional executor on which to validate multiple assertions concurrently. */
+    @Nullable private Executor validationExecutor;
+    
     /** The resolved assertions to be validated. */
     private List<Assertion> assertions;
     
@@ -234,6 +254,31 @@ public class ValidateAssertions extends AbstractProfileAction {
         assertionValidatorLookup = function;
     }
 
+    /**
+     * Get the executor on which multiple assertions are validated concurrently.
+     * 
+     * @return the executor, or null
+     */
+    @Nullable public Executor getValidationExecutor() {
+        return validationExecutor;
+    }
+
+    /**
+     * Set the executor on which multiple assertions are validated concurrently.
+     * 
+     * <p>
+     * The executor should be bounded, as one task is submitted per assertion. If not set, assertions are validated
+     * serially on the calling thread.
+     * </p>
+     * 
+     * @param executor the executor, may be null
+     */
+    public void setValidationExecutor(@Nullable final Executor executor) {
+        ComponentSupport.ifInitializedThrowUnmodifiabledComponentException(this);
+        ComponentSupport.ifDestroyedThrowDestroyedComponentException(this);
+        validationExecutor = executor;
+    }
+
     /** {@inheritDoc} */
     protected void doInitialize() throws ComponentInitializationException {
         super.doInitialize();
@@ -283,6 +328,11 @@ public class ValidateAssertions extends AbstractProfileAction {
 
     /** {@inheritDoc} */
     protected void doExecute(@Nonnull final ProfileRequestContext profileContext) {
+        if (getValidationExecutor() != null && assertions.size() > 1 && isIndependent(assertions)) {
+            doExecuteConcurrently(profileContext);
+            return;
+        }
+        
         boolean sawNonValid = false;
         for (final Assertion assertion : assertions) {
             final SAML20AssertionValidator validator = resolveValidator(profileContext, assertion);
@@ -314,6 +364,129 @@ public class ValidateAssertions extends AbstractProfileAction {
         }
     }
 
+    /**
+     * Validate the assertions concurrently on the configured executor.
+     * 
+     * <p>
+     * Every result is gathered before any is processed, and results are then processed in order with the same
+     * error handling as the serial case, so the outcome is the same as if the assertions had been validated
+     * serially.
+     * </p>
+     * 
+     * @param profileContext the current profile request context
+     */
+    private void doExecuteConcurrently(@Nonnull final ProfileRequestContext profileContext) {
+        final List<ValidationContext> validationContexts = new ArrayList<>(assertions.size());
+        final List<FutureTask<ValidationResult>> tasks = new ArrayList<>(assertions.size());
+        
+        // Prepare validations up to the point at which the serial loop would have terminated.
+        boolean missingValidator = false;
+        Throwable preparationError = null;
+        for (final Assertion assertion : assertions) {
+            final SAML20AssertionValidator validator = resolveValidator(profileContext, assertion);
+            if (validator == null) {
+                missingValidator = true;
+                break;
+            }
+            
+            try {
+                final ValidationContext validationContext = buildValidationContext(profileContext, assertion);
+                validationContexts.add(validationContext);
+                tasks.add(new FutureTask<>(() -> validator.validate(assertion, validationContext)));
+            } catch (final Throwable t) {
+                preparationError = t;
+                break;
+            }
+        }
+        
+        log.debug("{} Validating {} Assertions concurrently", getLogPrefix(), tasks.size());
+        for (final FutureTask<ValidationResult> task : tasks) {
+            try {
+                getValidationExecutor().execute(task);
+            } catch (final RejectedExecutionException e) {
+                task.run();
+            }
+        }
+        
+        try {
+            for (final FutureTask<ValidationResult> task : tasks) {
+                try {
+                    task.get();
+                } catch (final ExecutionException e) {
+                    // Reported below, in order.
+                }
+            }
+        } catch (final InterruptedException e) {
+            // Skip any validations which have not yet started.
+            for (final FutureTask<ValidationResult> task : tasks) {
+                task.cancel(false);
+            }
+            Thread.currentThread().interrupt();
+            log.warn("{} Interrupted while waiting for Assertion validation", getLogPrefix());
+            ActionSupport.buildEvent(profileContext, SAMLEventIds.UNABLE_VALIDATE_ASSERTION);
+            return;
+        }
+        
+        boolean sawNonValid = false;
+        for (int i = 0; i < tasks.size(); i++) {
+            try {
+                final ValidationResult validationResult = tasks.get(i).get();
+                if (validationResult != ValidationResult.VALID) {
+                    sawNonValid = true;
+                }
+                processResult(validationContexts.get(i), validationResult, assertions.get(i), profileContext);
+            } catch (final ExecutionException e) {
+                log.warn("{} There was a problem determining Assertion validity", getLogPrefix(), e.getCause());
+                ActionSupport.buildEvent(profileContext, SAMLEventIds.UNABLE_VALIDATE_ASSERTION);
+                return;
+            } catch (final Throwable t) {
+                log.warn("{} There was a problem determining Assertion validity", getLogPrefix(), t);
+                ActionSupport.buildEvent(profileContext, SAMLEventIds.UNABLE_VALIDATE_ASSERTION);
+                return;
+            }
+        }
+        
+        if (missingValidator) {
+            log.warn("{} No SAML20AssertionValidator was available, terminating", getLogPrefix());
+            ActionSupport.buildEvent(profileContext, SAMLEventIds.UNABLE_VALIDATE_ASSERTION);
+            return;
+        } else if (preparationError != null) {
+            log.warn("{} There was a problem determining Assertion validity", getLogPrefix(), preparationError);
+            ActionSupport.buildEvent(profileContext, SAMLEventIds.UNABLE_VALIDATE_ASSERTION);
+            return;
+        }
+        
+        if (sawNonValid && isInvalidFatal()) {
+            ActionSupport.buildEvent(profileContext, SAMLEventIds.ASSERTION_INVALID);
+        } else {
+            ActionSupport.buildProceedEvent(profileContext);
+        }
+    }
+    
+    /**
+     * Check whether the assertions can safely be validated concurrently.
+     * 
+     * <p>
+     * The DOM implementation is not safe for concurrent access, even for reading, so this is only the case if each
+     * assertion has a DOM which belongs to a document not shared with any other.
+     * </p>
+     * 
+     * @param candidates the assertions to check
+     * 
+     * @return true if each assertion has its own DOM document
+     */
+    private boolean isIndependent(@Nonnull final List<Assertion> candidates) {
+        final Set<Document> documents = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (final Assertion assertion : candidates) {
+            final Element dom = assertion.getDOM();
+            if (dom == null || !documents.add(dom.getOwnerDocument())) {
+                log.debug("{} Assertions do not have independent DOMs, validating serially", getLogPrefix());
+                return false;
+            }
+        }
+        return true;
+    }
+
     /**
      * Process the result of the assertion validation.
      * 
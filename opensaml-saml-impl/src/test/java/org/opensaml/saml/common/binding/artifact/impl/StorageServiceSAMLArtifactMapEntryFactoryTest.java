@@ -90,4 +90,41 @@ public class StorageServiceSAMLArtifactMapEntryFactoryTest extends XMLObjectBase
         Assert.assertFalse(diff.hasDifferences(), diff.toString());
     }
 
-}
\ No newline at end of file
+    @Test
+    public void testWithCompactSerialization() throws Exception {
+        final SAMLArtifactMapEntry entry = factory.newEntry(artifact, issuerId, rpId, samlObject);
+        final String plain = factory.serialize(entry);
+        
+        final StorageServiceSAMLArtifactMapEntryFactory compactFactory =
+                new StorageServiceSAMLArtifactMapEntryFactory();
+        compactFactory.setCompactSerialization(true);
+        compactFactory.initialize();
+        
+        final String compact = compactFactory.serialize(entry);
+        Assert.assertTrue(compact.startsWith(StorageServiceSAMLArtifactMapEntryFactory.COMPACT_FORMAT_HEADER));
+        Assert.assertTrue(compact.length() < plain.length());
+        
+        // Each factory must read both formats, regardless of how it writes.
+        for (final StorageServiceSAMLArtifactMapEntryFactory reader : new StorageServiceSAMLArtifactMapEntryFactory[] {
+                factory, compactFactory}) {
+            for (final String value : new String[] {plain, compact}) {
+                final BasicSAMLArtifactMapEntry newEntry = (BasicSAMLArtifactMapEntry) reader.deserialize(
+                        1, StorageServiceSAMLArtifactMap.STORAGE_CONTEXT, artifact, value, null);
+                Assert.assertEquals(newEntry.getArtifact(), artifact);
+                Assert.assertEquals(newEntry.getIssuerId(), issuerId);
+                Assert.assertEquals(newEntry.getRelyingPartyId(), rpId);
+                
+                final Diff diff = DiffBuilder.compare(samlObject.getDOM())
+                        .withTest(newEntry.getSamlMessage().getDOM()).checkForIdentical().ignoreWhitespace().build();
+                Assert.assertFalse(diff.hasDifferences(), diff.toString());
+            }
+        }
+    }
+    
+    @Test(expectedExceptions = IOException.class)
+    public void testCorruptCompactSerialization() throws IOException {
+        factory.deserialize(1, StorageServiceSAMLArtifactMap.STORAGE_CONTEXT, artifact,
+                StorageServiceSAMLArtifactMapEntryFactory.COMPACT_FORMAT_HEADER + "bm90IGRlZmxhdGVk", null);
+    }
+
+}
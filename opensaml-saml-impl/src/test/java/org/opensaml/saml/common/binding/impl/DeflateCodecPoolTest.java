@@ -0,0 +1,95 @@
+/*
+ * Licensed to the University Corporation for Advanced Internet Development,
+ * Inc. (UCAID) under one or more contributor license agreements.  See the
+ * NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The UCAID licenses this file to You under the Apache
+ * License, Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opensaml.saml.common.binding.impl;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * Unit test for {@link DeflateCodecPool}.
+ */
+public class DeflateCodecPoolTest {
+
+    private final byte[] data = "<samlp:AuthnRequest xmlns:samlp=\"urn:oasis:names:tc:SAML:2.0:protocol\"/>"
+            .getBytes(StandardCharsets.UTF_8);
+
+    @Test
+    public void testReuse() throws Exception {
+        final DeflateCodecPool pool = new DeflateCodecPool(1, Deflater.DEFLATED);
+        Assert.assertEquals(pool.getIdleDeflaterCount(), 0);
+        Assert.assertEquals(pool.getIdleInflaterCount(), 0);
+
+        final Deflater deflater = pool.borrowDeflater();
+        final byte[] first = deflate(deflater);
+        pool.returnDeflater(deflater);
+        Assert.assertEquals(pool.getIdleDeflaterCount(), 1);
+
+        final Deflater reused = pool.borrowDeflater();
+        Assert.assertSame(reused, deflater);
+        Assert.assertEquals(pool.getIdleDeflaterCount(), 0);
+        Assert.assertEquals(deflate(reused), first);
+
+        final Inflater inflater = pool.borrowInflater();
+        Assert.assertEquals(inflate(inflater, first), data);
+        pool.returnInflater(inflater);
+        final Inflater reusedInflater = pool.borrowInflater();
+        Assert.assertSame(reusedInflater, inflater);
+        Assert.assertEquals(inflate(reusedInflater, first), data);
+    }
+
+    @Test
+    public void testBounded() {
+        final DeflateCodecPool pool = new DeflateCodecPool(1, Deflater.DEFLATED);
+        final Deflater first = pool.borrowDeflater();
+        final Deflater second = pool.borrowDeflater();
+        Assert.assertNotSame(first, second);
+
+        pool.returnDeflater(first);
+        pool.returnDeflater(second);
+        pool.returnDeflater(null);
+        Assert.assertEquals(pool.getIdleDeflaterCount(), 1);
+        Assert.assertSame(pool.borrowDeflater(), first);
+    }
+
+    private byte[] deflate(final Deflater deflater) {
+        deflater.setInput(data);
+        deflater.finish();
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[16];
+        while (!deflater.finished()) {
+            output.write(buffer, 0, deflater.deflate(buffer));
+        }
+        return output.toByteArray();
+    }
+
+    private byte[] inflate(final Inflater inflater, final byte[] compressed) throws Exception {
+        inflater.setInput(compressed);
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[16];
+        while (!inflater.finished()) {
+            output.write(buffer, 0, inflater.inflate(buffer));
+        }
+        return output.toByteArray();
+    }
+
+}
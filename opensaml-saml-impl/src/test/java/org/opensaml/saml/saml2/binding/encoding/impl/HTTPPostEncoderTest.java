@@ -272,4 +272,83 @@ public class HTTPPostEncoderTest extends XMLObjectBaseTestCase {
         Assert.assertEquals(submit.val(), "Continue");
         
     }
+
+    /**
+     * Tests that the built-in form renderer produces the same form as the default Velocity template.
+     * 
+     * @throws Exception if something goes wrong
+     */
+    @Test
+    public void testBuiltInRenderer() throws Exception {
+        final String velocityOutput = encodeRequest(velocityEngine);
+        final String builtInOutput = encodeRequest(null);
+        
+        final Element velocityForm = Jsoup.parse(velocityOutput).selectFirst("html > body > form");
+        final Element builtInForm = Jsoup.parse(builtInOutput).selectFirst("html > body > form");
+        Assert.assertNotNull(velocityForm);
+        Assert.assertNotNull(builtInForm);
+        Assert.assertEquals(builtInForm.attr("action"), velocityForm.attr("action"));
+        Assert.assertEquals(builtInForm.attr("method"), velocityForm.attr("method"));
+        
+        final List<Element> velocityInputs = velocityForm.select("input");
+        final List<Element> builtInInputs = builtInForm.select("input");
+        Assert.assertEquals(builtInInputs.size(), velocityInputs.size());
+        for (int i = 0; i < velocityInputs.size(); i++) {
+            Assert.assertEquals(builtInInputs.get(i).attr("type"), velocityInputs.get(i).attr("type"));
+            Assert.assertEquals(builtInInputs.get(i).attr("name"), velocityInputs.get(i).attr("name"));
+            Assert.assertEquals(builtInInputs.get(i).val(), velocityInputs.get(i).val());
+        }
+        
+        final Element relayState = builtInForm.selectFirst("input[name=RelayState]");
+        Assert.assertNotNull(relayState);
+        Assert.assertEquals(relayState.val(), "relay&\"state\"");
+    }
+    
+    /**
+     * Encode a fixed request and return the response body.
+     * 
+     * @param engine the Velocity engine to use, or null for the built-in renderer
+     * 
+     * @return the response body
+     * 
+     * @throws Exception if something goes wrong
+     */
+    private String encodeRequest(final VelocityEngine engine) throws Exception {
+        SAMLObjectBuilder<AuthnRequest> requestBuilder =
+                (SAMLObjectBuilder<AuthnRequest>) builderFactory.<AuthnRequest>getBuilderOrThrow(
+                        AuthnRequest.DEFAULT_ELEMENT_NAME);
+        AuthnRequest samlMessage = requestBuilder.buildObject();
+        samlMessage.setID("foo");
+        samlMessage.setVersion(SAMLVersion.VERSION_20);
+        samlMessage.setIssueInstant(Instant.ofEpochMilli(0));
+
+        SAMLObjectBuilder<AssertionConsumerService> endpointBuilder =
+                (SAMLObjectBuilder<AssertionConsumerService>) builderFactory.<AssertionConsumerService>getBuilderOrThrow(
+                        AssertionConsumerService.DEFAULT_ELEMENT_NAME);
+        Endpoint samlEndpoint = endpointBuilder.buildObject();
+        samlEndpoint.setLocation("http://example.org/sso?a=1&b=2");
+
+        MessageContext messageContext = new MessageContext();
+        messageContext.setMessage(samlMessage);
+        SAMLBindingSupport.setRelayState(messageContext, "relay&\"state\"");
+        messageContext.getSubcontext(SAMLPeerEntityContext.class, true)
+            .getSubcontext(SAMLEndpointContext.class, true).setEndpoint(samlEndpoint);
+        
+        SAMLOutboundDestinationHandler handler = new SAMLOutboundDestinationHandler();
+        handler.invoke(messageContext);
+        
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        
+        HTTPPostEncoder encoder = new HTTPPostEncoder();
+        encoder.setMessageContext(messageContext);
+        encoder.setHttpServletResponse(response);
+        encoder.setVelocityEngine(engine);
+        
+        encoder.initialize();
+        encoder.prepareContext();
+        encoder.encode();
+        
+        Assert.assertEquals(response.getContentType(), "text/html", "Unexpected content type");
+        return response.getContentAsString();
+    }
 }
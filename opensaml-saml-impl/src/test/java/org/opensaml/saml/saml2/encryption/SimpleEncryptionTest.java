@@ -20,6 +20,7 @@ package org.opensaml.saml.saml2.encryption;
 import org.testng.annotations.Test;
 import org.testng.annotations.BeforeMethod;
 import org.testng.Assert;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -382,4 +383,103 @@ public class SimpleEncryptionTest extends XMLObjectBaseTestCase {
         }
     }
     
+    /** Test that a cached data encryption key and EncryptedKey are reused within the limits of the cache. */
+    @Test
+    public void testEncryptedKeyCache() throws EncryptionException {
+        encParams.setEncryptionCredential(null);
+        kekParamsList.add(kekParamsRSA);
+        
+        final EncryptedKeyCache cache = new EncryptedKeyCache("test", 10, 2, Duration.ofMinutes(1));
+        
+        final EncryptedAssertion first = encryptWithCache(cache);
+        final EncryptedAssertion second = encryptWithCache(cache);
+        final EncryptedAssertion third = encryptWithCache(cache);
+        
+        Assert.assertEquals(cache.getHitCount(), 1);
+        Assert.assertEquals(cache.getMissCount(), 2);
+        Assert.assertEquals(cache.getExpirationCount(), 1);
+        Assert.assertEquals(cache.getSize(), 1);
+        
+        Assert.assertEquals(getWrappedKey(second), getWrappedKey(first));
+        Assert.assertNotEquals(getWrappedKey(third), getWrappedKey(first));
+        Assert.assertNotEquals(second.getEncryptedData().getCipherData().getCipherValue().getValue(),
+                first.getEncryptedData().getCipherData().getCipherValue().getValue());
+        Assert.assertNotEquals(second.getEncryptedKeys().get(0).getID(), first.getEncryptedKeys().get(0).getID());
+    }
+    
+    /** Test that a cached EncryptedKey is reused with KeyInfo generated by the current generator. */
+    @Test
+    public void testEncryptedKeyCacheWithKeyInfoGenerator() throws EncryptionException {
+        encParams.setEncryptionCredential(null);
+        kekParamsList.add(kekParamsRSA);
+        
+        final EncryptedKeyCache cache = new EncryptedKeyCache("test", 10, 2, Duration.ofMinutes(1));
+        
+        kekParamsRSA.setKeyInfoGenerator(new StaticKeyInfoGenerator(buildKeyInfo("first")));
+        final EncryptedAssertion first = encryptWithCache(cache);
+        kekParamsRSA.setKeyInfoGenerator(new StaticKeyInfoGenerator(buildKeyInfo("second")));
+        final EncryptedAssertion second = encryptWithCache(cache);
+        
+        Assert.assertEquals(cache.getHitCount(), 1);
+        Assert.assertEquals(getWrappedKey(second), getWrappedKey(first));
+        Assert.assertEquals(getKeyName(first), "first");
+        Assert.assertEquals(getKeyName(second), "second");
+    }
+    
+    /**
+     * Encrypt the test assertion using a new encrypter and the supplied cache.
+     * 
+     * @param cache the encrypted key cache
+     * 
+     * @return the encrypted assertion
+     * 
+     * @throws EncryptionException if encryption fails
+     */
+    private EncryptedAssertion encryptWithCache(final EncryptedKeyCache cache) throws EncryptionException {
+        Assertion target = (Assertion) unmarshallElement("/org/opensaml/saml/saml2/encryption/Assertion.xml");
+        encrypter = new Encrypter(encParams, kekParamsList);
+        encrypter.setEncryptedKeyCache(cache);
+        return encrypter.encrypt(target);
+    }
+    
+    /**
+     * Get the wrapped key value of the first EncryptedKey of an encrypted assertion.
+     * 
+     * @param encAssertion the encrypted assertion
+     * 
+     * @return the wrapped key value
+     */
+    private String getWrappedKey(final EncryptedAssertion encAssertion) {
+        return encAssertion.getEncryptedKeys().get(0).getCipherData().getCipherValue().getValue();
+    }
+    
+    /**
+     * Build a KeyInfo carrying a single KeyName.
+     * 
+     * @param name the key name
+     * 
+     * @return the KeyInfo
+     */
+    private KeyInfo buildKeyInfo(final String name) {
+        final KeyInfo result = (KeyInfo) buildXMLObject(KeyInfo.DEFAULT_ELEMENT_NAME);
+        final KeyName keyName = (KeyName) buildXMLObject(KeyName.DEFAULT_ELEMENT_NAME);
+        keyName.setValue(name);
+        result.getKeyNames().add(keyName);
+        return result;
+    }
+    
+    /**
+     * Get the single key name in the KeyInfo of the first EncryptedKey of an encrypted assertion.
+     * 
+     * @param encrypted the encrypted assertion
+     * 
+     * @return the key name
+     */
+    private String getKeyName(final EncryptedAssertion encrypted) {
+        final KeyInfo encKeyInfo = encrypted.getEncryptedKeys().get(0).getKeyInfo();
+        Assert.assertNotNull(encKeyInfo, "EncryptedKey KeyInfo");
+        Assert.assertEquals(encKeyInfo.getKeyNames().size(), 1);
+        return encKeyInfo.getKeyNames().get(0).getValue();
+    }
+    
 }
@@ -0,0 +1,186 @@
+/*
+ * Licensed to the University Corporation for Advanced Internet Development,
+ * Inc. (UCAID) under one or more contributor license agreements.  See the
+ * NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The UCAID licenses this file to You under the Apache
+ * License, Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opensaml.saml.saml2.profile.impl;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+import org.testng.annotations.BeforeMethod;
+import org.testng.Assert;
+
+import java.security.KeyException;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.opensaml.core.OpenSAMLInitBaseTestCase;
+import org.opensaml.core.xml.config.XMLObjectProviderRegistrySupport;
+import org.opensaml.core.xml.util.XMLObjectSupport;
+import org.opensaml.profile.RequestContextBuilder;
+import org.opensaml.profile.action.ActionTestingSupport;
+import org.opensaml.profile.context.ProfileRequestContext;
+import org.opensaml.saml.common.SAMLObjectBuilder;
+import org.opensaml.saml.common.profile.SAMLEventIds;
+import org.opensaml.saml.saml2.core.Assertion;
+import org.opensaml.saml.saml2.core.Attribute;
+import org.opensaml.saml.saml2.core.AttributeStatement;
+import org.opensaml.saml.saml2.encryption.Encrypter;
+import org.opensaml.saml.saml2.profile.SAML2ActionTestingSupport;
+import org.opensaml.security.credential.Credential;
+import org.opensaml.xmlsec.DecryptionParameters;
+import org.opensaml.xmlsec.algorithm.AlgorithmSupport;
+import org.opensaml.xmlsec.context.SecurityParametersContext;
+import org.opensaml.xmlsec.encryption.support.EncryptionConstants;
+import org.opensaml.xmlsec.encryption.support.DataEncryptionParameters;
+import org.opensaml.xmlsec.keyinfo.impl.StaticKeyInfoCredentialResolver;
+
+/** Unit test for {@link DecryptAttributes}. */
+public class DecryptAttributesTest extends OpenSAMLInitBaseTestCase {
+    
+    private static final int ATTRIBUTE_COUNT = 5;
+    
+    private String encURI;
+    
+    private Credential encCred;
+    
+    private Encrypter encrypter;
+    
+    private ProfileRequestContext prc;
+    
+    private DecryptAttributes action;
+    
+    private SAMLObjectBuilder<Attribute> attributeBuilder;
+    
+    private ExecutorService executor;
+    
+    @BeforeMethod
+    public void setUp() throws NoSuchAlgorithmException, KeyException {
+        encURI = EncryptionConstants.ALGO_ID_BLOCKCIPHER_AES128;
+        attributeBuilder = (SAMLObjectBuilder<Attribute>)
+                XMLObjectProviderRegistrySupport.getBuilderFactory().<Attribute>getBuilderOrThrow(
+                        Attribute.DEFAULT_ELEMENT_NAME);
+
+        encCred = AlgorithmSupport.generateSymmetricKeyAndCredential(encURI);
+        final DataEncryptionParameters encParams = new DataEncryptionParameters();
+        encParams.setAlgorithm(encURI);
+        encParams.setEncryptionCredential(encCred);
+        
+        encrypter = new Encrypter(encParams);
+        
+        final DecryptionParameters decParams = new DecryptionParameters();
+        decParams.setDataKeyInfoCredentialResolver(new StaticKeyInfoCredentialResolver(encCred));
+        
+        prc = new RequestContextBuilder().buildProfileRequestContext();
+        prc.getInboundMessageContext().getSubcontext(
+                SecurityParametersContext.class, true).setDecryptionParameters(decParams);
+        
+        action = new DecryptAttributes();
+        executor = Executors.newFixedThreadPool(2);
+    }
+    
+    @AfterMethod
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+    
+    @Test
+    public void testEncryptedAttributes() throws Exception {
+        final AttributeStatement statement = buildStatement();
+        
+        action.initialize();
+        
+        action.execute(prc);
+        ActionTestingSupport.assertProceedEvent(prc);
+        assertDecrypted(statement);
+    }
+
+    @Test
+    public void testEncryptedAttributesConcurrent() throws Exception {
+        final AttributeStatement statement = buildStatement();
+        
+        action.setDecryptionExecutor(executor);
+        action.initialize();
+        
+        action.execute(prc);
+        ActionTestingSupport.assertProceedEvent(prc);
+        assertDecrypted(statement);
+    }
+    
+    @Test
+    public void testWrongKeyConcurrent() throws Exception {
+        final AttributeStatement statement = buildStatement();
+        
+        final Credential badCred = AlgorithmSupport.generateSymmetricKeyAndCredential(encURI);
+        prc.getInboundMessageContext().getSubcontext(
+                SecurityParametersContext.class).getDecryptionParameters().setDataKeyInfoCredentialResolver(
+                        new StaticKeyInfoCredentialResolver(badCred));
+        
+        action.setDecryptionExecutor(executor);
+        action.initialize();
+        
+        action.execute(prc);
+        ActionTestingSupport.assertEvent(prc, SAMLEventIds.DECRYPT_ATTRIBUTE_FAILED);
+        Assert.assertEquals(statement.getEncryptedAttributes().size(), ATTRIBUTE_COUNT);
+        Assert.assertTrue(statement.getAttributes().isEmpty());
+        
+        action = new DecryptAttributes();
+        action.setErrorFatal(false);
+        action.setDecryptionExecutor(executor);
+        action.initialize();
+        
+        action.execute(prc);
+        ActionTestingSupport.assertProceedEvent(prc);
+        Assert.assertEquals(statement.getEncryptedAttributes().size(), ATTRIBUTE_COUNT);
+        Assert.assertTrue(statement.getAttributes().isEmpty());
+    }
+    
+    /**
+     * Build an assertion containing an attribute statement with several encrypted attributes, marshall it, and
+     * install it as the inbound message.
+     * 
+     * @return the attribute statement
+     * 
+     * @throws Exception if something goes wrong
+     */
+    private AttributeStatement buildStatement() throws Exception {
+        final Assertion assertion = SAML2ActionTestingSupport.buildAssertion();
+        final AttributeStatement statement = SAML2ActionTestingSupport.buildAttributeStatement();
+        assertion.getAttributeStatements().add(statement);
+        for (int i = 0; i < ATTRIBUTE_COUNT; i++) {
+            final Attribute attribute = attributeBuilder.buildObject();
+            attribute.setName("attribute" + i);
+            statement.getEncryptedAttributes().add(encrypter.encrypt(attribute));
+        }
+        XMLObjectSupport.marshall(assertion);
+        prc.getInboundMessageContext().setMessage(assertion);
+        return statement;
+    }
+    
+    /**
+     * Check that all of the attributes in a statement were decrypted, in order.
+     * 
+     * @param statement the attribute statement
+     */
+    private void assertDecrypted(final AttributeStatement statement) {
+        Assert.assertTrue(statement.getEncryptedAttributes().isEmpty());
+        Assert.assertEquals(statement.getAttributes().size(), ATTRIBUTE_COUNT);
+        for (int i = 0; i < ATTRIBUTE_COUNT; i++) {
+            Assert.assertEquals(statement.getAttributes().get(i).getName(), "attribute" + i);
+        }
+    }
+    
+}
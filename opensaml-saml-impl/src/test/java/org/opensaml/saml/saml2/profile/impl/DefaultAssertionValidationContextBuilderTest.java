@@ -0,0 +1,157 @@
+/*
+ * Licensed to the University Corporation for Advanced Internet Development,
+ * Inc. (UCAID) under one or more contributor license agreements.  See the
+ * NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The UCAID licenses this file to You under the Apache
+ * License, Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opensaml.saml.saml2.profile.impl;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.opensaml.core.OpenSAMLInitBaseTestCase;
+import org.opensaml.core.xml.util.XMLObjectSupport;
+import org.opensaml.profile.RequestContextBuilder;
+import org.opensaml.profile.context.ProfileRequestContext;
+import org.opensaml.saml.common.assertion.ValidationContext;
+import org.opensaml.saml.common.messaging.context.SAMLMetadataContext;
+import org.opensaml.saml.common.messaging.context.SAMLPeerEntityContext;
+import org.opensaml.saml.common.messaging.context.SAMLSelfEntityContext;
+import org.opensaml.saml.saml2.assertion.SAML2AssertionValidationParameters;
+import org.opensaml.saml.saml2.metadata.IDPSSODescriptor;
+import org.opensaml.saml.saml2.metadata.RoleDescriptor;
+import org.opensaml.saml.saml2.profile.SAML2ActionTestingSupport;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.testng.Assert;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ * Tests for {@link DefaultAssertionValidationContextBuilder}, focusing on the caching of relying party parameters.
+ */
+public class DefaultAssertionValidationContextBuilderTest extends OpenSAMLInitBaseTestCase {
+
+    private static final String SELF = "https://sp.example.org";
+
+    private DefaultAssertionValidationContextBuilder builder;
+
+    private AtomicInteger evaluations;
+
+    @BeforeMethod
+    public void setUp() {
+        evaluations = new AtomicInteger();
+
+        builder = new DefaultAssertionValidationContextBuilder();
+        builder.setTemplateCacheKeyStrategy(DefaultAssertionValidationContextBuilderTest::getPeer);
+        builder.setAdditionalAudiences(prc -> {
+            evaluations.incrementAndGet();
+            return Collections.singleton("urn:audience:" + getPeer(prc));
+        });
+    }
+
+    @Test
+    public void testCacheHit() {
+        final RoleDescriptor role = buildRoleDescriptor();
+
+        final Set<String> first = getAudiences(builder.apply(buildInput("https://idp1.example.org", role)));
+        final Set<String> second = getAudiences(builder.apply(buildInput("https://idp1.example.org", role)));
+
+        Assert.assertEquals(evaluations.get(), 1);
+        Assert.assertEquals(second, first);
+        Assert.assertTrue(first.contains(SELF));
+        Assert.assertTrue(first.contains("urn:audience:https://idp1.example.org"));
+    }
+
+    @Test
+    public void testRoleDescriptorChange() {
+        builder.apply(buildInput("https://idp1.example.org", buildRoleDescriptor()));
+        builder.apply(buildInput("https://idp1.example.org", buildRoleDescriptor()));
+
+        Assert.assertEquals(evaluations.get(), 2, "Parameters were not recomputed for a new role descriptor");
+    }
+
+    @Test
+    public void testDifferentKeys() {
+        final RoleDescriptor role = buildRoleDescriptor();
+
+        final Set<String> first = getAudiences(builder.apply(buildInput("https://idp1.example.org", role)));
+        final Set<String> second = getAudiences(builder.apply(buildInput("https://idp2.example.org", role)));
+
+        Assert.assertEquals(evaluations.get(), 2);
+        Assert.assertTrue(first.contains("urn:audience:https://idp1.example.org"));
+        Assert.assertFalse(first.contains("urn:audience:https://idp2.example.org"));
+        Assert.assertTrue(second.contains("urn:audience:https://idp2.example.org"));
+        Assert.assertFalse(second.contains("urn:audience:https://idp1.example.org"));
+    }
+
+    @Test
+    public void testCacheSizeEviction() {
+        final RoleDescriptor role = buildRoleDescriptor();
+        builder.setTemplateCacheSize(1);
+
+        builder.apply(buildInput("https://idp1.example.org", role));
+        builder.apply(buildInput("https://idp2.example.org", role));
+        builder.apply(buildInput("https://idp2.example.org", role));
+        Assert.assertEquals(evaluations.get(), 2);
+
+        builder.apply(buildInput("https://idp1.example.org", role));
+        Assert.assertEquals(evaluations.get(), 3, "Evicted entry was not recomputed");
+    }
+
+    @Test
+    public void testNoCaching() {
+        final RoleDescriptor role = buildRoleDescriptor();
+        builder.setTemplateCacheKeyStrategy(null);
+
+        builder.apply(buildInput("https://idp1.example.org", role));
+        builder.apply(buildInput("https://idp1.example.org", role));
+
+        Assert.assertEquals(evaluations.get(), 2);
+    }
+
+    // Helpers
+
+    private static String getPeer(final ProfileRequestContext prc) {
+        final SAMLPeerEntityContext peer =
+                prc.getInboundMessageContext().getSubcontext(SAMLPeerEntityContext.class);
+        return peer != null ? peer.getEntityId() : null;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Set<String> getAudiences(final ValidationContext context) {
+        return (Set<String>) context.getStaticParameters().get(
+                SAML2AssertionValidationParameters.COND_VALID_AUDIENCES);
+    }
+
+    private RoleDescriptor buildRoleDescriptor() {
+        return (RoleDescriptor) XMLObjectSupport.buildXMLObject(IDPSSODescriptor.DEFAULT_ELEMENT_NAME);
+    }
+
+    private ValidateAssertions.AssertionValidationInput buildInput(final String peerEntityID,
+            final RoleDescriptor role) {
+        final ProfileRequestContext prc = new RequestContextBuilder()
+                .setInboundMessage(SAML2ActionTestingSupport.buildResponse())
+                .buildProfileRequestContext();
+        prc.getInboundMessageContext().getSubcontext(SAMLSelfEntityContext.class, true).setEntityId(SELF);
+        final SAMLPeerEntityContext peer = prc.getInboundMessageContext().getSubcontext(
+                SAMLPeerEntityContext.class, true);
+        peer.setEntityId(peerEntityID);
+        peer.getSubcontext(SAMLMetadataContext.class, true).setRoleDescriptor(role);
+
+        return new ValidateAssertions().new AssertionValidationInput(prc, new MockHttpServletRequest(),
+                SAML2ActionTestingSupport.buildAssertion());
+    }
+
+}
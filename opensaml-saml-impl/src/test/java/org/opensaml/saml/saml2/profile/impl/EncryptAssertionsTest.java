@@ -19,8 +19,11 @@ package org.opensaml.saml.saml2.profile.impl;
 
 import java.security.NoSuchAlgorithmException;
 import java.security.NoSuchProviderException;
+import java.util.Collections;
 
 import net.shibboleth.utilities.java.support.component.ComponentInitializationException;
+import net.shibboleth.utilities.java.support.resolver.CriteriaSet;
+import net.shibboleth.utilities.java.support.resolver.ResolverException;
 
 import org.opensaml.core.OpenSAMLInitBaseTestCase;
 import org.opensaml.core.xml.io.MarshallingException;
@@ -30,12 +33,19 @@ import org.opensaml.profile.action.EventIds;
 import org.opensaml.profile.context.ProfileRequestContext;
 import org.opensaml.saml.saml2.core.EncryptedAssertion;
 import org.opensaml.saml.saml2.core.Response;
+import org.opensaml.saml.saml2.encryption.EncryptedKeyCache;
 import org.opensaml.saml.saml2.profile.SAML2ActionTestingSupport;
 import org.opensaml.saml.saml2.profile.context.EncryptionContext;
+import org.opensaml.security.credential.Credential;
 import org.opensaml.xmlsec.EncryptionParameters;
 import org.opensaml.xmlsec.algorithm.AlgorithmSupport;
+import org.opensaml.xmlsec.config.impl.DefaultSecurityConfigurationBootstrap;
+import org.opensaml.xmlsec.criterion.EncryptionConfigurationCriterion;
+import org.opensaml.xmlsec.encryption.EncryptedKey;
 import org.opensaml.xmlsec.encryption.support.EncryptionConstants;
 import org.opensaml.xmlsec.encryption.support.EncryptionException;
+import org.opensaml.xmlsec.impl.BasicEncryptionConfiguration;
+import org.opensaml.xmlsec.impl.BasicEncryptionParametersResolver;
 import org.opensaml.xmlsec.keyinfo.impl.BasicKeyInfoGeneratorFactory;
 import org.testng.Assert;
 import org.testng.annotations.BeforeMethod;
@@ -110,6 +120,32 @@ public class EncryptAssertionsTest extends OpenSAMLInitBaseTestCase {
                 "EncryptedData ID attribute was empty");
     }
     
+    @Test
+    public void testEncryptedKeyCache() throws NoSuchAlgorithmException, NoSuchProviderException,
+            ResolverException, ComponentInitializationException {
+        final Credential credential = AlgorithmSupport.generateKeyPairAndCredential(
+                EncryptionConstants.ALGO_ID_KEYTRANSPORT_RSAOAEP, 1024, false);
+        final EncryptedKeyCache cache = new EncryptedKeyCache("test");
+        action.setEncryptedKeyCache(cache);
+        action.initialize();
+        
+        final EncryptedAssertion first = encryptWithDefaultConfiguration(credential);
+        final EncryptedAssertion second = encryptWithDefaultConfiguration(credential);
+        
+        Assert.assertEquals(cache.getMissCount(), 1);
+        Assert.assertEquals(cache.getHitCount(), 1);
+        
+        final EncryptedKey firstKey = first.getEncryptedData().getKeyInfo().getEncryptedKeys().get(0);
+        final EncryptedKey secondKey = second.getEncryptedData().getKeyInfo().getEncryptedKeys().get(0);
+        Assert.assertEquals(secondKey.getCipherData().getCipherValue().getValue(),
+                firstKey.getCipherData().getCipherValue().getValue());
+        Assert.assertNotNull(secondKey.getKeyInfo(), "EncryptedKey KeyInfo");
+        Assert.assertEquals(secondKey.getKeyInfo().getKeyValues().size(),
+                firstKey.getKeyInfo().getKeyValues().size());
+        
+        action.destroy();
+    }
+    
     @Test
     public void testFailure() throws EncryptionException, ComponentInitializationException, MarshallingException {
         final Response response = SAML2ActionTestingSupport.buildResponse();
@@ -127,4 +163,34 @@ public class EncryptAssertionsTest extends OpenSAMLInitBaseTestCase {
         Assert.assertEquals(response.getEncryptedAssertions().size(), 0);
     }
     
+    /**
+     * Encrypt an assertion in a new message, using parameters resolved from the default encryption configuration.
+     * 
+     * @param credential the key transport credential
+     * 
+     * @return the encrypted assertion
+     * 
+     * @throws ResolverException if the parameters cannot be resolved
+     */
+    private EncryptedAssertion encryptWithDefaultConfiguration(final Credential credential)
+            throws ResolverException {
+        final BasicEncryptionConfiguration peerConfig = new BasicEncryptionConfiguration();
+        peerConfig.setKeyTransportEncryptionCredentials(Collections.singletonList(credential));
+        final EncryptionParameters params = new BasicEncryptionParametersResolver().resolveSingle(
+                new CriteriaSet(new EncryptionConfigurationCriterion(peerConfig,
+                        DefaultSecurityConfigurationBootstrap.buildDefaultEncryptionConfiguration())));
+        Assert.assertNotNull(params.getKeyTransportKeyInfoGenerator(), "Key transport KeyInfo generator");
+        
+        final Response response = SAML2ActionTestingSupport.buildResponse();
+        response.getAssertions().add(SAML2ActionTestingSupport.buildAssertion());
+        prc = new RequestContextBuilder().buildProfileRequestContext();
+        prc.getOutboundMessageContext().setMessage(response);
+        prc.getOutboundMessageContext().getSubcontext(EncryptionContext.class, true).setAssertionEncryptionParameters(params);
+        
+        action.execute(prc);
+        ActionTestingSupport.assertProceedEvent(prc);
+        Assert.assertEquals(response.getEncryptedAssertions().size(), 1);
+        return response.getEncryptedAssertions().get(0);
+    }
+    
 }
\ No newline at end of file
@@ -21,12 +21,17 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import org.opensaml.core.OpenSAMLInitBaseTestCase;
+import org.opensaml.core.xml.io.MarshallingException;
+import org.opensaml.core.xml.util.XMLObjectSupport;
 import org.opensaml.profile.RequestContextBuilder;
 import org.opensaml.profile.action.ActionTestingSupport;
 import org.opensaml.profile.context.ProfileRequestContext;
 import org.opensaml.saml.common.assertion.AssertionValidationException;
+import org.opensaml.saml.common.assertion.ValidationContext;
 import org.opensaml.saml.common.assertion.ValidationProcessingData;
 import org.opensaml.saml.common.assertion.ValidationResult;
 import org.opensaml.saml.common.profile.SAMLEventIds;
@@ -265,6 +270,116 @@ public class ValidateAssertionsTest extends OpenSAMLInitBaseTestCase {
         checkObjectMetadataEmpty(samlResponse.getAssertions().get(2));
     }
     
+    @Test
+    public void testMultipleMixedConcurrent() throws ComponentInitializationException, MarshallingException {
+        samlResponse.getAssertions().add(SAML2ActionTestingSupport.buildAssertion());
+        samlResponse.getAssertions().add(SAML2ActionTestingSupport.buildAssertion());
+        marshallAssertions();
+        
+        resultsMap.put(samlResponse.getAssertions().get(0), ValidationResult.VALID);
+        resultsMap.put(samlResponse.getAssertions().get(1), ValidationResult.INVALID);
+        resultsMap.put(samlResponse.getAssertions().get(2), ValidationResult.VALID);
+        
+        final ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            action.setValidationExecutor(executor);
+            action.initialize();
+            
+            action.execute(prc);
+        } finally {
+            executor.shutdown();
+        }
+        ActionTestingSupport.assertEvent(prc, SAMLEventIds.ASSERTION_INVALID);
+        checkObjectMetadata(samlResponse.getAssertions().get(0), ValidationResult.VALID);
+        checkObjectMetadata(samlResponse.getAssertions().get(1), ValidationResult.INVALID);
+        checkObjectMetadata(samlResponse.getAssertions().get(2), ValidationResult.VALID);
+    }
+    
+    @Test
+    public void testValidationThrowsMultipleConcurrent() throws ComponentInitializationException, MarshallingException {
+        samlResponse.getAssertions().add(SAML2ActionTestingSupport.buildAssertion());
+        samlResponse.getAssertions().add(SAML2ActionTestingSupport.buildAssertion());
+        marshallAssertions();
+        
+        resultsMap.put(samlResponse.getAssertions().get(0), ValidationResult.VALID);
+        resultsMap.put(samlResponse.getAssertions().get(1), new AssertionValidationException());
+        resultsMap.put(samlResponse.getAssertions().get(2), ValidationResult.VALID);
+        
+        final ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            action.setValidationExecutor(executor);
+            action.initialize();
+            
+            action.execute(prc);
+        } finally {
+            executor.shutdown();
+        }
+        ActionTestingSupport.assertEvent(prc, SAMLEventIds.UNABLE_VALIDATE_ASSERTION);
+        checkObjectMetadata(samlResponse.getAssertions().get(0), ValidationResult.VALID);
+        checkObjectMetadataEmpty(samlResponse.getAssertions().get(1));
+        checkObjectMetadataEmpty(samlResponse.getAssertions().get(2));
+    }
+    
+    @Test
+    public void testValidatorLookupFailsConcurrent() throws ComponentInitializationException, MarshallingException {
+        samlResponse.getAssertions().add(SAML2ActionTestingSupport.buildAssertion());
+        samlResponse.getAssertions().add(SAML2ActionTestingSupport.buildAssertion());
+        marshallAssertions();
+        
+        final Assertion last = samlResponse.getAssertions().get(2);
+        resultsMap.put(samlResponse.getAssertions().get(0), ValidationResult.VALID);
+        resultsMap.put(samlResponse.getAssertions().get(1), ValidationResult.VALID);
+        
+        final ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            action.setAssertionValidator(null);
+            action.setAssertionValidatorLookup(
+                    input -> input.getSecond() == last ? null : new MockAssertionValidator(resultsMap));
+            action.setValidationExecutor(executor);
+            action.initialize();
+            
+            action.execute(prc);
+        } finally {
+            executor.shutdown();
+        }
+        ActionTestingSupport.assertEvent(prc, SAMLEventIds.UNABLE_VALIDATE_ASSERTION);
+        checkObjectMetadata(samlResponse.getAssertions().get(0), ValidationResult.VALID);
+        checkObjectMetadata(samlResponse.getAssertions().get(1), ValidationResult.VALID);
+        checkObjectMetadataEmpty(last);
+    }
+    
+    @Test
+    public void testProcessResultThrowsConcurrent() throws ComponentInitializationException, MarshallingException {
+        samlResponse.getAssertions().add(SAML2ActionTestingSupport.buildAssertion());
+        marshallAssertions();
+        
+        resultsMap.put(samlResponse.getAssertions().get(0), ValidationResult.VALID);
+        resultsMap.put(samlResponse.getAssertions().get(1), ValidationResult.VALID);
+        
+        action = new ValidateAssertions() {
+            protected void processResult(final ValidationContext validationContext,
+                    final ValidationResult validationResult, final Assertion assertion,
+                    final ProfileRequestContext profileContext) {
+                throw new IllegalStateException();
+            }
+        };
+        action.setHttpServletRequest(httpRequest);
+        action.setHttpServletResponse(httpResponse);
+        action.setValidationContextBuilder(new MockAssertionValidationContextBuilder());
+        action.setAssertionValidator(new MockAssertionValidator(resultsMap));
+        
+        final ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            action.setValidationExecutor(executor);
+            action.initialize();
+            
+            action.execute(prc);
+        } finally {
+            executor.shutdown();
+        }
+        ActionTestingSupport.assertEvent(prc, SAMLEventIds.UNABLE_VALIDATE_ASSERTION);
+    }
+    
     @Test
     public void testUnableToBuildValidationContext() throws ComponentInitializationException {
         resultsMap.put(samlResponse.getAssertions().get(0), ValidationResult.VALID);
@@ -319,6 +434,13 @@ public class ValidateAssertionsTest extends OpenSAMLInitBaseTestCase {
         Assert.assertNotNull(data.getContext());
     }
 
+    /** Give each assertion its own DOM document, as happens when they are individually decrypted. */
+    private void marshallAssertions() throws MarshallingException {
+        for (final Assertion assertion : samlResponse.getAssertions()) {
+            XMLObjectSupport.marshall(assertion);
+        }
+    }
+
     public void checkObjectMetadataEmpty(Assertion assertion) {
         Assert.assertTrue(assertion.getObjectMetadata().get(ValidationProcessingData.class).isEmpty());
     }
@@ -0,0 +1,233 @@
+/*
+ * Licensed to the University Corporation for Advanced Internet Development,
+ * Inc. (UCAID) under one or more contributor license agreements.  See the
+ * NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The UCAID licenses this file to You under the Apache
+ * License, Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opensaml.security.x509;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.cert.X509Certificate;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+
+import net.shibboleth.utilities.java.support.logic.Constraint;
+
+/**
+ * A bounded cache of decoded X.509 certificates, keyed by a digest of their encoded form.
+ *
+ * <p>
+ * Inbound messages and metadata carry the same small set of partner certificates over and over again, and each
+ * occurrence would otherwise be run through a {@link java.security.cert.CertificateFactory}. This cache lets
+ * {@link X509Support#decodeCertificate(byte[])}, and everything built on it such as the inline KeyInfo credential
+ * providers, intern the parsed certificate instead. Because {@link X509Certificate} instances are immutable, and
+ * the platform implementation caches the {@link java.security.PublicKey} it decodes, sharing the certificate also
+ * shares its public key.
+ * </p>
+ *
+ * <p>
+ * The cache holds at most a fixed number of entries and evicts the least recently used one when full. A cache with a
+ * maximum size of 0 stores nothing. Hit and miss counts are maintained for monitoring.
+ * </p>
+ */
+@ThreadSafe
+public class X509CertificateCache {
+
+    /** Default maximum number of certificates held by the cache. */
+    public static final int DEFAULT_MAX_SIZE = 500;
+
+    /** Digest algorithm used to compute cache keys. */
+    @Nonnull private static final String DIGEST_ALGORITHM = "SHA-256";
+
+    /** Shared instance used by {@link X509Support}. */
+    @Nonnull private static volatile X509CertificateCache defaultInstance = new X509CertificateCache(DEFAULT_MAX_SIZE);
+
+    /** Maximum number of entries. */
+    private final int maxSize;
+
+    /** Cached certificates, in access order. Guarded by itself. */
+    @Nonnull private final Map<ByteBuffer, X509Certificate> cache;
+
+    /** Number of lookups satisfied from the cache. */
+    @Nonnull private final LongAdder hits;
+
+    /** Number of lookups not satisfied from the cache. */
+    @Nonnull private final LongAdder misses;
+
+    /**
+     * Constructor.
+     *
+     * @param size maximum number of certificates to hold
+     */
+    public X509CertificateCache(final int size) {
+        Constraint.isGreaterThanOrEqual(0, size, "Maximum size cannot be negative");
+        maxSize = size;
+        cache = new LinkedHashMap<ByteBuffer, X509Certificate>(16, 0.75f, true) {
+            private static final long serialVersionUID = -4018364591416720475L;
+
+            protected boolean removeEldestEntry(final Map.Entry<ByteBuffer, X509Certificate> eldest) {
+                return size() > maxSize;
+            }
+        };
+        hits = new LongAdder();
+        misses = new LongAdder();
+    }
+
+    /**
+     * Get the shared cache instance.
+     *
+     * @return the shared cache
+     */
+    @Nonnull public static X509CertificateCache getDefaultInstance() {
+        return defaultInstance;
+    }
+
+    /**
+     * Replace the shared cache instance.
+     *
+     * <p>
+     * Supplying a cache with a maximum size of 0 disables caching by {@link X509Support}.
+     * </p>
+     *
+     * @param cache the new shared cache
+     */
+    public static void setDefaultInstance(@Nonnull final X509CertificateCache cache) {
+        defaultInstance = Constraint.isNotNull(cache, "Cache cannot be null");
+    }
+
+    /**
+     * Get the maximum number of certificates held by the cache.
+     *
+     * @return the maximum size
+     */
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Get whether the cache stores anything.
+     *
+     * @return true iff the maximum size is greater than 0
+     */
+    public boolean isEnabled() {
+        return maxSize > 0;
+    }
+
+    /**
+     * Compute the cache key for an encoded certificate.
+     *
+     * @param encoded the encoded certificate
+     *
+     * @return the cache key
+     */
+    @Nonnull public ByteBuffer computeKey(@Nonnull final byte[] encoded) {
+        Constraint.isNotNull(encoded, "Encoded certificate cannot be null");
+        try {
+            return ByteBuffer.wrap(MessageDigest.getInstance(DIGEST_ALGORITHM).digest(encoded)).asReadOnlyBuffer();
+        } catch (final NoSuchAlgorithmException e) {
+            // SHA-256 support is mandatory for every Java platform.
+            throw new IllegalStateException("Digest algorithm " + DIGEST_ALGORITHM + " is not available", e);
+        }
+    }
+
+    /**
+     * Get the certificate cached under the given key.
+     *
+     * @param key the cache key
+     *
+     * @return the cached certificate, or null
+     */
+    @Nullable public X509Certificate get(@Nonnull final ByteBuffer key) {
+        final X509Certificate cert;
+        synchronized (cache) {
+            cert = cache.get(key);
+        }
+        if (cert != null) {
+            hits.increment();
+        } else {
+            misses.increment();
+        }
+        return cert;
+    }
+
+    /**
+     * Cache a certificate under the given key, unless one is already present.
+     *
+     * @param key the cache key
+     * @param cert the certificate decoded from the data from which the key was computed
+     *
+     * @return the certificate now cached under the key, which callers should use in preference to the one supplied
+     */
+    @Nonnull public X509Certificate put(@Nonnull final ByteBuffer key, @Nonnull final X509Certificate cert) {
+        Constraint.isNotNull(key, "Key cannot be null");
+        Constraint.isNotNull(cert, "Certificate cannot be null");
+        if (maxSize == 0) {
+            return cert;
+        }
+        synchronized (cache) {
+            final X509Certificate existing = cache.putIfAbsent(key, cert);
+            return existing != null ? existing : cert;
+        }
+    }
+
+    /**
+     * Remove all entries from the cache.
+     *
+     * <p>
+     * The hit and miss counts are not reset.
+     * </p>
+     */
+    public void clear() {
+        synchronized (cache) {
+            cache.clear();
+        }
+    }
+
+    /**
+     * Get the number of certificates currently cached.
+     *
+     * @return the number of entries
+     */
+    public int getSize() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+
+    /**
+     * Get the number of lookups satisfied from the cache.
+     *
+     * @return the hit count
+     */
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * Get the number of lookups not satisfied from the cache.
+     *
+     * @return the miss count
+     */
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+}
@@ -23,6 +23,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.net.InetAddress;
 import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
 import java.security.GeneralSecurityException;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
@@ -383,6 +384,11 @@ public class X509Support {
     /**
      * Decodes a single X.509 certificate in DER or PEM format.
      * 
+     * <p>
+     * Decoded certificates are interned in the shared {@link X509CertificateCache}, so repeated calls with the same
+     * encoded data return the same instance without parsing it again, unless the shared cache is disabled.
+     * </p>
+     * 
      * @param cert encoded cert
      * 
      * @return decoded cert
@@ -390,6 +396,32 @@ public class X509Support {
      * @throws CertificateException thrown if the certificate cannot be decoded
      */
     @Nullable public static X509Certificate decodeCertificate(@Nonnull final byte[] cert) throws CertificateException {
+        final X509CertificateCache cache = X509CertificateCache.getDefaultInstance();
+        if (!cache.isEnabled()) {
+            return decodeUncachedCertificate(cert);
+        }
+        
+        final ByteBuffer key = cache.computeKey(cert);
+        final X509Certificate cached = cache.get(key);
+        if (cached != null) {
+            return cached;
+        }
+        
+        final X509Certificate decoded = decodeUncachedCertificate(cert);
+        return decoded != null ? cache.put(key, decoded) : null;
+    }
+    
+    /**
+     * Decodes a single X.509 certificate in DER or PEM format without consulting the shared cache.
+     * 
+     * @param cert encoded cert
+     * 
+     * @return decoded cert
+     * 
+     * @throws CertificateException thrown if the certificate cannot be decoded
+     */
+    @Nullable private static X509Certificate decodeUncachedCertificate(@Nonnull final byte[] cert)
+            throws CertificateException {
         try {
             return CertUtil.decodeCertificate(cert);
         } catch (final IllegalArgumentException | EncodingException e) {
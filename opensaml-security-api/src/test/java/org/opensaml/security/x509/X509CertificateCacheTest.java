@@ -0,0 +1,139 @@
+/*
+ * Licensed to the University Corporation for Advanced Internet Development,
+ * Inc. (UCAID) under one or more contributor license agreements.  See the
+ * NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The UCAID licenses this file to You under the Apache
+ * License, Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opensaml.security.x509;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.cert.X509Certificate;
+
+import org.testng.Assert;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+/**
+ * Unit test for {@link X509CertificateCache}.
+ */
+public class X509CertificateCacheTest {
+
+    private static final String CERT_BASE64 = "MIICvzCCAiigAwIBAgIJALQ1JXkgPO25MA0GCSqGSIb3DQEBBQUAMEoxCzAJBgNV"
+            + "BAYTAkNIMQ8wDQYDVQQIEwZadXJpY2gxFDASBgNVBAoTC2V4YW1wbGUub3JnMRQw"
+            + "EgYDVQQDEwtleGFtcGxlLm9yZzAeFw0wODEyMDQwNzUzNDBaFw0wOTEyMDQwNzUz"
+            + "NDBaMEoxCzAJBgNVBAYTAkNIMQ8wDQYDVQQIEwZadXJpY2gxFDASBgNVBAoTC2V4"
+            + "YW1wbGUub3JnMRQwEgYDVQQDEwtleGFtcGxlLm9yZzCBnzANBgkqhkiG9w0BAQEF"
+            + "AAOBjQAwgYkCgYEAnsMWLbfrRBZYcu/uVd5HQhgwE4olz/wNK9kPmpro7g89Gmrr"
+            + "34/H3BLCJtSSX+yg3iHmJ3Mm4u9RXf9ojxVVCiSFLl5j8X8F55+3qs7KUETZ0tc3"
+            + "/svKHuFe2OvwwQ9L7frTAozAomgH7MkLIWo3u/IWW4dJt31q3STApaXE1wECAwEA"
+            + "AaOBrDCBqTAdBgNVHQ4EFgQU0lf1wYwRJhvGZYL2WpMOykDNdeUwegYDVR0jBHMw"
+            + "cYAU0lf1wYwRJhvGZYL2WpMOykDNdeWhTqRMMEoxCzAJBgNVBAYTAkNIMQ8wDQYD"
+            + "VQQIEwZadXJpY2gxFDASBgNVBAoTC2V4YW1wbGUub3JnMRQwEgYDVQQDEwtleGFt"
+            + "cGxlLm9yZ4IJALQ1JXkgPO25MAwGA1UdEwQFMAMBAf8wDQYJKoZIhvcNAQEFBQAD"
+            + "gYEAlhsuXNm5WMq7mILnbS+Xr+oi/LVezr4Yju+Qdh9AhYwbDaXnsZITHiAmfYhO"
+            + "5nTjstWMAHc6JZs7h8wDvqY92RvLY+Vx78MoJXIwqqLFH4oHm2UKpvsNivrNfD/q"
+            + "WPiKEYrXVVkDXUVA2yKupX1VtCru8kaJ42kAlCN9Bg4wezU=";
+
+    private X509Certificate cert;
+
+    @BeforeClass
+    public void setUp() throws Exception {
+        cert = X509Support.decodeCertificate(CERT_BASE64);
+    }
+
+    @Test
+    public void testHitAndMiss() {
+        final X509CertificateCache cache = new X509CertificateCache(10);
+        final ByteBuffer key = cache.computeKey(bytes("one"));
+
+        Assert.assertNull(cache.get(key));
+        Assert.assertSame(cache.put(key, cert), cert);
+        Assert.assertSame(cache.get(cache.computeKey(bytes("one"))), cert);
+        Assert.assertNull(cache.get(cache.computeKey(bytes("two"))));
+
+        Assert.assertEquals(cache.getHitCount(), 1);
+        Assert.assertEquals(cache.getMissCount(), 2);
+        Assert.assertEquals(cache.getSize(), 1);
+
+        cache.clear();
+        Assert.assertEquals(cache.getSize(), 0);
+        Assert.assertEquals(cache.getHitCount(), 1);
+    }
+
+    @Test
+    public void testInterning() throws Exception {
+        final X509CertificateCache cache = new X509CertificateCache(10);
+        final ByteBuffer key = cache.computeKey(cert.getEncoded());
+        final X509Certificate other = X509Support.decodeCertificates(cert.getEncoded()).iterator().next();
+
+        Assert.assertNotSame(other, cert);
+        Assert.assertSame(cache.put(key, cert), cert);
+        Assert.assertSame(cache.put(key, other), cert);
+    }
+
+    @Test
+    public void testEviction() {
+        final X509CertificateCache cache = new X509CertificateCache(2);
+        final ByteBuffer one = cache.computeKey(bytes("one"));
+        final ByteBuffer two = cache.computeKey(bytes("two"));
+        final ByteBuffer three = cache.computeKey(bytes("three"));
+
+        cache.put(one, cert);
+        cache.put(two, cert);
+        Assert.assertNotNull(cache.get(one));
+        cache.put(three, cert);
+
+        Assert.assertEquals(cache.getSize(), 2);
+        Assert.assertNotNull(cache.get(one));
+        Assert.assertNull(cache.get(two));
+        Assert.assertNotNull(cache.get(three));
+    }
+
+    @Test
+    public void testDisabled() {
+        final X509CertificateCache cache = new X509CertificateCache(0);
+        final ByteBuffer key = cache.computeKey(bytes("one"));
+
+        Assert.assertSame(cache.put(key, cert), cert);
+        Assert.assertNull(cache.get(key));
+        Assert.assertEquals(cache.getSize(), 0);
+    }
+
+    @Test
+    public void testDefaultInstance() throws Exception {
+        final X509CertificateCache original = X509CertificateCache.getDefaultInstance();
+        try {
+            final X509CertificateCache cache = new X509CertificateCache(10);
+            X509CertificateCache.setDefaultInstance(cache);
+            Assert.assertSame(X509Support.decodeCertificate(cert.getEncoded()),
+                    X509Support.decodeCertificate(cert.getEncoded()));
+            Assert.assertEquals(cache.getSize(), 1);
+
+            final X509CertificateCache disabled = new X509CertificateCache(0);
+            Assert.assertFalse(disabled.isEnabled());
+            X509CertificateCache.setDefaultInstance(disabled);
+            Assert.assertNotSame(X509Support.decodeCertificate(cert.getEncoded()),
+                    X509Support.decodeCertificate(cert.getEncoded()));
+            Assert.assertEquals(disabled.getMissCount(), 0);
+        } finally {
+            X509CertificateCache.setDefaultInstance(original);
+        }
+    }
+
+    private byte[] bytes(final String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+}
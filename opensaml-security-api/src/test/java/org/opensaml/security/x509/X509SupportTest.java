@@ -573,6 +573,23 @@ public class X509SupportTest {
         Assert.assertNotNull(cert);
     }
 
+    /**
+     * Test that repeated decoding of the same cert returns the cached instance.
+     * 
+     * @throws Exception if something goes wrong
+     */
+    @Test
+    public void testDecodeCertCached() throws Exception {
+        final X509CertificateCache cache = X509CertificateCache.getDefaultInstance();
+        final long hits = cache.getHitCount();
+        
+        final X509Certificate first = X509Support.decodeCertificate(entityCertBase64);
+        final X509Certificate second = X509Support.decodeCertificate(entityCert.getEncoded());
+        Assert.assertSame(first, entityCert);
+        Assert.assertSame(second, entityCert);
+        Assert.assertTrue(cache.getHitCount() >= hits + 2);
+    }
+
     /**
      * Test decoding a PEM encoded CRL.
      * 
@@ -0,0 +1,58 @@
+/*
+ * Licensed to the University Corporation for Advanced Internet Development,
+ * Inc. (UCAID) under one or more contributor license agreements.  See the
+ * NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The UCAID licenses this file to You under the Apache
+ * License, Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opensaml.security.config.impl;
+
+import java.util.Properties;
+
+import net.shibboleth.utilities.java.support.logic.ConstraintViolationException;
+
+import org.opensaml.core.config.ConfigurationService;
+import org.opensaml.core.config.InitializationException;
+import org.opensaml.core.config.Initializer;
+import org.opensaml.security.x509.X509CertificateCache;
+
+/**
+ * An initializer which sizes the shared {@link X509CertificateCache}.
+ *
+ * <p>
+ * The configuration property <code>opensaml.config.security.x509CertificateCacheSize</code> sets the maximum number
+ * of certificates held, and a value of <code>0</code> disables the cache. If the property is absent the default size
+ * of {@value X509CertificateCache#DEFAULT_MAX_SIZE} is retained.
+ * </p>
+ */
+public class X509CertificateCacheInitializer implements Initializer {
+
+    /** Configuration property holding the maximum size of the shared cache. */
+    public static final String CONFIG_PROPERTY_CACHE_SIZE = "opensaml.config.security.x509CertificateCacheSize";
+
+    /** {@inheritDoc} */
+    public void init() throws InitializationException {
+        final Properties props = ConfigurationService.getConfigurationProperties();
+        final String size = props != null ? props.getProperty(CONFIG_PROPERTY_CACHE_SIZE) : null;
+        if (size == null) {
+            return;
+        }
+
+        try {
+            X509CertificateCache.setDefaultInstance(new X509CertificateCache(Integer.parseInt(size.trim())));
+        } catch (final NumberFormatException | ConstraintViolationException e) {
+            throw new InitializationException("Invalid value for " + CONFIG_PROPERTY_CACHE_SIZE + ": " + size, e);
+        }
+    }
+
+}
@@ -0,0 +1,86 @@
+/*
+ * Licensed to the University Corporation for Advanced Internet Development,
+ * Inc. (UCAID) under one or more contributor license agreements.  See the
+ * NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The UCAID licenses this file to You under the Apache
+ * License, Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opensaml.security.config.impl;
+
+import org.opensaml.core.config.InitializationException;
+import org.opensaml.core.config.Initializer;
+import org.opensaml.core.metrics.MetricsSupport;
+import org.opensaml.security.x509.X509CertificateCache;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.RatioGauge;
+
+/**
+ * An initializer which registers gauges reporting on the shared {@link X509CertificateCache}.
+ *
+ * <p>
+ * The gauges report on whichever instance is current when they are read, so remain valid if the shared instance is
+ * replaced.
+ * </p>
+ */
+public class X509CertificateCacheMetricsInitializer implements Initializer {
+
+    /** Metric name for the gauge of the number of cache hits. */
+    public static final String METRIC_GAUGE_HITS = "gauge.hits";
+
+    /** Metric name for the gauge of the number of cache misses. */
+    public static final String METRIC_GAUGE_MISSES = "gauge.misses";
+
+    /** Metric name for the gauge of the number of cached certificates. */
+    public static final String METRIC_GAUGE_SIZE = "gauge.size";
+
+    /** Metric name for the ratio gauge of hits to lookups. */
+    public static final String METRIC_RATIOGAUGE_HIT_RATIO = "ratioGauge.hitRatio";
+
+    /** {@inheritDoc} */
+    public void init() throws InitializationException {
+        final String baseName = MetricRegistry.name(X509CertificateCache.class);
+
+        MetricsSupport.register(MetricRegistry.name(baseName, METRIC_GAUGE_HITS),
+                new Gauge<Long>() {
+                    public Long getValue() {
+                        return X509CertificateCache.getDefaultInstance().getHitCount();
+                    }},
+                true);
+
+        MetricsSupport.register(MetricRegistry.name(baseName, METRIC_GAUGE_MISSES),
+                new Gauge<Long>() {
+                    public Long getValue() {
+                        return X509CertificateCache.getDefaultInstance().getMissCount();
+                    }},
+                true);
+
+        MetricsSupport.register(MetricRegistry.name(baseName, METRIC_GAUGE_SIZE),
+                new Gauge<Integer>() {
+                    public Integer getValue() {
+                        return X509CertificateCache.getDefaultInstance().getSize();
+                    }},
+                true);
+
+        MetricsSupport.register(MetricRegistry.name(baseName, METRIC_RATIOGAUGE_HIT_RATIO),
+                new RatioGauge() {
+                    protected Ratio getRatio() {
+                        final X509CertificateCache cache = X509CertificateCache.getDefaultInstance();
+                        final long hits = cache.getHitCount();
+                        return Ratio.of(hits, hits + cache.getMissCount());
+                    }},
+                true);
+    }
+
+}
@@ -0,0 +1,524 @@
+/*
+ * Licensed to the University Corporation for Advanced Internet Development,
+ * Inc. (UCAID) under one or more contributor license agreements.  See the
+ * NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The UCAID licenses this file to You under the Apache
+ * License, Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opensaml.storage.impl;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import net.shibboleth.utilities.java.support.annotation.constraint.NonnullAfterInit;
+import net.shibboleth.utilities.java.support.annotation.constraint.NonnullElements;
+import net.shibboleth.utilities.java.support.annotation.constraint.NotEmpty;
+import net.shibboleth.utilities.java.support.annotation.constraint.Positive;
+import net.shibboleth.utilities.java.support.collection.Pair;
+import net.shibboleth.utilities.java.support.component.ComponentInitializationException;
+import net.shibboleth.utilities.java.support.component.ComponentSupport;
+import net.shibboleth.utilities.java.support.logic.Constraint;
+import net.shibboleth.utilities.java.support.primitive.StringSupport;
+
+import org.opensaml.core.metrics.MetricsSupport;
+import org.opensaml.storage.AbstractStorageService;
+import org.opensaml.storage.StorageCapabilities;
+import org.opensaml.storage.StorageRecord;
+import org.opensaml.storage.StorageService;
+import org.opensaml.storage.VersionMismatchException;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.ExponentiallyDecayingReservoir;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Metric;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+
+/**
+ * Implementation of {@link StorageService} that records Metrics instrumentation for the operations of another
+ * {@link StorageService}, to which every operation is delegated.
+ *
+ * <p>A timer is kept for each operation, and optionally for each operation within a configured set of contexts;
+ * contexts are not tracked by default as some are derived from user or session identifiers. Counters record read
+ * hits, read misses and version mismatches, and a histogram records the size of the values read and written.</p>
+ *
+ * <p>The metrics are registered in the registry obtained from {@link MetricsSupport#getMetricRegistry()}, unless
+ * one is set explicitly, under a base name derived from the class name and component ID unless one is set. If no
+ * registry is available when the service is initialized, operations are delegated without instrumentation. The
+ * wrapped service's lifecycle is not managed by this class.</p>
+ */
+public class InstrumentedStorageService extends AbstractStorageService {
+
+    /** Metric name prefix for the timers of each operation. */
+    @Nonnull @NotEmpty public static final String METRIC_TIMER_PREFIX = "timer";
+
+    /** Metric name infix for the timers of tracked contexts. */
+    @Nonnull @NotEmpty public static final String METRIC_CONTEXT_INFIX = "context";
+
+    /** Metric name for the counter of reads returning a record. */
+    @Nonnull @NotEmpty public static final String METRIC_COUNTER_READ_HITS = "counter.readHits";
+
+    /** Metric name for the counter of reads not returning a record. */
+    @Nonnull @NotEmpty public static final String METRIC_COUNTER_READ_MISSES = "counter.readMisses";
+
+    /** Metric name for the counter of version mismatches. */
+    @Nonnull @NotEmpty public static final String METRIC_COUNTER_VERSION_MISMATCHES = "counter.versionMismatches";
+
+    /** Metric name for the histogram of value sizes. */
+    @Nonnull @NotEmpty public static final String METRIC_HISTOGRAM_VALUE_SIZE = "histogram.valueSize";
+
+    /** Instrumented operations. */
+    private enum Operation {
+        /** Record creation. */
+        CREATE("create"),
+
+        /** Record read. */
+        READ("read"),
+
+        /** Record update. */
+        UPDATE("update"),
+
+        /** Record expiration update. */
+        UPDATE_EXPIRATION("updateExpiration"),
+
+        /** Record deletion. */
+        DELETE("delete"),
+
+        /** Context reap. */
+        REAP("reap"),
+
+        /** Context expiration update. */
+        UPDATE_CONTEXT_EXPIRATION("updateContextExpiration"),
+
+        /** Context deletion. */
+        DELETE_CONTEXT("deleteContext");
+
+        /** Name used in metric names. */
+        @Nonnull @NotEmpty private final String metricName;
+
+        /**
+         * Constructor.
+         *
+         * @param name name used in metric names
+         */
+        Operation(@Nonnull @NotEmpty final String name) {
+            metricName = name;
+        }
+    }
+
+    /** Wrapped service. */
+    @Nonnull private final StorageService storageService;
+
+    /** Registry to use in preference to the default. */
+    @Nullable private MetricRegistry metricRegistry;
+
+    /** Base name for Metrics instrumentation names. */
+    @NonnullAfterInit private String metricsBaseName;
+
+    /** Contexts to keep timers for. */
+    @Nonnull @NonnullElements private Set<String> trackedContexts;
+
+    /** Timers for each operation, or null if instrumentation is disabled. */
+    @Nullable private Map<Operation,Timer> operationTimers;
+
+    /** Timers for each operation within tracked contexts. */
+    @Nonnull @NonnullElements private Map<String,Map<Operation,Timer>> contextTimers;
+
+    /** Counter of reads returning a record. */
+    @Nullable private Counter readHits;
+
+    /** Counter of reads not returning a record. */
+    @Nullable private Counter readMisses;
+
+    /** Counter of version mismatches. */
+    @Nullable private Counter versionMismatches;
+
+    /** Histogram of value sizes. */
+    @Nullable private Histogram valueSizes;
+
+    /** Metrics registered by this instance, for removal on destruction. */
+    @Nonnull @NonnullElements private final List<Pair<String,Metric>> registeredMetrics;
+
+    /**
+     * Constructor.
+     *
+     * @param service the service to instrument
+     */
+    public InstrumentedStorageService(@Nonnull final StorageService service) {
+        storageService = Constraint.isNotNull(service, "StorageService cannot be null");
+        trackedContexts = Collections.emptySet();
+        contextTimers = Collections.emptyMap();
+        registeredMetrics = new ArrayList<>();
+    }
+
+    /**
+     * Set the registry in which to register metrics, in place of the one obtained from
+     * {@link MetricsSupport#getMetricRegistry()}.
+     *
+     * @param registry the registry
+     */
+    public void setMetricRegistry(@Nullable final MetricRegistry registry) {
+        ComponentSupport.ifInitializedThrowUnmodifiabledComponentException(this);
+
+        metricRegistry = registry;
+    }
+
+    /**
+     * Get the base name for Metrics instrumentation.
+     *
+     * @return the Metrics base name
+     */
+    @NonnullAfterInit public String getMetricsBaseName() {
+        return metricsBaseName;
+    }
+
+    /**
+     * Set the base name for Metrics instrumentation.
+     *
+     * @param baseName the Metrics base name
+     */
+    public void setMetricsBaseName(@Nullable final String baseName) {
+        ComponentSupport.ifInitializedThrowUnmodifiabledComponentException(this);
+
+        metricsBaseName = StringSupport.trimOrNull(baseName);
+    }
+
+    /**
+     * Set the contexts for which to keep timers of each operation.
+     *
+     * @param contexts the contexts to track
+     */
+    public void setTrackedContexts(@Nonnull @NonnullElements final Collection<String> contexts) {
+        ComponentSupport.ifInitializedThrowUnmodifiabledComponentException(this);
+
+        trackedContexts = Set.copyOf(StringSupport.normalizeStringCollection(
+                Constraint.isNotNull(contexts, "Tracked contexts cannot be null")));
+    }
+
+    /** {@inheritDoc} */
+    @Override @Nonnull public StorageCapabilities getCapabilities() {
+        return storageService.getCapabilities();
+    }
+
+    /** {@inheritDoc} */
+    @Override public int getContextSize() {
+        return storageService.getCapabilities().getContextSize();
+    }
+
+    /** {@inheritDoc} */
+    @Override public int getKeySize() {
+        return storageService.getCapabilities().getKeySize();
+    }
+
+    /** {@inheritDoc} */
+    @Override public long getValueSize() {
+        return storageService.getCapabilities().getValueSize();
+    }
+
+    /** {@inheritDoc} */
+    @Override protected void doInitialize() throws ComponentInitializationException {
+        super.doInitialize();
+
+        if (metricsBaseName == null) {
+            metricsBaseName = MetricRegistry.name(getClass(), getId());
+        }
+        final MetricRegistry registry = metricRegistry != null ? metricRegistry : MetricsSupport.getMetricRegistry();
+        if (registry == null) {
+            return;
+        }
+
+        operationTimers = buildTimers(registry, metricsBaseName);
+        if (!trackedContexts.isEmpty()) {
+            contextTimers = new HashMap<>(trackedContexts.size());
+            for (final String context : trackedContexts) {
+                contextTimers.put(context, buildTimers(registry,
+                        MetricRegistry.name(metricsBaseName, METRIC_CONTEXT_INFIX, context)));
+            }
+        }
+        readHits = register(registry, MetricRegistry.name(metricsBaseName, METRIC_COUNTER_READ_HITS),
+                new Counter());
+        readMisses = register(registry, MetricRegistry.name(metricsBaseName, METRIC_COUNTER_READ_MISSES),
+                new Counter());
+        versionMismatches = register(registry,
+                MetricRegistry.name(metricsBaseName, METRIC_COUNTER_VERSION_MISMATCHES), new Counter());
+        valueSizes = register(registry, MetricRegistry.name(metricsBaseName, METRIC_HISTOGRAM_VALUE_SIZE),
+                new Histogram(new ExponentiallyDecayingReservoir()));
+    }
+
+    /** {@inheritDoc} */
+    @Override protected void doDestroy() {
+        final MetricRegistry registry = metricRegistry != null ? metricRegistry : MetricsSupport.getMetricRegistry();
+        if (registry != null) {
+            for (final Pair<String,Metric> metric : registeredMetrics) {
+                MetricsSupport.remove(metric.getFirst(), metric.getSecond(), registry);
+            }
+        }
+        registeredMetrics.clear();
+        operationTimers = null;
+        contextTimers = Collections.emptyMap();
+        super.doDestroy();
+    }
+
+    /** {@inheritDoc} */
+    @Override public boolean create(@Nonnull @NotEmpty final String context, @Nonnull @NotEmpty final String key,
+            @Nonnull @NotEmpty final String value, @Nullable @Positive final Long expiration) throws IOException {
+        final long start = startTiming();
+        try {
+            recordValueSize(value);
+            return storageService.create(context, key, value, expiration);
+        } finally {
+            stopTiming(Operation.CREATE, context, start);
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override @Nullable public <T> StorageRecord<T> read(@Nonnull @NotEmpty final String context,
+            @Nonnull @NotEmpty final String key) throws IOException {
+        final long start = startTiming();
+        try {
+            final StorageRecord<T> record = storageService.read(context, key);
+            recordRead(record);
+            return record;
+        } finally {
+            stopTiming(Operation.READ, context, start);
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override @Nonnull public <T> Pair<Long,StorageRecord<T>> read(@Nonnull @NotEmpty final String context,
+            @Nonnull @NotEmpty final String key, @Positive final long version) throws IOException {
+        final long start = startTiming();
+        try {
+            final Pair<Long,StorageRecord<T>> result = storageService.read(context, key, version);
+            if (result.getFirst() != null && result.getSecond() == null) {
+                // Unchanged record, so there is no value to measure.
+                if (readHits != null) {
+                    readHits.inc();
+                }
+            } else {
+                recordRead(result.getSecond());
+            }
+            return result;
+        } finally {
+            stopTiming(Operation.READ, context, start);
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override public boolean update(@Nonnull @NotEmpty final String context, @Nonnull @NotEmpty final String key,
+            @Nonnull @NotEmpty final String value, @Nullable @Positive final Long expiration) throws IOException {
+        final long start = startTiming();
+        try {
+            recordValueSize(value);
+            return storageService.update(context, key, value, expiration);
+        } finally {
+            stopTiming(Operation.UPDATE, context, start);
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override @Nullable public Long updateWithVersion(@Positive final long version,
+            @Nonnull @NotEmpty final String context, @Nonnull @NotEmpty final String key,
+            @Nonnull @NotEmpty final String value, @Nullable @Positive final Long expiration)
+                    throws IOException, VersionMismatchException {
+        final long start = startTiming();
+        try {
+            recordValueSize(value);
+            return storageService.updateWithVersion(version, context, key, value, expiration);
+        } catch (final VersionMismatchException e) {
+            recordVersionMismatch();
+            throw e;
+        } finally {
+            stopTiming(Operation.UPDATE, context, start);
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override public boolean updateExpiration(@Nonnull @NotEmpty final String context,
+            @Nonnull @NotEmpty final String key, @Nullable @Positive final Long expiration) throws IOException {
+        final long start = startTiming();
+        try {
+            return storageService.updateExpiration(context, key, expiration);
+        } finally {
+            stopTiming(Operation.UPDATE_EXPIRATION, context, start);
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override public boolean delete(@Nonnull @NotEmpty final String context, @Nonnull @NotEmpty final String key)
+            throws IOException {
+        final long start = startTiming();
+        try {
+            return storageService.delete(context, key);
+        } finally {
+            stopTiming(Operation.DELETE, context, start);
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override public boolean deleteWithVersion(@Positive final long version, @Nonnull @NotEmpty final String context,
+            @Nonnull @NotEmpty final String key) throws IOException, VersionMismatchException {
+        final long start = startTiming();
+        try {
+            return storageService.deleteWithVersion(version, context, key);
+        } catch (final VersionMismatchException e) {
+            recordVersionMismatch();
+            throw e;
+        } finally {
+            stopTiming(Operation.DELETE, context, start);
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override public void reap(@Nonnull @NotEmpty final String context) throws IOException {
+        final long start = startTiming();
+        try {
+            storageService.reap(context);
+        } finally {
+            stopTiming(Operation.REAP, context, start);
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override public void updateContextExpiration(@Nonnull @NotEmpty final String context,
+            @Nullable @Positive final Long expiration) throws IOException {
+        final long start = startTiming();
+        try {
+            storageService.updateContextExpiration(context, expiration);
+        } finally {
+            stopTiming(Operation.UPDATE_CONTEXT_EXPIRATION, context, start);
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override public void deleteContext(@Nonnull @NotEmpty final String context) throws IOException {
+        final long start = startTiming();
+        try {
+            storageService.deleteContext(context);
+        } finally {
+            stopTiming(Operation.DELETE_CONTEXT, context, start);
+        }
+    }
+
+    /**
+     * Build and register a timer for each operation.
+     *
+     * @param registry the registry to use
+     * @param baseName base name for the timers
+     *
+     * @return the timers
+     */
+    @Nonnull @NonnullElements private Map<Operation,Timer> buildTimers(@Nonnull final MetricRegistry registry,
+            @Nonnull @NotEmpty final String baseName) {
+        final Map<Operation,Timer> timers = new EnumMap<>(Operation.class);
+        for (final Operation operation : Operation.values()) {
+            final String name = MetricRegistry.name(baseName, METRIC_TIMER_PREFIX, operation.metricName);
+            timers.put(operation, register(registry, name, new Timer()));
+        }
+        return timers;
+    }
+
+    /**
+     * Register a metric, recording it for removal on destruction.
+     *
+     * @param <T> the type of metric
+     * @param registry the registry to use
+     * @param name the name under which to register the metric
+     * @param metric the metric
+     *
+     * @return the metric
+     */
+    @Nonnull private <T extends Metric> T register(@Nonnull final MetricRegistry registry,
+            @Nonnull @NotEmpty final String name, @Nonnull final T metric) {
+        final T registered = MetricsSupport.register(name, metric, true, registry);
+        registeredMetrics.add(new Pair<>(name, registered));
+        return registered;
+    }
+
+    /**
+     * Get the start time of an operation, if instrumentation is enabled.
+     *
+     * @return the start time in nanoseconds, or 0
+     */
+    private long startTiming() {
+        return operationTimers != null ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Record the duration of an operation.
+     *
+     * @param operation the operation
+     * @param context the context operated on
+     * @param start the value returned by {@link #startTiming()}
+     */
+    private void stopTiming(@Nonnull final Operation operation, @Nonnull final String context, final long start) {
+        final Map<Operation,Timer> timers = operationTimers;
+        if (timers == null) {
+            return;
+        }
+        final long elapsed = System.nanoTime() - start;
+        timers.get(operation).update(elapsed, TimeUnit.NANOSECONDS);
+        final Map<Operation,Timer> forContext = contextTimers.get(context);
+        if (forContext != null) {
+            forContext.get(operation).update(elapsed, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Record the outcome of a read.
+     *
+     * @param record the record read, or null
+     */
+    private void recordRead(@Nullable final StorageRecord<?> record) {
+        if (record != null) {
+            if (readHits != null) {
+                readHits.inc();
+            }
+            recordValueSize(record.getValue());
+        } else if (readMisses != null) {
+            readMisses.inc();
+        }
+    }
+
+    /**
+     * Record the size of a value read or written.
+     *
+     * @param value the value
+     */
+    private void recordValueSize(@Nonnull final String value) {
+        if (valueSizes != null) {
+            valueSizes.update(value.length());
+        }
+    }
+
+    /**
+     * Record a version mismatch.
+     */
+    private void recordVersionMismatch() {
+        if (versionMismatches != null) {
+            versionMismatches.inc();
+        }
+    }
+
+}
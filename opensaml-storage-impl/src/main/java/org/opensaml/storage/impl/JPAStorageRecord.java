@@ -58,7 +58,31 @@ import org.opensaml.storage.MutableStorageRecord;
     @NamedQuery(name = "JPAStorageRecord.deleteByContextAndExpiration",
             query = "DELETE FROM JPAStorageRecord r WHERE r.context = :context AND r.expiration <= :exp"),
     @NamedQuery(name = "JPAStorageRecord.deleteByExpiration",
-            query = "DELETE FROM JPAStorageRecord r WHERE r.expiration <= :exp")})
+            query = "DELETE FROM JPAStorageRecord r WHERE r.expiration <= :exp"),
+    @NamedQuery(name = "JPAStorageRecord.findVersionById",
+            query = "SELECT r.version, r.expiration FROM JPAStorageRecord r "
+                    + "WHERE r.context = :context AND r.key = :key"),
+    @NamedQuery(name = "JPAStorageRecord.findIdsByExpiration",
+            query = "SELECT r.context, r.key FROM JPAStorageRecord r WHERE r.expiration <= :exp"),
+    @NamedQuery(name = "JPAStorageRecord.findIdsByContextAndExpiration",
+            query = "SELECT r.context, r.key FROM JPAStorageRecord r WHERE r.context = :context "
+                    + "AND r.expiration <= :exp"),
+    @NamedQuery(name = "JPAStorageRecord.deleteByIdAndExpiration",
+            query = "DELETE FROM JPAStorageRecord r WHERE r.context = :context AND r.key = :key "
+                    + "AND r.expiration <= :exp"),
+    @NamedQuery(name = "JPAStorageRecord.updateByIdAndVersion",
+            query = "UPDATE JPAStorageRecord r SET r.value = :value, r.expiration = :exp, r.version = :newVersion "
+                    + "WHERE r.context = :context AND r.key = :key AND r.version = :version"),
+    @NamedQuery(name = "JPAStorageRecord.replaceByIdVersionAndExpiration",
+            query = "UPDATE JPAStorageRecord r SET r.value = :value, r.expiration = :exp, r.version = 1 "
+                    + "WHERE r.context = :context AND r.key = :key AND r.version = :version "
+                    + "AND r.expiration = :oldExp"),
+    @NamedQuery(name = "JPAStorageRecord.updateExpirationByIdAndVersion",
+            query = "UPDATE JPAStorageRecord r SET r.expiration = :exp "
+                    + "WHERE r.context = :context AND r.key = :key AND r.version = :version"),
+    @NamedQuery(name = "JPAStorageRecord.deleteByIdAndVersion",
+            query = "DELETE FROM JPAStorageRecord r "
+                    + "WHERE r.context = :context AND r.key = :key AND r.version = :version")})
 @IdClass(JPAStorageRecord.RecordId.class)
 public class JPAStorageRecord<T> extends MutableStorageRecord<T> {
 
@@ -20,9 +20,12 @@ package org.opensaml.storage.impl;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.TimerTask;
+import java.util.concurrent.atomic.LongAdder;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
@@ -51,6 +54,20 @@ import org.slf4j.LoggerFactory;
 
 /**
  * Implementation of {@link org.opensaml.storage.StorageService} that uses JPA to persist to a database.
+ * 
+ * <p>By default, records are locked with {@link LockModeType#PESSIMISTIC_WRITE} while they are created, updated or
+ * deleted, and expired records are removed by a single statement. Under heavy concurrent load, either may lead to lock
+ * waits and deadlocks. If {@link #setOptimisticLocking(boolean)} is enabled, records are instead read without locks
+ * and written with statements conditional on the version read, retrying the operation if another writer got there
+ * first. If {@link #setReapChunkSize(int)} is set, expired records are removed in a series of short transactions,
+ * each deleting a bounded number of records by primary key; an index on the expiration column is advisable.</p>
+ * 
+ * <p>Reads normally take place in a transaction, with a {@link LockModeType#PESSIMISTIC_READ} lock. Disabling
+ * {@link #setTransactionalReads(boolean)} reads records without a lock or explicit transaction. Setting
+ * {@link #setReadCacheSize(int)} keeps recently read records in a local cache; a cached record is only returned after
+ * checking that its version and expiration in the database are unchanged, which avoids fetching the value itself.
+ * Records without an expiration are not cached, since a record that is deleted and created again starts again at
+ * version 1.</p>
  */
 public class JPAStorageService extends AbstractStorageService implements StorageCapabilitiesEx {
 
@@ -63,6 +80,27 @@ public class JPAStorageService extends AbstractStorageService implements Storage
     /** Number of times to retry a transaction if it rolls back. */
     @NonNegative private int transactionRetry;
 
+    /** Whether to write records with version-conditional statements instead of row locks. */
+    private boolean optimisticLocking;
+
+    /** Maximum number of expired records to delete per transaction; 0 deletes them with a single statement. */
+    @NonNegative private int reapChunkSize;
+
+    /** Whether reads take place in a transaction with a read lock. */
+    private boolean transactionalReads;
+
+    /** Maximum number of records in the read cache; 0 disables the cache. */
+    @NonNegative private int readCacheSize;
+
+    /** Cached records, in access order. Guarded by itself. */
+    @Nonnull private final Map<JPAStorageRecord.RecordId, StorageRecord<?>> readCache;
+
+    /** Number of reads satisfied from the read cache. */
+    @Nonnull private final LongAdder readCacheHits;
+
+    /** Number of reads not satisfied from the read cache. */
+    @Nonnull private final LongAdder readCacheMisses;
+
     /**
      * Creates a new JPA storage service.
      * 
@@ -75,6 +113,16 @@ public class JPAStorageService extends AbstractStorageService implements Storage
         setKeySize(JPAStorageRecord.KEY_SIZE);
         setValueSize(Integer.MAX_VALUE);
         setTransactionRetry(3);
+        transactionalReads = true;
+        readCache = new LinkedHashMap<>(16, 0.75f, true) {
+            private static final long serialVersionUID = 5386205378457212375L;
+
+            protected boolean removeEldestEntry(final Map.Entry<JPAStorageRecord.RecordId, StorageRecord<?>> eldest) {
+                return size() > readCacheSize;
+            }
+        };
+        readCacheHits = new LongAdder();
+        readCacheMisses = new LongAdder();
     }
 
     /**
@@ -98,6 +146,106 @@ public class JPAStorageService extends AbstractStorageService implements Storage
                         "Transaction retry must be greater than or equal to zero");
     }
 
+    /**
+     * Returns whether records are written with version-conditional statements instead of row locks.
+     * 
+     * @return whether optimistic locking is used
+     */
+    public boolean isOptimisticLocking() {
+        return optimisticLocking;
+    }
+
+    /**
+     * Sets whether records are written with version-conditional statements instead of row locks (default is false).
+     * 
+     * <p>With optimistic locking, a write that finds the record changed since it was read is retried, up to the
+     * number of transaction retries.</p>
+     * 
+     * @param flag whether to use optimistic locking
+     */
+    public void setOptimisticLocking(final boolean flag) {
+        ComponentSupport.ifInitializedThrowUnmodifiabledComponentException(this);
+        optimisticLocking = flag;
+    }
+
+    /**
+     * Returns the maximum number of expired records deleted per transaction when reaping.
+     * 
+     * @return reap chunk size, or 0 if expired records are deleted with a single statement
+     */
+    public int getReapChunkSize() {
+        return reapChunkSize;
+    }
+
+    /**
+     * Sets the maximum number of expired records deleted per transaction when reaping (default is 0, which deletes
+     * them with a single statement).
+     * 
+     * @param size reap chunk size
+     */
+    public void setReapChunkSize(final int size) {
+        ComponentSupport.ifInitializedThrowUnmodifiabledComponentException(this);
+        reapChunkSize =
+                (int) Constraint.isGreaterThanOrEqual(0, size, "Reap chunk size must be greater than or equal to zero");
+    }
+
+    /**
+     * Returns whether reads take place in a transaction with a read lock.
+     * 
+     * @return whether reads are transactional
+     */
+    public boolean isTransactionalReads() {
+        return transactionalReads;
+    }
+
+    /**
+     * Sets whether reads take place in a transaction with a read lock (default is true).
+     * 
+     * @param flag whether reads are transactional
+     */
+    public void setTransactionalReads(final boolean flag) {
+        ComponentSupport.ifInitializedThrowUnmodifiabledComponentException(this);
+        transactionalReads = flag;
+    }
+
+    /**
+     * Returns the maximum number of records held in the read cache.
+     * 
+     * @return read cache size, or 0 if the cache is disabled
+     */
+    public int getReadCacheSize() {
+        return readCacheSize;
+    }
+
+    /**
+     * Sets the maximum number of records held in the read cache (default is 0, which disables the cache).
+     * 
+     * @param size read cache size
+     */
+    public void setReadCacheSize(final int size) {
+        ComponentSupport.ifInitializedThrowUnmodifiabledComponentException(this);
+        readCacheSize =
+                (int) Constraint.isGreaterThanOrEqual(0, size, "Read cache size must be greater than or equal to zero");
+    }
+
+    /**
+     * Returns the number of reads satisfied from the read cache.
+     * 
+     * @return read cache hit count
+     */
+    public long getReadCacheHitCount() {
+        return readCacheHits.sum();
+    }
+
+    /**
+     * Returns the number of reads not satisfied from the read cache, while it is enabled.
+     * 
+     * @return read cache miss count
+     */
+    public long getReadCacheMissCount() {
+        return readCacheMisses.sum();
+    }
+
     /** {@inheritDoc} */
     public boolean isServerSide() {
         return true;
@@ -120,6 +268,7 @@ public class JPAStorageService extends AbstractStorageService implements Storage
     /** {@inheritDoc} */
     @Override public boolean create(@Nonnull @NotEmpty final String context, @Nonnull @NotEmpty final String key,
             @Nonnull @NotEmpty final String value, @Nullable @Positive final Long expiration) throws IOException {
+        uncacheRecord(context, key);
         EntityManager manager = null;
         try {
             int retry = -1;
@@ -132,7 +281,7 @@ public class JPAStorageService extends AbstractStorageService implements Storage
                     transaction.begin();
                     JPAStorageRecord<?> entity =
                             manager.find(JPAStorageRecord.class, new JPAStorageRecord.RecordId(context, key),
-                                    LockModeType.PESSIMISTIC_WRITE);
+                                    getWriteLockMode());
                     if (entity != null) {
                         // Not yet expired?
                         final Long exp = entity.getExpiration();
@@ -141,6 +290,15 @@ public class JPAStorageService extends AbstractStorageService implements Storage
                             return false;
                         }
 
+                        if (optimisticLocking) {
+                            // Replace the dead record, provided nobody else has since.
+                            executeExpiredReplace(manager, entity, value, expiration);
+                            transaction.commit();
+                            log.debug("Create record '{}' in context '{}' with expiration '{}'", key, context,
+                                    expiration);
+                            return true;
+                        }
+
                         // It's dead, reset the version for merge.
                         entity.resetVersion();
                     } else {
@@ -268,11 +426,11 @@ public class JPAStorageService extends AbstractStorageService implements Storage
         EntityTransaction transaction = null;
         try {
             manager = entityManagerFactory.createEntityManager();
-            transaction = manager.getTransaction();
-            transaction.begin();
-            final JPAStorageRecord<T> entity =
-                    manager.find(JPAStorageRecord.class, new JPAStorageRecord.RecordId(context, key),
-                            LockModeType.PESSIMISTIC_READ);
+            if (transactionalReads) {
+                transaction = manager.getTransaction();
+                transaction.begin();
+            }
+            final StorageRecord<T> entity = findForRead(manager, new JPAStorageRecord.RecordId(context, key));
             if (entity == null) {
                 log.debug("Read failed, key '{}' not found in context '{}'", key, context);
                 return new Pair<>();
@@ -297,6 +455,84 @@ public class JPAStorageService extends AbstractStorageService implements Storage
         }
     }
 
+    /**
+     * Finds the record with the supplied identifier for reading, from the read cache if it is enabled and holds a
+     * current copy of the record.
+     * 
+     * @param <T> type of object
+     * @param manager to read with
+     * @param id of the record
+     * 
+     * @return the record, or null if it does not exist
+     */
+    @Nullable private <T> StorageRecord<T> findForRead(@Nonnull final EntityManager manager,
+            @Nonnull final JPAStorageRecord.RecordId id) {
+        if (readCacheSize > 0) {
+            final StorageRecord<T> cached;
+            synchronized (readCache) {
+                cached = (StorageRecord<T>) readCache.get(id);
+            }
+            if (cached != null) {
+                final Query queryResults = manager.createNamedQuery("JPAStorageRecord.findVersionById");
+                queryResults.setParameter("context", id.getContext());
+                queryResults.setParameter("key", id.getKey());
+                final List<?> results = queryResults.getResultList();
+                if (!results.isEmpty()) {
+                    final Object[] current = (Object[]) results.get(0);
+                    if (((Number) current[0]).longValue() == cached.getVersion()
+                            && Objects.equals(current[1], cached.getExpiration())) {
+                        readCacheHits.increment();
+                        return cached;
+                    }
+                }
+                uncacheRecord(id.getContext(), id.getKey());
+                if (results.isEmpty()) {
+                    readCacheMisses.increment();
+                    return null;
+                }
+            }
+            readCacheMisses.increment();
+        }
+
+        final JPAStorageRecord<T> entity;
+        if (transactionalReads) {
+            entity = manager.find(JPAStorageRecord.class, id, LockModeType.PESSIMISTIC_READ);
+        } else {
+            entity = manager.find(JPAStorageRecord.class, id);
+        }
+        if (entity != null && readCacheSize > 0 && entity.getExpiration() != null) {
+            final StorageRecord<T> copy =
+                    new CachedStorageRecord<>(entity.getValue(), entity.getExpiration(), entity.getVersion());
+            synchronized (readCache) {
+                readCache.put(id, copy);
+            }
+        }
+        return entity;
+    }
+
+    /**
+     * Removes any cached copy of the record with the supplied context and key.
+     * 
+     * @param context of the record
+     * @param key of the record
+     */
+    private void uncacheRecord(@Nonnull final String context, @Nonnull final String key) {
+        if (readCacheSize > 0) {
+            synchronized (readCache) {
+                readCache.remove(new JPAStorageRecord.RecordId(context, key));
+            }
+        }
+    }
+
+    /**
+     * Removes every record from the read cache.
+     */
+    private void clearReadCache() {
+        synchronized (readCache) {
+            readCache.clear();
+        }
+    }
+
     // Checkstyle: CyclomaticComplexity ON
 
     /** {@inheritDoc} */
@@ -345,6 +581,7 @@ public class JPAStorageService extends AbstractStorageService implements Storage
     @Nullable protected Long updateImpl(@Nullable final Long version, @Nonnull @NotEmpty final String context,
             @Nonnull @NotEmpty final String key, @Nonnull @NotEmpty final String value,
             @Nullable @Positive final Long expiration) throws IOException, VersionMismatchException {
+        uncacheRecord(context, key);
         EntityManager manager = null;
         try {
             int retry = -1;
@@ -357,7 +594,7 @@ public class JPAStorageService extends AbstractStorageService implements Storage
                     transaction.begin();
                     final JPAStorageRecord<?> entity =
                             manager.find(JPAStorageRecord.class, new JPAStorageRecord.RecordId(context, key),
-                                    LockModeType.PESSIMISTIC_WRITE);
+                                    getWriteLockMode());
                     if (entity == null) {
                         log.debug("Update failed, key '{}' not found in context '{}'", key, context);
                         return null;
@@ -374,6 +611,15 @@ public class JPAStorageService extends AbstractStorageService implements Storage
                         throw new VersionMismatchException();
                     }
 
+                    if (optimisticLocking) {
+                        final long newVersion = value != null ? entity.getVersion() + 1 : entity.getVersion();
+                        executeVersionedUpdate(manager, entity, value, newVersion, expiration);
+                        transaction.commit();
+                        log.debug("Update record '{}' in context '{}' with expiration '{}'", key, context,
+                                expiration);
+                        return newVersion;
+                    }
+
                     if (value != null) {
                         entity.setValue(value);
                         entity.incrementVersion();
@@ -437,6 +683,7 @@ public class JPAStorageService extends AbstractStorageService implements Storage
      */
     protected boolean deleteImpl(@Nullable @Positive final Long version, @Nonnull @NotEmpty final String context,
             @Nonnull @NotEmpty final String key) throws IOException, VersionMismatchException {
+        uncacheRecord(context, key);
         EntityManager manager = null;
         try {
             int retry = -1;
@@ -449,12 +696,24 @@ public class JPAStorageService extends AbstractStorageService implements Storage
                     transaction.begin();
                     final JPAStorageRecord<?> entity =
                             manager.find(JPAStorageRecord.class, new JPAStorageRecord.RecordId(context, key),
-                                    LockModeType.PESSIMISTIC_WRITE);
+                                    getWriteLockMode());
                     if (entity == null) {
                         log.debug("Deleting record '{}' in context '{}'....key not found", key, context);
                         return false;
                     } else if (version != null && entity.getVersion() != version) {
                         throw new VersionMismatchException();
+                    } else if (optimisticLocking) {
+                        final Query queryResults = manager.createNamedQuery("JPAStorageRecord.deleteByIdAndVersion");
+                        queryResults.setParameter("context", context);
+                        queryResults.setParameter("key", key);
+                        queryResults.setParameter("version", entity.getVersion());
+                        if (queryResults.executeUpdate() == 0) {
+                            throw new RollbackException("Record '" + key + "' in context '" + context
+                                    + "' was modified concurrently");
+                        }
+                        transaction.commit();
+                        log.debug("Deleted record '{}' in context '{}'", key, context);
+                        return true;
                     } else {
                         manager.remove(entity);
                         transaction.commit();
@@ -487,6 +746,7 @@ public class JPAStorageService extends AbstractStorageService implements Storage
     /** {@inheritDoc} */
     @Override public void updateContextExpiration(@Nonnull @NotEmpty final String context,
             @Nullable @Positive final Long expiration) throws IOException {
+        clearReadCache();
         EntityManager manager = null;
         try {
             int retry = -1;
@@ -528,6 +788,7 @@ public class JPAStorageService extends AbstractStorageService implements Storage
 
     /** {@inheritDoc} */
     @Override public void deleteContext(@Nonnull @NotEmpty final String context) throws IOException {
+        clearReadCache();
         deleteContextImpl(context, null);
         log.debug("Deleted all entities in context '{}'", context);
     }
@@ -550,6 +811,10 @@ public class JPAStorageService extends AbstractStorageService implements Storage
      */
     protected void deleteContextImpl(@Nonnull @NotEmpty final String context, @Nonnull final Long expiration)
             throws IOException {
+        if (expiration != null && reapChunkSize > 0) {
+            deleteExpiredInChunks(context, expiration);
+            return;
+        }
         EntityManager manager = null;
         try {
             int retry = -1;
@@ -602,6 +867,10 @@ public class JPAStorageService extends AbstractStorageService implements Storage
      * @throws IOException if errors occur in the cleanup process
      */
     protected void deleteImpl(@Nonnull final Long expiration) throws IOException {
+        if (reapChunkSize > 0) {
+            deleteExpiredInChunks(null, expiration);
+            return;
+        }
         EntityManager manager = null;
         try {
             int retry = -1;
@@ -639,6 +908,145 @@ public class JPAStorageService extends AbstractStorageService implements Storage
 
     // Checkstyle: CyclomaticComplexity ON
 
+    /**
+     * Deletes every record with an expiration before the supplied expiration, optionally limited to one context, in
+     * transactions of at most {@link #getReapChunkSize()} records each.
+     * 
+     * @param context (optional) to delete from
+     * @param expiration of records to delete
+     * 
+     * @throws IOException if errors occur in the delete process
+     */
+    private void deleteExpiredInChunks(@Nullable final String context, @Nonnull final Long expiration)
+            throws IOException {
+        int total = 0;
+        int count;
+        do {
+            count = deleteExpiredChunk(context, expiration);
+            total += count;
+        } while (count >= reapChunkSize);
+        log.debug("Deleted {} record(s) in context '{}' with expiration '{}'", total, context, expiration);
+    }
+
+    /**
+     * Deletes up to {@link #getReapChunkSize()} records with an expiration before the supplied expiration, optionally
+     * limited to one context, in a single transaction.
+     * 
+     * @param context (optional) to delete from
+     * @param expiration of records to delete
+     * 
+     * @return the number of expired records found
+     * @throws IOException if errors occur in the delete process
+     */
+    private int deleteExpiredChunk(@Nullable final String context, @Nonnull final Long expiration)
+            throws IOException {
+        EntityManager manager = null;
+        EntityTransaction transaction = null;
+        try {
+            manager = entityManagerFactory.createEntityManager();
+            transaction = manager.getTransaction();
+            transaction.begin();
+            final Query selectResults;
+            if (context == null) {
+                selectResults = manager.createNamedQuery("JPAStorageRecord.findIdsByExpiration");
+            } else {
+                selectResults = manager.createNamedQuery("JPAStorageRecord.findIdsByContextAndExpiration");
+                selectResults.setParameter("context", context);
+            }
+            selectResults.setParameter("exp", expiration);
+            selectResults.setMaxResults(reapChunkSize);
+            final List<?> ids = selectResults.getResultList();
+            // cannot set lock mode on a non-select query
+            final Query deleteResults = manager.createNamedQuery("JPAStorageRecord.deleteByIdAndExpiration");
+            deleteResults.setParameter("exp", expiration);
+            for (final Object id : ids) {
+                final Object[] parts = (Object[]) id;
+                deleteResults.setParameter("context", parts[0]);
+                deleteResults.setParameter("key", parts[1]);
+                deleteResults.executeUpdate();
+            }
+            transaction.commit();
+            return ids.size();
+        } catch (final Exception e) {
+            log.error("Error deleting records in context '{}' with expiration '{}'", context, expiration, e);
+            rollbackTransaction(transaction);
+            throw new IOException(e);
+        } finally {
+            commitTransaction(transaction);
+            closeEntityManager(manager);
+        }
+    }
+
+    /**
+     * Writes a record with a statement conditional on its version being unchanged since it was read.
+     * 
+     * @param manager to execute the statement
+     * @param entity the record as read
+     * @param value new value, or null to update only the expiration
+     * @param newVersion version to assign if the value is updated
+     * @param expiration new expiration
+     * 
+     * @throws RollbackException if the record has been modified or removed since it was read
+     */
+    private void executeVersionedUpdate(@Nonnull final EntityManager manager,
+            @Nonnull final JPAStorageRecord<?> entity, @Nullable final String value, final long newVersion,
+            @Nullable final Long expiration) {
+        final Query queryResults;
+        if (value != null) {
+            queryResults = manager.createNamedQuery("JPAStorageRecord.updateByIdAndVersion");
+            queryResults.setParameter("value", value);
+            queryResults.setParameter("newVersion", newVersion);
+        } else {
+            queryResults = manager.createNamedQuery("JPAStorageRecord.updateExpirationByIdAndVersion");
+        }
+        queryResults.setParameter("exp", expiration);
+        queryResults.setParameter("context", entity.getContext());
+        queryResults.setParameter("key", entity.getKey());
+        queryResults.setParameter("version", entity.getVersion());
+        if (queryResults.executeUpdate() == 0) {
+            throw new RollbackException("Record '" + entity.getKey() + "' in context '" + entity.getContext()
+                    + "' was modified concurrently");
+        }
+    }
+
+    /**
+     * Replaces an expired record, with a statement conditional on its version and expiration being unchanged since
+     * it was read.
+     * 
+     * <p>A replaced record restarts at version 1, so the version alone cannot tell whether a record read at version
+     * 1 has since been replaced by a concurrent create.</p>
+     * 
+     * @param manager to execute the statement
+     * @param entity the expired record as read
+     * @param value new value
+     * @param expiration new expiration
+     * 
+     * @throws RollbackException if the record has been modified or removed since it was read
+     */
+    private void executeExpiredReplace(@Nonnull final EntityManager manager,
+            @Nonnull final JPAStorageRecord<?> entity, @Nonnull final String value, @Nullable final Long expiration) {
+        final Query queryResults = manager.createNamedQuery("JPAStorageRecord.replaceByIdVersionAndExpiration");
+        queryResults.setParameter("value", value);
+        queryResults.setParameter("exp", expiration);
+        queryResults.setParameter("context", entity.getContext());
+        queryResults.setParameter("key", entity.getKey());
+        queryResults.setParameter("version", entity.getVersion());
+        queryResults.setParameter("oldExp", entity.getExpiration());
+        if (queryResults.executeUpdate() == 0) {
+            throw new RollbackException("Record '" + entity.getKey() + "' in context '" + entity.getContext()
+                    + "' was replaced concurrently");
+        }
+    }
+
+    /**
+     * Returns the lock mode with which to read records that are about to be written.
+     * 
+     * @return the lock mode
+     */
+    @Nonnull private LockModeType getWriteLockMode() {
+        return optimisticLocking ? LockModeType.NONE : LockModeType.PESSIMISTIC_WRITE;
+    }
+
     // Checkstyle: CyclomaticComplexity OFF
     /**
      * Executes the supplied named query.
@@ -744,4 +1152,24 @@ public class JPAStorageService extends AbstractStorageService implements Storage
             }
         }
     }
+
+    /**
+     * Copy of a record held in the read cache.
+     * 
+     * @param <T> type of object
+     */
+    private static final class CachedStorageRecord<T> extends StorageRecord<T> {
+
+        /**
+         * Constructor.
+         * 
+         * @param val value
+         * @param exp expiration
+         * @param ver version
+         */
+        CachedStorageRecord(@Nonnull @NotEmpty final String val, @Nullable final Long exp, final long ver) {
+            super(val, exp);
+            setVersion(ver);
+        }
+    }
 }
@@ -18,10 +18,17 @@
 package org.opensaml.storage.impl;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 
+import net.shibboleth.utilities.java.support.annotation.constraint.NonnullElements;
 import net.shibboleth.utilities.java.support.annotation.constraint.NotEmpty;
 import net.shibboleth.utilities.java.support.annotation.constraint.Positive;
 import net.shibboleth.utilities.java.support.collection.Pair;
@@ -56,6 +63,11 @@ import org.slf4j.LoggerFactory;
 /**
  * Implementation of {@link org.opensaml.storage.StorageService} that stores data in an LDAP. Does not support
  * expiration or versioning at this time.
+ * 
+ * <p>Writes first attempt to replace the attribute values of an existing entry directly, and only fall back to a
+ * {@link MergeOperation} (which searches for the entry before adding or modifying it) if the entry does not exist.
+ * The {@link #readAll(String, Collection)}, {@link #updateAll(String, Map)} and {@link #deleteAll(String, Collection)}
+ * methods operate on several keys of a context in a single LDAP operation.</p>
  */
 public class LDAPStorageService extends AbstractStorageService implements StorageCapabilitiesEx {
 
@@ -114,10 +126,8 @@ public class LDAPStorageService extends AbstractStorageService implements Storag
         if (expiration != null) {
             throw new UnsupportedOperationException("Expiration not supported");
         }
-        final LdapEntry entry = new LdapEntry(context, defaultAttributes);
-        entry.addAttribute(new LdapAttribute(key, value));
         try {
-            merge(entry);
+            replaceOrMerge(context, Collections.singletonList(new LdapAttribute(key, value)));
             return true;
         } catch (final LdapException e) {
             log.error("LDAP merge operation failed: {}", e.getMessage());
@@ -162,10 +172,8 @@ public class LDAPStorageService extends AbstractStorageService implements Storag
         if (expiration != null) {
             throw new UnsupportedOperationException("Expiration not supported");
         }
-        final LdapEntry entry = new LdapEntry(context, defaultAttributes);
-        entry.addAttribute(new LdapAttribute(key, value));
         try {
-            merge(entry);
+            replaceOrMerge(context, Collections.singletonList(new LdapAttribute(key, value)));
             return true;
         } catch (final LdapException e) {
             log.error("LDAP merge operation failed: {}", e.getMessage());
@@ -216,6 +224,97 @@ public class LDAPStorageService extends AbstractStorageService implements Storag
         throw new UnsupportedOperationException("Expiration not supported");
     }
 
+    /**
+     * Read several keys of a context with a single search.
+     * 
+     * @param <T> type of record
+     * @param context context (DN) to read from
+     * @param keys keys (attribute names) to read
+     * 
+     * @return the records found, keyed by key; keys that are not present are omitted
+     * 
+     * @throws IOException if the search fails
+     */
+    @Nonnull @NonnullElements public <T> Map<String,StorageRecord<T>> readAll(@Nonnull @NotEmpty final String context,
+            @Nonnull @NonnullElements final Collection<String> keys) throws IOException {
+        Constraint.isNotNull(keys, "Keys cannot be null");
+        if (keys.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        SearchResult result = null;
+        try {
+            result = search(context, keys.toArray(new String[keys.size()])).getResult();
+        } catch (final LdapException e) {
+            if (e.getResultCode() != ResultCode.NO_SUCH_OBJECT) {
+                log.error("LDAP search operation failed: {}", e.getMessage());
+                throw new IOException(e);
+            }
+        }
+        final Map<String,StorageRecord<T>> records = new HashMap<>(keys.size());
+        if (result != null && result.size() > 0) {
+            final LdapEntry entry = result.getEntry();
+            if (entry != null) {
+                for (final String key : keys) {
+                    final LdapAttribute attr = entry.getAttribute(key);
+                    if (attr != null) {
+                        records.put(key, new StorageRecord<>(attr.getStringValue(), null));
+                    }
+                }
+            }
+        }
+        return records;
+    }
+
+    /**
+     * Create or update several keys of a context with a single operation.
+     * 
+     * @param context context (DN) to write to
+     * @param values values to write, keyed by key (attribute name)
+     * 
+     * @throws IOException if the operation fails
+     */
+    public void updateAll(@Nonnull @NotEmpty final String context,
+            @Nonnull @NonnullElements final Map<String,String> values) throws IOException {
+        Constraint.isNotNull(values, "Values cannot be null");
+        if (values.isEmpty()) {
+            return;
+        }
+        final List<LdapAttribute> attrs = new ArrayList<>(values.size());
+        for (final Map.Entry<String,String> value : values.entrySet()) {
+            attrs.add(new LdapAttribute(value.getKey(), value.getValue()));
+        }
+        try {
+            replaceOrMerge(context, attrs);
+        } catch (final LdapException e) {
+            log.error("LDAP merge operation failed: {}", e.getMessage());
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * Delete several keys of a context with a single modify operation.
+     * 
+     * <p>As the operation is atomic, it fails without deleting anything if any of the keys is not present.</p>
+     * 
+     * @param context context (DN) to delete from
+     * @param keys keys (attribute names) to delete
+     * 
+     * @throws IOException if the operation fails
+     */
+    public void deleteAll(@Nonnull @NotEmpty final String context,
+            @Nonnull @NonnullElements final Collection<String> keys) throws IOException {
+        Constraint.isNotNull(keys, "Keys cannot be null");
+        if (keys.isEmpty()) {
+            return;
+        }
+        try {
+            deleteAttributes(context, keys);
+        } catch (final LdapException e) {
+            log.error("LDAP modify operation failed: {}", e.getMessage());
+            throw new IOException(e);
+        }
+    }
+
     /** {@inheritDoc} */
     @Override public void deleteContext(@Nonnull @NotEmpty final String context) throws IOException {
         try {
@@ -227,16 +326,33 @@ public class LDAPStorageService extends AbstractStorageService implements Storag
     }
 
     /**
-     * Executes a {@link MergeOperation} with the supplied entry.
+     * Executes a {@link ModifyOperation} replacing the supplied attributes on the supplied DN, or a
+     * {@link MergeOperation} on the same connection if the entry does not exist.
      * 
-     * @param entry to merge
+     * @param dn to modify
+     * @param attrs to replace
      * 
-     * @return response for the merge operation
+     * @return response for the operation
      * 
      * @throws LdapException if the operation fails
      */
-    @Nonnull private Response<Void> merge(@Nonnull final LdapEntry entry) throws LdapException {
+    @Nonnull private Response<Void> replaceOrMerge(@Nonnull final String dn,
+            @Nonnull @NonnullElements final Collection<LdapAttribute> attrs) throws LdapException {
         try (final Connection conn = connectionFactory.getConnection()) {
+            final AttributeModification[] mods = new AttributeModification[attrs.size()];
+            int i = 0;
+            for (final LdapAttribute attr : attrs) {
+                mods[i++] = new AttributeModification(AttributeModificationType.REPLACE, attr);
+            }
+            try {
+                return new ModifyOperation(conn).execute(new ModifyRequest(dn, mods));
+            } catch (final LdapException e) {
+                if (e.getResultCode() != ResultCode.NO_SUCH_OBJECT) {
+                    throw e;
+                }
+            }
+            final LdapEntry entry = new LdapEntry(dn, defaultAttributes);
+            entry.addAttributes(attrs);
             final MergeOperation merge = new MergeOperation(conn);
             final MergeRequest request = new MergeRequest(entry);
             request.setIncludeAttributes(entry.getAttributeNames());
@@ -274,10 +390,29 @@ public class LDAPStorageService extends AbstractStorageService implements Storag
      */
     @Nonnull private Response<Void> deleteAttribute(@Nonnull final String dn, @Nonnull final String attrName)
             throws LdapException {
+        return deleteAttributes(dn, Collections.singletonList(attrName));
+    }
+
+    /**
+     * Executes a {@link ModifyOperation} on the supplied DN, removing the supplied attributes.
+     * 
+     * @param dn to modify
+     * @param attrNames to remove
+     * 
+     * @return response for the modify operation
+     * 
+     * @throws LdapException if the operation fails
+     */
+    @Nonnull private Response<Void> deleteAttributes(@Nonnull final String dn,
+            @Nonnull @NonnullElements final Collection<String> attrNames) throws LdapException {
+        final AttributeModification[] mods = new AttributeModification[attrNames.size()];
+        int i = 0;
+        for (final String attrName : attrNames) {
+            mods[i++] = new AttributeModification(AttributeModificationType.REMOVE, new LdapAttribute(attrName));
+        }
         try (final Connection conn = connectionFactory.getConnection()) {
             final ModifyOperation modify = new ModifyOperation(conn);
-            return modify.execute(new ModifyRequest(dn, new AttributeModification(AttributeModificationType.REMOVE,
-                    new LdapAttribute(attrName))));
+            return modify.execute(new ModifyRequest(dn, mods));
         }
     }
 
@@ -0,0 +1,341 @@
+/*
+ * Licensed to the University Corporation for Advanced Internet Development,
+ * Inc. (UCAID) under one or more contributor license agreements.  See the
+ * NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The UCAID licenses this file to You under the Apache
+ * License, Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opensaml.storage.impl;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.TreeMap;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import net.shibboleth.utilities.java.support.annotation.constraint.NotEmpty;
+import net.shibboleth.utilities.java.support.annotation.constraint.Positive;
+import net.shibboleth.utilities.java.support.annotation.constraint.ThreadSafeAfterInit;
+import net.shibboleth.utilities.java.support.component.ComponentInitializationException;
+import net.shibboleth.utilities.java.support.component.ComponentSupport;
+import net.shibboleth.utilities.java.support.logic.Constraint;
+
+import org.opensaml.storage.ReplayCache;
+import org.opensaml.storage.StorageService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * {@link ReplayCache} which tracks values in memory without a {@link org.opensaml.storage.StorageService}.
+ *
+ * <p>Each value is reduced, together with its context, to a 128-bit fingerprint taken from its SHA-256 digest. The
+ * fingerprints are spread across a number of independently locked partitions, and within a partition are held in
+ * open-addressing tables of primitive values, one for each interval of expiration time. A table is discarded as a
+ * whole once every value it holds has expired, so no per-value objects are allocated and no separate cleanup task
+ * is needed.</p>
+ *
+ * <p>The expiration of a value is rounded up to the end of its interval, so a value may be retained for up to one
+ * bucket interval longer than requested, but never for less time. The cache is not shared between nodes and does
+ * not survive a restart.</p>
+ *
+ * <p>The backing store and strictness flag of the superclass do not apply, and attempts to set them are rejected.</p>
+ */
+@ThreadSafeAfterInit
+public class MemoryReplayCache extends ReplayCache {
+
+    /** Default interval of expiration time covered by each table. */
+    @Nonnull public static final Duration DEFAULT_BUCKET_INTERVAL = Duration.ofMinutes(1);
+
+    /** Default number of partitions. */
+    public static final int DEFAULT_PARTITIONS = 16;
+
+    /** Digest algorithm used to compute fingerprints. */
+    @Nonnull @NotEmpty private static final String DIGEST_ALGORITHM = "SHA-256";
+
+    /** Logger. */
+    @Nonnull private final Logger log = LoggerFactory.getLogger(MemoryReplayCache.class);
+
+    /** Interval of expiration time covered by each table. */
+    @Nonnull private Duration bucketInterval;
+
+    /** Number of partitions. */
+    @Positive private int partitionCount;
+
+    /** Bucket interval in milliseconds. */
+    private long bucketMillis;
+
+    /** Partitions, selected by fingerprint. */
+    private Partition[] partitions;
+
+    /** Constructor. */
+    public MemoryReplayCache() {
+        bucketInterval = DEFAULT_BUCKET_INTERVAL;
+        partitionCount = DEFAULT_PARTITIONS;
+    }
+
+    /**
+     * Get the interval of expiration time covered by each table.
+     *
+     * @return the bucket interval
+     */
+    @Nonnull public Duration getBucketInterval() {
+        return bucketInterval;
+    }
+
+    /**
+     * Set the interval of expiration time covered by each table.
+     *
+     * <p>Shorter intervals release memory sooner at the cost of more tables to search on each check.</p>
+     *
+     * @param interval the bucket interval
+     */
+    public void setBucketInterval(@Nonnull final Duration interval) {
+        ComponentSupport.ifInitializedThrowUnmodifiabledComponentException(this);
+
+        Constraint.isNotNull(interval, "Interval cannot be null");
+        Constraint.isGreaterThan(0, interval.toMillis(), "Interval must be at least one millisecond");
+
+        bucketInterval = interval;
+    }
+
+    /**
+     * Get the number of partitions.
+     *
+     * @return the number of partitions
+     */
+    @Positive public int getPartitions() {
+        return partitionCount;
+    }
+
+    /**
+     * Set the number of partitions, each of which is locked independently.
+     *
+     * @param count the number of partitions
+     */
+    public void setPartitions(@Positive final int count) {
+        ComponentSupport.ifInitializedThrowUnmodifiabledComponentException(this);
+
+        partitionCount = (int) Constraint.isGreaterThan(0, count, "Partition count must be greater than zero");
+    }
+
+    /**
+     * Get the backing store for the cache.
+     *
+     * @return null, as this implementation has no backing store
+     */
+    @Override
+    @Nullable public StorageService getStorage() {
+        return null;
+    }
+
+    /**
+     * Not supported, as this implementation has no backing store.
+     *
+     * @param storageService ignored
+     */
+    @Override
+    public void setStorage(@Nonnull final StorageService storageService) {
+        throw new UnsupportedOperationException("MemoryReplayCache does not use a StorageService");
+    }
+
+    /**
+     * Not supported, as this implementation cannot suffer a storage failure.
+     *
+     * @param flag ignored
+     */
+    @Override
+    public void setStrict(final boolean flag) {
+        throw new UnsupportedOperationException("MemoryReplayCache does not support the strict flag");
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void doInitialize() throws ComponentInitializationException {
+        // The superclass requires a StorageService, which this implementation does not use.
+        bucketMillis = bucketInterval.toMillis();
+        partitions = new Partition[partitionCount];
+        for (int i = 0; i < partitions.length; i++) {
+            partitions[i] = new Partition();
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected void doDestroy() {
+        partitions = null;
+        super.doDestroy();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean check(@Nonnull @NotEmpty final String context, @Nonnull @NotEmpty final String s,
+            @Nonnull final Instant expires) {
+
+        final long now = System.currentTimeMillis();
+        final long expiration = expires.toEpochMilli();
+        if (expiration <= now) {
+            log.debug("Value '{}' was not a replay, but has already expired and will not be cached", s);
+            return true;
+        }
+
+        final ByteBuffer fingerprint = fingerprint(context, s);
+        final long high = fingerprint.getLong(0);
+        final long low = fingerprint.getLong(Long.BYTES);
+        final Partition partition = partitions[Math.floorMod((int) (high >>> 32), partitions.length)];
+
+        if (partition.checkAndAdd(high, low, Math.floorDiv(expiration + bucketMillis - 1, bucketMillis),
+                Math.floorDiv(now, bucketMillis))) {
+            log.debug("Value '{}' was not a replay, adding to cache with expiration time {}", s, expires);
+            return true;
+        }
+
+        log.debug("Replay of value '{}' detected in cache", s);
+        return false;
+    }
+
+    /**
+     * Compute the digest from which the fingerprint of a value is taken.
+     *
+     * @param context the context of the value
+     * @param s the value
+     *
+     * @return the digest
+     */
+    @Nonnull private static ByteBuffer fingerprint(@Nonnull final String context, @Nonnull final String s) {
+        final MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance(DIGEST_ALGORITHM);
+        } catch (final NoSuchAlgorithmException e) {
+            // SHA-256 support is mandatory for every Java platform.
+            throw new IllegalStateException("Digest algorithm " + DIGEST_ALGORITHM + " is not available", e);
+        }
+        digest.update(context.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+        digest.update(s.getBytes(StandardCharsets.UTF_8));
+        return ByteBuffer.wrap(digest.digest());
+    }
+
+    /** The tables holding the fingerprints of one partition, keyed by the interval in which they expire. */
+    private static final class Partition {
+
+        /** Tables keyed by the index of the interval at whose end they expire. Guarded by this partition. */
+        @Nonnull private final TreeMap<Long,FingerprintTable> buckets = new TreeMap<>();
+
+        /**
+         * Discard expired tables, then check for a fingerprint and add it if absent.
+         *
+         * @param high high-order half of the fingerprint
+         * @param low low-order half of the fingerprint
+         * @param bucket index of the interval in which the value expires
+         * @param expired index of the most recent interval to have ended
+         *
+         * @return true iff the fingerprint was absent
+         */
+        synchronized boolean checkAndAdd(final long high, final long low, final long bucket, final long expired) {
+            buckets.headMap(expired, true).clear();
+
+            for (final FingerprintTable table : buckets.values()) {
+                if (table.contains(high, low)) {
+                    return false;
+                }
+            }
+
+            FingerprintTable table = buckets.get(bucket);
+            if (table == null) {
+                table = new FingerprintTable();
+                buckets.put(bucket, table);
+            }
+            table.add(high, low);
+            return true;
+        }
+
+    }
+
+    /** Open-addressing set of 128-bit fingerprints, held as pairs of longs with linear probing. */
+    private static final class FingerprintTable {
+
+        /** Initial number of slots. */
+        private static final int INITIAL_CAPACITY = 16;
+
+        /** Slot contents, two longs per slot; a slot of two zeros is empty. */
+        @Nonnull private long[] slots = new long[INITIAL_CAPACITY * 2];
+
+        /** Number of fingerprints held. */
+        private int size;
+
+        /**
+         * Check whether the table holds a fingerprint.
+         *
+         * @param high high-order half of the fingerprint
+         * @param low low-order half of the fingerprint
+         *
+         * @return true iff the fingerprint is held
+         */
+        boolean contains(final long high, final long low) {
+            final long key = low == 0 && high == 0 ? 1 : low;
+            final int mask = slots.length / 2 - 1;
+            for (int i = (int) high & mask;; i = (i + 1) & mask) {
+                final long h = slots[i * 2];
+                final long l = slots[i * 2 + 1];
+                if (h == high && l == key) {
+                    return true;
+                } else if (h == 0 && l == 0) {
+                    return false;
+                }
+            }
+        }
+
+        /**
+         * Add a fingerprint not already held by the table.
+         *
+         * @param high high-order half of the fingerprint
+         * @param low low-order half of the fingerprint
+         */
+        void add(final long high, final long low) {
+            if ((size + 1) * 2 > slots.length / 2) {
+                final long[] old = slots;
+                slots = new long[old.length * 2];
+                for (int i = 0; i < old.length; i += 2) {
+                    if (old[i] != 0 || old[i + 1] != 0) {
+                        insert(old[i], old[i + 1]);
+                    }
+                }
+            }
+            // The all-zero fingerprint marks an empty slot, so is folded into a neighbouring value.
+            insert(high, low == 0 && high == 0 ? 1 : low);
+            size++;
+        }
+
+        /**
+         * Place a non-zero fingerprint in the first free slot of its probe sequence.
+         *
+         * @param high high-order half of the fingerprint
+         * @param low low-order half of the fingerprint
+         */
+        private void insert(final long high, final long low) {
+            final int mask = slots.length / 2 - 1;
+            int i = (int) high & mask;
+            while (slots[i * 2] != 0 || slots[i * 2 + 1] != 0) {
+                i = (i + 1) & mask;
+            }
+            slots[i * 2] = high;
+            slots[i * 2 + 1] = low;
+        }
+    }
+
+}
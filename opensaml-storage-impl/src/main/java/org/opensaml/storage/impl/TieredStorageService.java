@@ -0,0 +1,1284 @@
+/*
+ * Licensed to the University Corporation for Advanced Internet Development,
+ * Inc. (UCAID) under one or more contributor license agreements.  See the
+ * NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The UCAID licenses this file to You under the Apache
+ * License, Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opensaml.storage.impl;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.TimerTask;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import net.shibboleth.utilities.java.support.annotation.constraint.NonnullElements;
+import net.shibboleth.utilities.java.support.annotation.constraint.NotEmpty;
+import net.shibboleth.utilities.java.support.annotation.constraint.Positive;
+import net.shibboleth.utilities.java.support.collection.Pair;
+import net.shibboleth.utilities.java.support.component.ComponentInitializationException;
+import net.shibboleth.utilities.java.support.component.ComponentSupport;
+import net.shibboleth.utilities.java.support.logic.Constraint;
+
+import org.opensaml.storage.AbstractStorageService;
+import org.opensaml.storage.StorageCapabilitiesEx;
+import org.opensaml.storage.StorageRecord;
+import org.opensaml.storage.StorageService;
+import org.opensaml.storage.VersionMismatchException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Implementation of {@link org.opensaml.storage.StorageService} that serves reads from an in-memory tier in front of
+ * a durable {@link StorageService}, such as a {@link JPAStorageService}.
+ *
+ * <p>Each context is handled according to a {@link Policy}, which defaults to {@link Policy#WRITE_THROUGH} and may be
+ * overridden per context. In every policy, reads are answered from the in-memory tier and fall through to the
+ * durable tier on a miss, caching the result. The in-memory tier holds a bounded number of records, and when full
+ * evicts the least recently used records that can be read back from the durable tier.</p>
+ *
+ * <ul>
+ *  <li>{@link Policy#READ_THROUGH} writes to the durable tier and discards any in-memory copy of the record.</li>
+ *  <li>{@link Policy#WRITE_THROUGH} writes to the durable tier and then updates the in-memory copy where the
+ *  outcome is known, so that records just created or updated with a version are read back from memory. A record
+ *  just created is read back from the durable tier once, for the version assigned to it there.</li>
+ *  <li>{@link Policy#WRITE_BEHIND} makes the in-memory tier authoritative: writes are applied there, and queued
+ *  for a background thread to apply to the durable tier in order. The queue is bounded, and a writer waits for space
+ *  before taking any lock, failing if none becomes available within a timeout or if the background thread has
+ *  stopped. Records with queued writes are never evicted from memory, and a failed durable write is logged and
+ *  dropped.</li>
+ * </ul>
+ *
+ * <p>Versioned operations retain their semantics: for the first two policies the durable tier decides whether a
+ * version matches, while for {@link Policy#WRITE_BEHIND} the decision is made against the in-memory record, which
+ * carries the durable tier's version when first loaded and is incremented from there. A record evicted and read
+ * back therefore only keeps its version if the durable tier starts each record at version 1 and adds 1 on each
+ * update, as {@link MemoryStorageService} and {@link JPAStorageService} do. {@link Policy#WRITE_BEHIND}
+ * <strong>MUST NOT</strong> be used with a durable tier whose versions are assigned otherwise, such as
+ * {@link org.opensaml.storage.impl.memcached.MemcachedStorageService}, which uses the server's CAS values.</p>
+ *
+ * <p>The in-memory tier is local to the node, so this service does not report itself as clustered even if the
+ * durable tier is. The durable tier's lifecycle is not managed by this class. A cleanup interval should be set to
+ * purge expired records from memory.</p>
+ */
+public class TieredStorageService extends AbstractStorageService implements StorageCapabilitiesEx {
+
+    /** Policies for handling a context. */
+    public enum Policy {
+        /** Writes go to the durable tier and invalidate the in-memory tier. */
+        READ_THROUGH,
+
+        /** Writes go to the durable tier and then to the in-memory tier. */
+        WRITE_THROUGH,
+
+        /**
+         * Writes go to the in-memory tier and are queued for the durable tier, which must number versions from 1 in
+         * steps of 1.
+         */
+        WRITE_BEHIND,
+    }
+
+    /** Default size of the write-behind queue. */
+    private static final int DEFAULT_QUEUE_SIZE = 1000;
+
+    /** Default time to wait for space in the write-behind queue. */
+    @Nonnull private static final Duration DEFAULT_QUEUE_TIMEOUT = Duration.ofSeconds(10);
+
+    /** Default maximum number of records held in memory. */
+    private static final int DEFAULT_MAX_RECORDS = 10000;
+
+    /** Queue entry used to stop the write-behind thread. */
+    @Nonnull private static final PendingWrite STOP = new PendingWrite("", s -> { }, 0);
+
+    /** Class logger. */
+    @Nonnull private final Logger log = LoggerFactory.getLogger(TieredStorageService.class);
+
+    /** Durable tier. */
+    @Nonnull private final StorageService durableStorage;
+
+    /** Policy for contexts with no specific policy. */
+    @Nonnull private Policy defaultPolicy;
+
+    /** Policies for specific contexts. */
+    @Nonnull @NonnullElements private Map<String,Policy> contextPolicies;
+
+    /** Capacity of the write-behind queue. */
+    @Positive private int writeBehindQueueSize;
+
+    /** Time to wait for space in the write-behind queue. */
+    @Nonnull private Duration writeBehindQueueTimeout;
+
+    /** Maximum number of records held in memory. */
+    @Positive private int maxRecords;
+
+    /** In-memory tier. Guarded by {@link #lock}. */
+    @Nonnull @NonnullElements private final Map<String,Map<String,TieredRecord>> hotMap;
+
+    /** Number of records in the in-memory tier. Guarded by {@link #lock}. */
+    private int hotSize;
+
+    /** Number of times records have been evicted from the in-memory tier. Guarded by {@link #lock}. */
+    private long evictions;
+
+    /** Write-behind contexts deleted in memory whose deletion may still be queued. Guarded by {@link #lock}. */
+    @Nonnull @NonnullElements private final Set<String> deletedContexts;
+
+    /** Number of queued writes per context. Incremented while holding {@link #lock}. */
+    @Nonnull @NonnullElements private final Map<String,AtomicInteger> pendingWrites;
+
+    /** Lock guarding the in-memory tier. */
+    @Nonnull private final ReadWriteLock lock;
+
+    /** Counter incremented on every change to the in-memory tier. Guarded by {@link #lock}. */
+    private long generation;
+
+    /** Sequence number of the last write queued. Guarded by {@link #lock}. */
+    private long lastQueued;
+
+    /** Sequence number of the last queued write applied to the durable tier, successfully or not. */
+    private volatile long lastApplied;
+
+    /** Places in the write-behind queue not reserved by a writer. */
+    @Nullable private Semaphore queueSlots;
+
+    /** Queue of writes for the durable tier. */
+    @Nullable private BlockingQueue<PendingWrite> writeQueue;
+
+    /** Thread applying queued writes to the durable tier. */
+    @Nullable private Thread writer;
+
+    /**
+     * Constructor.
+     *
+     * @param durable the durable tier
+     */
+    public TieredStorageService(@Nonnull final StorageService durable) {
+        durableStorage = Constraint.isNotNull(durable, "Durable StorageService cannot be null");
+        defaultPolicy = Policy.WRITE_THROUGH;
+        contextPolicies = Map.of();
+        writeBehindQueueSize = DEFAULT_QUEUE_SIZE;
+        writeBehindQueueTimeout = DEFAULT_QUEUE_TIMEOUT;
+        maxRecords = DEFAULT_MAX_RECORDS;
+        hotMap = new HashMap<>();
+        deletedContexts = new HashSet<>();
+        pendingWrites = new ConcurrentHashMap<>();
+        lock = new ReentrantReadWriteLock(true);
+    }
+
+    /**
+     * Set the policy for contexts with no specific policy.
+     *
+     * @param policy the default policy
+     */
+    public void setDefaultPolicy(@Nonnull final Policy policy) {
+        ComponentSupport.ifInitializedThrowUnmodifiabledComponentException(this);
+
+        defaultPolicy = Constraint.isNotNull(policy, "Default policy cannot be null");
+    }
+
+    /**
+     * Set the policies for specific contexts.
+     *
+     * @param policies map of context to policy
+     */
+    public void setContextPolicies(@Nonnull @NonnullElements final Map<String,Policy> policies) {
+        ComponentSupport.ifInitializedThrowUnmodifiabledComponentException(this);
+
+        contextPolicies = Map.copyOf(Constraint.isNotNull(policies, "Context policies cannot be null"));
+    }
+
+    /**
+     * Get the policy applied to a context.
+     *
+     * @param context the context
+     *
+     * @return the policy
+     */
+    @Nonnull public Policy getPolicy(@Nonnull @NotEmpty final String context) {
+        return contextPolicies.getOrDefault(context, defaultPolicy);
+    }
+
+    /**
+     * Set the maximum number of writes queued for the durable tier (default is 1000).
+     *
+     * @param size queue capacity
+     */
+    public void setWriteBehindQueueSize(@Positive final int size) {
+        ComponentSupport.ifInitializedThrowUnmodifiabledComponentException(this);
+
+        writeBehindQueueSize = (int) Constraint.isGreaterThan(0, size, "Queue size must be greater than zero");
+    }
+
+    /**
+     * Set the time a writer waits for space in the write-behind queue before failing (default is 10 seconds).
+     *
+     * @param timeout time to wait
+     */
+    public void setWriteBehindQueueTimeout(@Nonnull final Duration timeout) {
+        ComponentSupport.ifInitializedThrowUnmodifiabledComponentException(this);
+
+        Constraint.isNotNull(timeout, "Timeout cannot be null");
+        Constraint.isFalse(timeout.isNegative(), "Timeout cannot be negative");
+        writeBehindQueueTimeout = timeout;
+    }
+
+    /**
+     * Set the maximum number of records held in memory (default is 10000).
+     *
+     * <p>Records with queued writes are not evicted, so the limit may be exceeded while writes are queued.</p>
+     *
+     * @param max maximum number of records
+     */
+    public void setMaxRecords(@Positive final int max) {
+        ComponentSupport.ifInitializedThrowUnmodifiabledComponentException(this);
+
+        maxRecords = (int) Constraint.isGreaterThan(0, max, "Maximum number of records must be greater than zero");
+    }
+
+    /** {@inheritDoc} */
+    public boolean isServerSide() {
+        return true;
+    }
+
+    /** {@inheritDoc} */
+    public boolean isClustered() {
+        return false;
+    }
+
+    /** {@inheritDoc} */
+    @Override public int getContextSize() {
+        return durableStorage.getCapabilities().getContextSize();
+    }
+
+    /** {@inheritDoc} */
+    @Override public int getKeySize() {
+        return durableStorage.getCapabilities().getKeySize();
+    }
+
+    /** {@inheritDoc} */
+    @Override public long getValueSize() {
+        return durableStorage.getCapabilities().getValueSize();
+    }
+
+    /** {@inheritDoc} */
+    @Override protected void doInitialize() throws ComponentInitializationException {
+        super.doInitialize();
+
+        if (defaultPolicy == Policy.WRITE_BEHIND || contextPolicies.containsValue(Policy.WRITE_BEHIND)) {
+            queueSlots = new Semaphore(writeBehindQueueSize);
+            // One more place than there are slots, for the entry stopping the thread.
+            writeQueue = new ArrayBlockingQueue<>(writeBehindQueueSize + 1);
+            writer = new Thread(this::drainWriteQueue, "TieredStorageService [" + getId() + "] write-behind");
+            writer.setDaemon(true);
+            writer.start();
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override protected void doDestroy() {
+        if (writer != null) {
+            try {
+                writeQueue.put(STOP);
+                writer.join();
+            } catch (final InterruptedException e) {
+                log.warn("Interrupted while flushing write-behind queue, {} write(s) lost", writeQueue.size());
+                Thread.currentThread().interrupt();
+            }
+            writer = null;
+            writeQueue = null;
+            queueSlots = null;
+        }
+        super.doDestroy();
+    }
+
+    /** {@inheritDoc} */
+    @Override public boolean create(@Nonnull @NotEmpty final String context, @Nonnull @NotEmpty final String key,
+            @Nonnull @NotEmpty final String value, @Nullable @Positive final Long expiration) throws IOException {
+        final Policy policy = getPolicy(context);
+        if (policy != Policy.WRITE_BEHIND) {
+            final long start = getGeneration();
+            TieredRecord created = null;
+            try {
+                if (!durableStorage.create(context, key, value, expiration)) {
+                    return false;
+                }
+                if (policy == Policy.WRITE_THROUGH) {
+                    created = readBack(context, key);
+                }
+                return true;
+            } finally {
+                cacheWrite(policy, context, key, created, start);
+            }
+        }
+
+        try {
+            return writeBehind(context, key, (slot, current) -> {
+                if (current != null && current.isLive(System.currentTimeMillis())) {
+                    return false;
+                }
+                final long sequence = enqueue(slot, context, s -> {
+                    if (!s.create(context, key, value, expiration)) {
+                        // Replace the record, rather than updating it, so that it starts again at version 1.
+                        s.delete(context, key);
+                        s.create(context, key, value, expiration);
+                    }
+                });
+                putHot(context, key, new TieredRecord(value, expiration, 1, sequence));
+                return true;
+            });
+        } catch (final VersionMismatchException e) {
+            throw new IllegalStateException("Create should not cause version mismatch", e);
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override @Nullable public <T> StorageRecord<T> read(@Nonnull @NotEmpty final String context,
+            @Nonnull @NotEmpty final String key) throws IOException {
+        return this.<T>readImpl(context, key, null).getSecond();
+    }
+
+    /** {@inheritDoc} */
+    @Override @Nonnull public <T> Pair<Long,StorageRecord<T>> read(@Nonnull @NotEmpty final String context,
+            @Nonnull @NotEmpty final String key, @Positive final long version) throws IOException {
+        return readImpl(context, key, version);
+    }
+
+    /** {@inheritDoc} */
+    @Override public boolean update(@Nonnull @NotEmpty final String context, @Nonnull @NotEmpty final String key,
+            @Nonnull @NotEmpty final String value, @Nullable @Positive final Long expiration) throws IOException {
+        if (getPolicy(context) != Policy.WRITE_BEHIND) {
+            try {
+                return durableStorage.update(context, key, value, expiration);
+            } finally {
+                invalidate(context, key);
+            }
+        }
+        try {
+            return updateImpl(null, context, key, value, expiration) != null;
+        } catch (final VersionMismatchException e) {
+            throw new IllegalStateException("Unversioned update should not cause version mismatch", e);
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override @Nullable public Long updateWithVersion(@Positive final long version,
+            @Nonnull @NotEmpty final String context, @Nonnull @NotEmpty final String key,
+            @Nonnull @NotEmpty final String value, @Nullable @Positive final Long expiration)
+                    throws IOException, VersionMismatchException {
+        return updateImpl(version, context, key, value, expiration);
+    }
+
+    /** {@inheritDoc} */
+    @Override public boolean updateExpiration(@Nonnull @NotEmpty final String context,
+            @Nonnull @NotEmpty final String key, @Nullable @Positive final Long expiration) throws IOException {
+        final Policy policy = getPolicy(context);
+        if (policy != Policy.WRITE_BEHIND) {
+            try {
+                return durableStorage.updateExpiration(context, key, expiration);
+            } finally {
+                invalidate(context, key);
+            }
+        }
+
+        try {
+            return writeBehind(context, key, (slot, current) -> {
+                if (current == null || !current.isLive(System.currentTimeMillis())) {
+                    return false;
+                }
+                final long sequence = enqueue(slot, context, s -> s.updateExpiration(context, key, expiration));
+                putHot(context, key,
+                        new TieredRecord(current.getValue(), expiration, current.getVersion(), sequence));
+                return true;
+            });
+        } catch (final VersionMismatchException e) {
+            throw new IllegalStateException("Unversioned update should not cause version mismatch", e);
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override public boolean delete(@Nonnull @NotEmpty final String context, @Nonnull @NotEmpty final String key)
+            throws IOException {
+        try {
+            return deleteImpl(null, context, key);
+        } catch (final VersionMismatchException e) {
+            throw new IllegalStateException("Unversioned delete should not cause version mismatch", e);
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override public boolean deleteWithVersion(@Positive final long version, @Nonnull @NotEmpty final String context,
+            @Nonnull @NotEmpty final String key) throws IOException, VersionMismatchException {
+        return deleteImpl(version, context, key);
+    }
+
+    /** {@inheritDoc} */
+    @Override public void reap(@Nonnull @NotEmpty final String context) throws IOException {
+        durableStorage.reap(context);
+
+        final Lock writeLock = lock.writeLock();
+        try {
+            writeLock.lock();
+            reapHot(context, System.currentTimeMillis());
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override public void updateContextExpiration(@Nonnull @NotEmpty final String context,
+            @Nullable @Positive final Long expiration) throws IOException {
+        if (getPolicy(context) != Policy.WRITE_BEHIND) {
+            try {
+                durableStorage.updateContextExpiration(context, expiration);
+            } finally {
+                dropHotContext(context, false);
+            }
+            return;
+        }
+
+        try (QueueSlot slot = reserveQueueSlot()) {
+            final Lock writeLock = lock.writeLock();
+            try {
+                writeLock.lock();
+                final long sequence = enqueue(slot, context, s -> s.updateContextExpiration(context, expiration));
+                final Map<String,TieredRecord> records = hotMap.get(context);
+                if (records != null) {
+                    records.replaceAll((k, r) -> r.isTombstone() ? r
+                            : new TieredRecord(r.getValue(), expiration, r.getVersion(), sequence));
+                }
+                generation++;
+            } finally {
+                writeLock.unlock();
+            }
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override public void deleteContext(@Nonnull @NotEmpty final String context) throws IOException {
+        if (getPolicy(context) != Policy.WRITE_BEHIND) {
+            try {
+                durableStorage.deleteContext(context);
+            } finally {
+                dropHotContext(context, false);
+            }
+            return;
+        }
+
+        try (QueueSlot slot = reserveQueueSlot()) {
+            final Lock writeLock = lock.writeLock();
+            try {
+                writeLock.lock();
+                enqueue(slot, context, s -> s.deleteContext(context));
+                dropHotContext(context, true);
+            } finally {
+                writeLock.unlock();
+            }
+        }
+    }
+
+// Checkstyle: AnonInnerLength OFF
+    /** {@inheritDoc} */
+    @Override
+    @Nullable protected TimerTask getCleanupTask() {
+        return new TimerTask() {
+
+            /** {@inheritDoc} */
+            @Override
+            public void run() {
+                log.debug("Running cleanup task");
+
+                final long now = System.currentTimeMillis();
+                final Lock writeLock = lock.writeLock();
+                try {
+                    writeLock.lock();
+                    final Set<String> contexts = new HashSet<>(hotMap.keySet());
+                    contexts.addAll(deletedContexts);
+                    for (final String context : contexts) {
+                        reapHot(context, now);
+                    }
+                } finally {
+                    writeLock.unlock();
+                }
+            }
+        };
+    }
+// Checkstyle: AnonInnerLength ON
+
+    /**
+     * Internal method to implement read functions.
+     *
+     * @param <T> type of record
+     * @param context a storage context label
+     * @param key a key unique to context
+     * @param version only return record if newer than optionally supplied version
+     *
+     * @return a pair consisting of the version of the record read back, if any, and the record itself
+     *
+     * @throws IOException if errors occur in the read process
+     */
+    @SuppressWarnings("unchecked")
+    @Nonnull private <T> Pair<Long,StorageRecord<T>> readImpl(@Nonnull @NotEmpty final String context,
+            @Nonnull @NotEmpty final String key, @Nullable final Long version) throws IOException {
+        final TieredRecord record = load(context, key);
+        if (record == null || !record.isLive(System.currentTimeMillis())) {
+            log.debug("Read failed, key '{}' not found or expired in context '{}'", key, context);
+            return new Pair<>();
+        }
+        if (version != null && record.getVersion() == version) {
+            // Nothing's changed, so just echo back the version.
+            return new Pair<>(version, null);
+        }
+        return new Pair<>(record.getVersion(), (StorageRecord<T>) (StorageRecord<?>) record);
+    }
+
+    /**
+     * Internal method to implement update functions.
+     *
+     * @param version only update if the current version matches this value
+     * @param context a storage context label
+     * @param key a key unique to context
+     * @param value updated value
+     * @param expiration expiration for record, or null
+     *
+     * @return the version of the record after update, null if no record exists
+     *
+     * @throws IOException if errors occur in the update process
+     * @throws VersionMismatchException if the record has already been updated to a newer version
+     */
+    @Nullable private Long updateImpl(@Nullable final Long version, @Nonnull @NotEmpty final String context,
+            @Nonnull @NotEmpty final String key, @Nonnull @NotEmpty final String value,
+            @Nullable final Long expiration) throws IOException, VersionMismatchException {
+        final Policy policy = getPolicy(context);
+        if (policy != Policy.WRITE_BEHIND) {
+            // Unversioned updates to these contexts are handled by update().
+            final long start = getGeneration();
+            TieredRecord updated = null;
+            try {
+                final Long newVersion = durableStorage.updateWithVersion(version, context, key, value, expiration);
+                if (newVersion != null) {
+                    updated = new TieredRecord(value, expiration, newVersion);
+                }
+                return newVersion;
+            } finally {
+                cacheWrite(policy, context, key, updated, start);
+            }
+        }
+
+        return writeBehind(context, key, (slot, current) -> {
+            if (current == null || !current.isLive(System.currentTimeMillis())) {
+                log.debug("Update failed, key '{}' not found or expired in context '{}'", key, context);
+                return null;
+            }
+            if (version != null && version != current.getVersion()) {
+                // Caller is out of sync.
+                throw new VersionMismatchException();
+            }
+            final long sequence = enqueue(slot, context, s -> {
+                if (!s.update(context, key, value, expiration)) {
+                    s.create(context, key, value, expiration);
+                }
+            });
+            final long newVersion = current.getVersion() + 1;
+            putHot(context, key, new TieredRecord(value, expiration, newVersion, sequence));
+            return newVersion;
+        });
+    }
+
+    /**
+     * Internal method to implement delete functions.
+     *
+     * @param version only delete if the current version matches this value
+     * @param context a storage context label
+     * @param key a key unique to context
+     *
+     * @return true iff the record existed and was deleted
+     *
+     * @throws IOException if errors occur in the delete process
+     * @throws VersionMismatchException if the record has already been updated to a newer version
+     */
+    private boolean deleteImpl(@Nullable final Long version, @Nonnull @NotEmpty final String context,
+            @Nonnull @NotEmpty final String key) throws IOException, VersionMismatchException {
+        if (getPolicy(context) != Policy.WRITE_BEHIND) {
+            try {
+                return version == null ? durableStorage.delete(context, key)
+                        : durableStorage.deleteWithVersion(version, context, key);
+            } finally {
+                invalidate(context, key);
+            }
+        }
+
+        return writeBehind(context, key, (slot, current) -> {
+            if (current == null || current.isTombstone()) {
+                log.debug("Deleting record '{}' in context '{}'....key not found", key, context);
+                return false;
+            } else if (version != null && version != current.getVersion()) {
+                throw new VersionMismatchException();
+            }
+            final long sequence = enqueue(slot, context, s -> s.delete(context, key));
+            putHot(context, key, TieredRecord.tombstone(sequence));
+            return true;
+        });
+    }
+
+    /**
+     * Get a record from the in-memory tier, or failing that from the durable tier, caching the result.
+     *
+     * <p>The result may be expired, or a tombstone marking a record whose deletion is queued.</p>
+     *
+     * @param context a storage context label
+     * @param key a key unique to context
+     *
+     * @return the record, or null
+     *
+     * @throws IOException if errors occur reading from the durable tier
+     */
+    @Nullable private TieredRecord load(@Nonnull @NotEmpty final String context, @Nonnull @NotEmpty final String key)
+            throws IOException {
+        final long loadGeneration;
+        final Lock readLock = lock.readLock();
+        try {
+            readLock.lock();
+            final Map<String,TieredRecord> records = hotMap.get(context);
+            final TieredRecord record = records != null ? records.get(key) : null;
+            if (record != null) {
+                record.touch();
+                return record;
+            } else if (deletedContexts.contains(context)) {
+                return null;
+            }
+            loadGeneration = generation;
+        } finally {
+            readLock.unlock();
+        }
+
+        final StorageRecord<?> durable = durableStorage.read(context, key);
+        if (durable == null) {
+            return null;
+        }
+        final TieredRecord loaded = new TieredRecord(durable.getValue(), durable.getExpiration(),
+                durable.getVersion());
+
+        final Lock writeLock = lock.writeLock();
+        try {
+            writeLock.lock();
+            // Only cache the record if nothing has changed in memory since it was read.
+            if (generation == loadGeneration) {
+                storeHot(context, key, loaded);
+            }
+        } finally {
+            writeLock.unlock();
+        }
+        return loaded;
+    }
+
+    /**
+     * Read a record just created back from the durable tier, for the version the durable tier assigned it.
+     *
+     * @param context a storage context label
+     * @param key a key unique to context
+     *
+     * @return the record, or null if it cannot be read back
+     */
+    @Nullable private TieredRecord readBack(@Nonnull @NotEmpty final String context,
+            @Nonnull @NotEmpty final String key) {
+        try {
+            final StorageRecord<?> durable = durableStorage.read(context, key);
+            if (durable != null) {
+                return new TieredRecord(durable.getValue(), durable.getExpiration(), durable.getVersion());
+            }
+        } catch (final IOException e) {
+            log.warn("Unable to read back record '{}' created in context '{}'", key, context, e);
+        }
+        return null;
+    }
+
+    /**
+     * Apply a write to a record in a write-behind context.
+     *
+     * <p>A place in the write-behind queue is reserved before any lock is taken, and the operation is then called
+     * with the current state of the record while holding the write lock.</p>
+     *
+     * @param <T> type of result
+     * @param context a storage context label
+     * @param key a key unique to context
+     * @param operation the write to apply
+     *
+     * @return the result of the operation
+     *
+     * @throws IOException if no place in the queue is available, or errors occur reading from the durable tier
+     * @throws VersionMismatchException if thrown by the operation
+     */
+    @Nullable private <T> T writeBehind(@Nonnull @NotEmpty final String context, @Nonnull @NotEmpty final String key,
+            @Nonnull final WriteBehindOperation<T> operation) throws IOException, VersionMismatchException {
+        try (QueueSlot slot = reserveQueueSlot()) {
+            while (true) {
+                final long loadEvictions = getEvictions();
+                final TieredRecord loaded = load(context, key);
+                final Lock writeLock = lock.writeLock();
+                try {
+                    writeLock.lock();
+                    final Map<String,TieredRecord> records = hotMap.get(context);
+                    TieredRecord current = records != null ? records.get(key) : null;
+                    if (current == null && !deletedContexts.contains(context)) {
+                        if (evictions != loadEvictions) {
+                            // The record may have been written and evicted since it was loaded, so load it again.
+                            continue;
+                        }
+                        // Otherwise nothing else can have written it, as all writes to the context are made under
+                        // the lock.
+                        current = loaded;
+                    }
+                    return operation.apply(slot, current);
+                } finally {
+                    writeLock.unlock();
+                }
+            }
+        }
+    }
+
+    /**
+     * Store a record in the in-memory tier, marking a change to it.
+     *
+     * <p>This method <strong>MUST</strong> be called while holding the write lock.</p>
+     *
+     * @param context a storage context label
+     * @param key a key unique to context
+     * @param record the record
+     */
+    private void putHot(@Nonnull @NotEmpty final String context, @Nonnull @NotEmpty final String key,
+            @Nonnull final TieredRecord record) {
+        storeHot(context, key, record);
+        generation++;
+    }
+
+    /**
+     * Store a record in the in-memory tier, evicting records if it is then full.
+     *
+     * <p>This method <strong>MUST</strong> be called while holding the write lock.</p>
+     *
+     * @param context a storage context label
+     * @param key a key unique to context
+     * @param record the record
+     */
+    private void storeHot(@Nonnull @NotEmpty final String context, @Nonnull @NotEmpty final String key,
+            @Nonnull final TieredRecord record) {
+        if (hotMap.computeIfAbsent(context, c -> new HashMap<>()).put(key, record) == null
+                && ++hotSize > maxRecords) {
+            evict();
+        }
+    }
+
+    /**
+     * Evict the least recently used records from the in-memory tier, leaving it a tenth below its maximum size.
+     *
+     * <p>Records with queued writes, and records in contexts whose deletion may still be queued, cannot be read
+     * back from the durable tier and are not evicted.</p>
+     *
+     * <p>This method <strong>MUST</strong> be called while holding the write lock.</p>
+     */
+    private void evict() {
+        final long applied = lastApplied;
+        final long[] lastUsed = new long[hotSize];
+        int candidates = 0;
+        for (final Map.Entry<String,Map<String,TieredRecord>> entry : hotMap.entrySet()) {
+            if (!deletedContexts.contains(entry.getKey())) {
+                for (final TieredRecord record : entry.getValue().values()) {
+                    if (record.isWritten(applied)) {
+                        lastUsed[candidates++] = record.getLastUsed();
+                    }
+                }
+            }
+        }
+        if (candidates == 0) {
+            log.debug("In-memory tier holds {} records, none of which can be evicted", hotSize);
+            return;
+        }
+
+        Arrays.sort(lastUsed, 0, candidates);
+        final long cutoff = lastUsed[Math.min(hotSize - (maxRecords - maxRecords / 10), candidates) - 1];
+        final int before = hotSize;
+        final Iterator<Map.Entry<String,Map<String,TieredRecord>>> contexts = hotMap.entrySet().iterator();
+        while (contexts.hasNext()) {
+            final Map.Entry<String,Map<String,TieredRecord>> entry = contexts.next();
+            if (!deletedContexts.contains(entry.getKey())) {
+                final Map<String,TieredRecord> records = entry.getValue();
+                final int size = records.size();
+                records.values().removeIf(r -> r.isWritten(applied) && r.getLastUsed() <= cutoff);
+                hotSize -= size - records.size();
+                if (records.isEmpty()) {
+                    contexts.remove();
+                }
+            }
+        }
+        evictions++;
+        generation++;
+        log.debug("Evicted {} records from the in-memory tier", before - hotSize);
+    }
+
+    /**
+     * Get the number of times records have been evicted from the in-memory tier.
+     *
+     * @return the eviction count
+     */
+    private long getEvictions() {
+        final Lock readLock = lock.readLock();
+        try {
+            readLock.lock();
+            return evictions;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * Get the current generation of the in-memory tier.
+     *
+     * @return the generation
+     */
+    private long getGeneration() {
+        final Lock readLock = lock.readLock();
+        try {
+            readLock.lock();
+            return generation;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * Discard any in-memory copy of a record after a durable write.
+     *
+     * @param context a storage context label
+     * @param key a key unique to context
+     */
+    private void invalidate(@Nonnull @NotEmpty final String context, @Nonnull @NotEmpty final String key) {
+        cacheWrite(Policy.READ_THROUGH, context, key, null, 0);
+    }
+
+    /**
+     * Reflect a completed durable write in the in-memory tier.
+     *
+     * <p>The record is only cached if nothing else has changed the in-memory tier since the write began, as another
+     * write to the same record may have overtaken it; otherwise any in-memory copy is discarded.</p>
+     *
+     * @param policy the policy to apply
+     * @param context a storage context label
+     * @param key a key unique to context
+     * @param record the record written, or null if its outcome is not known
+     * @param start the generation of the in-memory tier when the write began
+     */
+    private void cacheWrite(@Nonnull final Policy policy, @Nonnull @NotEmpty final String context,
+            @Nonnull @NotEmpty final String key, @Nullable final TieredRecord record, final long start) {
+        final Lock writeLock = lock.writeLock();
+        try {
+            writeLock.lock();
+            if (policy == Policy.WRITE_THROUGH && record != null && generation == start) {
+                putHot(context, key, record);
+            } else {
+                final Map<String,TieredRecord> records = hotMap.get(context);
+                if (records != null) {
+                    if (records.remove(key) != null) {
+                        hotSize--;
+                    }
+                    if (records.isEmpty()) {
+                        hotMap.remove(context);
+                    }
+                }
+                generation++;
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Remove a context from the in-memory tier.
+     *
+     * @param context a storage context label
+     * @param deleted whether to treat the context as deleted until its queued writes are complete
+     */
+    private void dropHotContext(@Nonnull @NotEmpty final String context, final boolean deleted) {
+        final Lock writeLock = lock.writeLock();
+        try {
+            writeLock.lock();
+            final Map<String,TieredRecord> records = hotMap.remove(context);
+            if (records != null) {
+                hotSize -= records.size();
+            }
+            if (deleted) {
+                deletedContexts.add(context);
+            }
+            generation++;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Remove expired records from a context in the in-memory tier, along with any deletion markers, unless writes
+     * to the context are still queued.
+     *
+     * <p>This method <strong>MUST</strong> be called while holding the write lock.</p>
+     *
+     * @param context a storage context label
+     * @param now time at which to consider records expired
+     */
+    private void reapHot(@Nonnull @NotEmpty final String context, final long now) {
+        final AtomicInteger pending = pendingWrites.get(context);
+        if (pending != null) {
+            if (pending.get() > 0) {
+                return;
+            }
+            pendingWrites.remove(context);
+        }
+
+        final Map<String,TieredRecord> records = hotMap.get(context);
+        if (records != null) {
+            final int size = records.size();
+            records.values().removeIf(r -> !r.isLive(now));
+            hotSize -= size - records.size();
+            if (records.isEmpty()) {
+                hotMap.remove(context);
+            }
+        }
+        deletedContexts.remove(context);
+        generation++;
+    }
+
+    /**
+     * Reserve a place in the write-behind queue, waiting for one to become available if necessary.
+     *
+     * <p>This method <strong>MUST NOT</strong> be called while holding the lock.</p>
+     *
+     * @return the reserved place, to be released by closing it
+     *
+     * @throws IOException if the write-behind thread is not running, or no place becomes available in time
+     */
+    @Nonnull private QueueSlot reserveQueueSlot() throws IOException {
+        final Thread thread = writer;
+        if (thread == null || !thread.isAlive()) {
+            throw new IOException("Write-behind thread for durable storage is not running");
+        }
+        try {
+            if (!queueSlots.tryAcquire(writeBehindQueueTimeout.toMillis(), TimeUnit.MILLISECONDS)) {
+                throw new IOException("Timed out waiting for space in write-behind queue for durable storage");
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for space in write-behind queue for durable storage",
+                    e);
+        }
+        return new QueueSlot();
+    }
+
+    /**
+     * Queue a write for the durable tier in a reserved place.
+     *
+     * <p>This method <strong>MUST</strong> be called while holding the write lock.</p>
+     *
+     * @param slot the reserved place
+     * @param context a storage context label
+     * @param operation the write to apply
+     *
+     * @return the sequence number of the write
+     */
+    private long enqueue(@Nonnull final QueueSlot slot, @Nonnull @NotEmpty final String context,
+            @Nonnull final DurableWrite operation) {
+        slot.use();
+        pendingWrites.computeIfAbsent(context, c -> new AtomicInteger()).incrementAndGet();
+        final long sequence = ++lastQueued;
+        writeQueue.add(new PendingWrite(context, operation, sequence));
+        return sequence;
+    }
+
+    /**
+     * Apply queued writes to the durable tier until stopped.
+     */
+    private void drainWriteQueue() {
+        while (true) {
+            final PendingWrite write;
+            try {
+                write = writeQueue.take();
+            } catch (final InterruptedException e) {
+                log.warn("Write-behind thread interrupted, {} write(s) lost", writeQueue.size());
+                return;
+            }
+            if (write == STOP) {
+                return;
+            }
+
+            try {
+                write.getOperation().apply(durableStorage);
+            } catch (final IOException | VersionMismatchException | RuntimeException e) {
+                log.error("Error applying queued write to durable storage in context '{}'", write.getContext(), e);
+            } finally {
+                lastApplied = write.getSequence();
+                queueSlots.release();
+                final AtomicInteger pending = pendingWrites.get(write.getContext());
+                if (pending.decrementAndGet() == 0) {
+                    // Purge deletion markers now if this can be done without waiting for the lock.
+                    final Lock writeLock = lock.writeLock();
+                    if (writeLock.tryLock()) {
+                        try {
+                            reapHot(write.getContext(), System.currentTimeMillis());
+                        } finally {
+                            writeLock.unlock();
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /** A write to apply to the durable tier. */
+    @FunctionalInterface
+    private interface DurableWrite {
+
+        /**
+         * Apply the write.
+         *
+         * @param storage the durable tier
+         *
+         * @throws IOException if errors occur in the write process
+         * @throws VersionMismatchException if the record has already been updated to a newer version
+         */
+        void apply(@Nonnull final StorageService storage) throws IOException, VersionMismatchException;
+    }
+
+    /**
+     * A write to apply to a record in a write-behind context, given its current state.
+     *
+     * @param <T> type of result
+     */
+    @FunctionalInterface
+    private interface WriteBehindOperation<T> {
+
+        /**
+         * Apply the write.
+         *
+         * @param slot the place reserved in the write-behind queue
+         * @param current the current state of the record, or null
+         *
+         * @return the result of the write
+         *
+         * @throws VersionMismatchException if the record has already been updated to a newer version
+         */
+        @Nullable T apply(@Nonnull final QueueSlot slot, @Nullable final TieredRecord current)
+                throws VersionMismatchException;
+    }
+
+    /** A place reserved in the write-behind queue, given up on closing unless a write has been queued in it. */
+    private final class QueueSlot implements AutoCloseable {
+
+        /** Whether a write has been queued in this place. */
+        private boolean used;
+
+        /** Mark this place as holding a queued write, whose removal from the queue will release it. */
+        void use() {
+            Constraint.isFalse(used, "Queue slot has already been used");
+            used = true;
+        }
+
+        /** {@inheritDoc} */
+        @Override public void close() {
+            if (!used) {
+                queueSlots.release();
+            }
+        }
+    }
+
+    /** A queued write and the context it applies to. */
+    private static final class PendingWrite {
+
+        /** Context written to. */
+        @Nonnull private final String context;
+
+        /** The write to apply. */
+        @Nonnull private final DurableWrite operation;
+
+        /** Sequence number of the write. */
+        private final long sequence;
+
+        /**
+         * Constructor.
+         *
+         * @param ctx context written to
+         * @param op the write to apply
+         * @param seq sequence number of the write
+         */
+        PendingWrite(@Nonnull final String ctx, @Nonnull final DurableWrite op, final long seq) {
+            context = ctx;
+            operation = op;
+            sequence = seq;
+        }
+
+        /**
+         * Get the context written to.
+         *
+         * @return the context
+         */
+        @Nonnull String getContext() {
+            return context;
+        }
+
+        /**
+         * Get the write to apply.
+         *
+         * @return the write
+         */
+        @Nonnull DurableWrite getOperation() {
+            return operation;
+        }
+
+        /**
+         * Get the sequence number of the write.
+         *
+         * @return the sequence number
+         */
+        long getSequence() {
+            return sequence;
+        }
+    }
+
+    /** An immutable record held in the in-memory tier, apart from the time it was last used. */
+    private static final class TieredRecord extends StorageRecord<Object> {
+
+        /** Whether this marks a record whose deletion is queued. */
+        private final boolean tombstone;
+
+        /** Sequence number of the queued write producing this record, or 0 if it matches the durable tier. */
+        private final long sequence;
+
+        /** Time this record was last used, from {@link System#nanoTime()}. */
+        private volatile long lastUsed;
+
+        /**
+         * Constructor for a record matching the durable tier.
+         *
+         * @param val value
+         * @param exp expiration
+         * @param ver version
+         */
+        TieredRecord(@Nonnull @NotEmpty final String val, @Nullable final Long exp, final long ver) {
+            this(val, exp, ver, 0, false);
+        }
+
+        /**
+         * Constructor for a record produced by a queued write.
+         *
+         * @param val value
+         * @param exp expiration
+         * @param ver version
+         * @param seq sequence number of the write
+         */
+        TieredRecord(@Nonnull @NotEmpty final String val, @Nullable final Long exp, final long ver,
+                final long seq) {
+            this(val, exp, ver, seq, false);
+        }
+
+        /**
+         * Constructor.
+         *
+         * @param val value
+         * @param exp expiration
+         * @param ver version
+         * @param seq sequence number of the write, or 0
+         * @param deleted whether this marks a deleted record
+         */
+        private TieredRecord(@Nonnull @NotEmpty final String val, @Nullable final Long exp, final long ver,
+                final long seq, final boolean deleted) {
+            super(val, exp);
+            setVersion(ver);
+            sequence = seq;
+            tombstone = deleted;
+            lastUsed = System.nanoTime();
+        }
+
+        /**
+         * Create a marker for a record whose deletion is queued.
+         *
+         * @param seq sequence number of the deletion
+         *
+         * @return the marker
+         */
+        @Nonnull static TieredRecord tombstone(final long seq) {
+            // The version of a marker is never exposed, but must be positive.
+            return new TieredRecord("deleted", null, 1, seq, true);
+        }
+
+        /**
+         * Get whether the durable tier reflects this record, as it was loaded from there or the write producing
+         * it has been applied.
+         *
+         * @param applied sequence number of the last queued write applied
+         *
+         * @return true iff the record can be read back from the durable tier
+         */
+        boolean isWritten(final long applied) {
+            return sequence <= applied;
+        }
+
+        /**
+         * Get the time this record was last used.
+         *
+         * @return the time, from {@link System#nanoTime()}
+         */
+        long getLastUsed() {
+            return lastUsed;
+        }
+
+        /** Note that this record has been used. */
+        void touch() {
+            lastUsed = System.nanoTime();
+        }
+
+        /**
+         * Get whether this marks a record whose deletion is queued.
+         *
+         * @return true iff this is a deletion marker
+         */
+        boolean isTombstone() {
+            return tombstone;
+        }
+
+        /**
+         * Get whether this is a live record.
+         *
+         * @param now the current time
+         *
+         * @return true iff this is not a deletion marker and has not expired
+         */
+        boolean isLive(final long now) {
+            final Long exp = getExpiration();
+            return !tombstone && (exp == null || now < exp);
+        }
+    }
+
+}
@@ -17,13 +17,11 @@
 
 package org.opensaml.storage.impl.client;
 
-import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Optional;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
@@ -179,24 +177,38 @@ public class LoadClientStorageServices extends AbstractProfileAction {
     private void loadFromCookie(@Nonnull final ClientStorageService storageService,
             @Nonnull final ClientStorageSource source) {
         
-        Optional<Cookie> cookie = Optional.empty();
+        final Map<String,String> cookieValues = new HashMap<>();
         
-        // Search for our cookie.
+        // Index the cookies by name, so that our cookie and any chunks following it can be found.
         final Cookie[] cookies = getHttpServletRequest().getCookies();
         if (cookies != null) {
-            cookie = Arrays.asList(cookies).stream().filter(
-                    c -> c != null && c.getName().equals(storageService.getStorageName())
-                    ).findFirst();
+            for (final Cookie c : cookies) {
+                if (c != null && !Strings.isNullOrEmpty(c.getValue())) {
+                    cookieValues.putIfAbsent(c.getName(), c.getValue());
+                }
+            }
         }
 
-        if (!cookie.isPresent() || Strings.isNullOrEmpty(cookie.get().getValue())) {
+        final String first = cookieValues.get(storageService.getStorageName());
+        if (first == null) {
             log.debug("{} No cookie data present, initializing StorageService '{}' to empty state", getLogPrefix(),
                     storageService.getId());
             storageService.load(null, source);
-        } else {
-            log.debug("{} Initializing StorageService '{}' from cookie", getLogPrefix(), storageService.getId());
-            storageService.load(URISupport.doURLDecode(cookie.orElseThrow().getValue()), source);
+            return;
         }
+        
+        final StringBuilder value = new StringBuilder(first);
+        int index = 1;
+        String chunk;
+        while ((chunk = cookieValues.get(
+                SaveCookieBackedClientStorageServices.getChunkName(storageService.getStorageName(), index))) != null) {
+            value.append(chunk);
+            index++;
+        }
+        
+        log.debug("{} Initializing StorageService '{}' from {} cookie(s)", getLogPrefix(), storageService.getId(),
+                index);
+        storageService.load(URISupport.doURLDecode(value.toString()), source);
     }
  
     /**
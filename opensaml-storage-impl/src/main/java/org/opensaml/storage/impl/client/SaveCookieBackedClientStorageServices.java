@@ -25,6 +25,8 @@ import java.util.Map;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
 
 import org.opensaml.profile.action.AbstractProfileAction;
 import org.opensaml.profile.action.ActionSupport;
@@ -37,7 +39,9 @@ import org.slf4j.LoggerFactory;
 import com.google.common.escape.Escaper;
 import com.google.common.net.UrlEscapers;
 
+import net.shibboleth.utilities.java.support.annotation.constraint.NonNegative;
 import net.shibboleth.utilities.java.support.annotation.constraint.NonnullElements;
+import net.shibboleth.utilities.java.support.annotation.constraint.NotEmpty;
 import net.shibboleth.utilities.java.support.component.ComponentSupport;
 import net.shibboleth.utilities.java.support.logic.Constraint;
 
@@ -47,6 +51,11 @@ import net.shibboleth.utilities.java.support.logic.Constraint;
  * 
  * <p>The {@link ClientStorageSaveContext} is also removed.</p>
  * 
+ * <p>If a cookie chunk size is set, values longer than that are split across a sequence of cookies, the first
+ * named for the storage service and the rest suffixed with ".1", ".2", and so on, which
+ * {@link LoadClientStorageServices} reassembles. Chunk cookies left over from a longer value sent with the
+ * request are cleared.</p>
+ * 
  * @event {@link EventIds#PROCEED_EVENT_ID}
  * @event {@link EventIds#INVALID_PROFILE_CTX}
  * @post ProfileRequestContext.getSubcontext(ClientStorageSaveContext.class) == null
@@ -66,12 +75,29 @@ public class SaveCookieBackedClientStorageServices
     /** URL encoder. */
     @Nonnull private Escaper escaper;
     
+    /** Maximum size of a single cookie value, or 0 for no limit. */
+    @NonNegative private int cookieChunkSize;
+    
     /** Constructor. */
     public SaveCookieBackedClientStorageServices() {
         storageServices = Collections.emptyMap();
         escaper = UrlEscapers.urlFormParameterEscaper();
     }
     
+    /**
+     * Set the maximum size of a single (encoded) cookie value, beyond which the value is split across several
+     * cookies.
+     * 
+     * <p>Defaults to 0, which never splits values.</p>
+     * 
+     * @param size maximum cookie value size
+     */
+    public void setCookieChunkSize(@NonNegative final int size) {
+        ComponentSupport.ifInitializedThrowUnmodifiabledComponentException(this);
+        
+        cookieChunkSize = (int) Constraint.isGreaterThanOrEqual(0, size, "Cookie chunk size cannot be negative");
+    }
+    
     /**
      * Set the {@link ClientStorageService} instances to check for loading.
      * 
@@ -126,19 +152,75 @@ public class SaveCookieBackedClientStorageServices
                         operation.getStorageServiceID());
                 continue;
             }
+            int chunks = 0;
             if (operation.getValue() != null) {
                 log.debug("{} Saving data for ClientStorageService '{}' to cookie named '{}'", getLogPrefix(),
                         operation.getStorageServiceID(), operation.getKey());
-                storageService.getCookieManager().addCookie(operation.getKey(),
-                        escaper.escape(operation.getValue()));
+                final String value = escaper.escape(operation.getValue());
+                if (cookieChunkSize == 0 || value.length() <= cookieChunkSize) {
+                    storageService.getCookieManager().addCookie(operation.getKey(), value);
+                    chunks = 1;
+                } else {
+                    for (int start = 0; start < value.length(); start += cookieChunkSize) {
+                        storageService.getCookieManager().addCookie(getChunkName(operation.getKey(), chunks++),
+                                value.substring(start, Math.min(value.length(), start + cookieChunkSize)));
+                    }
+                    log.debug("{} Split data for ClientStorageService '{}' across {} cookies", getLogPrefix(),
+                            operation.getStorageServiceID(), chunks);
+                }
             } else {
                 log.debug("{} Clearing data for ClientStorageService '{}' from cookie named '{}'", getLogPrefix(),
                         operation.getStorageServiceID(), operation.getKey());
                 storageService.getCookieManager().unsetCookie(operation.getKey());
+                chunks = 1;
             }
+            
+            clearStaleChunks(storageService, operation.getKey(), chunks);
         }
         
         profileRequestContext.removeSubcontext(clientStorageSaveCtx);
     }
+    
+    /**
+     * Clear any chunk cookies sent with the request beyond those just written.
+     * 
+     * @param storageService service owning the cookies
+     * @param name base cookie name
+     * @param chunks number of cookies just written or cleared
+     */
+    private void clearStaleChunks(@Nonnull final ClientStorageService storageService,
+            @Nonnull @NotEmpty final String name, final int chunks) {
+        
+        final HttpServletRequest request = getHttpServletRequest();
+        final Cookie[] cookies = request != null ? request.getCookies() : null;
+        if (cookies == null) {
+            return;
+        }
+        
+        final String prefix = name + '.';
+        for (final Cookie cookie : cookies) {
+            if (cookie != null && cookie.getName().startsWith(prefix)) {
+                try {
+                    if (Integer.parseInt(cookie.getName().substring(prefix.length())) >= chunks) {
+                        storageService.getCookieManager().unsetCookie(cookie.getName());
+                    }
+                } catch (final NumberFormatException e) {
+                    // Not one of ours.
+                }
+            }
+        }
+    }
+    
+    /**
+     * Get the name of the cookie holding a given chunk of a value.
+     * 
+     * @param name base cookie name
+     * @param index zero-based chunk index
+     * 
+     * @return cookie name
+     */
+    @Nonnull @NotEmpty static String getChunkName(@Nonnull @NotEmpty final String name, final int index) {
+        return index == 0 ? name : name + '.' + index;
+    }
 
 }
\ No newline at end of file
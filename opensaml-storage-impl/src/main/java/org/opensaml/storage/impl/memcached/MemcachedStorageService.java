@@ -43,10 +43,14 @@ import org.slf4j.LoggerFactory;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
@@ -76,6 +80,18 @@ import java.util.concurrent.TimeoutException;
  * slab size, which decreases overall cache memory consumption efficiency. When key tracking is disabled, there is no
  * limit on the number of keys per context other than overall cache capacity.
  * <p>
+ * The per-context limit can be raised by spreading the key lists over a number of buckets, chosen by key hash, with
+ * {@link #setContextKeyBuckets(int)}. Each bucket is subject to the slab size limit above, so the number of keys per
+ * context grows in proportion to the number of buckets, and concurrent writers to the same context mostly update
+ * different list entries. All instances sharing the same memcached servers MUST use the same number of buckets, and
+ * it must not be changed while tracked contexts exist.
+ * <p>
+ * Every operation needs the namespace of its context, which costs a memcached round trip before the operation
+ * itself. An optional local cache of context namespaces can be enabled with {@link #setNamespaceCacheTTL(Duration)}
+ * to avoid that round trip. The cache is cleared for a context deleted through this instance, but a context deleted
+ * through another instance sharing the same memcached servers remains visible here under its old namespace until the
+ * cached entry expires, so the TTL should be kept short.
+ * <p>
  * <strong>Limitations and requirements</strong>
  * <ol>
  *     <li>The memcached binary protocol is strong recommended for efficiency and full versioning support.
@@ -102,11 +118,15 @@ public class MemcachedStorageService extends AbstractIdentifiableInitializableCo
     /** Maximum length in bytes of memcached keys. */
     private static final int MAX_KEY_LENGTH = 250;
 
+    /** Default maximum number of cached context namespaces. */
+    private static final int DEFAULT_NAMESPACE_CACHE_SIZE = 1000;
+
     /** Logger instance. */
     private final Logger logger = LoggerFactory.getLogger(MemcachedStorageService.class);
 
     /** Handles conversion of {@link MemcachedStorageRecord} to bytes and vice versa. */
-    private final Transcoder<MemcachedStorageRecord<?>> storageRecordTranscoder = new StorageRecordTranscoder();
+    @Nonnull
+    private StorageRecordTranscoder storageRecordTranscoder = new StorageRecordTranscoder();
 
     /** Handles conversion of strings to bytes and vice versa. */
     private final Transcoder<String> stringTranscoder = new StringTranscoder();
@@ -126,6 +146,22 @@ public class MemcachedStorageService extends AbstractIdentifiableInitializableCo
     /** Flag that controls context key tracking. */
     private boolean trackContextKeys;
 
+    /** Number of buckets over which context key lists are spread. */
+    @Positive
+    private int contextKeyBuckets;
+
+    /** Lifetime of locally cached context namespaces; zero disables the cache. */
+    @Nonnull
+    private Duration namespaceCacheTTL;
+
+    /** Maximum number of locally cached context namespaces. */
+    @Positive
+    private int namespaceCacheSize;
+
+    /** Locally cached context namespaces, keyed by context name, in access order. Guarded by itself. */
+    @Nonnull
+    private final Map<String, NamespaceEntry> namespaceCache;
+
     /**
      * Creates a new instance.
      *
@@ -163,7 +199,17 @@ public class MemcachedStorageService extends AbstractIdentifiableInitializableCo
         memcacheClient = client;
         operationTimeout = timeout;
         trackContextKeys = enableContextKeyTracking;
+        contextKeyBuckets = 1;
         storageCapabilities = new MemcachedStorageCapabilities();
+        namespaceCacheTTL = Duration.ZERO;
+        namespaceCacheSize = DEFAULT_NAMESPACE_CACHE_SIZE;
+        namespaceCache = new LinkedHashMap<String, NamespaceEntry>(16, 0.75f, true) {
+            private static final long serialVersionUID = -1283726614853107562L;
+
+            protected boolean removeEldestEntry(final Map.Entry<String, NamespaceEntry> eldest) {
+                return size() > namespaceCacheSize;
+            }
+        };
     }
 
     /** {@inheritDoc} */
@@ -184,6 +230,100 @@ public class MemcachedStorageService extends AbstractIdentifiableInitializableCo
         storageCapabilities = capabilities;
     }
 
+    /**
+     * Gets the minimum encoded size of a stored record to compress.
+     *
+     * @return Compression threshold in bytes; 0 if compression is disabled.
+     */
+    public int getCompressionThreshold() {
+        return storageRecordTranscoder.getCompressionThreshold();
+    }
+
+    /**
+     * Sets the minimum encoded size of a stored record to compress. Defaults to 0, which disables compression.
+     * Compressed records cannot be read by versions of this class which do not support compression, so this should
+     * only be enabled once all instances sharing the same memcached servers have been upgraded.
+     *
+     * @param threshold Compression threshold in bytes, or 0 to disable compression.
+     */
+    public void setCompressionThreshold(final int threshold) {
+        Constraint.isGreaterThanOrEqual(0, threshold, "Compression threshold cannot be negative");
+        storageRecordTranscoder = new StorageRecordTranscoder(threshold);
+    }
+
+    /**
+     * Gets the number of buckets over which context key lists are spread when context key tracking is enabled.
+     *
+     * @return Number of context key buckets.
+     */
+    @Positive
+    public int getContextKeyBuckets() {
+        return contextKeyBuckets;
+    }
+
+    /**
+     * Sets the number of buckets over which context key lists are spread when context key tracking is enabled.
+     * Defaults to 1, which stores a single key list and blacklist per context as in previous versions.
+     *
+     * @param buckets Number of context key buckets.
+     */
+    public void setContextKeyBuckets(@Positive final int buckets) {
+        Constraint.isGreaterThan(0, buckets, "Number of context key buckets must be positive");
+        contextKeyBuckets = buckets;
+    }
+
+    /**
+     * Gets the lifetime of locally cached context namespaces.
+     *
+     * @return Namespace cache TTL; zero if the cache is disabled.
+     */
+    @Nonnull
+    public Duration getNamespaceCacheTTL() {
+        return namespaceCacheTTL;
+    }
+
+    /**
+     * Sets the lifetime of locally cached context namespaces. Defaults to zero, which disables the cache.
+     *
+     * @param ttl Namespace cache TTL.
+     */
+    public void setNamespaceCacheTTL(@Nonnull final Duration ttl) {
+        Constraint.isNotNull(ttl, "Namespace cache TTL cannot be null");
+        Constraint.isFalse(ttl.isNegative(), "Namespace cache TTL cannot be negative");
+        namespaceCacheTTL = ttl;
+        clearNamespaceCache();
+    }
+
+    /**
+     * Gets the maximum number of locally cached context namespaces.
+     *
+     * @return Namespace cache size.
+     */
+    @Positive
+    public int getNamespaceCacheSize() {
+        return namespaceCacheSize;
+    }
+
+    /**
+     * Sets the maximum number of locally cached context namespaces. Defaults to 1000.
+     *
+     * @param size Namespace cache size.
+     */
+    public void setNamespaceCacheSize(@Positive final int size) {
+        Constraint.isGreaterThan(0, size, "Namespace cache size must be positive");
+        namespaceCacheSize = size;
+        clearNamespaceCache();
+    }
+
+    /**
+     * Removes all locally cached context namespaces.
+     */
+    public void clearNamespaceCache() {
+        synchronized (namespaceCache) {
+            namespaceCache.clear();
+        }
+    }
+
     /** {@inheritDoc} */
     @Override
     public boolean create(@Nonnull @NotEmpty final String context,
@@ -525,25 +665,40 @@ public class MemcachedStorageService extends AbstractIdentifiableInitializableCo
             logger.debug("Cannot update context expiration since context namespace does not exist");
             return;
         }
-        final CASValue<String> keys = handleAsyncResult(
-                memcacheClient.asyncGets(namespace + CTX_KEY_LIST_SUFFIX, stringTranscoder));
-        if (keys == null) {
-            logger.debug("No context keys found to update expiration");
-            return;
-        }
-        final Set<String> keySet = new HashSet<>(Arrays.asList(keys.getValue().split(CTX_KEY_LIST_DELIMITER)));
-        final CASValue<String> blacklistKeys = handleAsyncResult(
-                memcacheClient.asyncGets(namespace + CTX_KEY_BLACKLIST_SUFFIX, stringTranscoder));
-        if (blacklistKeys != null) {
-            keySet.removeAll(Arrays.asList(blacklistKeys.getValue().split(CTX_KEY_LIST_DELIMITER)));
+        // Issue all list reads before waiting on any
+        final List<OperationFuture<CASValue<String>>> keysResults = new ArrayList<>(contextKeyBuckets);
+        final List<OperationFuture<CASValue<String>>> blacklistResults = new ArrayList<>(contextKeyBuckets);
+        for (int bucket = 0; bucket < contextKeyBuckets; bucket++) {
+            keysResults.add(memcacheClient.asyncGets(
+                    contextKeyListKey(CTX_KEY_LIST_SUFFIX, namespace, bucket), stringTranscoder));
+            blacklistResults.add(memcacheClient.asyncGets(
+                    contextKeyListKey(CTX_KEY_BLACKLIST_SUFFIX, namespace, bucket), stringTranscoder));
         }
-        final List<OperationFuture<Boolean>> results = new ArrayList<>(keySet.size());
-        for (final String key : keySet) {
-            logger.debug("Updating expiration of key {} to {}", key, expiry);
-            results.add(memcacheClient.touch(key, expiry));
+        boolean found = false;
+        for (int bucket = 0; bucket < contextKeyBuckets; bucket++) {
+            final CASValue<String> keys = handleAsyncResult(keysResults.get(bucket));
+            final CASValue<String> blacklistKeys = handleAsyncResult(blacklistResults.get(bucket));
+            if (keys == null) {
+                continue;
+            }
+            found = true;
+            final Set<String> keySet =
+                    new HashSet<>(Arrays.asList(keys.getValue().split(CTX_KEY_LIST_DELIMITER)));
+            if (blacklistKeys != null) {
+                keySet.removeAll(Arrays.asList(blacklistKeys.getValue().split(CTX_KEY_LIST_DELIMITER)));
+            }
+            // Wait for each bucket's updates before starting the next to bound the number of pending operations
+            final List<OperationFuture<Boolean>> results = new ArrayList<>(keySet.size());
+            for (final String key : keySet) {
+                logger.debug("Updating expiration of key {} to {}", key, expiry);
+                results.add(memcacheClient.touch(key, expiry));
+            }
+            for (final OperationFuture<Boolean> result : results) {
+                handleAsyncResult(result);
+            }
         }
-        for (final OperationFuture<Boolean> result : results) {
-            handleAsyncResult(result);
+        if (!found) {
+            logger.debug("No context keys found to update expiration");
         }
     }
 // Checkstyle: ReturnCount ON
@@ -553,6 +708,7 @@ public class MemcachedStorageService extends AbstractIdentifiableInitializableCo
     public void deleteContext(@Nonnull @NotEmpty final String context) throws IOException {
         Constraint.isNotNull(StringSupport.trimOrNull(context), "Context cannot be null or empty");
         final String namespace = lookupNamespace(context);
+        uncacheNamespace(context);
         if (namespace == null) {
             logger.debug("Namespace for context {} does not exist. Context values effectively deleted.", context);
             return;
@@ -560,11 +716,15 @@ public class MemcachedStorageService extends AbstractIdentifiableInitializableCo
         final OperationFuture<Boolean> ctxResult = memcacheClient.delete(context);
         final OperationFuture<Boolean> nsResult = memcacheClient.delete(namespace);
         if (trackContextKeys) {
-            final OperationFuture<Boolean> keyListResult = memcacheClient.delete(namespace + CTX_KEY_LIST_SUFFIX);
-            final OperationFuture<Boolean> blackListResult =
-                    memcacheClient.delete(namespace + CTX_KEY_BLACKLIST_SUFFIX);
-            handleAsyncResult(keyListResult);
-            handleAsyncResult(blackListResult);
+            final List<OperationFuture<Boolean>> listResults = new ArrayList<>(2 * contextKeyBuckets);
+            for (int bucket = 0; bucket < contextKeyBuckets; bucket++) {
+                listResults.add(memcacheClient.delete(contextKeyListKey(CTX_KEY_LIST_SUFFIX, namespace, bucket)));
+                listResults.add(
+                        memcacheClient.delete(contextKeyListKey(CTX_KEY_BLACKLIST_SUFFIX, namespace, bucket)));
+            }
+            for (final OperationFuture<Boolean> result : listResults) {
+                handleAsyncResult(result);
+            }
         }
         handleAsyncResult(ctxResult);
         handleAsyncResult(nsResult);
@@ -587,10 +747,18 @@ public class MemcachedStorageService extends AbstractIdentifiableInitializableCo
      * @throws java.io.IOException On memcached operation errors.
      */
     protected String lookupNamespace(final String context) throws IOException {
+        final String cached = getCachedNamespace(context);
+        if (cached != null) {
+            return cached;
+        }
         try {
             final CASValue<String> result = handleAsyncResult(
                     memcacheClient.asyncGets(memcachedKey(context), stringTranscoder));
-            return result == null ? null : result.getValue();
+            if (result == null) {
+                return null;
+            }
+            cacheNamespace(context, result.getValue());
+            return result.getValue();
         } catch (final RuntimeException e) {
             throw new IOException("Memcached operation failed", e);
         }
@@ -619,9 +787,62 @@ public class MemcachedStorageService extends AbstractIdentifiableInitializableCo
         if (!handleAsyncResult(memcacheClient.add(memcachedKey(context), 0, namespace, stringTranscoder))) {
             throw new IllegalStateException(context + " already exists");
         }
+        cacheNamespace(context, namespace);
         return namespace;
     }
 
+    /**
+     * Gets the locally cached namespace for the given context name.
+     *
+     * @param context Context name.
+     *
+     * @return Cached namespace, or null if the cache is disabled or holds no live entry for the context.
+     */
+    @Nullable
+    private String getCachedNamespace(@Nonnull final String context) {
+        if (namespaceCacheTTL.isZero()) {
+            return null;
+        }
+        synchronized (namespaceCache) {
+            final NamespaceEntry entry = namespaceCache.get(context);
+            if (entry == null) {
+                return null;
+            }
+            if (Instant.now().isBefore(entry.expiration)) {
+                return entry.namespace;
+            }
+            namespaceCache.remove(context);
+            return null;
+        }
+    }
+
+    /**
+     * Caches the namespace for the given context name locally, if the cache is enabled.
+     *
+     * @param context Context name.
+     * @param namespace Namespace for the context.
+     */
+    private void cacheNamespace(@Nonnull final String context, @Nonnull final String namespace) {
+        if (namespaceCacheTTL.isZero()) {
+            return;
+        }
+        final NamespaceEntry entry = new NamespaceEntry(namespace, Instant.now().plus(namespaceCacheTTL));
+        synchronized (namespaceCache) {
+            namespaceCache.put(context, entry);
+        }
+    }
+
+    /**
+     * Removes any locally cached namespace for the given context name.
+     *
+     * @param context Context name.
+     */
+    private void uncacheNamespace(@Nonnull final String context) {
+        synchronized (namespaceCache) {
+            namespaceCache.remove(context);
+        }
+    }
+
     /**
      * Creates a memcached key from one or more parts.
      *
@@ -670,6 +891,21 @@ public class MemcachedStorageService extends AbstractIdentifiableInitializableCo
         }
     }
 
+    /**
+     * Gets the memcached key of a context key list or blacklist bucket.
+     *
+     * @param suffix the list suffix
+     * @param namespace the namespace
+     * @param bucket the bucket number
+     * @return the key of the list bucket
+     */
+    private String contextKeyListKey(final String suffix, final String namespace, final int bucket) {
+        if (contextKeyBuckets == 1) {
+            return namespace + suffix;
+        }
+        return namespace + suffix + ':' + bucket;
+    }
+
     /**
      * Update context key list.
      * 
@@ -681,7 +917,7 @@ public class MemcachedStorageService extends AbstractIdentifiableInitializableCo
      */
     private boolean updateContextKeyList(final String suffix, final String namespace, final String key)
             throws IOException {
-        final String listKey = namespace + suffix;
+        final String listKey = contextKeyListKey(suffix, namespace, Math.floorMod(key.hashCode(), contextKeyBuckets));
         final String newItem = key + CTX_KEY_LIST_DELIMITER;
         final boolean success = handleAsyncResult(memcacheClient.append(listKey, newItem, stringTranscoder));
         if (!success) {
@@ -690,4 +926,27 @@ public class MemcachedStorageService extends AbstractIdentifiableInitializableCo
         }
         return success;
     }
+
+    /** Locally cached context namespace. */
+    private static final class NamespaceEntry {
+
+        /** Namespace. */
+        @Nonnull
+        private final String namespace;
+
+        /** Time at which the entry expires. */
+        @Nonnull
+        private final Instant expiration;
+
+        /**
+         * Constructor.
+         *
+         * @param ns Namespace.
+         * @param expires Time at which the entry expires.
+         */
+        NamespaceEntry(@Nonnull final String ns, @Nonnull final Instant expires) {
+            namespace = ns;
+            expiration = expires;
+        }
+    }
 }
\ No newline at end of file
@@ -21,18 +21,65 @@ import net.spy.memcached.CachedData;
 import net.spy.memcached.transcoders.Transcoder;
 import org.cryptacular.util.ByteUtil;
 
+import java.io.ByteArrayOutputStream;
 import java.nio.charset.StandardCharsets;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
 
 /**
  * Handles conversion of {@link MemcachedStorageRecord} to bytes and back.
+ * <p>
+ * A record is encoded as its 8-byte expiration followed by its UTF-8 value. If a compression threshold is set,
+ * encodings of at least that many bytes are compressed with raw DEFLATE when that makes them smaller, and marked as
+ * such with the {@link #FLAG_DEFLATED} memcached flag. Records are decoded according to their flags, so uncompressed
+ * records written by earlier versions, or with compression disabled, are always readable. Compression is disabled by
+ * default so that records remain readable by earlier versions.
  *
  * @author Marvin S. Addison
  */
 public class StorageRecordTranscoder implements Transcoder<MemcachedStorageRecord<?>> {
 
+    /** Memcached flag marking a DEFLATE-compressed record. */
+    public static final int FLAG_DEFLATED = 1;
+
     /** Max size is maximum default memcached value size, 1MB. */
     private static final int MAX_SIZE = 1024 * 1024;
 
+    /** Maximum size of a decompressed record. */
+    private static final int MAX_INFLATED_SIZE = 16 * MAX_SIZE;
+
+    /** Size of the buffer used to compress and decompress records. */
+    private static final int BUFFER_SIZE = 8192;
+
+    /** Minimum encoded size in bytes of a record to compress; 0 disables compression. */
+    private final int compressionThreshold;
+
+    /** Creates a new instance that does not compress records. */
+    public StorageRecordTranscoder() {
+        this(0);
+    }
+
+    /**
+     * Creates a new instance that compresses large records.
+     *
+     * @param threshold Minimum encoded size in bytes of a record to compress, or 0 to disable compression.
+     */
+    public StorageRecordTranscoder(final int threshold) {
+        if (threshold < 0) {
+            throw new IllegalArgumentException("Compression threshold cannot be negative");
+        }
+        compressionThreshold = threshold;
+    }
+
+    /**
+     * Gets the minimum encoded size of a record to compress.
+     *
+     * @return Compression threshold in bytes; 0 if compression is disabled.
+     */
+    public int getCompressionThreshold() {
+        return compressionThreshold;
+    }
 
     @Override
     public boolean asyncDecode(final CachedData d) {
@@ -45,12 +92,18 @@ public class StorageRecordTranscoder implements Transcoder<MemcachedStorageRecor
         final byte[] encoded = new byte[value.length + 8];
         ByteUtil.toBytes(o.getExpiration() == null ? 0 : o.getExpiration().longValue(), encoded, 0);
         System.arraycopy(value, 0, encoded, 8, value.length);
+        if (compressionThreshold > 0 && encoded.length >= compressionThreshold) {
+            final byte[] compressed = deflate(encoded);
+            if (compressed.length < encoded.length) {
+                return new CachedData(FLAG_DEFLATED, compressed, MAX_SIZE);
+            }
+        }
         return new CachedData(0, encoded, MAX_SIZE);
     }
 
     @Override
     public MemcachedStorageRecord<?> decode(final CachedData d) {
-        final byte[] bytes = d.getData();
+        final byte[] bytes = (d.getFlags() & FLAG_DEFLATED) != 0 ? inflate(d.getData()) : d.getData();
         final String value = new String(bytes, 8, bytes.length - 8, StandardCharsets.UTF_8);
         final long exp = ((long) bytes[0] << 56) | (((long) bytes[1] & 0xff) << 48) |
                 (((long) bytes[2] & 0xff) << 40) | (((long) bytes[3] & 0xff) << 32) |
@@ -63,4 +116,58 @@ public class StorageRecordTranscoder implements Transcoder<MemcachedStorageRecor
     public int getMaxSize() {
         return MAX_SIZE;
     }
+
+    /**
+     * Compresses data with raw DEFLATE.
+     *
+     * @param data Data to compress.
+     *
+     * @return Compressed data.
+     */
+    private byte[] deflate(final byte[] data) {
+        final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        try {
+            deflater.setInput(data);
+            deflater.finish();
+            final ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 2);
+            final byte[] buffer = new byte[BUFFER_SIZE];
+            while (!deflater.finished()) {
+                out.write(buffer, 0, deflater.deflate(buffer));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Decompresses raw DEFLATE data.
+     *
+     * @param data Data to decompress.
+     *
+     * @return Decompressed data.
+     */
+    private byte[] inflate(final byte[] data) {
+        final Inflater inflater = new Inflater(true);
+        try {
+            inflater.setInput(data);
+            final ByteArrayOutputStream out = new ByteArrayOutputStream(data.length * 4);
+            final byte[] buffer = new byte[BUFFER_SIZE];
+            while (!inflater.finished()) {
+                final int count = inflater.inflate(buffer);
+                if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IllegalArgumentException("Truncated compressed storage record");
+                }
+                out.write(buffer, 0, count);
+                if (out.size() > MAX_INFLATED_SIZE) {
+                    throw new IllegalArgumentException("Compressed storage record exceeds maximum size");
+                }
+            }
+            return out.toByteArray();
+        } catch (final DataFormatException e) {
+            throw new IllegalArgumentException("Invalid compressed storage record", e);
+        } finally {
+            inflater.end();
+        }
+    }
 }
@@ -0,0 +1,135 @@
+/*
+ * Licensed to the University Corporation for Advanced Internet Development,
+ * Inc. (UCAID) under one or more contributor license agreements.  See the
+ * NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The UCAID licenses this file to You under the Apache
+ * License, Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opensaml.storage.impl;
+
+import java.io.IOException;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.persistence.EntityManager;
+import javax.persistence.Query;
+
+import org.opensaml.storage.StorageRecord;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * Test of {@link JPAStorageService} implementation with non-transactional reads and a read cache.
+ */
+public class CachedReadJPAStorageServiceTest extends JPAStorageServiceTest {
+
+    /** {@inheritDoc} */
+    @Override
+    protected void configure(@Nonnull final JPAStorageService service) {
+        service.setTransactionalReads(false);
+        service.setReadCacheSize(10);
+    }
+
+    @Test
+    public void readCache() throws IOException {
+        final JPAStorageService service = (JPAStorageService) getStorageService();
+        final String context = Long.toString(random.nextLong());
+        final long exp = System.currentTimeMillis() + 60000;
+        Assert.assertTrue(service.create(context, "key", "value1", exp));
+        Assert.assertEquals(service.read(context, "key").getValue(), "value1");
+        final long hits = service.getReadCacheHitCount();
+        Assert.assertEquals(service.read(context, "key").getValue(), "value1");
+        Assert.assertEquals(service.getReadCacheHitCount(), hits + 1);
+
+        Assert.assertTrue(service.update(context, "key", "value2", exp));
+        final StorageRecord<?> record = service.read(context, "key");
+        Assert.assertEquals(record.getValue(), "value2");
+        Assert.assertEquals(record.getVersion(), 2);
+        Assert.assertEquals(service.read(context, "key").getValue(), "value2");
+
+        Assert.assertTrue(service.delete(context, "key"));
+        Assert.assertNull(service.read(context, "key"));
+        Assert.assertNull(service.read(context, "key"));
+    }
+
+    @Test
+    public void readCacheSeesDirectChanges() throws IOException {
+        final JPAStorageService service = (JPAStorageService) getStorageService();
+        final String context = Long.toString(random.nextLong());
+        final long exp = System.currentTimeMillis() + 60000;
+        Assert.assertTrue(service.create(context, "key", "value1", exp));
+        Assert.assertEquals(service.read(context, "key").getValue(), "value1");
+
+        // Change the value behind the service's back, as another node sharing the database would.
+        executeDirectly("JPAStorageRecord.updateByIdAndVersion", context, "key", 1, "value2", 2L, exp);
+        StorageRecord<?> record = service.read(context, "key");
+        Assert.assertEquals(record.getValue(), "value2");
+        Assert.assertEquals(record.getVersion(), 2);
+
+        // Change only the expiration.
+        executeDirectly("JPAStorageRecord.updateExpirationByIdAndVersion", context, "key", 2, null, null, exp + 1000);
+        record = service.read(context, "key");
+        Assert.assertEquals(record.getValue(), "value2");
+        Assert.assertEquals(record.getExpiration(), Long.valueOf(exp + 1000));
+
+        executeDirectly("JPAStorageRecord.deleteByIdAndVersion", context, "key", 2, null, null, null);
+        Assert.assertNull(service.read(context, "key"));
+    }
+
+    @Test
+    public void readCacheSkipsUnexpiring() throws IOException {
+        final JPAStorageService service = (JPAStorageService) getStorageService();
+        final String context = Long.toString(random.nextLong());
+        Assert.assertTrue(service.create(context, "key", "value", null));
+        final long hits = service.getReadCacheHitCount();
+        Assert.assertEquals(service.read(context, "key").getValue(), "value");
+        Assert.assertEquals(service.read(context, "key").getValue(), "value");
+        Assert.assertEquals(service.getReadCacheHitCount(), hits);
+        service.deleteContext(context);
+    }
+
+    /**
+     * Executes a named versioned query against the database directly, bypassing the storage service.
+     * 
+     * @param name name of the query
+     * @param context context of the record
+     * @param key key of the record
+     * @param version current version of the record
+     * @param value new value, or null if the query takes none
+     * @param newVersion new version, or null if the query takes none
+     * @param exp new expiration, or null if the query takes none
+     */
+    private void executeDirectly(@Nonnull final String name, @Nonnull final String context,
+            @Nonnull final String key, final long version, @Nullable final String value,
+            @Nullable final Long newVersion, @Nullable final Long exp) {
+        final EntityManager manager = getEntityManagerFactory().createEntityManager();
+        try {
+            manager.getTransaction().begin();
+            final Query query = manager.createNamedQuery(name);
+            query.setParameter("context", context);
+            query.setParameter("key", key);
+            query.setParameter("version", version);
+            if (value != null) {
+                query.setParameter("value", value);
+                query.setParameter("newVersion", newVersion);
+            }
+            if (exp != null) {
+                query.setParameter("exp", exp);
+            }
+            Assert.assertEquals(query.executeUpdate(), 1);
+            manager.getTransaction().commit();
+        } finally {
+            manager.close();
+        }
+    }
+}
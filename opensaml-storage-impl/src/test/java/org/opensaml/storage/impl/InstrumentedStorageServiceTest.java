@@ -0,0 +1,118 @@
+/*
+ * Licensed to the University Corporation for Advanced Internet Development,
+ * Inc. (UCAID) under one or more contributor license agreements.  See the
+ * NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The UCAID licenses this file to You under the Apache
+ * License, Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opensaml.storage.impl;
+
+import java.io.IOException;
+import java.util.List;
+
+import javax.annotation.Nonnull;
+
+import net.shibboleth.utilities.java.support.component.ComponentInitializationException;
+
+import org.opensaml.storage.StorageService;
+import org.opensaml.storage.StorageServiceTest;
+import org.opensaml.storage.VersionMismatchException;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.codahale.metrics.MetricRegistry;
+
+/**
+ * Test of {@link InstrumentedStorageService} implementation.
+ */
+public class InstrumentedStorageServiceTest extends StorageServiceTest {
+
+    /** {@inheritDoc} */
+    @Override
+    @Nonnull protected StorageService getStorageService() {
+        final InstrumentedStorageService ss = new InstrumentedStorageService(getWrappedStorageService());
+        ss.setId("test");
+        ss.setMetricRegistry(new MetricRegistry());
+        return ss;
+    }
+
+    /**
+     * Get an initialized in-memory service to instrument.
+     *
+     * @return the wrapped service
+     */
+    @Nonnull private MemoryStorageService getWrappedStorageService() {
+        final MemoryStorageService wrapped = new MemoryStorageService();
+        wrapped.setId("wrapped");
+        try {
+            wrapped.initialize();
+        } catch (final ComponentInitializationException e) {
+            throw new IllegalStateException(e);
+        }
+        return wrapped;
+    }
+
+    @Test
+    public void metrics() throws IOException, ComponentInitializationException {
+        final MemoryStorageService wrapped = getWrappedStorageService();
+        final MetricRegistry registry = new MetricRegistry();
+        final InstrumentedStorageService ss = new InstrumentedStorageService(wrapped);
+        ss.setId("test");
+        ss.setMetricRegistry(registry);
+        ss.setMetricsBaseName("storage");
+        ss.setTrackedContexts(List.of("tracked"));
+        ss.initialize();
+
+        Assert.assertTrue(ss.create("tracked", "key", "value", null));
+        Assert.assertTrue(ss.create("other", "key", "longer value", null));
+        Assert.assertNotNull(ss.read("tracked", "key"));
+        Assert.assertNull(ss.read("other", "missing"));
+        Assert.assertNotNull(ss.read("other", "key", 1).getFirst());
+        try {
+            ss.updateWithVersion(5, "tracked", "key", "value2", null);
+            Assert.fail("Stale version was not rejected");
+        } catch (final VersionMismatchException e) {
+            // expected
+        }
+
+        Assert.assertEquals(registry.getTimers().get("storage.timer.create").getCount(), 2);
+        Assert.assertEquals(registry.getTimers().get("storage.timer.read").getCount(), 3);
+        Assert.assertEquals(registry.getTimers().get("storage.timer.update").getCount(), 1);
+        Assert.assertEquals(registry.getTimers().get("storage.context.tracked.timer.create").getCount(), 1);
+        Assert.assertEquals(registry.getTimers().get("storage.context.tracked.timer.read").getCount(), 1);
+        Assert.assertEquals(registry.getCounters().get("storage.counter.readHits").getCount(), 2);
+        Assert.assertEquals(registry.getCounters().get("storage.counter.readMisses").getCount(), 1);
+        Assert.assertEquals(registry.getCounters().get("storage.counter.versionMismatches").getCount(), 1);
+        Assert.assertEquals(registry.getHistograms().get("storage.histogram.valueSize").getCount(), 4);
+
+        ss.destroy();
+        Assert.assertTrue(registry.getMetrics().isEmpty(), "Metrics were not removed");
+        wrapped.destroy();
+    }
+
+    @Test
+    public void uninstrumented() throws IOException, ComponentInitializationException {
+        final MemoryStorageService wrapped = getWrappedStorageService();
+        final InstrumentedStorageService ss = new InstrumentedStorageService(wrapped);
+        ss.setId("test");
+        ss.initialize();
+
+        Assert.assertTrue(ss.create("context", "key", "value", null));
+        Assert.assertEquals(ss.read("context", "key").getValue(), "value");
+        Assert.assertTrue(ss.delete("context", "key"));
+
+        ss.destroy();
+        wrapped.destroy();
+    }
+
+}
@@ -47,6 +47,9 @@ import org.testng.annotations.Test;
  */
 public class JPAStorageServiceTest extends StorageServiceTest {
 
+    /** Entity manager factory. */
+    private EntityManagerFactory entityManagerFactory;
+
     /** Storage service. */
     private JPAStorageService storageService;
 
@@ -65,13 +68,23 @@ public class JPAStorageServiceTest extends StorageServiceTest {
      * Creates the shared instance of the entity manager factory.
      */
     @BeforeClass public void setUp() throws ComponentInitializationException {
-        storageService = new JPAStorageService(createEntityManagerFactory());
+        entityManagerFactory = createEntityManagerFactory();
+        storageService = new JPAStorageService(entityManagerFactory);
         storageService.setId("test");
         storageService.setCleanupInterval(Duration.ofSeconds(5));
         storageService.setTransactionRetry(2);
+        configure(storageService);
         super.setUp();
     }
 
+    /**
+     * Applies any further configuration to the storage service before it is initialized.
+     * 
+     * @param service the storage service
+     */
+    protected void configure(@Nonnull final JPAStorageService service) {
+    }
+
     /**
      * Creates an entity manager factory instance.
      * 
@@ -115,6 +128,15 @@ public class JPAStorageServiceTest extends StorageServiceTest {
         return storageService;
     }
 
+    /**
+     * Gets the entity manager factory used by the storage service, to access records directly.
+     * 
+     * @return the entity manager factory
+     */
+    @Nonnull protected EntityManagerFactory getEntityManagerFactory() {
+        return entityManagerFactory;
+    }
+
     @Test
     public void cleanup() throws ComponentInitializationException, IOException {
         String context = Long.toString(random.nextLong());
@@ -19,6 +19,8 @@ package org.opensaml.storage.impl;
 
 import java.io.IOException;
 import java.time.Duration;
+import java.util.List;
+import java.util.Map;
 
 import javax.annotation.Nonnull;
 
@@ -166,6 +168,30 @@ public class LDAPStorageServiceTest {
         Assert.assertNull(rec);
     }
 
+    @Test
+    public void batch() throws IOException {
+        storageService.updateAll(context, Map.of("mail", "principal@shibboleth.net", "description", "test user"));
+        Map<String,StorageRecord<Object>> recs =
+                storageService.readAll(context, List.of("mail", "description", "title"));
+        Assert.assertEquals(recs.size(), 2);
+        Assert.assertEquals(recs.get("mail").getValue(), "principal@shibboleth.net");
+        Assert.assertEquals(recs.get("description").getValue(), "test user");
+
+        storageService.updateAll(context, Map.of("mail", "principal2@shibboleth.net", "title", "tester"));
+        recs = storageService.readAll(context, List.of("mail", "description", "title"));
+        Assert.assertEquals(recs.size(), 3);
+        Assert.assertEquals(recs.get("mail").getValue(), "principal2@shibboleth.net");
+        Assert.assertEquals(recs.get("title").getValue(), "tester");
+
+        storageService.deleteAll(context, List.of("description", "title"));
+        recs = storageService.readAll(context, List.of("mail", "description", "title"));
+        Assert.assertEquals(recs.size(), 1);
+        Assert.assertEquals(recs.get("mail").getValue(), "principal2@shibboleth.net");
+
+        storageService.deleteContext(context);
+        Assert.assertTrue(storageService.readAll(context, List.of("mail")).isEmpty());
+    }
+
     @Test public void invalidConfig() {
         LDAPStorageService ss = new LDAPStorageService(getPooledConnectionFactory());
         ss.setCleanupInterval(Duration.ofSeconds(1));
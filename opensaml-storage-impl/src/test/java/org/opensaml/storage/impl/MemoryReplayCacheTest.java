@@ -0,0 +1,129 @@
+/*
+ * Licensed to the University Corporation for Advanced Internet Development,
+ * Inc. (UCAID) under one or more contributor license agreements.  See the
+ * NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The UCAID licenses this file to You under the Apache
+ * License, Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opensaml.storage.impl;
+
+import java.time.Duration;
+import java.time.Instant;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ * Tests for {@link MemoryReplayCache}
+ */
+public class MemoryReplayCacheTest {
+
+    private String context;
+
+    private String messageID;
+
+    private Instant expiration;
+
+    private MemoryReplayCache replayCache;
+
+    @BeforeMethod
+    protected void setUp() throws Exception {
+        context = getClass().getName();
+        messageID = "abc123";
+        expiration = Instant.now().plusSeconds(180);
+
+        replayCache = new MemoryReplayCache();
+        replayCache.setId("test");
+        replayCache.setBucketInterval(Duration.ofMillis(100));
+        replayCache.setPartitions(4);
+        replayCache.initialize();
+    }
+
+    @AfterMethod
+    protected void tearDown() {
+        replayCache.destroy();
+        replayCache = null;
+    }
+
+    @Test
+    public void testInit() {
+        final MemoryReplayCache cache = new MemoryReplayCache();
+        try {
+            cache.setBucketInterval(Duration.ZERO);
+            Assert.fail("Zero interval should have caused constraint violation");
+        } catch (final Exception e) {
+        }
+
+        try {
+            cache.setPartitions(0);
+            Assert.fail("Zero partitions should have caused constraint violation");
+        } catch (final Exception e) {
+        }
+    }
+
+    @Test
+    public void testStorageNotSupported() {
+        final MemoryReplayCache cache = new MemoryReplayCache();
+        Assert.assertNull(cache.getStorage());
+        try {
+            cache.setStorage(new MemoryStorageService());
+            Assert.fail("Setting a StorageService should not be supported");
+        } catch (final UnsupportedOperationException e) {
+        }
+
+        try {
+            cache.setStrict(true);
+            Assert.fail("Setting the strict flag should not be supported");
+        } catch (final UnsupportedOperationException e) {
+        }
+    }
+
+    @Test
+    public void testReplay() {
+        Assert.assertTrue(replayCache.check(context, messageID, expiration),
+                "Message was not replay, insert into empty cache");
+        Assert.assertFalse(replayCache.check(context, messageID, expiration), "Message was replay");
+        Assert.assertFalse(replayCache.check(context, messageID, expiration.plusSeconds(600)),
+                "Message was replay with a different expiration");
+        Assert.assertTrue(replayCache.check(context + "2", messageID, expiration),
+                "Message was not replay in a different context");
+    }
+
+    @Test
+    public void testManyValues() {
+        for (int i = 0; i < 10000; i++) {
+            Assert.assertTrue(replayCache.check(context, messageID + i, expiration.plusMillis(i)),
+                    "Message was not replay");
+        }
+        for (int i = 0; i < 10000; i++) {
+            Assert.assertFalse(replayCache.check(context, messageID + i, expiration), "Message was replay");
+        }
+    }
+
+    @Test
+    public void testExpiration() throws InterruptedException {
+        Assert.assertTrue(replayCache.check(context, messageID, Instant.now().minusSeconds(1)),
+                "Expired message was not replay");
+        Assert.assertTrue(replayCache.check(context, messageID, Instant.now().plusSeconds(1)),
+                "Message was not replay, expired message should not have been cached");
+
+        // Sleep for 2 seconds to make sure the bucket holding the entry has expired
+        Thread.sleep(2000L);
+
+        Assert.assertTrue(replayCache.check(context, messageID, Instant.now().plusSeconds(1)),
+                "Message was not replay, previous cache entry should have expired");
+    }
+
+}
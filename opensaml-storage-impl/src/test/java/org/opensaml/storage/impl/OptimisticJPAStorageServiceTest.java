@@ -0,0 +1,141 @@
+/*
+ * Licensed to the University Corporation for Advanced Internet Development,
+ * Inc. (UCAID) under one or more contributor license agreements.  See the
+ * NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The UCAID licenses this file to You under the Apache
+ * License, Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opensaml.storage.impl;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.annotation.Nonnull;
+
+import org.opensaml.storage.StorageRecord;
+import org.opensaml.storage.VersionMismatchException;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * Test of {@link JPAStorageService} implementation with optimistic locking and chunked reaping.
+ */
+public class OptimisticJPAStorageServiceTest extends JPAStorageServiceTest {
+
+    /** {@inheritDoc} */
+    @Override
+    protected void configure(@Nonnull final JPAStorageService service) {
+        service.setOptimisticLocking(true);
+        service.setReapChunkSize(7);
+    }
+
+    @Test
+    public void versionedUpdate() throws IOException, VersionMismatchException {
+        final JPAStorageService service = (JPAStorageService) getStorageService();
+        final String context = Long.toString(random.nextLong());
+        Assert.assertTrue(service.create(context, "key", "value1", null));
+        final StorageRecord<?> record = service.read(context, "key");
+        Assert.assertNotNull(record);
+
+        final Long version = service.updateWithVersion(record.getVersion(), context, "key", "value2", null);
+        Assert.assertEquals(version, Long.valueOf(record.getVersion() + 1));
+        try {
+            service.updateWithVersion(record.getVersion(), context, "key", "value3", null);
+            Assert.fail("Stale version was not rejected");
+        } catch (final VersionMismatchException e) {
+            // expected
+        }
+        Assert.assertTrue(service.updateExpiration(context, "key", System.currentTimeMillis() + 60000));
+        Assert.assertEquals(service.read(context, "key").getValue(), "value2");
+        Assert.assertEquals(service.read(context, "key").getVersion(), version.longValue());
+
+        try {
+            service.deleteWithVersion(record.getVersion(), context, "key");
+            Assert.fail("Stale version was not rejected");
+        } catch (final VersionMismatchException e) {
+            // expected
+        }
+        Assert.assertTrue(service.deleteWithVersion(version, context, "key"));
+        Assert.assertNull(service.read(context, "key"));
+    }
+
+    @Test
+    public void recreateExpired() throws IOException, InterruptedException {
+        final JPAStorageService service = (JPAStorageService) getStorageService();
+        final String context = Long.toString(random.nextLong());
+        Assert.assertTrue(service.create(context, "key", "value1", System.currentTimeMillis() + 50));
+        Thread.sleep(100);
+        Assert.assertTrue(service.create(context, "key", "value2", null));
+        final StorageRecord<?> record = service.read(context, "key");
+        Assert.assertEquals(record.getValue(), "value2");
+        Assert.assertEquals(record.getVersion(), 1);
+        service.deleteContext(context);
+    }
+
+    @Test
+    public void recreateExpiredConcurrently() throws Exception {
+        final JPAStorageService service = (JPAStorageService) getStorageService();
+        final String context = Long.toString(random.nextLong());
+        final int threads = 4;
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            for (int round = 0; round < 10; round++) {
+                final String key = "key" + round;
+                Assert.assertTrue(service.create(context, key, "expired", System.currentTimeMillis() + 50));
+                Thread.sleep(100);
+
+                final CountDownLatch start = new CountDownLatch(1);
+                final List<Future<Boolean>> results = new ArrayList<>();
+                for (int i = 0; i < threads; i++) {
+                    final String value = "value" + i;
+                    results.add(executor.submit(() -> {
+                        start.await();
+                        return service.create(context, key, value, null);
+                    }));
+                }
+                start.countDown();
+
+                int created = 0;
+                for (final Future<Boolean> result : results) {
+                    if (result.get()) {
+                        created++;
+                    }
+                }
+                Assert.assertEquals(created, 1, "Expired record was replaced by more than one create");
+            }
+        } finally {
+            executor.shutdownNow();
+            service.deleteContext(context);
+        }
+    }
+
+    @Test
+    public void reapInChunks() throws IOException, InterruptedException {
+        final JPAStorageService service = (JPAStorageService) getStorageService();
+        final String context = Long.toString(random.nextLong());
+        for (int i = 1; i <= 30; i++) {
+            service.create(context, Integer.toString(i), Integer.toString(i), System.currentTimeMillis() + 50);
+        }
+        service.create(context, "live", "live", null);
+        Thread.sleep(100);
+        service.reap(context);
+        final List<?> recs = service.readAll(context);
+        Assert.assertEquals(recs.size(), 1);
+        service.deleteContext(context);
+    }
+}
@@ -0,0 +1,304 @@
+/*
+ * Licensed to the University Corporation for Advanced Internet Development,
+ * Inc. (UCAID) under one or more contributor license agreements.  See the
+ * NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The UCAID licenses this file to You under the Apache
+ * License, Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opensaml.storage.impl;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import net.shibboleth.utilities.java.support.component.ComponentInitializationException;
+
+import org.opensaml.storage.StorageRecord;
+import org.opensaml.storage.StorageService;
+import org.opensaml.storage.StorageServiceTest;
+import org.opensaml.storage.VersionMismatchException;
+import org.opensaml.storage.impl.TieredStorageService.Policy;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * Test of {@link TieredStorageService} implementation.
+ */
+public class TieredStorageServiceTest extends StorageServiceTest {
+
+    /** {@inheritDoc} */
+    @Override
+    @Nonnull protected StorageService getStorageService() {
+        final TieredStorageService ss = new TieredStorageService(getDurableStorageService());
+        ss.setId("test");
+        ss.setCleanupInterval(Duration.ofSeconds(1));
+        return ss;
+    }
+
+    /**
+     * Get an initialized in-memory service to act as the durable tier.
+     * 
+     * @return the durable tier
+     */
+    @Nonnull private MemoryStorageService getDurableStorageService() {
+        final MemoryStorageService durable = new MemoryStorageService();
+        durable.setId("durable");
+        try {
+            durable.initialize();
+        } catch (final ComponentInitializationException e) {
+            throw new IllegalStateException(e);
+        }
+        return durable;
+    }
+
+    @Test
+    public void writeThrough() throws IOException, VersionMismatchException, ComponentInitializationException {
+        final MemoryStorageService durable = getDurableStorageService();
+        final TieredStorageService ss = new TieredStorageService(durable);
+        ss.setId("test");
+        ss.setContextPolicies(Map.of("rt", Policy.READ_THROUGH));
+        ss.initialize();
+
+        Assert.assertTrue(ss.create("wt", "key", "value1", null));
+        Assert.assertEquals(ss.updateWithVersion(1, "wt", "key", "value2", null), Long.valueOf(2));
+        durable.update("wt", "key", "changed", null);
+        Assert.assertEquals(ss.read("wt", "key").getValue(), "value2", "Record was not served from memory");
+
+        Assert.assertTrue(ss.create("rt", "key", "value1", null));
+        durable.update("rt", "key", "changed", null);
+        Assert.assertEquals(ss.read("rt", "key").getValue(), "changed");
+        durable.update("rt", "key", "changed again", null);
+        Assert.assertEquals(ss.read("rt", "key").getValue(), "changed", "Record was not served from memory");
+
+        try {
+            ss.updateWithVersion(2, "rt", "key", "value2", null);
+            Assert.fail("Stale version was not rejected");
+        } catch (final VersionMismatchException e) {
+            // expected
+        }
+        Assert.assertEquals(ss.read("rt", "key").getValue(), "changed again");
+
+        ss.destroy();
+        durable.destroy();
+    }
+
+    @Test
+    public void writeThroughVersions() throws IOException, VersionMismatchException,
+            ComponentInitializationException {
+        final SkewedVersionStorageService durable = new SkewedVersionStorageService();
+        durable.setId("durable");
+        durable.initialize();
+        final TieredStorageService ss = new TieredStorageService(durable);
+        ss.setId("test");
+        ss.initialize();
+
+        Assert.assertTrue(ss.create("wt", "key", "value1", null));
+        StorageRecord<?> rec = ss.read("wt", "key");
+        Assert.assertEquals(rec.getVersion(), durable.read("wt", "key").getVersion());
+
+        final Long version = ss.updateWithVersion(rec.getVersion(), "wt", "key", "value2", null);
+        Assert.assertNotNull(version);
+        Assert.assertEquals(version.longValue(), durable.read("wt", "key").getVersion());
+        rec = ss.read("wt", "key");
+        Assert.assertEquals(rec.getValue(), "value2");
+        Assert.assertEquals(rec.getVersion(), version.longValue());
+
+        ss.destroy();
+        durable.destroy();
+    }
+
+    @Test
+    public void writeBehind() throws IOException, VersionMismatchException, ComponentInitializationException {
+        final MemoryStorageService durable = getDurableStorageService();
+        durable.create("wb", "existing", "value", null);
+        final TieredStorageService ss = new TieredStorageService(durable);
+        ss.setId("test");
+        ss.setDefaultPolicy(Policy.WRITE_BEHIND);
+        ss.setWriteBehindQueueSize(2);
+        ss.initialize();
+
+        Assert.assertFalse(ss.create("wb", "existing", "value2", null));
+        for (int i = 1; i <= 10; i++) {
+            Assert.assertTrue(ss.create("wb", Integer.toString(i), Integer.toString(i), null));
+        }
+        Assert.assertEquals(ss.updateWithVersion(1, "wb", "1", "updated", null), Long.valueOf(2));
+        try {
+            ss.updateWithVersion(1, "wb", "1", "stale", null);
+            Assert.fail("Stale version was not rejected");
+        } catch (final VersionMismatchException e) {
+            // expected
+        }
+        Assert.assertTrue(ss.delete("wb", "2"));
+        Assert.assertNull(ss.read("wb", "2"));
+        Assert.assertFalse(ss.delete("wb", "2"));
+        Assert.assertTrue(ss.delete("wb", "existing"));
+        Assert.assertNull(ss.read("wb", "existing"));
+
+        // Destroying the service flushes the queue.
+        ss.destroy();
+
+        StorageRecord<?> rec = durable.read("wb", "1");
+        Assert.assertNotNull(rec);
+        Assert.assertEquals(rec.getValue(), "updated");
+        Assert.assertNull(durable.read("wb", "2"));
+        Assert.assertNull(durable.read("wb", "existing"));
+        rec = durable.read("wb", "10");
+        Assert.assertNotNull(rec);
+        Assert.assertEquals(rec.getValue(), "10");
+
+        durable.destroy();
+    }
+
+    @Test
+    public void eviction() throws IOException, ComponentInitializationException {
+        final MemoryStorageService durable = getDurableStorageService();
+        final TieredStorageService ss = new TieredStorageService(durable);
+        ss.setId("test");
+        ss.setMaxRecords(10);
+        ss.initialize();
+
+        for (int i = 1; i <= 10; i++) {
+            Assert.assertTrue(ss.create("wt", Integer.toString(i), Integer.toString(i), null));
+        }
+        Assert.assertEquals(ss.read("wt", "1").getValue(), "1");
+        // Exceeding the limit evicts the least recently used records down to nine.
+        Assert.assertTrue(ss.create("wt", "11", "11", null));
+
+        for (int i = 1; i <= 11; i++) {
+            durable.update("wt", Integer.toString(i), "changed", null);
+        }
+        Assert.assertEquals(ss.read("wt", "1").getValue(), "1", "Recently used record was evicted");
+        Assert.assertEquals(ss.read("wt", "11").getValue(), "11", "Recently created record was evicted");
+        Assert.assertEquals(ss.read("wt", "2").getValue(), "changed", "Least recently used record was not evicted");
+        Assert.assertEquals(ss.read("wt", "3").getValue(), "changed", "Least recently used record was not evicted");
+
+        ss.destroy();
+        durable.destroy();
+    }
+
+    @Test
+    public void queuedWritesNotEvicted() throws IOException, ComponentInitializationException {
+        final BlockingStorageService durable = new BlockingStorageService();
+        durable.setId("durable");
+        durable.initialize();
+        final TieredStorageService ss = new TieredStorageService(durable);
+        ss.setId("test");
+        ss.setDefaultPolicy(Policy.WRITE_BEHIND);
+        ss.setMaxRecords(1);
+        ss.initialize();
+
+        for (int i = 1; i <= 5; i++) {
+            Assert.assertTrue(ss.create("wb", Integer.toString(i), Integer.toString(i), null));
+        }
+        for (int i = 1; i <= 5; i++) {
+            Assert.assertEquals(ss.read("wb", Integer.toString(i)).getValue(), Integer.toString(i),
+                    "Record with queued write was evicted");
+        }
+        Assert.assertNull(durable.read("wb", "5"));
+
+        durable.release();
+        ss.destroy();
+        Assert.assertEquals(durable.read("wb", "5").getValue(), "5");
+        durable.destroy();
+    }
+
+    @Test
+    public void queueTimeout() throws IOException, ComponentInitializationException {
+        final BlockingStorageService durable = new BlockingStorageService();
+        durable.setId("durable");
+        durable.initialize();
+        final TieredStorageService ss = new TieredStorageService(durable);
+        ss.setId("test");
+        ss.setContextPolicies(Map.of("wb", Policy.WRITE_BEHIND));
+        ss.setWriteBehindQueueSize(1);
+        ss.setWriteBehindQueueTimeout(Duration.ofMillis(100));
+        ss.initialize();
+
+        Assert.assertTrue(ss.create("wb", "1", "1", null));
+        try {
+            ss.create("wb", "2", "2", null);
+            Assert.fail("Write was queued beyond the capacity of the queue");
+        } catch (final IOException e) {
+            // expected
+        }
+        Assert.assertNull(ss.read("wb", "2"));
+
+        durable.release();
+        Assert.assertTrue(ss.create("wb", "2", "2", null));
+        ss.destroy();
+        Assert.assertEquals(durable.read("wb", "2").getValue(), "2");
+        durable.destroy();
+    }
+
+    @Test
+    public void validConfig() throws ComponentInitializationException {
+        final MemoryStorageService durable = getDurableStorageService();
+        final TieredStorageService ss = new TieredStorageService(durable);
+        ss.setId("test");
+        ss.initialize();
+        ss.destroy();
+        durable.destroy();
+    }
+
+    /** In-memory service that skips a version on every write, standing in for a tier not numbering them from 1. */
+    private static class SkewedVersionStorageService extends MemoryStorageService {
+
+        /** {@inheritDoc} */
+        @Override
+        public boolean create(@Nonnull final String context, @Nonnull final String key, @Nonnull final String value,
+                @Nullable final Long expiration) throws IOException {
+            return super.create(context, key, value, expiration) && super.update(context, key, value, expiration);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        @Nullable public Long updateWithVersion(final long version, @Nonnull final String context,
+                @Nonnull final String key, @Nonnull final String value, @Nullable final Long expiration)
+                        throws IOException, VersionMismatchException {
+            final Long newVersion = super.updateWithVersion(version, context, key, value, expiration);
+            if (newVersion == null || !super.update(context, key, value, expiration)) {
+                return newVersion;
+            }
+            return newVersion + 1;
+        }
+    }
+
+    /** In-memory service whose creates wait until released, standing in for a slow durable tier. */
+    private static class BlockingStorageService extends MemoryStorageService {
+
+        /** Latch released to let creates proceed. */
+        @Nonnull private final CountDownLatch latch = new CountDownLatch(1);
+
+        /** Let creates proceed. */
+        public void release() {
+            latch.countDown();
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public boolean create(@Nonnull final String context, @Nonnull final String key, @Nonnull final String value,
+                @Nullable final Long expiration) throws IOException {
+            try {
+                latch.await();
+            } catch (final InterruptedException e) {
+                throw new IOException(e);
+            }
+            return super.create(context, key, value, expiration);
+        }
+    }
+
+}
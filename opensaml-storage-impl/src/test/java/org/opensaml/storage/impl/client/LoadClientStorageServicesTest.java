@@ -198,6 +198,33 @@ public class LoadClientStorageServicesTest extends AbstractBaseClientStorageServ
         checkStorageContent(ss);
     }
 
+    @Test public void testChunkedCookieLoad() throws ComponentInitializationException, IOException {
+        final ClientStorageService ss = getStorageService();
+        ss.load(null, ClientStorageSource.COOKIE);
+        ss.create("context1", "key1", "value1", null);
+        ss.create("context1", "key2", "value2", null);
+        ss.create("context2", "key", "value", null);
+        
+        final ClientStorageServiceOperation saved = ss.save();
+        Assert.assertNotNull(saved);
+
+        HttpServletRequestResponseContext.loadCurrent(new MockHttpServletRequest(), new MockHttpServletResponse());
+
+        final String value = UrlEscapers.urlFormParameterEscaper().escape(saved.getValue());
+        final int half = value.length() / 2;
+        ((MockHttpServletRequest) HttpServletRequestResponseContext.getRequest()).setCookies(
+                new Cookie(ss.getStorageName() + ".1", value.substring(half)),
+                new Cookie(ss.getStorageName(), value.substring(0, half)));
+
+        action.setStorageServices(Collections.singletonList(ss));
+        action.initialize();
+
+        action.execute(prc);
+        ActionTestingSupport.assertProceedEvent(prc);
+        
+        checkStorageContent(ss);
+    }
+
     private void checkStorageContent(final StorageService ss) throws IOException {
         Assert.assertNull(loadCtx.getParent());
 
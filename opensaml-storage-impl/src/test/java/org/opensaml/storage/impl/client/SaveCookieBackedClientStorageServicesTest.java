@@ -20,6 +20,8 @@ package org.opensaml.storage.impl.client;
 import java.io.IOException;
 import java.util.Collections;
 
+import javax.servlet.http.Cookie;
+
 import org.opensaml.profile.RequestContextBuilder;
 import org.opensaml.profile.action.ActionTestingSupport;
 import org.opensaml.profile.action.EventIds;
@@ -34,6 +36,7 @@ import org.testng.annotations.Test;
 
 import net.shibboleth.utilities.java.support.component.ComponentInitializationException;
 import net.shibboleth.utilities.java.support.net.HttpServletRequestResponseContext;
+import net.shibboleth.utilities.java.support.net.ThreadLocalHttpServletRequestProxy;
 
 /** Unit test for {@link SaveCookieBackedClientStorageServices}. */
 public class SaveCookieBackedClientStorageServicesTest extends AbstractBaseClientStorageServiceTest {
@@ -108,4 +111,34 @@ public class SaveCookieBackedClientStorageServicesTest extends AbstractBaseClien
         Assert.assertEquals(response.getCookies()[0].getValue(), "the+value");
     }
     
-}
\ No newline at end of file
+    @Test public void testChunkedSave() throws ComponentInitializationException, IOException {
+        final ClientStorageService ss = getStorageService();
+        action.setStorageServices(Collections.singletonList(ss));
+        action.setCookieChunkSize(4);
+        action.setHttpServletRequest(new ThreadLocalHttpServletRequestProxy());
+        action.initialize();
+        
+        final MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setCookies(new Cookie(ss.getStorageName() + ".3", "stale"));
+        HttpServletRequestResponseContext.loadCurrent(request, new MockHttpServletResponse());
+
+        saveCtx.getStorageOperations().add(
+                new ClientStorageServiceOperation(ss.getId(), ss.getStorageName(), "the value", ClientStorageSource.COOKIE));
+
+        action.execute(prc);
+        ActionTestingSupport.assertProceedEvent(prc);
+        
+        final Cookie[] cookies =
+                ((MockHttpServletResponse) HttpServletRequestResponseContext.getResponse()).getCookies();
+        Assert.assertEquals(cookies.length, 4);
+        Assert.assertEquals(cookies[0].getName(), ss.getStorageName());
+        Assert.assertEquals(cookies[0].getValue(), "the+");
+        Assert.assertEquals(cookies[1].getName(), ss.getStorageName() + ".1");
+        Assert.assertEquals(cookies[1].getValue(), "valu");
+        Assert.assertEquals(cookies[2].getName(), ss.getStorageName() + ".2");
+        Assert.assertEquals(cookies[2].getValue(), "e");
+        Assert.assertEquals(cookies[3].getName(), ss.getStorageName() + ".3");
+        Assert.assertEquals(cookies[3].getMaxAge(), 0);
+    }
+    
+}
@@ -31,6 +31,7 @@ import org.testng.annotations.Test;
 
 import java.io.IOException;
 import java.net.InetSocketAddress;
+import java.time.Duration;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.Set;
@@ -53,6 +54,10 @@ public class MemcachedStorageServiceTest {
 
     private MemcachedStorageService keyTrackingService;
 
+    private MemcachedStorageService namespaceCachingService;
+
+    private MemcachedStorageService shardedKeyTrackingService;
+
     @BeforeClass
     public void setUp() throws IOException {
         final MemcachedClient client = new MemcachedClient(
@@ -65,6 +70,10 @@ public class MemcachedStorageServiceTest {
         }
         service = new MemcachedStorageService(client, 1);
         keyTrackingService = new MemcachedStorageService(client, 1, true);
+        namespaceCachingService = new MemcachedStorageService(client, 1);
+        namespaceCachingService.setNamespaceCacheTTL(Duration.ofSeconds(10));
+        shardedKeyTrackingService = new MemcachedStorageService(client, 1, true);
+        shardedKeyTrackingService.setContextKeyBuckets(16);
     }
 
     @DataProvider
@@ -216,10 +225,52 @@ public class MemcachedStorageServiceTest {
         }
     }
 
+    @Test
+    public void testUpdateContextExpirationSharded() throws Exception {
+        final IdGenerator generator = new RandomIdGenerator(20);
+        final String context = generator.generate();
+        final Set<String> keySet = new HashSet<>();
+        for (int i = 0; i < 100; i++) {
+            final String key = generator.generate();
+            assertTrue(shardedKeyTrackingService.create(context, key, "Context value " + i, 30000L));
+            keySet.add(key);
+        }
+        final String deleted = keySet.iterator().next();
+        assertTrue(shardedKeyTrackingService.delete(context, deleted));
+        keySet.remove(deleted);
+        shardedKeyTrackingService.updateContextExpiration(context, System.currentTimeMillis() - 5000);
+        for (String k : keySet) {
+            assertNull(shardedKeyTrackingService.read(context, k));
+        }
+        shardedKeyTrackingService.deleteContext(context);
+    }
+
+    @Test
+    public void testNamespaceCaching() throws IOException {
+        final IdGenerator generator = new RandomIdGenerator(20);
+        final String context = generator.generate();
+        final String key = generator.generate();
+        assertTrue(namespaceCachingService.create(context, key, "value", 30000L));
+        assertEquals(namespaceCachingService.read(context, key).getValue(), "value");
+        // Entry is visible through an instance without a namespace cache
+        assertEquals(service.read(context, key).getValue(), "value");
+        assertTrue(namespaceCachingService.update(context, key, "updated", 30000L));
+        assertEquals(namespaceCachingService.read(context, key).getValue(), "updated");
+        // Deleting the context through the caching instance invalidates its cached namespace
+        namespaceCachingService.deleteContext(context);
+        assertNull(namespaceCachingService.read(context, key));
+        assertNull(service.read(context, key));
+        assertTrue(namespaceCachingService.create(context, key, "recreated", 30000L));
+        assertEquals(namespaceCachingService.read(context, key).getValue(), "recreated");
+        assertEquals(service.read(context, key).getValue(), "recreated");
+    }
+
     @AfterClass
     public void tearDown() {
         service.destroy();
         keyTrackingService.destroy();
+        namespaceCachingService.destroy();
+        shardedKeyTrackingService.destroy();
     }
 
     private Set<String> createContextKeys(final String context, final IdGenerator generator, final int count)
@@ -17,10 +17,12 @@
 
 package org.opensaml.storage.impl.memcached;
 
+import net.spy.memcached.CachedData;
 import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
 
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
 
 /**
  * Unit test for {@link StorageRecordTranscoder} class.
@@ -29,6 +31,8 @@ public class StorageRecordTranscoderTest {
 
     private StorageRecordTranscoder transcoder = new StorageRecordTranscoder();
 
+    private StorageRecordTranscoder compressingTranscoder = new StorageRecordTranscoder(64);
+
     @DataProvider
     public Object[][] testRecords() {
         return new Object[][] {
@@ -45,4 +49,32 @@ public class StorageRecordTranscoderTest {
         assertEquals(actual.getExpiration(), expected.getExpiration());
         assertEquals(actual.getVersion(), expected.getVersion());
     }
-}
\ No newline at end of file
+
+    @Test(dataProvider = "testRecords")
+    public void testEncodeDecodeWithCompression(final MemcachedStorageRecord<?> expected) {
+        final MemcachedStorageRecord<?> actual = compressingTranscoder.decode(compressingTranscoder.encode(expected));
+        assertEquals(actual.getValue(), expected.getValue());
+        assertEquals(actual.getExpiration(), expected.getExpiration());
+        // Uncompressed encodings remain readable
+        final MemcachedStorageRecord<?> plain = compressingTranscoder.decode(transcoder.encode(expected));
+        assertEquals(plain.getValue(), expected.getValue());
+        assertEquals(plain.getExpiration(), expected.getExpiration());
+    }
+
+    @Test
+    public void testCompression() {
+        final StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 200; i++) {
+            sb.append("<saml2:Attribute Name=\"urn:oid:0.9.2342.19200300.100.1.").append(i).append("\"/>");
+        }
+        final MemcachedStorageRecord<?> expected = new MemcachedStorageRecord<>(sb.toString(), 2515878896L);
+        final CachedData plain = transcoder.encode(expected);
+        final CachedData compressed = compressingTranscoder.encode(expected);
+        assertEquals(plain.getFlags(), 0);
+        assertEquals(compressed.getFlags(), StorageRecordTranscoder.FLAG_DEFLATED);
+        assertTrue(compressed.getData().length < plain.getData().length);
+        final MemcachedStorageRecord<?> actual = transcoder.decode(compressed);
+        assertEquals(actual.getValue(), expected.getValue());
+        assertEquals(actual.getExpiration(), expected.getExpiration());
+    }
+}
@@ -18,8 +18,6 @@
 package org.opensaml.xmlsec;
 
 import java.util.Collection;
-import java.util.Collections;
-import java.util.HashSet;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
@@ -37,15 +35,15 @@ import com.google.common.collect.ImmutableSet;
 public class WhitelistBlacklistParameters {
     
     /** Whitelisted algorithm URIs. */
-    @Nonnull @NonnullElements private Collection<String> whiteListedAlgorithmURIs;
+    @Nonnull @NonnullElements private ImmutableSet<String> whiteListedAlgorithmURIs;
     
     /** Blacklisted algorithm URIs. */
-    @Nonnull @NonnullElements private Collection<String> blackListedAlgorithmURIs;
+    @Nonnull @NonnullElements private ImmutableSet<String> blackListedAlgorithmURIs;
         
     /** Constructor. */
     public WhitelistBlacklistParameters() {
-        whiteListedAlgorithmURIs = Collections.emptySet();
-        blackListedAlgorithmURIs = Collections.emptySet();
+        whiteListedAlgorithmURIs = ImmutableSet.of();
+        blackListedAlgorithmURIs = ImmutableSet.of();
     }
     
     /**
@@ -64,10 +62,10 @@ public class WhitelistBlacklistParameters {
      */
     public void setWhitelistedAlgorithms(@Nullable final Collection<String> uris) {
         if (uris == null) {
-            whiteListedAlgorithmURIs = Collections.emptySet();
+            whiteListedAlgorithmURIs = ImmutableSet.of();
             return;
         }
-        whiteListedAlgorithmURIs = new HashSet<>(StringSupport.normalizeStringCollection(uris));
+        whiteListedAlgorithmURIs = ImmutableSet.copyOf(StringSupport.normalizeStringCollection(uris));
     }
     
     /**
@@ -86,10 +84,10 @@ public class WhitelistBlacklistParameters {
      */
     public void setBlacklistedAlgorithms(@Nonnull @NonnullElements final Collection<String> uris) {
         if (uris == null) {
-            blackListedAlgorithmURIs = Collections.emptySet();
+            blackListedAlgorithmURIs = ImmutableSet.of();
             return;
         }
-        blackListedAlgorithmURIs = new HashSet<>(StringSupport.normalizeStringCollection(uris));
+        blackListedAlgorithmURIs = ImmutableSet.copyOf(StringSupport.normalizeStringCollection(uris));
     }
     
 }
\ No newline at end of file
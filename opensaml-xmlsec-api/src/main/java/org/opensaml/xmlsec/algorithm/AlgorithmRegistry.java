@@ -49,6 +49,12 @@ import com.google.common.base.MoreObjects;
 
 /**
  * A registry of {@link AlgorithmDescriptor} instances, to support various use cases for working with algorithm URIs.
+ * 
+ * <p>
+ * Lookups are served from an immutable snapshot of the registry's indexes, including the result of each algorithm's
+ * runtime support check, which is rebuilt whenever an algorithm is registered or deregistered. Registration is
+ * expected to happen during initialization, after which lookups are thread-safe and do not lock.
+ * </p>
  */
 public class AlgorithmRegistry {
     
@@ -70,6 +76,9 @@ public class AlgorithmRegistry {
     /** Index of (KeyType,DigestType) to AlgorithmDescriptor. */
     private Map<SignatureAlgorithmIndex, SignatureAlgorithm> signatureAlgorithms;
     
+    /** Immutable copy of the registry's state used for lookups. */
+    @Nonnull private volatile Snapshot snapshot;
+    
     /** Constructor. */
     public  AlgorithmRegistry() {
         descriptors = new HashMap<>();
@@ -77,6 +86,7 @@ public class AlgorithmRegistry {
         runtimeSupported = new HashSet<>();
         digestAlgorithms = new HashMap<>();
         signatureAlgorithms = new HashMap<>();
+        snapshot = new Snapshot();
     }
     
     /**
@@ -91,7 +101,7 @@ public class AlgorithmRegistry {
             return null;
         }
         
-        return descriptors.get(trimmed);
+        return snapshot.descriptors.get(trimmed);
     }
     
     /**
@@ -112,7 +122,7 @@ public class AlgorithmRegistry {
             return false;
         }
         
-        final boolean supported = runtimeSupported.contains(trimmed);
+        final boolean supported = snapshot.runtimeSupported.contains(trimmed);
         log.debug("Runtime support eval for algorithm URI '{}': {}", trimmed, supported ? "supported" : "unsupported");
         return supported;
     }
@@ -120,11 +130,13 @@ public class AlgorithmRegistry {
     /**
      * Clear all registered algorithms.
      */
-    public void clear() {
+    public synchronized void clear() {
         descriptors.clear();
+        types.clear();
         runtimeSupported.clear();
         digestAlgorithms.clear();
         signatureAlgorithms.clear();
+        snapshot = new Snapshot();
     }
     
     /**
@@ -132,7 +144,7 @@ public class AlgorithmRegistry {
      * 
      * @param descriptor the algorithm
      */
-    public void register(@Nonnull final AlgorithmDescriptor descriptor) {
+    public synchronized void register(@Nonnull final AlgorithmDescriptor descriptor) {
         Constraint.isNotNull(descriptor, "AlgorithmDescriptor was null");
         
         log.debug("Registering algorithm descriptor with URI: {}", descriptor.getURI());
@@ -146,6 +158,7 @@ public class AlgorithmRegistry {
         }
         descriptors.put(descriptor.getURI(), descriptor);
         index(descriptor);
+        snapshot = new Snapshot();
     }
 
     /**
@@ -153,11 +166,12 @@ public class AlgorithmRegistry {
      * 
      * @param descriptor the algorithm
      */
-    public void deregister(@Nonnull final AlgorithmDescriptor descriptor) {
+    public synchronized void deregister(@Nonnull final AlgorithmDescriptor descriptor) {
         Constraint.isNotNull(descriptor, "AlgorithmDescriptor was null");
         if (descriptors.containsKey(descriptor.getURI())) {
             deindex(descriptor);
             descriptors.remove(descriptor.getURI());
+            snapshot = new Snapshot();
         } else {
             log.debug("Registry did not contain descriptor with URI, nothing to do: {}", descriptor.getURI());
         }
@@ -168,7 +182,7 @@ public class AlgorithmRegistry {
      * 
      * @param uri the algorithm URI
      */
-    public void deregister(@Nonnull final String uri) {
+    public synchronized void deregister(@Nonnull final String uri) {
         Constraint.isNotNull(uri, "AlgorithmDescriptor URI was null");
         final AlgorithmDescriptor descriptor = get(uri);
         if (descriptor != null) {
@@ -185,7 +199,7 @@ public class AlgorithmRegistry {
      */
     @Nullable public DigestAlgorithm getDigestAlgorithm(@Nonnull final String digestMethod) {
         Constraint.isNotNull(digestMethod, "Digest method was null");
-        return digestAlgorithms.get(digestMethod);
+        return snapshot.digestAlgorithms.get(digestMethod);
     }
     
     /**
@@ -200,7 +214,7 @@ public class AlgorithmRegistry {
             @Nonnull final String digestMethod) {
         Constraint.isNotNull(keyType, "Key type was null");
         Constraint.isNotNull(digestMethod, "Digest type was null");
-        return signatureAlgorithms.get(new SignatureAlgorithmIndex(keyType, digestMethod));
+        return snapshot.signatureAlgorithms.get(new SignatureAlgorithmIndex(keyType, digestMethod));
     }
 
     /**
@@ -213,9 +227,9 @@ public class AlgorithmRegistry {
     @Nonnull @NonnullElements @Unmodifiable @NotLive
     public Set<String> getRegisteredURIsByType(@Nonnull final AlgorithmType type) {
         Constraint.isNotNull(type, "AlgorithmType was null");
-        final Set<String> byType = types.get(type);
+        final Set<String> byType = snapshot.types.get(type);
         if (byType != null) {
-            return Set.copyOf(byType);
+            return byType;
         }
         return Collections.emptySet();
     }
@@ -393,6 +407,40 @@ public class AlgorithmRegistry {
         return false;
     }
 
+    /**
+     * Immutable copy of the registry's indexes, taken when constructed.
+     */
+    private final class Snapshot {
+        
+        /** Map of registered algorithm descriptors. */
+        @Nonnull private final Map<String, AlgorithmDescriptor> descriptors;
+        
+        /** Index of registered AlgorithmType to algorithm URI. */
+        @Nonnull private final Map<AlgorithmType, Set<String>> types;
+        
+        /** Set containing algorithms which are supported by the runtime environment. */
+        @Nonnull private final Set<String> runtimeSupported;
+        
+        /** Index of digest type to AlgorithmDescriptor. */
+        @Nonnull private final Map<String, DigestAlgorithm> digestAlgorithms;
+        
+        /** Index of (KeyType,DigestType) to AlgorithmDescriptor. */
+        @Nonnull private final Map<SignatureAlgorithmIndex, SignatureAlgorithm> signatureAlgorithms;
+        
+        /** Constructor. */
+        Snapshot() {
+            descriptors = Map.copyOf(AlgorithmRegistry.this.descriptors);
+            final Map<AlgorithmType, Set<String>> typesCopy = new HashMap<>();
+            for (final Map.Entry<AlgorithmType, Set<String>> entry : AlgorithmRegistry.this.types.entrySet()) {
+                typesCopy.put(entry.getKey(), Set.copyOf(entry.getValue()));
+            }
+            types = Map.copyOf(typesCopy);
+            runtimeSupported = Set.copyOf(AlgorithmRegistry.this.runtimeSupported);
+            digestAlgorithms = Map.copyOf(AlgorithmRegistry.this.digestAlgorithms);
+            signatureAlgorithms = Map.copyOf(AlgorithmRegistry.this.signatureAlgorithms);
+        }
+    }
+
     /**
      * Class used as index key for signature algorithm lookup.
      */
@@ -222,6 +222,9 @@ public class Decrypter {
      * root of a new DOM document. */
     private boolean defaultRootInNewDocument;
     
+    /** Optional cache of unwrapped keys. */
+    @Nullable private UnwrappedKeyCache unwrappedKeyCache;
+    
     /**
      * Constructor.
      *
@@ -336,6 +339,29 @@ public class Decrypter {
         jcaProviderName = providerName;
     }
 
+    /**
+     * Get the cache of keys unwrapped from EncryptedKeys.
+     * 
+     * @return the cache, or null
+     */
+    @Nullable public UnwrappedKeyCache getUnwrappedKeyCache() {
+        return unwrappedKeyCache;
+    }
+
+    /**
+     * Set the cache of keys unwrapped from EncryptedKeys.
+     * 
+     * <p>
+     * If set, the key unwrapped from an EncryptedKey is reused, within the limits of the cache, for subsequent
+     * identical EncryptedKeys unwrapped with the same key encryption key. Defaults to null, which disables caching.
+     * </p>
+     * 
+     * @param cache the cache, or null
+     */
+    public void setUnwrappedKeyCache(@Nullable final UnwrappedKeyCache cache) {
+        unwrappedKeyCache = cache;
+    }
+
     /**
      * Get the optional static set of criteria used when resolving credentials based on the KeyInfo of an EncryptedData
      * element.
@@ -677,6 +703,16 @@ public class Decrypter {
         }
         preProcessEncryptedKey(encryptedKey, algorithm, kek);
         
+        final List<Object> cacheKey =
+                unwrappedKeyCache != null ? unwrappedKeyCache.computeKey(encryptedKey, algorithm, kek) : null;
+        if (cacheKey != null) {
+            final Key cached = unwrappedKeyCache.get(cacheKey);
+            if (cached != null) {
+                log.debug("Using cached unwrapped key for EncryptedKey");
+                return cached;
+            }
+        }
+        
         final XMLCipher xmlCipher;
         try {
             if (getJCAProviderName() != null) {
@@ -704,6 +740,9 @@ public class Decrypter {
             if (key == null) {
                 throw new DecryptionException("Key could not be decrypted");
             }
+            if (cacheKey != null) {
+                unwrappedKeyCache.put(cacheKey, key);
+            }
             return key;
         } catch (final XMLEncryptionException e) {
             log.error("Error decrypting encrypted key: {}", e.getMessage());
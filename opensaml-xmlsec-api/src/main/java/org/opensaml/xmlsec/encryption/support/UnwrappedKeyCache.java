@@ -0,0 +1,334 @@
+/*
+ * Licensed to the University Corporation for Advanced Internet Development,
+ * Inc. (UCAID) under one or more contributor license agreements.  See the
+ * NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The UCAID licenses this file to You under the Apache
+ * License, Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opensaml.xmlsec.encryption.support;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.Key;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+
+import net.shibboleth.utilities.java.support.annotation.constraint.NotEmpty;
+import net.shibboleth.utilities.java.support.logic.Constraint;
+import net.shibboleth.utilities.java.support.primitive.StringSupport;
+
+import org.opensaml.core.xml.XMLObject;
+import org.opensaml.xmlsec.encryption.EncryptedKey;
+import org.opensaml.xmlsec.encryption.EncryptionMethod;
+import org.opensaml.xmlsec.encryption.MGF;
+import org.opensaml.xmlsec.signature.DigestMethod;
+
+/**
+ * A bounded, short-lived cache of keys unwrapped from {@link EncryptedKey} elements, for use by a {@link Decrypter}.
+ *
+ * <p>
+ * A peer which encrypts several elements of a message, or which reuses a wrapped key across messages, causes the
+ * same EncryptedKey to be unwrapped with the same private key repeatedly. When a {@link Decrypter} is configured with
+ * an instance of this class, the result of a successful unwrap is retained for a short time and returned for any
+ * identical EncryptedKey unwrapped with the same key encryption key and for the same data algorithm.
+ * </p>
+ *
+ * <p>
+ * Entries are keyed by the key encryption key, the data algorithm and a SHA-256 digest over the EncryptedKey's
+ * encryption method parameters and CipherValue. Failed unwraps are never cached. The cache holds at most a fixed
+ * number of entries, evicting the least recently used one when full, and each entry expires a fixed time after it
+ * was added. Hit and miss counts are maintained for monitoring.
+ * </p>
+ */
+@ThreadSafe
+public class UnwrappedKeyCache {
+
+    /** Default maximum number of entries. */
+    public static final int DEFAULT_MAX_SIZE = 100;
+
+    /** Default lifetime of an entry. */
+    @Nonnull public static final Duration DEFAULT_LIFETIME = Duration.ofMinutes(1);
+
+    /** Digest algorithm used to compute cache keys. */
+    @Nonnull private static final String DIGEST_ALGORITHM = "SHA-256";
+
+    /** Name of the cache. */
+    @Nonnull @NotEmpty private final String name;
+
+    /** Maximum number of entries. */
+    private final int maxSize;
+
+    /** Lifetime of an entry. */
+    @Nonnull private final Duration lifetime;
+
+    /** Cached keys, in access order. Guarded by itself. */
+    @Nonnull private final Map<List<Object>, CacheEntry> cache;
+
+    /** Number of lookups satisfied from the cache. */
+    @Nonnull private final LongAdder hits;
+
+    /** Number of lookups not satisfied from the cache. */
+    @Nonnull private final LongAdder misses;
+
+    /**
+     * Constructor.
+     *
+     * @param cacheName name of the cache, used to identify it in metrics
+     */
+    public UnwrappedKeyCache(@Nonnull @NotEmpty final String cacheName) {
+        this(cacheName, DEFAULT_MAX_SIZE, DEFAULT_LIFETIME);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param cacheName name of the cache, used to identify it in metrics
+     * @param size maximum number of entries
+     * @param entryLifetime lifetime of an entry
+     */
+    public UnwrappedKeyCache(@Nonnull @NotEmpty final String cacheName, final int size,
+            @Nonnull final Duration entryLifetime) {
+        name = Constraint.isNotNull(StringSupport.trimOrNull(cacheName), "Cache name cannot be null or empty");
+        Constraint.isGreaterThan(0, size, "Maximum size must be greater than 0");
+        Constraint.isNotNull(entryLifetime, "Lifetime cannot be null");
+        Constraint.isFalse(entryLifetime.isNegative() || entryLifetime.isZero(), "Lifetime must be greater than 0");
+        maxSize = size;
+        lifetime = entryLifetime;
+        cache = new LinkedHashMap<List<Object>, CacheEntry>(16, 0.75f, true) {
+            private static final long serialVersionUID = 4512277958870370458L;
+
+            protected boolean removeEldestEntry(final Map.Entry<List<Object>, CacheEntry> eldest) {
+                return size() > maxSize;
+            }
+        };
+        hits = new LongAdder();
+        misses = new LongAdder();
+    }
+
+    /**
+     * Get the name of the cache.
+     *
+     * @return the cache name
+     */
+    @Nonnull @NotEmpty public String getName() {
+        return name;
+    }
+
+    /**
+     * Get the maximum number of entries.
+     *
+     * @return the maximum size
+     */
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Get the lifetime of an entry.
+     *
+     * @return the entry lifetime
+     */
+    @Nonnull public Duration getLifetime() {
+        return lifetime;
+    }
+
+    /**
+     * Compute the cache key for unwrapping an EncryptedKey.
+     *
+     * @param encryptedKey the EncryptedKey to unwrap
+     * @param algorithm the algorithm associated with the unwrapped key
+     * @param kek the key encryption key
+     *
+     * @return the cache key, or null if the EncryptedKey does not carry its CipherValue inline
+     */
+    @Nullable public List<Object> computeKey(@Nonnull final EncryptedKey encryptedKey,
+            @Nonnull final String algorithm, @Nonnull final Key kek) {
+        if (encryptedKey.getCipherData() == null || encryptedKey.getCipherData().getCipherValue() == null) {
+            return null;
+        }
+        final String cipherValue = encryptedKey.getCipherData().getCipherValue().getValue();
+        if (cipherValue == null) {
+            return null;
+        }
+
+        final MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance(DIGEST_ALGORITHM);
+        } catch (final NoSuchAlgorithmException e) {
+            // SHA-256 support is mandatory for every Java platform.
+            throw new IllegalStateException("Digest algorithm " + DIGEST_ALGORITHM + " is not available", e);
+        }
+        final EncryptionMethod method = encryptedKey.getEncryptionMethod();
+        if (method != null) {
+            update(digest, method.getAlgorithm());
+            final List<XMLObject> digestMethods = method.getUnknownXMLObjects(DigestMethod.DEFAULT_ELEMENT_NAME);
+            update(digest, digestMethods.isEmpty() ? null : ((DigestMethod) digestMethods.get(0)).getAlgorithm());
+            final List<XMLObject> mgfs = method.getUnknownXMLObjects(MGF.DEFAULT_ELEMENT_NAME);
+            update(digest, mgfs.isEmpty() ? null : ((MGF) mgfs.get(0)).getAlgorithm());
+            update(digest, method.getOAEPparams() != null ? method.getOAEPparams().getValue() : null);
+        }
+        update(digest, cipherValue);
+
+        return Collections.unmodifiableList(
+                Arrays.asList(kek, algorithm, ByteBuffer.wrap(digest.digest()).asReadOnlyBuffer()));
+    }
+
+    /**
+     * Get the key cached under the given cache key.
+     *
+     * @param key the cache key
+     *
+     * @return the cached unwrapped key, or null
+     */
+    @Nullable public Key get(@Nonnull final List<Object> key) {
+        Key unwrapped = null;
+        synchronized (cache) {
+            final CacheEntry entry = cache.get(key);
+            if (entry != null) {
+                if (Instant.now().isBefore(entry.getExpiration())) {
+                    unwrapped = entry.getKey();
+                } else {
+                    cache.remove(key);
+                }
+            }
+        }
+        if (unwrapped != null) {
+            hits.increment();
+        } else {
+            misses.increment();
+        }
+        return unwrapped;
+    }
+
+    /**
+     * Cache an unwrapped key under the given cache key.
+     *
+     * @param key the cache key
+     * @param unwrapped the unwrapped key
+     */
+    public void put(@Nonnull final List<Object> key, @Nonnull final Key unwrapped) {
+        Constraint.isNotNull(key, "Key cannot be null");
+        Constraint.isNotNull(unwrapped, "Unwrapped key cannot be null");
+        final CacheEntry entry = new CacheEntry(unwrapped, Instant.now().plus(lifetime));
+        synchronized (cache) {
+            cache.put(key, entry);
+        }
+    }
+
+    /**
+     * Remove all entries from the cache.
+     *
+     * <p>
+     * The hit and miss counts are not reset.
+     * </p>
+     */
+    public void clear() {
+        synchronized (cache) {
+            cache.clear();
+        }
+    }
+
+    /**
+     * Get the number of entries currently cached, including any which have expired but not yet been removed.
+     *
+     * @return the number of entries
+     */
+    public int getSize() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+
+    /**
+     * Get the number of lookups satisfied from the cache.
+     *
+     * @return the hit count
+     */
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * Get the number of lookups not satisfied from the cache.
+     *
+     * @return the miss count
+     */
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    /**
+     * Add a possibly null value to a digest, delimited so that adjacent values cannot run together.
+     *
+     * @param digest the digest
+     * @param value the value
+     */
+    private static void update(@Nonnull final MessageDigest digest, @Nullable final String value) {
+        if (value != null) {
+            digest.update(value.getBytes(StandardCharsets.UTF_8));
+        }
+        digest.update((byte) 0);
+    }
+
+    /** A cached unwrapped key. */
+    private static final class CacheEntry {
+
+        /** The unwrapped key. */
+        @Nonnull private final Key key;
+
+        /** Time at which the entry expires. */
+        @Nonnull private final Instant expiration;
+
+        /**
+         * Constructor.
+         *
+         * @param unwrapped the unwrapped key
+         * @param expires time at which the entry expires
+         */
+        CacheEntry(@Nonnull final Key unwrapped, @Nonnull final Instant expires) {
+            key = unwrapped;
+            expiration = expires;
+        }
+
+        /**
+         * Get the unwrapped key.
+         *
+         * @return the unwrapped key
+         */
+        @Nonnull Key getKey() {
+            return key;
+        }
+
+        /**
+         * Get the time at which the entry expires.
+         *
+         * @return the expiration time
+         */
+        @Nonnull Instant getExpiration() {
+            return expiration;
+        }
+    }
+
+}
@@ -0,0 +1,54 @@
+/*
+ * Licensed to the University Corporation for Advanced Internet Development,
+ * Inc. (UCAID) under one or more contributor license agreements.  See the
+ * NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The UCAID licenses this file to You under the Apache
+ * License, Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opensaml.xmlsec.signature.support;
+
+import org.opensaml.core.config.InitializationException;
+import org.opensaml.core.config.Initializer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * OpenSAML {@link Initializer} implementation which discovers the signer and signature validation providers, so
+ * that signing and validation operations do not have to synchronize in order to obtain them.
+ * 
+ * <p>
+ * The absence of a provider is not an error at this point: discovery is retried when the provider is first needed.
+ * </p>
+ */
+public class SignatureProviderInitializer implements Initializer {
+    
+    /** Logger. */
+    private Logger log = LoggerFactory.getLogger(SignatureProviderInitializer.class);
+
+    /** {@inheritDoc} */
+    public void init() throws InitializationException {
+        try {
+            log.debug("Using signer provider: {}", Signer.loadSignerProvider().getClass().getName());
+        } catch (final SignatureException e) {
+            log.debug("No signer provider is available: {}", e.getMessage());
+        }
+        
+        try {
+            log.debug("Using signature validation provider: {}",
+                    SignatureValidator.loadSignatureValidationProvider().getClass().getName());
+        } catch (final SignatureException e) {
+            log.debug("No signature validation provider is available: {}", e.getMessage());
+        }
+    }
+
+}
@@ -17,8 +17,15 @@
 
 package org.opensaml.xmlsec.signature.support;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
@@ -36,6 +43,7 @@ import org.opensaml.xmlsec.signature.SignableXMLObject;
 import org.opensaml.xmlsec.signature.Signature;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.w3c.dom.Document;
 
 import com.google.common.collect.Sets;
 
@@ -298,4 +306,105 @@ public final class SignatureSupport {
         Signer.signObject(signature);
     }
 
+    /**
+     * Signs a list of {@link SignableXMLObject}s which share the same signing parameters.
+     * 
+     * <p>
+     * Each object is prepared and marshalled in turn, and the signatures are then computed as a batch, so that
+     * per-signature setup in the {@link SignerProvider} can be shared across them.
+     * </p>
+     * 
+     * <p>
+     * If an {@link Executor} is supplied, the signatures are computed concurrently on it. This is only done when
+     * every object has been marshalled into its own DOM document, as the DOM is not safe for concurrent
+     * modification; otherwise, and when fewer than two objects are supplied, the signatures are computed in order on
+     * the calling thread. Objects to be signed concurrently must not contain or reference one another.
+     * </p>
+     * 
+     * @param signables the signable XMLObjects to sign
+     * @param parameters the signing parameters to use
+     * @param executor optional executor on which to compute the signatures concurrently
+     * 
+     * @throws SecurityException if there is a problem preparing a signature
+     * @throws MarshallingException if there is a problem marshalling an XMLObject
+     * @throws SignatureException if there is a problem with a signature operation
+     */
+    public static void signObjects(@Nonnull final List<? extends SignableXMLObject> signables,
+            @Nonnull final SignatureSigningParameters parameters, @Nullable final Executor executor)
+                    throws SecurityException, MarshallingException, SignatureException {
+        Constraint.isNotNull(signables, "Signable XMLObject list cannot be null");
+        Constraint.isNotNull(parameters, "Signature signing parameters cannot be null");
+
+        final XMLObjectBuilder<Signature> signatureBuilder =
+                XMLObjectProviderRegistrySupport.getBuilderFactory().getBuilderOrThrow(
+                        Signature.DEFAULT_ELEMENT_NAME);
+        
+        final List<Signature> signatures = new ArrayList<>(signables.size());
+        final Set<Document> documents = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (final SignableXMLObject signable : signables) {
+            Constraint.isNotNull(signable, "Signable XMLObject cannot be null");
+            
+            final Signature signature = signatureBuilder.buildObject(Signature.DEFAULT_ELEMENT_NAME);
+            signable.setSignature(signature);
+            SignatureSupport.prepareSignatureParams(signature, parameters);
+            
+            final Marshaller marshaller =
+                    XMLObjectProviderRegistrySupport.getMarshallerFactory().getMarshaller(signable);
+            documents.add(marshaller.marshall(signable).getOwnerDocument());
+            signatures.add(signature);
+        }
+
+        if (executor == null || signatures.size() < 2 || documents.size() < signatures.size()) {
+            Signer.signObjects(signatures);
+        } else {
+            signConcurrently(signatures, executor);
+        }
+    }
+    
+    /**
+     * Compute signatures concurrently, waiting for all of them to complete.
+     * 
+     * @param signatures the signatures to compute
+     * @param executor the executor on which to compute them
+     * 
+     * @throws SignatureException if there is a problem with any of the signature operations
+     */
+    private static void signConcurrently(@Nonnull final List<Signature> signatures,
+            @Nonnull final Executor executor) throws SignatureException {
+        final List<FutureTask<Void>> tasks = new ArrayList<>(signatures.size());
+        for (final Signature signature : signatures) {
+            final FutureTask<Void> task = new FutureTask<>(() -> {
+                Signer.signObject(signature);
+                return null;
+            });
+            tasks.add(task);
+            try {
+                executor.execute(task);
+            } catch (final RejectedExecutionException e) {
+                task.run();
+            }
+        }
+        
+        SignatureException failure = null;
+        for (final FutureTask<Void> task : tasks) {
+            try {
+                task.get();
+            } catch (final ExecutionException e) {
+                final Throwable cause = e.getCause();
+                if (cause instanceof Error) {
+                    throw (Error) cause;
+                } else if (failure == null) {
+                    failure = cause instanceof SignatureException ? (SignatureException) cause
+                            : new SignatureException("Signature computation error", (Exception) cause);
+                }
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SignatureException("Interrupted while waiting for signature computation", e);
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
 }
@@ -21,6 +21,7 @@ import java.util.Iterator;
 import java.util.ServiceLoader;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 
 import org.opensaml.security.credential.Credential;
 import org.opensaml.xmlsec.signature.Signature;
@@ -33,8 +34,14 @@ import org.slf4j.LoggerFactory;
  */
 public final class SignatureValidator {
     
-    /** The cached signature validation provider instance to use. */
-    private static SignatureValidationProvider validatorInstance;
+    /**
+     * The cached signature validation provider instance to use.
+     * 
+     * <p>
+     * Written once, under the class lock, and read without locking thereafter.
+     * </p>
+     */
+    private static volatile SignatureValidationProvider validatorInstance;
 
     /** Constructor. */
     protected SignatureValidator() { }
@@ -57,12 +64,34 @@ public final class SignatureValidator {
     /**
      * Obtain the {@link SignatureValidationProvider} instance to be used.
      * 
+     * <p>
+     * The provider is normally discovered during library initialization, after which this method does not
+     * synchronize.
+     * </p>
+     * 
+     * @return the SignatureValidationProvider
+     * @throws SignatureException if a SignatureValidationProvider could not be loaded
+     */
+    @Nonnull private static SignatureValidationProvider getSignatureValidationProvider() throws SignatureException {
+        final SignatureValidationProvider provider = validatorInstance;
+        if (provider != null) {
+            return provider;
+        }
+        return loadSignatureValidationProvider();
+    }
+    
+    /**
+     * Discover the {@link SignatureValidationProvider} instance to be used via the Java Services API.
+     * 
+     * <p>
+     * Also called by {@link SignatureProviderInitializer} to perform discovery during library initialization.
+     * </p>
+     * 
      * @return the SignatureValidationProvider
      * @throws SignatureException if a SignatureValidationProvider could not be loaded
      */
-    @Nonnull private static synchronized SignatureValidationProvider getSignatureValidationProvider()
+    @Nonnull static synchronized SignatureValidationProvider loadSignatureValidationProvider()
             throws SignatureException {
-
         if (validatorInstance == null) {
             final ServiceLoader<SignatureValidationProvider> loader =
                     ServiceLoader.load(SignatureValidationProvider.class);
@@ -77,6 +106,26 @@ public final class SignatureValidator {
         return validatorInstance;
     }
     
+    /**
+     * Discard the {@link SignatureValidationProvider} instance discovered so far, so that it is discovered again.
+     * 
+     * <p>
+     * Intended only for testing discovery.
+     * </p>
+     */
+    static synchronized void resetSignatureValidationProvider() {
+        validatorInstance = null;
+    }
+    
+    /**
+     * Get the {@link SignatureValidationProvider} instance discovered so far, without attempting discovery.
+     * 
+     * @return the SignatureValidationProvider, or null if none has been discovered
+     */
+    @Nullable static SignatureValidationProvider getLoadedSignatureValidationProvider() {
+        return validatorInstance;
+    }
+    
     /**
      * Get an SLF4J Logger.
      * 
@@ -22,6 +22,7 @@ import java.util.List;
 import java.util.ServiceLoader;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 
 import org.opensaml.xmlsec.signature.Signature;
 import org.slf4j.Logger;
@@ -41,8 +42,14 @@ import org.slf4j.LoggerFactory;
  */
 public final class Signer {
     
-    /** The cached signer provider instance to use. */
-    private static SignerProvider signerInstance;
+    /**
+     * The cached signer provider instance to use.
+     * 
+     * <p>
+     * Written once, under the class lock, and read without locking thereafter.
+     * </p>
+     */
+    private static volatile SignerProvider signerInstance;
 
     /** Constructor. */
     protected Signer() { }
@@ -56,9 +63,7 @@ public final class Signer {
     public static void signObjects(@Nonnull final List<Signature> signatures) throws SignatureException {
         final SignerProvider signer = getSignerProvider();
         getLogger().debug("Using a signer of implementation: {}", signer.getClass().getName());
-        for (final Signature signature : signatures) {
-            signer.signObject(signature);
-        }
+        signer.signObjects(signatures);
     }
 
     /**
@@ -76,10 +81,33 @@ public final class Signer {
     /**
      * Obtain the {@link SignerProvider} instance to be used.
      * 
+     * <p>
+     * The provider is normally discovered during library initialization, after which this method does not
+     * synchronize.
+     * </p>
+     * 
      * @return the SignerProvider
      * @throws SignatureException if a SignerProvider could not be loaded
      */
-    @Nonnull private static synchronized SignerProvider getSignerProvider() throws SignatureException {
+    @Nonnull private static SignerProvider getSignerProvider() throws SignatureException {
+        final SignerProvider provider = signerInstance;
+        if (provider != null) {
+            return provider;
+        }
+        return loadSignerProvider();
+    }
+    
+    /**
+     * Discover the {@link SignerProvider} instance to be used via the Java Services API.
+     * 
+     * <p>
+     * Also called by {@link SignatureProviderInitializer} to perform discovery during library initialization.
+     * </p>
+     * 
+     * @return the SignerProvider
+     * @throws SignatureException if a SignerProvider could not be loaded
+     */
+    @Nonnull static synchronized SignerProvider loadSignerProvider() throws SignatureException {
         if (signerInstance == null) {
             final ServiceLoader<SignerProvider> loader = ServiceLoader.load(SignerProvider.class);
             final Iterator<SignerProvider> iterator = loader.iterator();
@@ -92,6 +120,26 @@ public final class Signer {
         return signerInstance;
     }
     
+    /**
+     * Discard the {@link SignerProvider} instance discovered so far, so that it is discovered again.
+     * 
+     * <p>
+     * Intended only for testing discovery.
+     * </p>
+     */
+    static synchronized void resetSignerProvider() {
+        signerInstance = null;
+    }
+    
+    /**
+     * Get the {@link SignerProvider} instance discovered so far, without attempting discovery.
+     * 
+     * @return the SignerProvider, or null if none has been discovered
+     */
+    @Nullable static SignerProvider getLoadedSignerProvider() {
+        return signerInstance;
+    }
+    
     /**
      * Get an SLF4J Logger.
      * 
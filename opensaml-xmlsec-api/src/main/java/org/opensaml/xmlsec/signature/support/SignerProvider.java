@@ -17,6 +17,8 @@
 
 package org.opensaml.xmlsec.signature.support;
 
+import java.util.List;
+
 import javax.annotation.Nonnull;
 import javax.annotation.concurrent.ThreadSafe;
 
@@ -44,5 +46,22 @@ public interface SignerProvider {
      * @throws SignatureException thrown if there is an error computing the signature
      */
     public void signObject(@Nonnull final Signature signature) throws SignatureException;
+    
+    /**
+     * Signs a list of XMLObjects in the order provided.
+     * 
+     * <p>
+     * Implementations may override this to amortize per-signature setup across the list. The default
+     * implementation signs each object in turn.
+     * </p>
+     * 
+     * @param signatures an ordered list of signatures to compute
+     * @throws SignatureException thrown if there is an error computing a signature
+     */
+    public default void signObjects(@Nonnull final List<Signature> signatures) throws SignatureException {
+        for (final Signature signature : signatures) {
+            signObject(signature);
+        }
+    }
 
 }
@@ -130,6 +130,30 @@ public class AlgorithmRegistryTest extends OpenSAMLInitBaseTestCase {
         Assert.assertNull(registry.getDigestAlgorithm(JCAConstants.DIGEST_SHA256));
     }
     
+    @Test
+    public void testSnapshot() {
+        AlgorithmRegistry registry = new AlgorithmRegistry();
+        registry.register(new DigestSHA256());
+        
+        final Set<String> before = registry.getRegisteredURIsByType(AlgorithmType.MessageDigest);
+        Assert.assertEquals(before.size(), 1);
+        
+        registry.register(new SignatureRSASHA256());
+        Assert.assertTrue(registry.isRuntimeSupported(SignatureConstants.ALGO_ID_SIGNATURE_RSA_SHA256));
+        Assert.assertEquals(registry.getRegisteredURIsByType(AlgorithmType.Signature).size(), 1);
+        
+        registry.deregister(new DigestSHA256());
+        Assert.assertEquals(before.size(), 1);
+        Assert.assertTrue(before.contains(SignatureConstants.ALGO_ID_DIGEST_SHA256));
+        Assert.assertTrue(registry.getRegisteredURIsByType(AlgorithmType.MessageDigest).isEmpty());
+        
+        registry.clear();
+        Assert.assertNull(registry.get(SignatureConstants.ALGO_ID_SIGNATURE_RSA_SHA256));
+        Assert.assertFalse(registry.isRuntimeSupported(SignatureConstants.ALGO_ID_SIGNATURE_RSA_SHA256));
+        Assert.assertNull(registry.getSignatureAlgorithm(JCAConstants.KEY_ALGO_RSA, JCAConstants.DIGEST_SHA256));
+        Assert.assertTrue(registry.getRegisteredURIsByType(AlgorithmType.Signature).isEmpty());
+    }
+    
     @Test
     public void testGlobalRegistryPresence() {
         AlgorithmRegistry registry = AlgorithmSupport.getGlobalAlgorithmRegistry();
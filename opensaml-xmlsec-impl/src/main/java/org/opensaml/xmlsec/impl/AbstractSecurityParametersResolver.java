@@ -19,7 +19,9 @@ package org.opensaml.xmlsec.impl;
 
 import java.security.Key;
 import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.function.Predicate;
 
 import javax.annotation.Nonnull;
@@ -43,8 +45,6 @@ import org.opensaml.xmlsec.keyinfo.NamedKeyInfoGeneratorManager;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.google.common.base.Predicates;
-
 /**
  * Abstract base class for security parameters resolvers which supplies commonly used functionality for reuse.
  * 
@@ -53,9 +53,65 @@ import com.google.common.base.Predicates;
 public abstract class AbstractSecurityParametersResolver<ProductType> 
         implements Resolver<ProductType, CriteriaSet>{
     
+    /** Maximum number of cached whitelist/blacklist policies. */
+    private static final int MAX_CACHED_POLICIES = 100;
+    
     /** Logger. */
     private Logger log = LoggerFactory.getLogger(AbstractSecurityParametersResolver.class);
     
+    /** Whether resolved whitelist/blacklist policies are cached. */
+    private boolean whitelistBlacklistPolicyCaching;
+    
+    /** Cached whitelist/blacklist policies, keyed by configuration list, in access order. Guarded by itself. */
+    @Nonnull private final Map<List<WhitelistBlacklistConfiguration>, WhitelistBlacklistPolicy> policyCache =
+            new LinkedHashMap<List<WhitelistBlacklistConfiguration>, WhitelistBlacklistPolicy>(16, 0.75f, true) {
+                private static final long serialVersionUID = -2836505291845473720L;
+
+                protected boolean removeEldestEntry(
+                        final Map.Entry<List<WhitelistBlacklistConfiguration>, WhitelistBlacklistPolicy> eldest) {
+                    return size() > MAX_CACHED_POLICIES;
+                }
+            };
+    
+    /**
+     * Get whether the effective whitelist/blacklist policy resolved for a given list of configurations is cached
+     * and reused for subsequent resolutions against the same list.
+     * 
+     * <p>Defaults to false.</p>
+     * 
+     * @return whether policies are cached
+     */
+    public boolean isWhitelistBlacklistPolicyCaching() {
+        return whitelistBlacklistPolicyCaching;
+    }
+    
+    /**
+     * Set whether the effective whitelist/blacklist policy resolved for a given list of configurations is cached
+     * and reused for subsequent resolutions against the same list.
+     * 
+     * <p>
+     * Caching merges the configured whitelists and blacklists once per distinct list of configuration instances,
+     * rather than on every resolution. It should only be enabled if those configuration instances are not modified
+     * once in use, and if the effective whitelist, blacklist and precedence do not depend on anything else in the
+     * criteria, or else {@link #clearWhitelistBlacklistPolicyCache()} must be called after any change.
+     * </p>
+     * 
+     * @param flag whether to cache policies
+     */
+    public void setWhitelistBlacklistPolicyCaching(final boolean flag) {
+        whitelistBlacklistPolicyCaching = flag;
+        clearWhitelistBlacklistPolicyCache();
+    }
+    
+    /**
+     * Remove all cached whitelist/blacklist policies.
+     */
+    public void clearWhitelistBlacklistPolicyCache() {
+        synchronized (policyCache) {
+            policyCache.clear();
+        }
+    }
+    
     /**
      * Resolve a {@link KeyInfoGenerator} instance based on a {@link NamedKeyInfoGeneratorManager}, 
      * {@link Credential} and optional KeyInfo generation profile name.
@@ -87,7 +143,6 @@ public abstract class AbstractSecurityParametersResolver<ProductType>
         return KeyInfoSupport.getKeyInfoGenerator(credential, manager, keyInfoProfileName);
     }
     
-// Checkstyle: ReturnCount OFF    
     /**
      * Resolve and populate the effective whitelist or blacklist on the supplied instance of 
      * {@link WhitelistBlacklistParameters}.
@@ -100,58 +155,63 @@ public abstract class AbstractSecurityParametersResolver<ProductType>
             @Nonnull final CriteriaSet criteria, 
             @Nonnull @NonnullElements @NotEmpty final List<? extends WhitelistBlacklistConfiguration> configs) {
         
-        final Collection<String> whitelist = resolveEffectiveWhitelist(criteria, configs);
-        log.trace("Resolved effective whitelist: {}", whitelist);
-        
-        final Collection<String> blacklist = resolveEffectiveBlacklist(criteria, configs);
-        log.trace("Resolved effective blacklist: {}", blacklist);
+        resolveWhitelistBlacklistPolicy(criteria, configs).populate(params);
+    }
+    
+    /**
+     * Get a predicate which operates according to the effective configured whitelist and blacklist policy.
+     * 
+     * @param criteria the input criteria being evaluated
+     * @param configs the effective list of {@link WhitelistBlacklistConfiguration} instances to consider
+     * 
+     * @return a predicate instance which operates accordingly to the effective whitelist and blacklist policy
+     */
+    @Nonnull protected Predicate<String> resolveWhitelistBlacklistPredicate(@Nonnull final CriteriaSet criteria, 
+            @Nonnull @NonnullElements @NotEmpty final List<? extends WhitelistBlacklistConfiguration> configs) {
         
-        if (whitelist.isEmpty() && blacklist.isEmpty()) {
-            log.trace("Both empty, nothing to populate");
-            return;
-        }
+        return resolveWhitelistBlacklistPolicy(criteria, configs);
+    }
+    
+    /**
+     * Resolve the effective whitelist and blacklist policy, from the cache if caching is enabled.
+     * 
+     * @param criteria the input criteria being evaluated
+     * @param configs the effective list of {@link WhitelistBlacklistConfiguration} instances to consider
+     * 
+     * @return the effective whitelist and blacklist policy
+     */
+    @Nonnull protected WhitelistBlacklistPolicy resolveWhitelistBlacklistPolicy(@Nonnull final CriteriaSet criteria, 
+            @Nonnull @NonnullElements @NotEmpty final List<? extends WhitelistBlacklistConfiguration> configs) {
         
-        if (whitelist.isEmpty()) {
-            log.trace("Whitelist empty, populating blacklist");
-            params.setBlacklistedAlgorithms(blacklist);
-            return;
+        if (!isWhitelistBlacklistPolicyCaching()) {
+            return buildWhitelistBlacklistPolicy(criteria, configs);
         }
         
-        if (blacklist.isEmpty()) {
-            log.trace("Blacklist empty, populating whitelist");
-            params.setWhitelistedAlgorithms(whitelist);
-            return;
+        final List<WhitelistBlacklistConfiguration> key = List.copyOf(configs);
+        synchronized (policyCache) {
+            final WhitelistBlacklistPolicy cached = policyCache.get(key);
+            if (cached != null) {
+                log.trace("Using cached whitelist/blacklist policy");
+                return cached;
+            }
         }
         
-        final WhitelistBlacklistConfiguration.Precedence precedence =
-                resolveWhitelistBlacklistPrecedence(criteria, configs);
-        log.trace("Resolved effective precedence: {}", precedence);
-        switch(precedence) {
-            case WHITELIST:
-                log.trace("Based on precedence, populating whitelist");
-                params.setWhitelistedAlgorithms(whitelist);
-                break;
-            case BLACKLIST:
-                log.trace("Based on precedence, populating blacklist");
-                params.setBlacklistedAlgorithms(blacklist);
-                break;
-            default:
-                throw new IllegalArgumentException("WhitelistBlacklistPrecedence value is unknown: " + precedence);
-                    
+        final WhitelistBlacklistPolicy policy = buildWhitelistBlacklistPolicy(criteria, configs);
+        synchronized (policyCache) {
+            policyCache.put(key, policy);
         }
-        
+        return policy;
     }
-// Checkstyle: ReturnCount ON
     
     /**
-     * Get a predicate which operates according to the effective configured whitelist and blacklist policy.
+     * Build the effective whitelist and blacklist policy.
      * 
      * @param criteria the input criteria being evaluated
      * @param configs the effective list of {@link WhitelistBlacklistConfiguration} instances to consider
      * 
-     * @return a predicate instance which operates accordingly to the effective whitelist and blacklist policy
+     * @return the effective whitelist and blacklist policy
      */
-    @Nonnull protected Predicate<String> resolveWhitelistBlacklistPredicate(@Nonnull final CriteriaSet criteria, 
+    @Nonnull protected WhitelistBlacklistPolicy buildWhitelistBlacklistPolicy(@Nonnull final CriteriaSet criteria, 
             @Nonnull @NonnullElements @NotEmpty final List<? extends WhitelistBlacklistConfiguration> configs) {
         
         final Collection<String> whitelist = resolveEffectiveWhitelist(criteria, configs);
@@ -160,36 +220,11 @@ public abstract class AbstractSecurityParametersResolver<ProductType>
         final Collection<String> blacklist = resolveEffectiveBlacklist(criteria, configs);
         log.trace("Resolved effective blacklist: {}", blacklist);
         
-        if (whitelist.isEmpty() && blacklist.isEmpty()) {
-            log.trace("Both empty, returning alwaysTrue predicate");
-            return Predicates.alwaysTrue();
-        }
-        
-        if (whitelist.isEmpty()) {
-            log.trace("Whitelist empty, returning BlacklistPredicate");
-            return new BlacklistPredicate(blacklist);
-        }
-        
-        if (blacklist.isEmpty()) {
-            log.trace("Blacklist empty, returning WhitelistPredicate");
-            return new WhitelistPredicate(whitelist);
-        }
-        
         final WhitelistBlacklistConfiguration.Precedence precedence =
                 resolveWhitelistBlacklistPrecedence(criteria, configs);
         log.trace("Resolved effective precedence: {}", precedence);
-        switch(precedence) {
-            case WHITELIST:
-                log.trace("Based on precedence, returning WhitelistPredicate");
-                return new WhitelistPredicate(whitelist);
-            case BLACKLIST:
-                log.trace("Based on precedence, returning BlacklistPredicate");
-                return new BlacklistPredicate(blacklist);
-            default:
-                throw new IllegalArgumentException("WhitelistBlacklistPrecedence value is unknown: " + precedence);
-                    
-        }
         
+        return new WhitelistBlacklistPolicy(whitelist, blacklist, precedence);
     }
 
     /**
@@ -0,0 +1,126 @@
+/*
+ * Licensed to the University Corporation for Advanced Internet Development,
+ * Inc. (UCAID) under one or more contributor license agreements.  See the
+ * NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The UCAID licenses this file to You under the Apache
+ * License, Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opensaml.xmlsec.impl;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Set;
+import java.util.function.Predicate;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+
+import net.shibboleth.utilities.java.support.annotation.constraint.NonnullElements;
+import net.shibboleth.utilities.java.support.annotation.constraint.NotLive;
+import net.shibboleth.utilities.java.support.annotation.constraint.Unmodifiable;
+import net.shibboleth.utilities.java.support.logic.Constraint;
+
+import org.opensaml.xmlsec.WhitelistBlacklistConfiguration.Precedence;
+import org.opensaml.xmlsec.WhitelistBlacklistParameters;
+
+/**
+ * The effective algorithm URI whitelist/blacklist policy resulting from merging one or more
+ * {@link org.opensaml.xmlsec.WhitelistBlacklistConfiguration} instances.
+ * 
+ * <p>
+ * The merge and the choice between whitelist and blacklist are performed once, on construction, so that an instance
+ * may be evaluated repeatedly, and shared between threads, at the cost of a single set lookup per algorithm.
+ * At most one of the effective whitelist and blacklist is non-empty. If both are empty, all algorithms are allowed.
+ * </p>
+ */
+@ThreadSafe
+public class WhitelistBlacklistPolicy implements Predicate<String> {
+    
+    /** Effective whitelisted algorithms. */
+    @Nonnull @NonnullElements private final Set<String> whitelist;
+    
+    /** Effective blacklisted algorithms. */
+    @Nonnull @NonnullElements private final Set<String> blacklist;
+    
+    /**
+     * Constructor.
+     *
+     * @param whitelistedAlgorithms merged whitelist
+     * @param blacklistedAlgorithms merged blacklist
+     * @param precedence which list to use if both are non-empty
+     */
+    public WhitelistBlacklistPolicy(@Nonnull @NonnullElements final Collection<String> whitelistedAlgorithms,
+            @Nonnull @NonnullElements final Collection<String> blacklistedAlgorithms,
+            @Nonnull final Precedence precedence) {
+        Constraint.isNotNull(whitelistedAlgorithms, "Whitelist may not be null");
+        Constraint.isNotNull(blacklistedAlgorithms, "Blacklist may not be null");
+        Constraint.isNotNull(precedence, "Precedence may not be null");
+        
+        if (!whitelistedAlgorithms.isEmpty()
+                && (blacklistedAlgorithms.isEmpty() || precedence == Precedence.WHITELIST)) {
+            whitelist = Set.copyOf(whitelistedAlgorithms);
+            blacklist = Collections.emptySet();
+        } else if (!blacklistedAlgorithms.isEmpty()) {
+            whitelist = Collections.emptySet();
+            blacklist = Set.copyOf(blacklistedAlgorithms);
+        } else {
+            whitelist = Collections.emptySet();
+            blacklist = Collections.emptySet();
+        }
+    }
+    
+    /**
+     * Get the effective whitelist.
+     * 
+     * @return the whitelisted algorithms, empty if the policy is not a whitelist
+     */
+    @Nonnull @NonnullElements @NotLive @Unmodifiable public Set<String> getWhitelistedAlgorithms() {
+        return whitelist;
+    }
+    
+    /**
+     * Get the effective blacklist.
+     * 
+     * @return the blacklisted algorithms, empty if the policy is not a blacklist
+     */
+    @Nonnull @NonnullElements @NotLive @Unmodifiable public Set<String> getBlacklistedAlgorithms() {
+        return blacklist;
+    }
+    
+    /**
+     * Populate the supplied parameters instance with the effective whitelist or blacklist.
+     * 
+     * @param params the parameters instance to populate
+     */
+    public void populate(@Nonnull final WhitelistBlacklistParameters params) {
+        Constraint.isNotNull(params, "WhitelistBlacklistParameters may not be null");
+        if (!whitelist.isEmpty()) {
+            params.setWhitelistedAlgorithms(whitelist);
+        } else if (!blacklist.isEmpty()) {
+            params.setBlacklistedAlgorithms(blacklist);
+        }
+    }
+    
+    /** {@inheritDoc} */
+    public boolean test(@Nullable final String input) {
+        if (input == null) {
+            throw new IllegalArgumentException("Algorithm URI to evaluate may not be null");
+        }
+        if (!whitelist.isEmpty()) {
+            return whitelist.contains(input);
+        }
+        return !blacklist.contains(input);
+    }
+    
+}
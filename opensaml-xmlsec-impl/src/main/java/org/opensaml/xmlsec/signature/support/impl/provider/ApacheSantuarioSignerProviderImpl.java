@@ -17,13 +17,18 @@
 
 package org.opensaml.xmlsec.signature.support.impl.provider;
 
+import java.security.Key;
+import java.util.List;
+
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 
 import net.shibboleth.utilities.java.support.logic.Constraint;
 
 import org.apache.xml.security.Init;
 import org.apache.xml.security.exceptions.XMLSecurityException;
 import org.apache.xml.security.signature.XMLSignature;
+import org.opensaml.security.credential.Credential;
 import org.opensaml.security.credential.CredentialSupport;
 import org.opensaml.xmlsec.signature.Signature;
 import org.opensaml.xmlsec.signature.impl.SignatureImpl;
@@ -46,6 +51,42 @@ public class ApacheSantuarioSignerProviderImpl implements SignerProvider {
         Constraint.isNotNull(signature, "Signature cannot be null");
         Constraint.isTrue(Init.isInitialized(), "Apache XML security library is not initialized");
         
+        sign(signature, CredentialSupport.extractSigningKey(signature.getSigningCredential()));
+    }
+    
+    /**
+     * {@inheritDoc}
+     * 
+     * <p>
+     * The library state is checked once for the whole list, and the signing key is extracted only when the
+     * signing credential differs from that of the previous signature.
+     * </p>
+     */
+    @Override
+    public void signObjects(@Nonnull final List<Signature> signatures) throws SignatureException {
+        Constraint.isNotNull(signatures, "Signature list cannot be null");
+        Constraint.isTrue(Init.isInitialized(), "Apache XML security library is not initialized");
+        
+        Credential credential = null;
+        Key signingKey = null;
+        for (final Signature signature : signatures) {
+            Constraint.isNotNull(signature, "Signature cannot be null");
+            if (signingKey == null || signature.getSigningCredential() != credential) {
+                credential = signature.getSigningCredential();
+                signingKey = CredentialSupport.extractSigningKey(credential);
+            }
+            sign(signature, signingKey);
+        }
+    }
+    
+    /**
+     * Compute a signature using the supplied key.
+     * 
+     * @param signature the signature to compute
+     * @param signingKey the key extracted from the signature's signing credential
+     * @throws SignatureException thrown if there is an error computing the signature
+     */
+    private void sign(@Nonnull final Signature signature, @Nullable final Key signingKey) throws SignatureException {
         try {
             final XMLSignature xmlSignature = ((SignatureImpl) signature).getXMLSignature();
 
@@ -56,7 +97,7 @@ public class ApacheSantuarioSignerProviderImpl implements SignerProvider {
                         "XMLObject does not have XMLSignature instance, unable to compute signature");
             }
             log.debug("Computing signature over XMLSignature object");
-            xmlSignature.sign(CredentialSupport.extractSigningKey(signature.getSigningCredential()));
+            xmlSignature.sign(signingKey);
         } catch (final XMLSecurityException e) {
             log.error("An error occured computing the digital signature: {}", e.getMessage());
             throw new SignatureException("Signature computation error", e);
@@ -137,6 +137,35 @@ public class SimpleDecryptionTest extends XMLObjectBaseTestCase {
         
     }
     
+    /**
+     * Test that a key unwrapped from an EncryptedKey is cached and reused.
+     * 
+     * @throws Exception if something goes wrong
+     */
+    @Test
+    public void testEncryptedKeyCached() throws Exception {
+        final UnwrappedKeyCache cache = new UnwrappedKeyCache("test");
+        Decrypter decrypter = new Decrypter(null, kekResolver, null);
+        decrypter.setUnwrappedKeyCache(cache);
+        
+        final Key first = decrypter.decryptKey(encryptedKey, encURI);
+        Assert.assertEquals(first, encKey);
+        Assert.assertEquals(cache.getMissCount(), 1);
+        Assert.assertEquals(cache.getSize(), 1);
+        
+        decrypter = new Decrypter(null, kekResolver, null);
+        decrypter.setUnwrappedKeyCache(cache);
+        Assert.assertSame(decrypter.decryptKey(encryptedKey, encURI), first);
+        Assert.assertEquals(cache.getHitCount(), 1);
+        
+        // A different wrapping of the same key is not a hit.
+        final EncryptedKey rewrapped = new Encrypter().encryptKey(encKey, kekParams, parserPool.newDocument());
+        Assert.assertEquals(decrypter.decryptKey(rewrapped, encURI), encKey);
+        Assert.assertEquals(cache.getHitCount(), 1);
+        Assert.assertEquals(cache.getMissCount(), 2);
+        Assert.assertEquals(cache.getSize(), 2);
+    }
+    
     /**
      *  Test simple decryption of an EncryptedData object which is of type Element.
      */
@@ -203,6 +203,39 @@ public class AbstractSecurityParametersResolverTest extends XMLObjectBaseTestCas
     }
 
     
+    @Test
+    public void testPolicyCaching() throws ResolverException {
+        config1.setWhitelistedAlgorithms(set1);
+        config1.setBlacklistedAlgorithms(set2);
+        config1.setWhitelistBlacklistPrecedence(Precedence.WHITELIST);
+        
+        resolver.setWhitelistBlacklistPolicyCaching(true);
+        Assert.assertTrue(resolver.isWhitelistBlacklistPolicyCaching());
+        
+        WhitelistBlacklistParameters params = resolver.resolveSingle(criteriaSet);
+        Assert.assertEquals(params.getWhitelistedAlgorithms(), set1);
+        
+        Assert.assertSame(resolver.resolveWhitelistBlacklistPolicy(criteriaSet, Arrays.asList(config1, config2, config3)),
+                resolver.resolveWhitelistBlacklistPolicy(criteriaSet, Arrays.asList(config1, config2, config3)));
+        
+        // Cached policy is used until the cache is cleared.
+        config1.setWhitelistBlacklistPrecedence(Precedence.BLACKLIST);
+        params = resolver.resolveSingle(criteriaSet);
+        Assert.assertEquals(params.getWhitelistedAlgorithms(), set1);
+        Assert.assertEquals(params.getBlacklistedAlgorithms(), Collections.emptySet());
+        
+        resolver.clearWhitelistBlacklistPolicyCache();
+        params = resolver.resolveSingle(criteriaSet);
+        Assert.assertEquals(params.getWhitelistedAlgorithms(), Collections.emptySet());
+        Assert.assertEquals(params.getBlacklistedAlgorithms(), set2);
+        
+        // A different list of configurations is a different cache entry.
+        params = new WhitelistBlacklistParameters();
+        resolver.resolveWhitelistBlacklistPolicy(criteriaSet, Arrays.asList(config2, config3)).populate(params);
+        Assert.assertEquals(params.getWhitelistedAlgorithms(), Collections.emptySet());
+        Assert.assertEquals(params.getBlacklistedAlgorithms(), Collections.emptySet());
+    }
+    
     @Test
     public void testResolvePredicate() {
         Predicate<String> predicate;
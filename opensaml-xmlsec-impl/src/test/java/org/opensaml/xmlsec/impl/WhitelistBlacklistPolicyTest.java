@@ -0,0 +1,105 @@
+/*
+ * Licensed to the University Corporation for Advanced Internet Development,
+ * Inc. (UCAID) under one or more contributor license agreements.  See the
+ * NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The UCAID licenses this file to You under the Apache
+ * License, Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opensaml.xmlsec.impl;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.opensaml.xmlsec.WhitelistBlacklistConfiguration.Precedence;
+import org.opensaml.xmlsec.WhitelistBlacklistParameters;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ *
+ */
+public class WhitelistBlacklistPolicyTest {
+    
+    private List<String> whitelist = Arrays.asList("A", "B");
+    
+    private List<String> blacklist = Arrays.asList("X", "Y");
+
+    @Test
+    public void testEmpty() {
+        WhitelistBlacklistPolicy policy =
+                new WhitelistBlacklistPolicy(Collections.emptySet(), Collections.emptySet(), Precedence.WHITELIST);
+        
+        Assert.assertTrue(policy.getWhitelistedAlgorithms().isEmpty());
+        Assert.assertTrue(policy.getBlacklistedAlgorithms().isEmpty());
+        Assert.assertTrue(policy.test("A"));
+        Assert.assertTrue(policy.test("X"));
+        
+        WhitelistBlacklistParameters params = new WhitelistBlacklistParameters();
+        policy.populate(params);
+        Assert.assertTrue(params.getWhitelistedAlgorithms().isEmpty());
+        Assert.assertTrue(params.getBlacklistedAlgorithms().isEmpty());
+    }
+    
+    @Test
+    public void testWhitelistOnly() {
+        WhitelistBlacklistPolicy policy =
+                new WhitelistBlacklistPolicy(whitelist, Collections.emptySet(), Precedence.BLACKLIST);
+        
+        Assert.assertTrue(policy.test("A"));
+        Assert.assertTrue(policy.test("B"));
+        Assert.assertFalse(policy.test("C"));
+        Assert.assertFalse(policy.test("X"));
+        
+        WhitelistBlacklistParameters params = new WhitelistBlacklistParameters();
+        policy.populate(params);
+        Assert.assertEquals(params.getWhitelistedAlgorithms().size(), 2);
+        Assert.assertTrue(params.getBlacklistedAlgorithms().isEmpty());
+    }
+    
+    @Test
+    public void testBlacklistOnly() {
+        WhitelistBlacklistPolicy policy =
+                new WhitelistBlacklistPolicy(Collections.emptySet(), blacklist, Precedence.WHITELIST);
+        
+        Assert.assertTrue(policy.test("A"));
+        Assert.assertTrue(policy.test("C"));
+        Assert.assertFalse(policy.test("X"));
+        Assert.assertFalse(policy.test("Y"));
+        
+        WhitelistBlacklistParameters params = new WhitelistBlacklistParameters();
+        policy.populate(params);
+        Assert.assertTrue(params.getWhitelistedAlgorithms().isEmpty());
+        Assert.assertEquals(params.getBlacklistedAlgorithms().size(), 2);
+    }
+    
+    @Test
+    public void testPrecedence() {
+        WhitelistBlacklistPolicy policy = new WhitelistBlacklistPolicy(whitelist, blacklist, Precedence.WHITELIST);
+        Assert.assertEquals(policy.getWhitelistedAlgorithms().size(), 2);
+        Assert.assertTrue(policy.getBlacklistedAlgorithms().isEmpty());
+        Assert.assertFalse(policy.test("C"));
+        
+        policy = new WhitelistBlacklistPolicy(whitelist, blacklist, Precedence.BLACKLIST);
+        Assert.assertTrue(policy.getWhitelistedAlgorithms().isEmpty());
+        Assert.assertEquals(policy.getBlacklistedAlgorithms().size(), 2);
+        Assert.assertTrue(policy.test("C"));
+        Assert.assertFalse(policy.test("X"));
+    }
+    
+    @Test(expectedExceptions=IllegalArgumentException.class)
+    public void testNullArg() {
+        new WhitelistBlacklistPolicy(whitelist, blacklist, Precedence.WHITELIST).test(null);
+    }
+    
+}
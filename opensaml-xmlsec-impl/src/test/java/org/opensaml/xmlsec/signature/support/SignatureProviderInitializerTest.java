@@ -0,0 +1,70 @@
+/*
+ * Licensed to the University Corporation for Advanced Internet Development,
+ * Inc. (UCAID) under one or more contributor license agreements.  See the
+ * NOTICE file distributed with this work for additional information regarding
+ * copyright ownership. The UCAID licenses this file to You under the Apache
+ * License, Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.opensaml.xmlsec.signature.support;
+
+import java.util.ServiceLoader;
+
+import org.opensaml.core.OpenSAMLInitBaseTestCase;
+import org.opensaml.core.config.InitializationException;
+import org.opensaml.core.config.Initializer;
+import org.opensaml.xmlsec.signature.support.impl.provider.ApacheSantuarioSignatureValidationProviderImpl;
+import org.opensaml.xmlsec.signature.support.impl.provider.ApacheSantuarioSignerProviderImpl;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * Test of {@link SignatureProviderInitializer}.
+ */
+public class SignatureProviderInitializerTest extends OpenSAMLInitBaseTestCase {
+
+    @Test
+    public void testProvidersLoadedByInitialization() throws InitializationException {
+        Signer.resetSignerProvider();
+        SignatureValidator.resetSignatureValidationProvider();
+        Assert.assertNull(Signer.getLoadedSignerProvider());
+        Assert.assertNull(SignatureValidator.getLoadedSignatureValidationProvider());
+
+        // Run the initializer as registered with the Java Services API.
+        boolean registered = false;
+        for (final Initializer initializer : ServiceLoader.load(Initializer.class)) {
+            if (initializer instanceof SignatureProviderInitializer) {
+                initializer.init();
+                registered = true;
+            }
+        }
+        Assert.assertTrue(registered, "Initializer was not registered with the Java Services API");
+
+        Assert.assertTrue(Signer.getLoadedSignerProvider() instanceof ApacheSantuarioSignerProviderImpl,
+                "Signer provider was not discovered during initialization");
+        Assert.assertTrue(SignatureValidator.getLoadedSignatureValidationProvider()
+                instanceof ApacheSantuarioSignatureValidationProviderImpl,
+                "Signature validation provider was not discovered during initialization");
+    }
+
+    @Test
+    public void testRepeatedInit() throws InitializationException {
+        final SignerProvider signer = Signer.getLoadedSignerProvider();
+        final SignatureValidationProvider validator = SignatureValidator.getLoadedSignatureValidationProvider();
+
+        new SignatureProviderInitializer().init();
+
+        Assert.assertSame(Signer.getLoadedSignerProvider(), signer);
+        Assert.assertSame(SignatureValidator.getLoadedSignatureValidationProvider(), validator);
+    }
+
+}